@@ -46,6 +46,7 @@ import biblemulticonverter.format.AbstractStructuredHTMLVisitor.StructuredHTMLSt
 import biblemulticonverter.format.ExportFormat;
 import biblemulticonverter.logos.tools.LogosVersificationDetector;
 import biblemulticonverter.tools.AbstractVersificationDetector.VersificationScheme;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class LogosHTML implements ExportFormat {
 
@@ -68,6 +69,8 @@ public class LogosHTML implements ExportFormat {
 	};
 
 	private static Map<BookID, String> LOGOS_BOOKS = new EnumMap<>(BookID.class);
+	private static final MarkupEscaper TEXT_ESCAPER = MarkupEscaper.NONE.with('&', "&amp").with('<', "&lt;").with('>', "&gt;");
+
 	private static final BitSet[] ALL_CHAPTER_VERSES = new BitSet[100];
 
 	static {
@@ -311,7 +314,7 @@ public class LogosHTML implements ExportFormat {
 				}
 				bw.write(template);
 			} else if (!noTitle) {
-				bw.write("<h1>" + searchField("x-heading", true, 1, null) + title.replace("&", "&amp").replace("<", "&lt;").replace(">", "&gt;") + searchField("x-heading", false, 1, null) + "</h1>\n");
+				bw.write("<h1>" + searchField("x-heading", true, 1, null) + TEXT_ESCAPER.escape(title) + searchField("x-heading", false, 1, null) + "</h1>\n");
 			}
 
 			StringWriter footnotes = new StringWriter();
@@ -741,7 +744,7 @@ public class LogosHTML implements ExportFormat {
 		public void visitText(String text) throws IOException {
 			grammarFlag = false;
 			prepareForInlineOutput(false);
-			text = text.replace("&", "&amp").replace("<", "&lt;").replace(">", "&gt;");
+			text = TEXT_ESCAPER.escape(text);
 			text = text.replace("{{", "{{~ {{ }}").replace("[[", "{{~ [[ }}");
 			writer.write(tagForeign(text));
 		}
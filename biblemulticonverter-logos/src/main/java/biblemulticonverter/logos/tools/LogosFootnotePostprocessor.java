@@ -12,7 +12,6 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
@@ -29,6 +28,7 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
 import biblemulticonverter.tools.Tool;
+import biblemulticonverter.utilities.ParallelZipOutputStream;
 
 public class LogosFootnotePostprocessor implements Tool {
 	public static final String[] HELP_TEXT = {
@@ -90,7 +90,7 @@ public class LogosFootnotePostprocessor implements Tool {
 			}
 		}
 		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(args[0]));
-				ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(args[1]))) {
+				ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(args[1]))) {
 			ZipEntry ze;
 			while ((ze = zis.getNextEntry()) != null) {
 				zos.putNextEntry(new ZipEntry(ze.getName()));
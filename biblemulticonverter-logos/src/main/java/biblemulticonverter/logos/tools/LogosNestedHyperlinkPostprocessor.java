@@ -17,7 +17,6 @@ import java.util.Map.Entry;
 import java.util.stream.Collectors;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.XMLConstants;
 import javax.xml.namespace.NamespaceContext;
@@ -36,6 +35,7 @@ import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
 
 import biblemulticonverter.tools.Tool;
+import biblemulticonverter.utilities.ParallelZipOutputStream;
 
 public class LogosNestedHyperlinkPostprocessor implements Tool {
 	public static final String[] HELP_TEXT = {
@@ -90,7 +90,7 @@ public class LogosNestedHyperlinkPostprocessor implements Tool {
 			}
 		}
 		try (ZipInputStream zis = new ZipInputStream(new FileInputStream(args[0]));
-				ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(args[1]))) {
+				ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(args[1]))) {
 			ZipEntry ze;
 			while ((ze = zis.getNextEntry()) != null) {
 				if (ze.getName().equals("word/_rels/document.xml.rels")) {
@@ -40,6 +40,7 @@ import biblemulticonverter.data.VirtualVerse;
 import biblemulticonverter.format.AbstractHTMLVisitor;
 import biblemulticonverter.format.RoundtripFormat;
 import biblemulticonverter.sqlite.SQLiteModuleRegistry;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class MySword implements RoundtripFormat {
 
@@ -476,7 +477,7 @@ public class MySword implements RoundtripFormat {
 
 		@Override
 		public void visitText(String text) throws RuntimeException {
-			builder.append(text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;"));
+			MarkupEscaper.HTML_ATTRIBUTE.escape(builder, text);
 		}
 
 		@Override
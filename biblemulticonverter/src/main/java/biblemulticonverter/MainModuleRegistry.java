@@ -43,6 +43,7 @@ public class MainModuleRegistry extends ModuleRegistry {
 		result.add(new Module<ExportFormat>("QuickBible", "Export format for QuickBible (Bible for Android)", QuickBible.HELP_TEXT, QuickBible.class));
 		result.add(new Module<ExportFormat>("EquipdEPUB", "Epub export format for Equipd Bible", EquipdEPUB.HELP_TEXT, EquipdEPUB.class));
 		result.add(new Module<ExportFormat>("SimpleJSON", "Very simple JSON bible export (verse text only).", SimpleJSON.HELP_TEXT, SimpleJSON.class));
+		result.add(new Module<ExportFormat>("NDJSON", "Newline delimited JSON export (one object per verse) for search engine ingestion.", NDJSON.HELP_TEXT, NDJSON.class));
 		result.add(new Module<ExportFormat>("VersificationDetector", "Detect what versification most closely matches a module", VersificationDetector.HELP_TEXT, VersificationDetector.class));
 		result.add(new Module<ExportFormat>("VersificationCountsDetector", "Detect what versification most closely matches a module, looking on chapter/verse counts only", VersificationCountsDetector.HELP_TEXT, VersificationCountsDetector.class));
 		result.add(new Module<ExportFormat>("VersificationMappedDiffable", "Export like Diffable, but change the Versification first.", VersificationMappedDiffable.HELP_TEXT, VersificationMappedDiffable.class));
@@ -13,6 +13,7 @@ import biblemulticonverter.data.FormattedText.HyperlinkType;
 import biblemulticonverter.data.FormattedText.LineBreakKind;
 import biblemulticonverter.data.FormattedText.RawHTMLMode;
 import biblemulticonverter.data.FormattedText.Visitor;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 /**
  * Helper class for converting {@link FormattedText} to HTML. Inline elements
@@ -58,7 +59,7 @@ public abstract class AbstractHTMLVisitor implements Visitor<IOException> {
 	@Override
 	public void visitText(String text) throws IOException {
 		prepareForInlineOutput(false);
-		writer.write(text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;"));
+		MarkupEscaper.HTML_TEXT.escape(writer, text);
 	}
 
 	@Override
@@ -253,7 +254,9 @@ public abstract class AbstractHTMLVisitor implements Visitor<IOException> {
 		text = text.replace("& ", "&amp; ").replace("&amp;", "\1").replace("&lt;", "<").replace("&gt;", ">");
 		text = text.replace("&quot;", "\"").replace("&apos;", "'").replace("&#146;", "’").replace("&#147;", "“");
 		text = text.replace("&#148;", "”").replace("&nbsp;", "\u00A0").replace("&copy;", "©");
-		text = text.replace("&", "\2").replace("\1", "&").replace('\t', ' ').replaceAll("  +", " ");
+		text = text.replace("&", "\2").replace("\1", "&").replace('\t', ' ');
+		if (text.contains("  "))
+			text = text.replaceAll("  +", " ");
 		while (text.contains("\2")) {
 			int pos = text.indexOf('\2');
 			if (pos != -1) {
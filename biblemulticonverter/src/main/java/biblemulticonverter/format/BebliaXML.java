@@ -6,8 +6,6 @@ import java.util.List;
 import java.util.function.BiConsumer;
 import java.util.function.Function;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -19,7 +17,6 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -42,6 +39,7 @@ import biblemulticonverter.schema.beblia.BookType;
 import biblemulticonverter.schema.beblia.ObjectFactory;
 import biblemulticonverter.schema.beblia.TestamentType;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for Beblia XML.
@@ -73,10 +71,16 @@ public class BebliaXML implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		BibleType doc = u.unmarshal(new StreamSource(inputFile), BibleType.class).getValue();
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		BibleType doc;
+		try {
+			ValidateXML.validateWhileParsing(getSchema(), u);
+			doc = u.unmarshal(new StreamSource(inputFile), BibleType.class).getValue();
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
 		return parseBible(doc);
 	}
 
@@ -149,11 +153,14 @@ public class BebliaXML implements RoundtripFormat {
 		File file = new File(exportArgs[0]);
 		JAXBElement<BibleType> xmlbible = createXMLBible(bible);
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(xmlbible, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(xmlbible, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
 		if (System.getProperty("biblemulticonverter.indentxml") == null || Boolean.getBoolean("biblemulticonverter.indentxml")) {
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -163,7 +170,7 @@ public class BebliaXML implements RoundtripFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/beblia.xsd"));
+		return ValidateXML.getSchema("/beblia.xsd");
 	}
 
 	protected JAXBElement<BibleType> createXMLBible(Bible bible) throws Exception {
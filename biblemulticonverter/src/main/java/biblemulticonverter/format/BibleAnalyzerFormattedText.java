@@ -27,6 +27,7 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class BibleAnalyzerFormattedText implements ExportFormat {
 
@@ -113,6 +114,9 @@ public class BibleAnalyzerFormattedText implements ExportFormat {
 			new BibleAnalyzerBookInfo("Rev", BookID.BOOK_Rev, 22),
 	};
 
+	private static final MarkupEscaper TEXT_ESCAPER = MarkupEscaper.HTML_TEXT.with('[', "&#91;").with(']', "&#93;");
+	private static final MarkupEscaper RMAC_TEXT_ESCAPER = TEXT_ESCAPER.with('{', "&#123;").with('}', "&#125;");
+
 	private static final Map<BookID, BibleAnalyzerBookInfo> BOOK_INFO_BY_ID = new EnumMap<>(BookID.class);
 
 	static {
@@ -246,11 +250,7 @@ public class BibleAnalyzerFormattedText implements ExportFormat {
 
 		@Override
 		public void visitText(String text) throws IOException {
-			text = text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("[", "&#91;").replace("]", "&#93;");
-			if (hasRMAC) {
-				text = text.replace("{", "&#123;").replace("}", "&#125;");
-			}
-			writer.write(text);
+			(hasRMAC ? RMAC_TEXT_ESCAPER : TEXT_ESCAPER).escape(writer, text);
 		}
 
 		@Override
@@ -2,10 +2,7 @@ package biblemulticonverter.format;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -31,6 +28,7 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.schema.haggai.PARAGRAPH;
+import biblemulticonverter.utilities.CompressedIO;
 
 public class Compact implements RoundtripFormat {
 
@@ -43,7 +41,10 @@ public class Compact implements RoundtripFormat {
 			"But book, chapter, and verse information is omitted in case it can be inferred from the previous verse.",
 			"Also, formatting tags are cut as soon as they are unique (resulting in lots of 'unclosed' angle brackets)",
 			"",
-			"Use this format for transmission or storage of modules, not for editing. The parser is not very fault-tolerant."
+			"Use this format for transmission or storage of modules, not for editing. The parser is not very fault-tolerant.",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	private static final String MAGIC = "BiMuCo-1.0:";
@@ -51,7 +52,7 @@ public class Compact implements RoundtripFormat {
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
 		File exportFile = new File(exportArgs[0]);
-		try (Writer w = new OutputStreamWriter(new FileOutputStream(exportFile), StandardCharsets.UTF_8)) {
+		try (Writer w = new OutputStreamWriter(CompressedIO.openOutput(exportFile), StandardCharsets.UTF_8)) {
 			doExport(bible, w);
 		}
 	}
@@ -99,7 +100,7 @@ public class Compact implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			return doImport(br);
 		}
 	}
@@ -2,10 +2,7 @@ package biblemulticonverter.format;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -32,6 +29,7 @@ import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
+import biblemulticonverter.utilities.CompressedIO;
 
 public class Diffable implements RoundtripFormat {
 
@@ -43,7 +41,10 @@ public class Diffable implements RoundtripFormat {
 			"Every verse will be put into its own line, similar to VPL.",
 			"Linebreaks or headlines get their own lines.",
 			"Formatting is stored in HTML-like tags.",
-			"This format is ideal for fixing/editing modules."
+			"This format is ideal for fixing/editing modules.",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	private static final String MAGIC = "BibleMultiConverter-1.0 Title: ";
@@ -56,7 +57,7 @@ public class Diffable implements RoundtripFormat {
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
 		File exportFile = new File(exportArgs[0]);
-		try (Writer w = new OutputStreamWriter(new FileOutputStream(exportFile), StandardCharsets.UTF_8)) {
+		try (Writer w = new OutputStreamWriter(CompressedIO.openOutput(exportFile), StandardCharsets.UTF_8)) {
 			doExport(bible, w);
 		}
 	}
@@ -80,7 +81,7 @@ public class Diffable implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			return doImport(br);
 		}
 	}
@@ -9,6 +9,7 @@ import java.nio.charset.StandardCharsets;
 import java.util.BitSet;
 import java.util.EnumMap;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -27,6 +28,7 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class ESwordHTML implements ExportFormat {
 
@@ -127,6 +129,9 @@ public class ESwordHTML implements ExportFormat {
 			new ESwordBookInfo(BookID.BOOK_2Esd, "2 Esdras", 40, 48, 36, 52, 56, 59, 70, 63, 47, 59, 46, 51, 58, 48, 63, 78),
 	};
 
+	private static final MarkupEscaper TEXT_ESCAPER = MarkupEscaper.HTML_TEXT.with('{', "(").with('}', ")");
+	private static final Pattern WHITESPACE = Pattern.compile("[ \t\r\n]+");
+
 	private static final Map<BookID, ESwordBookInfo> BOOK_INFO_BY_ID = new EnumMap<>(BookID.class);
 
 	static {
@@ -300,8 +305,9 @@ public class ESwordHTML implements ExportFormat {
 
 		@Override
 		public void visitText(String text) throws RuntimeException {
-			text = text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("{", "(").replace("}", ")").replaceAll("[ \t\r\n]+", " ");
-			target.append(textPrefix + text + textSuffix);
+			target.append(textPrefix);
+			TEXT_ESCAPER.escape(target, WHITESPACE.matcher(text).replaceAll(" "));
+			target.append(textSuffix);
 		}
 
 		@Override
@@ -5,11 +5,15 @@ import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -26,6 +30,9 @@ import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
+import biblemulticonverter.utilities.ParallelTasks;
+import biblemulticonverter.utilities.ParallelZipOutputStream;
 
 public class EquipdEPUB implements ExportFormat {
 
@@ -67,12 +74,12 @@ public class EquipdEPUB implements ExportFormat {
 			else
 				System.out.println("WARNING: Unsupported argument: " + exportArgs[1]);
 		}
-		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(exportArgs[0] + ".epub"))) {
+		try (ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(exportArgs[0] + ".epub"))) {
 			ZipEntry mimetypeZE = new ZipEntry("mimetype");
 			mimetypeZE.setSize(20);
 			mimetypeZE.setCompressedSize(20);
 			mimetypeZE.setCrc(749429103);
-			mimetypeZE.setMethod(ZipOutputStream.STORED);
+			mimetypeZE.setMethod(ZipEntry.STORED);
 			zos.putNextEntry(mimetypeZE);
 			zos.write("application/epub+zip".getBytes(StandardCharsets.US_ASCII));
 			zos.putNextEntry(new ZipEntry("META-INF/container.xml"));
@@ -130,40 +137,69 @@ public class EquipdEPUB implements ExportFormat {
 			}
 			sb.append("  </navMap>\n</ncx>");
 			zos.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+
+			// render all chapters in parallel, and write them in order
+			final Boolean chapterHeadlinesAfter = headlinesAfter;
+			List<Callable<RenderedChapter>> tasks = new ArrayList<>();
 			for (Book book : bible.getBooks()) {
 				if (book.getId().getZefID() < 1 || book.getId().getZefID() > 66) {
-					System.out.println("WARNING: Skipping book " + book.getAbbr());
+					tasks.add(() -> {
+						System.out.println("WARNING: Skipping book " + book.getAbbr());
+						return null;
+					});
 					continue;
 				}
 				String fileName = String.format("%02d.%s", book.getId().getZefID(), BOOK_NAMES[book.getId().getZefID()]);
-				zos.putNextEntry(new ZipEntry("OEBPS/" + fileName + ".0.xhtml"));
-				sb.setLength(0);
-				sb.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\" " +
-						"xmlns:epub=\"http://www.idpf.org/2007/ops\" xml:lang=\"en\">\n<head>\n  <meta http-equiv=\"Content-Type\"" +
-						" content=\"text/html; charset=UTF-8\" />\n  <title>" + xml(book.getShortName()) + " </title>\n" +
-						"  <link rel=\"stylesheet\" href=\"global.css\" type=\"text/css\" />\n</head>\n<body>\n\n<h2>" +
-						xml(book.getShortName()) + " </h2>\n\n<div class=\"ci\">\n");
-				for (int i = 1; i <= book.getChapters().size(); i++) {
-					sb.append("<a href=\"" + fileName + "." + i + ".xhtml\">" + i + "</a>");
-				}
-				sb.append("\n</div>\n\n</body>\n</html>");
-				zos.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+				tasks.add(() -> {
+					StringBuilder isb = new StringBuilder();
+					isb.append("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\" " +
+							"xmlns:epub=\"http://www.idpf.org/2007/ops\" xml:lang=\"en\">\n<head>\n  <meta http-equiv=\"Content-Type\"" +
+							" content=\"text/html; charset=UTF-8\" />\n  <title>" + xml(book.getShortName()) + " </title>\n" +
+							"  <link rel=\"stylesheet\" href=\"global.css\" type=\"text/css\" />\n</head>\n<body>\n\n<h2>" +
+							xml(book.getShortName()) + " </h2>\n\n<div class=\"ci\">\n");
+					for (int i = 1; i <= book.getChapters().size(); i++) {
+						isb.append("<a href=\"" + fileName + "." + i + ".xhtml\">" + i + "</a>");
+					}
+					isb.append("\n</div>\n\n</body>\n</html>");
+					return new RenderedChapter("OEBPS/" + fileName + ".0.xhtml", isb.toString().getBytes(StandardCharsets.UTF_8), Collections.<String> emptySet());
+				});
 				for (int i = 1; i <= book.getChapters().size(); i++) {
-					zos.putNextEntry(new ZipEntry("OEBPS/" + fileName + "." + i + ".xhtml"));
-					StringWriter sw = new StringWriter();
-					writeChapter(sw, unsupportedFeatures, book, i, headlinesAfter);
-					zos.write(sw.toString().getBytes(StandardCharsets.UTF_8));
+					final int cnum = i;
+					tasks.add(() -> {
+						Set<String> chapterUnsupportedFeatures = new LinkedHashSet<>();
+						StringWriter sw = new StringWriter();
+						writeChapter(sw, chapterUnsupportedFeatures, book, cnum, chapterHeadlinesAfter);
+						return new RenderedChapter("OEBPS/" + fileName + "." + cnum + ".xhtml", sw.toString().getBytes(StandardCharsets.UTF_8), chapterUnsupportedFeatures);
+					});
 				}
 			}
+			ParallelTasks.runInOrder(tasks, chapter -> {
+				if (chapter == null)
+					return;
+				zos.putNextEntry(new ZipEntry(chapter.entryName));
+				unsupportedFeatures.addAll(chapter.unsupportedFeatures);
+				zos.write(chapter.content);
+			});
 		}
 		if (!unsupportedFeatures.isEmpty()) {
 			System.out.println("WARNING: Skipped unsupported features: " + unsupportedFeatures);
 		}
 	}
 
-	private boolean paragraphOpen = false;
+	private static class RenderedChapter {
+		private final String entryName;
+		private final byte[] content;
+		private final Set<String> unsupportedFeatures;
+
+		private RenderedChapter(String entryName, byte[] content, Set<String> unsupportedFeatures) {
+			this.entryName = entryName;
+			this.content = content;
+			this.unsupportedFeatures = unsupportedFeatures;
+		}
+	}
 
 	private void writeChapter(StringWriter sw, Set<String> unsupportedFeatures, Book book, int cnum, Boolean headlinesAfter) throws IOException {
+		boolean[] paragraphOpen = { false };
 		sw.write("<?xml version=\"1.0\" encoding=\"utf-8\" ?>\n<html dir=\"ltr\" xmlns=\"http://www.w3.org/1999/xhtml\"" +
 				" xmlns:epub=\"http://www.idpf.org/2007/ops\" xml:lang=\"en\">\n<head>\n  <meta http-equiv=\"Content-Type\"" +
 				" content=\"text/html;charset=UTF-8\" />\n  <title>" + xml(book.getShortName()) + " " + cnum + "</title>\n" +
@@ -178,22 +214,22 @@ public class EquipdEPUB implements ExportFormat {
 			boolean markerWritten = false;
 			if (headlinesAfter != null) {
 				if (headlinesAfter && !vv.getHeadlines().isEmpty()) {
-					if (!paragraphOpen) {
+					if (!paragraphOpen[0]) {
 						sw.write("<p>");
-						paragraphOpen = true;
+						paragraphOpen[0] = true;
 					}
 					sw.write("<a id=\"c" + cnum + "_v" + vv.getNumber() + "\"></a>");
 					markerWritten = true;
 				}
 				for (Headline h : vv.getHeadlines()) {
-					closeParagraph(sw);
+					closeParagraph(sw, paragraphOpen);
 					int depth = Math.min(h.getDepth() + 2, 6);
 					sw.write("<h" + depth + ">");
 					h.accept(new EquipdVisitor(sw, "</h" + depth + ">\n\n", unsupportedFeatures, " in headline", footnoteWriter, footnoteCounter, book.getId().isNT()));
 				}
 			}
-			sw.write(paragraphOpen ? " " : "<p>");
-			paragraphOpen = true;
+			sw.write(paragraphOpen[0] ? " " : "<p>");
+			paragraphOpen[0] = true;
 			if (!markerWritten) {
 				sw.write("<a id=\"c" + cnum + "_v" + vv.getNumber() + "\"></a>");
 			}
@@ -207,21 +243,21 @@ public class EquipdEPUB implements ExportFormat {
 				firstVerse = false;
 			}
 		}
-		closeParagraph(sw);
+		closeParagraph(sw, paragraphOpen);
 		if (footnoteCounter[0] != 0) {
 			sw.write("<div class=\"groupFootnote\">\n" + footnoteWriter.toString() + "</div>\n\n");
 		}
 		sw.write("</body>\n</html>");
 	}
 
-	private void closeParagraph(StringWriter sw) {
-		if (paragraphOpen)
+	private void closeParagraph(StringWriter sw, boolean[] paragraphOpen) {
+		if (paragraphOpen[0])
 			sw.write("</p>\n\n");
-		paragraphOpen = false;
+		paragraphOpen[0] = false;
 	}
 
 	private static String xml(String unescaped) {
-		return unescaped.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+		return MarkupEscaper.HTML_TEXT.escape(unescaped);
 	}
 
 	private static class EquipdVisitor extends AbstractHTMLVisitor {
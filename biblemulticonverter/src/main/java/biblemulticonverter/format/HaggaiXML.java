@@ -13,8 +13,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -26,7 +24,6 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -66,6 +63,7 @@ import biblemulticonverter.schema.haggai.TStyleFix;
 import biblemulticonverter.schema.haggai.VERSE;
 import biblemulticonverter.schema.haggai.XMLBIBLE;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for Haggai XML.
@@ -96,10 +94,16 @@ public class HaggaiXML implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		XMLBIBLE doc = (XMLBIBLE) ((JAXBElement<?>) u.unmarshal(inputFile)).getValue();
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		XMLBIBLE doc;
+		try {
+			ValidateXML.validateWhileParsing(getSchema(), u);
+			doc = (XMLBIBLE) ((JAXBElement<?>) u.unmarshal(inputFile)).getValue();
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
 		return parseBible(doc);
 	}
 
@@ -484,11 +488,14 @@ public class HaggaiXML implements RoundtripFormat {
 		File file = new File(exportArgs[0]);
 		XMLBIBLE xmlbible = createXMLBible(bible);
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(new JAXBElement<XMLBIBLE>(new QName("XMLBIBLE"), XMLBIBLE.class, xmlbible), doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(new JAXBElement<XMLBIBLE>(new QName("XMLBIBLE"), XMLBIBLE.class, xmlbible), doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		doc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
 		doc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "haggai_20130620.xsd");
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
@@ -500,7 +507,7 @@ public class HaggaiXML implements RoundtripFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/haggai_20130620.xsd"));
+		return ValidateXML.getSchema("/haggai_20130620.xsd");
 	}
 
 	protected XMLBIBLE createXMLBible(Bible bible) throws Exception {
@@ -18,6 +18,7 @@ import biblemulticonverter.data.Book;
 import biblemulticonverter.data.BookID;
 import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class HeatMapHTML implements ExportFormat {
 
@@ -293,7 +294,7 @@ public class HeatMapHTML implements ExportFormat {
 	}
 
 	private String html(String text) {
-		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+		return MarkupEscaper.HTML_TEXT.escape(text);
 	}
 
 	private static class Categorization {
@@ -33,6 +33,7 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.Versification.Reference;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class LaridianPocketBible implements ExportFormat {
 
@@ -352,7 +353,7 @@ public class LaridianPocketBible implements ExportFormat {
 	}
 
 	private static String h(String text) {
-		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+		return MarkupEscaper.HTML_ATTRIBUTE.escape(text);
 	}
 
 	protected InterlinearType<?> parseInterlinearType(int index, String type) {
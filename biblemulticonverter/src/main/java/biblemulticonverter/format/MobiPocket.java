@@ -8,9 +8,8 @@ import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.Callable;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -26,6 +25,7 @@ import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.tools.MobiPocketBXR;
 import biblemulticonverter.tools.MobiPocketBXR.BookInfo;
+import biblemulticonverter.utilities.ParallelTasks;
 
 public class MobiPocket implements ExportFormat {
 
@@ -39,17 +39,10 @@ public class MobiPocket implements ExportFormat {
 	private static final String LANGUAGE = "de";
 	private static final String TOC = "Inhaltsverzeichnis";
 
-	StringBuffer footNotes = new StringBuffer(), crossRefs = new StringBuffer();
-	int footNoteCount = 0;
-	String chapref = "";
 	List<MobiPocketBXR> bxrs = new ArrayList<MobiPocketBXR>();
 
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
-		footNotes.setLength(0);
-		crossRefs.setLength(0);
-		footNoteCount = 0;
-		chapref = "";
 		File exportFile = new File(exportArgs[0]);
 		String title = bible.getName();
 		File directory = exportFile.getParentFile();
@@ -100,73 +93,106 @@ public class MobiPocket implements ExportFormat {
 			}
 			bw.write("<h2>" + TOC + "</h2>");
 			bw.newLine();
-			List<String> books = new ArrayList<String>();
-			Map<String, Integer> maxChapter = new HashMap<String, Integer>();
-			Map<String, BookID> bookIDs = new HashMap<String, BookID>();
+			// the TOC and the BXR data are collected in the same pass
+			List<BookInfo> bookInfos = new ArrayList<BookInfo>();
 			for (Book bk : bible.getBooks()) {
-				books.add(bk.getAbbr());
 				if (isDictionary) {
 					bw.write("<p><a href=\"#" + bk.getAbbr() + "\">" + bk.getLongName() + "</a></p>");
 				} else {
 					bw.write("<p><a href=\"#b" + bookRef(bk) + "\">" + bk.getLongName() + " (" + bk.getAbbr() + ")</a></p>");
 				}
 				bw.newLine();
-				maxChapter.put(bk.getAbbr(), bk.getChapters().size());
-				bookIDs.put(bk.getAbbr(), bk.getId());
+				bookInfos.add(new BookInfo(bk.getAbbr(), bookRef(bk), bk.getChapters().size()));
 			}
-			try (final BufferedWriter bxw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(directory, filename + ".bxr")), "UTF-8"))) {
-				bxw.write(title);
-				bxw.newLine();
-				for (String bk : books) {
-					bxw.write(bk + "|" + bookRef(bk, bookIDs.get(bk)) + "|" + maxChapter.get(bk));
-					bxw.newLine();
-				}
-			}
-			bxrs.add(new MobiPocketBXR(filename, new File(directory, filename + ".bxr")));
+			MobiPocketBXR bxr = new MobiPocketBXR(filename, title, bookInfos);
+			bxr.write(new File(directory, filename + ".bxr"));
+			bxrs.add(bxr);
 			final String lexiconName = (isDictionary ? "Bible" : "BibleDict") + filename;
+
+			// render the dictionary entries and chapters in parallel, and write them in order
+			List<Callable<Section>> tasks = new ArrayList<>();
 			for (Book bk : bible.getBooks()) {
 				if (bk.getId() == BookID.DICTIONARY_ENTRY) {
-					bw.write("<mbp:pagebreak><idx:entry>");
-					bw.newLine();
-					bw.write("<h2><a name=\"" + bk.getAbbr() + "\" external=\"yes\"><idx:orth>" + bk.getLongName() + "</idx:orth></a></h2>");
-					bw.newLine();
-					bw.write("<p>");
-					bw.newLine();
-					writeVerse(bw, bk.getChapters().get(0).getProlog(), bible, "", lexiconName);
-					bw.write("</p>");
-					bw.newLine();
-					writeFootNotes(bw);
-					bw.write("</idx:entry>");
+					tasks.add(() -> renderSection("", (section, sbw) -> {
+						sbw.write("<mbp:pagebreak><idx:entry>");
+						sbw.newLine();
+						sbw.write("<h2><a name=\"" + bk.getAbbr() + "\" external=\"yes\"><idx:orth>" + bk.getLongName() + "</idx:orth></a></h2>");
+						sbw.newLine();
+						sbw.write("<p>");
+						sbw.newLine();
+						writeVerse(section, sbw, bk.getChapters().get(0).getProlog(), bible, "", lexiconName);
+						sbw.write("</p>");
+						sbw.newLine();
+						writeFootNotes(section, sbw);
+						sbw.write("</idx:entry>");
+					}));
 				} else {
-					bw.write("<mbp:pagebreak>");
-					bw.newLine();
-					chapref = "b" + bookRef(bk);
-					bw.write("<h2><a name=\"" + chapref + "\" external=\"yes\">" + bk.getLongName() + " (" + bk.getAbbr() + ")</a> (<a href=\"oeb:redirect?title=BibleNavigation#" + chapref + "\">Navigation</a>)</h2>");
-					bw.newLine();
-					int chapter = 0;
-					for (Chapter ch : bk.getChapters()) {
-						chapter++;
-						chapref = "b" + bookRef(bk) + "c" + chapter;
-						bw.write("<h3><a name=\"" + chapref + "\" external=\"yes\">" + bk.getAbbr() + " " + chapter + "</a> (<a href=\"oeb:redirect?title=BibleNavigation#" + chapref + "\">Navigation</a>)</h3>");
-						bw.newLine();
-						if (ch.getProlog() != null) {
-							bw.write("<small>");
-							bw.newLine();
-							writeVerse(bw, ch.getProlog(), bible, "", lexiconName);
-							bw.write("</small>");
-							bw.newLine();
-						}
-						for (final Verse v : ch.getVerses()) {
-							writeVerse(bw, v, bible, "<b>" + v.getNumber() + "</b> ", lexiconName);
-						}
-						writeFootNotes(bw);
+					tasks.add(() -> renderSection("b" + bookRef(bk), (section, sbw) -> {
+						sbw.write("<mbp:pagebreak>");
+						sbw.newLine();
+						sbw.write("<h2><a name=\"" + section.chapref + "\" external=\"yes\">" + bk.getLongName() + " (" + bk.getAbbr() + ")</a> (<a href=\"oeb:redirect?title=BibleNavigation#" + section.chapref + "\">Navigation</a>)</h2>");
+						sbw.newLine();
+					}));
+					for (int i = 0; i < bk.getChapters().size(); i++) {
+						final int chapter = i + 1;
+						final Chapter ch = bk.getChapters().get(i);
+						tasks.add(() -> renderSection("b" + bookRef(bk) + "c" + chapter, (section, sbw) -> {
+							sbw.write("<h3><a name=\"" + section.chapref + "\" external=\"yes\">" + bk.getAbbr() + " " + chapter + "</a> (<a href=\"oeb:redirect?title=BibleNavigation#" + section.chapref + "\">Navigation</a>)</h3>");
+							sbw.newLine();
+							if (ch.getProlog() != null) {
+								sbw.write("<small>");
+								sbw.newLine();
+								writeVerse(section, sbw, ch.getProlog(), bible, "", lexiconName);
+								sbw.write("</small>");
+								sbw.newLine();
+							}
+							for (final Verse v : ch.getVerses()) {
+								writeVerse(section, sbw, v, bible, "<b>" + v.getNumber() + "</b> ", lexiconName);
+							}
+							writeFootNotes(section, sbw);
+						}));
 					}
 				}
 			}
+			for (Section section : ParallelTasks.runAll(tasks)) {
+				for (String warning : section.warnings) {
+					System.out.println(warning);
+				}
+				bw.write(section.html);
+			}
+		}
+	}
+
+	/**
+	 * State of a single rendered dictionary entry, book heading or chapter.
+	 */
+	private static class Section {
+		private final StringBuffer footNotes = new StringBuffer(), crossRefs = new StringBuffer();
+		private final List<String> warnings = new ArrayList<String>();
+		private int footNoteCount = 0;
+		private final String chapref;
+		private String html;
+
+		private Section(String chapref) {
+			this.chapref = chapref;
+		}
+	}
+
+	private static interface SectionRenderer {
+		public void render(Section section, BufferedWriter bw) throws IOException;
+	}
+
+	private static Section renderSection(String chapref, SectionRenderer renderer) throws IOException {
+		Section section = new Section(chapref);
+		StringWriter sw = new StringWriter();
+		try (BufferedWriter bw = new BufferedWriter(sw)) {
+			renderer.render(section, bw);
 		}
+		section.html = sw.toString();
+		return section;
 	}
 
-	private void writeVerse(BufferedWriter bw, FormattedText v, final Bible bb, final String versePrefix, final String lexiconName) throws IOException {
+	private void writeVerse(final Section section, BufferedWriter bw, FormattedText v, final Bible bb, final String versePrefix, final String lexiconName) throws IOException {
 		final String lineSeparator = System.getProperty("line.separator");
 		v.accept(new AbstractHTMLVisitor(bw, "</p>" + lineSeparator) {
 			@Override
@@ -186,7 +212,7 @@ public class MobiPocket implements ExportFormat {
 
 			@Override
 			protected String getNextFootnoteTarget() {
-				return "#" + chapref + "f" + (footNoteCount + 1);
+				return "#" + section.chapref + "f" + (section.footNoteCount + 1);
 			}
 
 			@Override
@@ -231,7 +257,7 @@ public class MobiPocket implements ExportFormat {
 
 					@Override
 					public Visitor<IOException> visitCrossReference(String firstBookAbbr, BookID firstBook, int firstChapter, String firstVerse, String lastBookAbbr, BookID lastBook, int lastChapter, String lastVerse) throws IOException {
-						if (checkBXR(bookRef(firstBookAbbr, firstBook), firstChapter)) {
+						if (checkBXR(section, bookRef(firstBookAbbr, firstBook), firstChapter)) {
 							writer.write("<a href=\"oeb:redirect?title=BibleNavigation#b" + bookRef(firstBookAbbr, firstBook) + "c" + firstChapter + "\">");
 							pushSuffix("</a>");
 						} else {
@@ -252,19 +278,20 @@ public class MobiPocket implements ExportFormat {
 						if (suffixStack.size() == 0) {
 							if (ofCrossReferences) {
 								// this is a cross reference!
-								if (crossRefs.length() > 0)
-									crossRefs.append("<br>");
+								if (section.crossRefs.length() > 0)
+									section.crossRefs.append("<br>");
 								String xref = writer.toString().trim();
 								if (!xref.startsWith("<b>"))
 									xref = versePrefix + xref;
-								crossRefs.append(xref);
+								section.crossRefs.append(xref);
 							} else {
-								footNoteCount++;
+								int footNoteCount = ++section.footNoteCount;
+								String chapref = section.chapref;
 								outerWriter.write("<sup><a name=\"" + chapref + "ft" + footNoteCount + "\" href=\"#" + chapref + "f" + footNoteCount + "\">" + footNoteCount + "</a></sup>");
-								if (footNotes.length() > 0)
-									footNotes.append("<br>");
-								footNotes.append("<sup><a name=\"" + chapref + "f" + footNoteCount + "\" href=\"#" + chapref + "ft" + footNoteCount + "\">" + footNoteCount + "</a></sup> ");
-								footNotes.append(writer.toString());
+								if (section.footNotes.length() > 0)
+									section.footNotes.append("<br>");
+								section.footNotes.append("<sup><a name=\"" + chapref + "f" + footNoteCount + "\" href=\"#" + chapref + "ft" + footNoteCount + "\">" + footNoteCount + "</a></sup> ");
+								section.footNotes.append(writer.toString());
 							}
 						}
 						return false;
@@ -279,7 +306,7 @@ public class MobiPocket implements ExportFormat {
 
 			@Override
 			public FormattedText.Visitor<IOException> visitCrossReference(String firstBookAbbr, BookID firstBook, int firstChapter, String firstVerse, String lastBookAbbr, BookID lastBook, int lastChapter, String lastVerse) throws IOException {
-				if (checkBXR(bookRef(firstBookAbbr, firstBook), firstChapter)) {
+				if (checkBXR(section, bookRef(firstBookAbbr, firstBook), firstChapter)) {
 					writer.write("<a href=\"oeb:redirect?title=BibleNavigation#b" + bookRef(firstBookAbbr, firstBook) + "c" + firstChapter + "\">");
 					pushSuffix("</a>");
 				} else {
@@ -331,34 +358,34 @@ public class MobiPocket implements ExportFormat {
 		return abbr;
 	}
 
-	private void writeFootNotes(BufferedWriter bw) throws IOException {
-		if (footNotes.length() == 0 && crossRefs.length() == 0)
+	private void writeFootNotes(Section section, BufferedWriter bw) throws IOException {
+		if (section.footNotes.length() == 0 && section.crossRefs.length() == 0)
 			return;
 
 		bw.write("<hr width=\"50%\"><small>");
 		bw.newLine();
-		if (crossRefs.length() != 0) {
-			bw.write("<p>" + crossRefs.toString() + "</p>");
+		if (section.crossRefs.length() != 0) {
+			bw.write("<p>" + section.crossRefs.toString() + "</p>");
 			bw.newLine();
 		}
-		if (footNotes.length() != 0) {
-			bw.write("<p>" + footNotes.toString() + "</p>");
+		if (section.footNotes.length() != 0) {
+			bw.write("<p>" + section.footNotes.toString() + "</p>");
 			bw.newLine();
 		}
 		bw.write("</small><hr width=\"50%\">");
 		bw.newLine();
 
-		footNotes.setLength(0);
-		crossRefs.setLength(0);
-		footNoteCount = 0;
+		section.footNotes.setLength(0);
+		section.crossRefs.setLength(0);
+		section.footNoteCount = 0;
 	}
 
-	private boolean checkBXR(String bookRef, int chapter) {
+	private boolean checkBXR(Section section, String bookRef, int chapter) {
 		for (MobiPocketBXR bxr : bxrs) {
 			for (BookInfo book : bxr.books) {
 				if (book.ref.equals(bookRef)) {
 					if (chapter > book.chapterCount) {
-						System.out.println("WARNING: " + bookRef + " (" + book.book + ") has " + book.chapterCount + " chapters, < " + chapter);
+						section.warnings.add("WARNING: " + bookRef + " (" + book.book + ") has " + book.chapterCount + " chapters, < " + chapter);
 						return false;
 					} else {
 						return true;
@@ -366,7 +393,7 @@ public class MobiPocket implements ExportFormat {
 				}
 			}
 		}
-		System.out.println("WARNING: Book not found: " + bookRef);
+		section.warnings.add("WARNING: Book not found: " + bookRef);
 		return false;
 	}
 }
@@ -2,11 +2,11 @@ package biblemulticonverter.format;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -15,6 +15,7 @@ import biblemulticonverter.data.Chapter;
 import biblemulticonverter.data.FormattedText.ExtraAttributePriority;
 import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Verse;
+import biblemulticonverter.utilities.InputDirectory;
 
 public class MorphGNT implements ImportFormat {
 
@@ -23,26 +24,35 @@ public class MorphGNT implements ImportFormat {
 			"",
 			"Usage: MorphGNT <directory>",
 			"",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
+			"",
 			"Download MorphGNT from <https://github.com/morphgnt/sblgnt>."
 	};
 
 	@Override
-	public Bible doImport(File directory) throws Exception {
+	public Bible doImport(File inputFile) throws Exception {
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			return doImport(directory);
+		}
+	}
+
+	private Bible doImport(InputDirectory directory) throws Exception {
 		Bible bible = new Bible("MorphGNT");
-		File[] files = directory.listFiles();
-		Arrays.sort(files);
+		List<String> fileNames = directory.list();
+		Collections.sort(fileNames);
 		Verse currVerse = null;
 		Visitor<RuntimeException> currVisitor = null;
 		int idx = 0;
-		for (File file : files) {
-			String[] fileParts = file.getName().split("-");
+		for (String fileName : fileNames) {
+			String[] fileParts = fileName.split("-");
 			if (fileParts.length != 3 || !fileParts[2].equals("morphgnt.txt"))
 				continue;
 			BookID bid = BookID.fromZefId(Integer.parseInt(fileParts[0]) - 21);
 			Book book = new Book(fileParts[1], bid, bid.getEnglishName(), bid.getEnglishName());
 			bible.getBooks().add(book);
-			System.out.println(file.getName());
-			try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			System.out.println(fileName);
+			try (BufferedReader br = new BufferedReader(new InputStreamReader(directory.openStream(fileName), StandardCharsets.UTF_8))) {
 				String line;
 				while ((line = br.readLine()) != null) {
 					String[] parts = line.split(" ");
@@ -0,0 +1,256 @@
+package biblemulticonverter.format;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import biblemulticonverter.data.Bible;
+import biblemulticonverter.data.Book;
+import biblemulticonverter.data.BookID;
+import biblemulticonverter.data.Chapter;
+import biblemulticonverter.data.FormattedText.ExtendedLineBreakKind;
+import biblemulticonverter.data.FormattedText.ExtraAttributePriority;
+import biblemulticonverter.data.FormattedText.FormattingInstructionKind;
+import biblemulticonverter.data.FormattedText.HyperlinkType;
+import biblemulticonverter.data.FormattedText.RawHTMLMode;
+import biblemulticonverter.data.FormattedText.Visitor;
+import biblemulticonverter.data.Utils;
+import biblemulticonverter.data.Verse;
+import biblemulticonverter.data.Versification;
+import biblemulticonverter.utilities.CompressedIO;
+import biblemulticonverter.utilities.MarkupEscaper;
+import biblemulticonverter.utilities.ParallelTasks;
+
+public class NDJSON implements ExportFormat {
+
+	public static final String[] HELP_TEXT = {
+			"Newline delimited JSON export (one object per verse) for search engine ingestion.",
+			"",
+			"Usage: NDJSON <OutputFile>",
+			"",
+			"Each line contains a JSON object with the fields 'book' (OSIS ID), 'chapter', 'verse',",
+			"'text' (plain verse text without headlines and footnotes), 'strongs', 'morph',",
+			"'footnotes' (plain text, except for footnotes of cross references) and 'xrefs'",
+			"(objects with 'book', 'chapter', 'verse', 'lastBook', 'lastChapter' and",
+			"'lastVerse'). Array fields are always present.",
+			"Books are rendered in parallel; the output file is compressed if its name ends with .gz."
+	};
+
+	@Override
+	public void doExport(Bible bible, String... exportArgs) throws Exception {
+		List<Callable<String>> tasks = new ArrayList<>();
+		for (Book book : bible.getBooks()) {
+			if (book.getId() == BookID.METADATA)
+				continue;
+			tasks.add(() -> renderBook(book));
+		}
+		try (BufferedWriter bw = CompressedIO.openWriter(new File(exportArgs[0]))) {
+			ParallelTasks.runInOrder(tasks, bw::write);
+		}
+	}
+
+	private static String renderBook(Book book) {
+		StringBuilder result = new StringBuilder();
+		VerseRecord record = new VerseRecord(book.getId().isNT());
+		String bookID = book.getId().getOsisID();
+		for (int cnumber = 1; cnumber <= book.getChapters().size(); cnumber++) {
+			Chapter chapter = book.getChapters().get(cnumber - 1);
+			for (Verse verse : chapter.getVerses()) {
+				record.clear();
+				verse.accept(new NDJSONVisitor(record, record.text));
+				result.append("{\"book\":");
+				appendString(result, bookID);
+				result.append(",\"chapter\":").append(cnumber).append(",\"verse\":");
+				appendString(result, verse.getNumber());
+				result.append(",\"text\":");
+				appendString(result, record.text.toString().trim());
+				result.append(",\"strongs\":");
+				appendStrings(result, record.strongs);
+				result.append(",\"morph\":");
+				appendStrings(result, record.morph);
+				result.append(",\"footnotes\":");
+				appendStrings(result, record.footnotes);
+				result.append(",\"xrefs\":[");
+				for (int i = 0; i < record.xrefs.size(); i++) {
+					if (i > 0)
+						result.append(',');
+					result.append(record.xrefs.get(i));
+				}
+				result.append("]}\n");
+			}
+		}
+		return result.toString();
+	}
+
+	private static void appendString(StringBuilder sb, String value) {
+		sb.append('"');
+		MarkupEscaper.JSON.escape(sb, value);
+		sb.append('"');
+	}
+
+	private static void appendStrings(StringBuilder sb, List<String> values) {
+		sb.append('[');
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0)
+				sb.append(',');
+			appendString(sb, values.get(i));
+		}
+		sb.append(']');
+	}
+
+	/**
+	 * Collected content of a single verse; reused for all verses of a book.
+	 */
+	private static class VerseRecord {
+		private final boolean nt;
+		private final StringBuilder text = new StringBuilder();
+		private final List<String> strongs = new ArrayList<>();
+		private final List<String> morph = new ArrayList<>();
+		private final List<String> footnotes = new ArrayList<>();
+		private final List<String> xrefs = new ArrayList<>();
+
+		private VerseRecord(boolean nt) {
+			this.nt = nt;
+		}
+
+		private void clear() {
+			text.setLength(0);
+			strongs.clear();
+			morph.clear();
+			footnotes.clear();
+			xrefs.clear();
+		}
+	}
+
+	private static class NDJSONVisitor implements Visitor<RuntimeException> {
+
+		private final VerseRecord record;
+		private final StringBuilder target;
+		private final boolean footnote;
+		private int depth = 0;
+
+		private NDJSONVisitor(VerseRecord record, StringBuilder target) {
+			this(record, target, false);
+		}
+
+		private NDJSONVisitor(VerseRecord record, StringBuilder target, boolean footnote) {
+			this.record = record;
+			this.target = target;
+			this.footnote = footnote;
+		}
+
+		@Override
+		public int visitElementTypes(String elementTypes) {
+			return 0;
+		}
+
+		@Override
+		public void visitStart() {
+			depth++;
+		}
+
+		@Override
+		public void visitText(String text) {
+			target.append(text);
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitHeadline(int depth) {
+			return null;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitFootnote(boolean ofCrossReferences) {
+			// labels of cross reference footnotes are already covered by 'xrefs'
+			return new NDJSONVisitor(record, new StringBuilder(), !ofCrossReferences);
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitCrossReference(String firstBookAbbr, BookID firstBook, int firstChapter, String firstVerse, String lastBookAbbr, BookID lastBook, int lastChapter, String lastVerse) {
+			StringBuilder xref = new StringBuilder("{\"book\":");
+			appendString(xref, firstBook.getOsisID());
+			xref.append(",\"chapter\":").append(firstChapter).append(",\"verse\":");
+			appendString(xref, firstVerse);
+			xref.append(",\"lastBook\":");
+			appendString(xref, lastBook.getOsisID());
+			xref.append(",\"lastChapter\":").append(lastChapter).append(",\"lastVerse\":");
+			appendString(xref, lastVerse);
+			record.xrefs.add(xref.append('}').toString());
+			return this;
+		}
+
+		@Override
+		public void visitLineBreak(ExtendedLineBreakKind kind, int indent) {
+			target.append(' ');
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitGrammarInformation(char[] strongsPrefixes, int[] strongs, char[] strongsSuffixes, String[] rmac, Versification.Reference[] sourceVerses, int[] sourceIndices, String[] attributeKeys, String[] attributeValues) {
+			if (strongs != null) {
+				for (int i = 0; i < strongs.length; i++) {
+					record.strongs.add(Utils.formatStrongs(record.nt, i, strongsPrefixes, strongs, strongsSuffixes, ""));
+				}
+			}
+			if (rmac != null) {
+				for (String morph : rmac) {
+					record.morph.add(morph);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitDictionaryEntry(String dictionary, String entry) {
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitFormattingInstruction(FormattingInstructionKind kind) {
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitCSSFormatting(String css) {
+			return this;
+		}
+
+		@Override
+		public void visitVerseSeparator() {
+			target.append('/');
+		}
+
+		@Override
+		public void visitRawHTML(RawHTMLMode mode, String raw) {
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitVariationText(String[] variations) {
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitSpeaker(String labelOrStrongs) {
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitHyperlink(HyperlinkType type, String target) {
+			return this;
+		}
+
+		@Override
+		public Visitor<RuntimeException> visitExtraAttribute(ExtraAttributePriority prio, String category, String key, String value) {
+			return prio.handleVisitor(category, this);
+		}
+
+		@Override
+		public boolean visitEnd() {
+			depth--;
+			if (footnote && depth == 0)
+				record.footnotes.add(target.toString().trim());
+			return false;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -28,6 +29,7 @@ import biblemulticonverter.data.Chapter;
 import biblemulticonverter.data.FormattedText.ExtraAttributePriority;
 import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Verse;
+import biblemulticonverter.utilities.InputDirectory;
 
 public class OSHB implements ImportFormat {
 
@@ -36,11 +38,20 @@ public class OSHB implements ImportFormat {
 			"",
 			"Usage: OSHB <directory>",
 			"",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
+			"",
 			"Download OSHB from <https://github.com/openscriptures/morphhb>."
 	};
 
 	@Override
-	public Bible doImport(File directory) throws Exception {
+	public Bible doImport(File inputFile) throws Exception {
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			return doImport(directory);
+		}
+	}
+
+	private Bible doImport(InputDirectory directory) throws Exception {
 		Bible bible = new Bible("OSHB");
 		DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
 		XPath xpath = javax.xml.xpath.XPathFactory.newInstance().newXPath();
@@ -48,7 +59,11 @@ public class OSHB implements ImportFormat {
 			BookID bid = BookID.fromZefId(zefID);
 			Book book = new Book(bid.getOsisID(), bid, bid.getEnglishName(), bid.getEnglishName());
 			bible.getBooks().add(book);
-			Document doc = docBuilder.parse(new File(directory, bid.getOsisID() + ".xml"));
+			String fileName = bid.getOsisID() + ".xml";
+			Document doc;
+			try (InputStream in = directory.openStream(fileName)) {
+				doc = docBuilder.parse(in, directory.getSystemId(fileName));
+			}
 			NodeList verses = (NodeList) xpath.evaluate("//verse", doc, XPathConstants.NODESET);
 			for (int i = 0; i < verses.getLength(); i++) {
 				Element verse = (Element) verses.item(i);
@@ -1,8 +1,13 @@
 package biblemulticonverter.format;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -12,22 +17,26 @@ import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.validation.SchemaFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.validation.Schema;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpressionException;
 
 import org.w3c.dom.Comment;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -48,7 +57,6 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
-import biblemulticonverter.schema.roundtripxml.ObjectFactory;
 import biblemulticonverter.tools.ValidateXML;
 
 /**
@@ -66,7 +74,11 @@ public class OSIS implements RoundtripFormat {
 			"",
 			"When exporting to OSIS, you can pass a comma separated list of tag names you",
 			"like to have milestoned in the output file as second parameter. The default",
-			"is 'verse', the maximum is 'div,chapter,verse,q'."
+			"is 'verse', the maximum is 'div,chapter,verse,q'.",
+			"",
+			"The importer reads the file book by book, so that only the current book is kept",
+			"in memory. Set the system property biblemulticonverter.osis.domimport to load the",
+			"whole document into memory before parsing it instead."
 	};
 
 	private static final Pattern XREF_PATTERN = Pattern.compile("([A-Za-z0-9]+) ([0-9]+), ([0-9]+)");
@@ -79,32 +91,17 @@ public class OSIS implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
-		ValidateXML.validateFileBeforeParsing(SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/osisCore.2.1.1.xsd")), inputFile);
+		Schema schema = ValidateXML.getSchema("/osisCore.2.1.1.xsd");
+		ValidateXML.validateFileBeforeParsing(schema, inputFile);
 		printedWarnings.clear();
-		DocumentBuilder docBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-		XPath xpath = javax.xml.xpath.XPathFactory.newInstance().newXPath();
-		Document osisDoc = docBuilder.parse(inputFile);
-		String name = xpath.evaluate("/osis/osisText/header/work/title/text()", osisDoc);
-		if (name.isEmpty())
-			name = "OSIS Bible";
-		Bible result = new Bible(name);
-		String description = xpath.evaluate("/osis/osisText/header/work/description/text()", osisDoc);
-		String rights = xpath.evaluate("/osis/osisText/header/work/rights/text()", osisDoc);
-		if (!description.isEmpty() || !rights.isEmpty()) {
-			String date = xpath.evaluate("/osis/osisText/header/work/date/text()", osisDoc);
-			String titleDesc = xpath.evaluate("/osis/osisText/titlePage/description/text()", osisDoc);
-			MetadataBook mb = new MetadataBook();
-			if (!description.isEmpty())
-				mb.setValue(MetadataBookKey.description, description.replaceAll("[\r\n\t ]+", " ").trim());
-			if (!rights.isEmpty())
-				mb.setValue(MetadataBookKey.rights, rights.replaceAll("[\r\n\t ]+", " ").trim());
-			if (!date.isEmpty())
-				mb.setValue(MetadataBookKey.date, date);
-			if (!titleDesc.isEmpty())
-				mb.setValue("description@titlePage", titleDesc.replaceAll("[\r\n\t ]+", " ").trim());
-			mb.finished();
-			result.getBooks().add(mb.getBook());
+		if (!Boolean.getBoolean("biblemulticonverter.osis.domimport")) {
+			StreamingImportHandler handler = new StreamingImportHandler();
+			ValidateXML.parse(schema, inputFile, handler);
+			return handler.getResult();
 		}
+		XPath xpath = javax.xml.xpath.XPathFactory.newInstance().newXPath();
+		Document osisDoc = ValidateXML.parseDocument(schema, inputFile);
+		Bible result = parseHeader(xpath, osisDoc);
 		NodeList osisBooks = (NodeList) xpath.evaluate("/osis/osisText//div[@type='book']", osisDoc, XPathConstants.NODESET);
 		for (int bookIndex = 0; bookIndex < osisBooks.getLength(); bookIndex++) {
 			Element osisBook = (Element) osisBooks.item(bookIndex);
@@ -141,24 +138,208 @@ public class OSIS implements RoundtripFormat {
 				}
 				osisBookEnd.getParentNode().removeChild(osisBookEnd);
 			}
-			String bookOsisID = osisBook.getAttribute("osisID");
-			BookID bookID = BookID.fromOsisId(bookOsisID);
-			String title = bookID.getEnglishName();
-			Node titleElem = osisBook.getFirstChild();
-			while (titleElem instanceof Text)
-				titleElem = titleElem.getNextSibling();
-			if (titleElem instanceof Element && titleElem.getNodeName().equals("title")) {
-				Element titleElement = (Element) titleElem;
-				if (titleElement.getAttribute("type").equals("main") && titleElement.getChildNodes().getLength() > 0)
-					title = titleElement.getTextContent();
-			}
-			Book bibleBook = new Book(bookOsisID, bookID, title, title);
-			result.getBooks().add(bibleBook);
-			parseBook(bookOsisID, osisBook, bibleBook);
+			parseBookElement(result, osisBook);
+		}
+		return result;
+	}
+
+	private Bible parseHeader(XPath xpath, Document osisDoc) throws XPathExpressionException {
+		String name = xpath.evaluate("/osis/osisText/header/work/title/text()", osisDoc);
+		if (name.isEmpty())
+			name = "OSIS Bible";
+		Bible result = new Bible(name);
+		String description = xpath.evaluate("/osis/osisText/header/work/description/text()", osisDoc);
+		String rights = xpath.evaluate("/osis/osisText/header/work/rights/text()", osisDoc);
+		if (!description.isEmpty() || !rights.isEmpty()) {
+			String date = xpath.evaluate("/osis/osisText/header/work/date/text()", osisDoc);
+			String titleDesc = xpath.evaluate("/osis/osisText/titlePage/description/text()", osisDoc);
+			MetadataBook mb = new MetadataBook();
+			if (!description.isEmpty())
+				mb.setValue(MetadataBookKey.description, description.replaceAll("[\r\n\t ]+", " ").trim());
+			if (!rights.isEmpty())
+				mb.setValue(MetadataBookKey.rights, rights.replaceAll("[\r\n\t ]+", " ").trim());
+			if (!date.isEmpty())
+				mb.setValue(MetadataBookKey.date, date);
+			if (!titleDesc.isEmpty())
+				mb.setValue("description@titlePage", titleDesc.replaceAll("[\r\n\t ]+", " ").trim());
+			mb.finished();
+			result.getBooks().add(mb.getBook());
 		}
 		return result;
 	}
 
+	private void parseBookElement(Bible result, Element osisBook) {
+		String bookOsisID = osisBook.getAttribute("osisID");
+		BookID bookID = BookID.fromOsisId(bookOsisID);
+		String title = bookID.getEnglishName();
+		Node titleElem = osisBook.getFirstChild();
+		while (titleElem instanceof Text)
+			titleElem = titleElem.getNextSibling();
+		if (titleElem instanceof Element && titleElem.getNodeName().equals("title")) {
+			Element titleElement = (Element) titleElem;
+			if (titleElement.getAttribute("type").equals("main") && titleElement.getChildNodes().getLength() > 0)
+				title = titleElement.getTextContent();
+		}
+		Book bibleBook = new Book(bookOsisID, bookID, title, title);
+		result.getBooks().add(bibleBook);
+		parseBook(bookOsisID, osisBook, bibleBook);
+	}
+
+	/**
+	 * SAX handler that builds a DOM tree only for the header and for the book
+	 * that is currently read, and parses each book as soon as it is complete.
+	 * Both container and milestoned book divs are supported; the chapters,
+	 * verses and divs inside a book are handled by the same code as for the
+	 * DOM import, so the result is identical.
+	 */
+	private class StreamingImportHandler extends DefaultHandler implements LexicalHandler {
+
+		private final Document doc;
+		private final Element headerContainer;
+		private final List<String> path = new ArrayList<>();
+		private final List<Element> openElements = new ArrayList<>();
+		private Bible result = null;
+		private Element book = null;
+		private String bookSID = null;
+
+		private StreamingImportHandler() throws Exception {
+			doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			Element osis = doc.createElement("osis");
+			doc.appendChild(osis);
+			headerContainer = doc.createElement("osisText");
+			osis.appendChild(headerContainer);
+		}
+
+		private Bible getResult() throws SAXException {
+			ensureHeaderParsed();
+			return result;
+		}
+
+		private void ensureHeaderParsed() throws SAXException {
+			if (result != null)
+				return;
+			try {
+				result = parseHeader(javax.xml.xpath.XPathFactory.newInstance().newXPath(), doc);
+			} catch (XPathExpressionException ex) {
+				throw new SAXException(ex);
+			}
+			while (headerContainer.getFirstChild() != null)
+				headerContainer.removeChild(headerContainer.getFirstChild());
+		}
+
+		private Node getTarget() {
+			return openElements.isEmpty() ? book : openElements.get(openElements.size() - 1);
+		}
+
+		private Element createElement(String qName, Attributes atts) {
+			Element elem = doc.createElement(qName);
+			for (int i = 0; i < atts.getLength(); i++) {
+				elem.setAttribute(atts.getQName(i), atts.getValue(i));
+			}
+			return elem;
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+			path.add(qName);
+			if (book != null) {
+				if (bookSID != null && qName.equals("div") && bookSID.equals(atts.getValue("eID"))) {
+					finishBook();
+				} else {
+					Element elem = createElement(qName, atts);
+					getTarget().appendChild(elem);
+					openElements.add(elem);
+				}
+			} else if (!openElements.isEmpty()) {
+				Element elem = createElement(qName, atts);
+				getTarget().appendChild(elem);
+				openElements.add(elem);
+			} else if (path.size() == 3 && path.get(0).equals("osis") && path.get(1).equals("osisText") && (qName.equals("header") || qName.equals("titlePage"))) {
+				Element elem = createElement(qName, atts);
+				headerContainer.appendChild(elem);
+				openElements.add(elem);
+			} else if (path.size() > 2 && path.get(0).equals("osis") && path.get(1).equals("osisText") && qName.equals("div") && "book".equals(atts.getValue("type"))) {
+				ensureHeaderParsed();
+				book = createElement(qName, atts);
+				openElements.add(book);
+				bookSID = book.getAttribute("sID").isEmpty() ? null : book.getAttribute("sID");
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			path.remove(path.size() - 1);
+			if (openElements.isEmpty())
+				return;
+			openElements.remove(openElements.size() - 1);
+			if (openElements.isEmpty() && book != null && bookSID == null) {
+				finishBook();
+			}
+		}
+
+		private void finishBook() {
+			// elements left open by a milestoned book are flattened anyway
+			openElements.clear();
+			parseBookElement(result, book);
+			book = null;
+			bookSID = null;
+		}
+
+		@Override
+		public void endDocument() throws SAXException {
+			if (book != null)
+				throw new IllegalStateException("No milestoned div found with eID " + bookSID);
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) {
+			Node target = getTarget();
+			if (target == null)
+				return;
+			if (target.getLastChild() instanceof Text) {
+				((Text) target.getLastChild()).appendData(new String(ch, start, length));
+			} else {
+				target.appendChild(doc.createTextNode(new String(ch, start, length)));
+			}
+		}
+
+		@Override
+		public void ignorableWhitespace(char[] ch, int start, int length) {
+			characters(ch, start, length);
+		}
+
+		@Override
+		public void comment(char[] ch, int start, int length) {
+			Node target = getTarget();
+			if (target != null)
+				target.appendChild(doc.createComment(new String(ch, start, length)));
+		}
+
+		@Override
+		public void startDTD(String name, String publicId, String systemId) {
+		}
+
+		@Override
+		public void endDTD() {
+		}
+
+		@Override
+		public void startEntity(String name) {
+		}
+
+		@Override
+		public void endEntity(String name) {
+		}
+
+		@Override
+		public void startCDATA() {
+		}
+
+		@Override
+		public void endCDATA() {
+		}
+	}
+
 	protected void convertToMilestoned(Element root) {
 		boolean wojTagsInserted = convertAllToMilestoned(root);
 		convertTitleVerseChapterFromMilestoned(root, wojTagsInserted);
@@ -1026,68 +1207,10 @@ public class OSIS implements RoundtripFormat {
 
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
-		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		Element osis = doc.createElement("osis");
-		doc.appendChild(osis);
-		osis.setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-		osis.setAttribute("xmlns", "http://www.bibletechnologies.net/2003/OSIS/namespace");
-		osis.setAttribute("xsi:schemaLocation", "http://www.bibletechnologies.net/2003/OSIS/namespace http://www.bibletechnologies.net/osisCore.2.1.1.xsd");
-		Element osisText = doc.createElement("osisText");
-		osis.appendChild(osisText);
-		osisText.setAttribute("canonical", "true");
-		osisText.setAttribute("osisIDWork", "Exported");
-		osisText.appendChild(buildHeader(doc, bible.getName()));
-
-		for (Book bk : bible.getBooks()) {
-			Element book = doc.createElement("div");
-			osisText.appendChild(book);
-			book.setAttribute("type", "book");
-			book.setAttribute("canonical", "true");
-			book.setAttribute("osisID", bk.getId().getOsisID());
-			Element bookTitle = doc.createElement("title");
-			book.appendChild(bookTitle);
-			bookTitle.setAttribute("type", "main");
-			bookTitle.appendChild(doc.createTextNode(bk.getLongName()));
-
-			int cnumber = 0;
-			for (Chapter chp : bk.getChapters()) {
-				cnumber++;
-				Element chapter = doc.createElement("chapter");
-				book.appendChild(chapter);
-				chapter.setAttribute("osisID", bk.getId().getOsisID() + "." + cnumber);
-				OSISVisitor visitor = new OSISVisitor(chapter, bk.getId().isNT());
-				Element elem = doc.createElement("title");
-				chapter.appendChild(elem);
-				elem.setAttribute("type", "chapter");
-				elem.appendChild(doc.createTextNode(bk.getAbbr() + " " + cnumber));
-				if (chp.getProlog() != null) {
-					chp.getProlog().accept(visitor);
-				}
-				for (VirtualVerse vv : chp.createVirtualVerses(false, false)) {
-					String osisID = bk.getId().getOsisID() + "." + cnumber + "." + vv.getNumber();
-					if (!vv.getHeadlines().isEmpty())
-						throw new IllegalStateException();
-					Element verse = doc.createElement("verse");
-					chapter.appendChild(verse);
-					verse.setAttribute("osisID", osisID);
-					boolean firstVerse = true;
-					for (Verse v : vv.getVerses()) {
-						if (!firstVerse || !v.getNumber().equals("" + vv.getNumber())) {
-							elem = doc.createElement("hi");
-							verse.appendChild(elem);
-							elem.setAttribute("type", "bold");
-							elem.appendChild(doc.createTextNode("(" + v.getNumber() + ")"));
-						}
-						v.accept(new OSISVisitor(verse, bk.getId().isNT()));
-						firstVerse = false;
-					}
-				}
-			}
-		}
-
 		String milestonedElementNames = exportArgs.length > 1 ? exportArgs[1] : "verse";
+		Set<String> milestonedElements = null;
 		if (!milestonedElementNames.equals("-")) {
-			Set<String> milestonedElements = new HashSet<>(Arrays.asList(milestonedElementNames.split(",")));
+			milestonedElements = new HashSet<>(Arrays.asList(milestonedElementNames.split(",")));
 			Set<String> unsupportedMilestonedElements = new HashSet<>(milestonedElements);
 			unsupportedMilestonedElements.removeAll(GENERATED_MILESTONEABLE_ELEMENTS);
 			if (!unsupportedMilestonedElements.isEmpty()) {
@@ -1100,10 +1223,114 @@ public class OSIS implements RoundtripFormat {
 				}
 				throw new IllegalArgumentException("Cannot create milestoned elements: " + milestonedElementNames);
 			}
-			convertChildrenToMilestoned(doc.getDocumentElement(), milestonedElements);
 		}
 
-		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(new File(exportArgs[0])));
+		// Only one book is built as DOM at a time; the surrounding elements are
+		// written directly to the stream. The stream goes to a temporary file that
+		// replaces the target only after the whole document has been written, so
+		// that a failing export does not leave a truncated file behind.
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+		File file = new File(exportArgs[0]);
+		File tempFile = new File(file.getPath() + ".tmp");
+		boolean success = false;
+		try {
+			try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+				XMLStreamWriter xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+				xsw.writeStartDocument("UTF-8", "1.0");
+				xsw.writeStartElement("osis");
+				xsw.writeDefaultNamespace("http://www.bibletechnologies.net/2003/OSIS/namespace");
+				xsw.writeNamespace("xsi", "http://www.w3.org/2001/XMLSchema-instance");
+				xsw.writeAttribute("xsi:schemaLocation", "http://www.bibletechnologies.net/2003/OSIS/namespace http://www.bibletechnologies.net/osisCore.2.1.1.xsd");
+				xsw.writeStartElement("osisText");
+				xsw.writeAttribute("canonical", "true");
+				xsw.writeAttribute("osisIDWork", "Exported");
+				writeNode(xsw, buildHeader(doc, bible.getName()));
+
+				for (Book bk : bible.getBooks()) {
+					Element osisText = doc.createElement("osisText");
+					Element book = doc.createElement("div");
+					osisText.appendChild(book);
+					book.setAttribute("type", "book");
+					book.setAttribute("canonical", "true");
+					book.setAttribute("osisID", bk.getId().getOsisID());
+					Element bookTitle = doc.createElement("title");
+					book.appendChild(bookTitle);
+					bookTitle.setAttribute("type", "main");
+					bookTitle.appendChild(doc.createTextNode(bk.getLongName()));
+
+					int cnumber = 0;
+					for (Chapter chp : bk.getChapters()) {
+						cnumber++;
+						Element chapter = doc.createElement("chapter");
+						book.appendChild(chapter);
+						chapter.setAttribute("osisID", bk.getId().getOsisID() + "." + cnumber);
+						OSISVisitor visitor = new OSISVisitor(chapter, bk.getId().isNT());
+						Element elem = doc.createElement("title");
+						chapter.appendChild(elem);
+						elem.setAttribute("type", "chapter");
+						elem.appendChild(doc.createTextNode(bk.getAbbr() + " " + cnumber));
+						if (chp.getProlog() != null) {
+							chp.getProlog().accept(visitor);
+						}
+						for (VirtualVerse vv : chp.createVirtualVerses(false, false)) {
+							String osisID = bk.getId().getOsisID() + "." + cnumber + "." + vv.getNumber();
+							if (!vv.getHeadlines().isEmpty())
+								throw new IllegalStateException();
+							Element verse = doc.createElement("verse");
+							chapter.appendChild(verse);
+							verse.setAttribute("osisID", osisID);
+							boolean firstVerse = true;
+							for (Verse v : vv.getVerses()) {
+								if (!firstVerse || !v.getNumber().equals("" + vv.getNumber())) {
+									elem = doc.createElement("hi");
+									verse.appendChild(elem);
+									elem.setAttribute("type", "bold");
+									elem.appendChild(doc.createTextNode("(" + v.getNumber() + ")"));
+								}
+								v.accept(new OSISVisitor(verse, bk.getId().isNT()));
+								firstVerse = false;
+							}
+						}
+					}
+					if (milestonedElements != null)
+						convertChildrenToMilestoned(osisText, milestonedElements);
+					for (Node node = osisText.getFirstChild(); node != null; node = node.getNextSibling()) {
+						writeNode(xsw, node);
+					}
+				}
+				xsw.writeEndElement();
+				xsw.writeEndElement();
+				xsw.writeEndDocument();
+				xsw.close();
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			success = true;
+		} finally {
+			if (!success)
+				tempFile.delete();
+		}
+	}
+
+	private static void writeNode(XMLStreamWriter xsw, Node node) throws XMLStreamException {
+		if (node instanceof Text) {
+			xsw.writeCharacters(node.getNodeValue());
+		} else if (node instanceof Element) {
+			if (node.getFirstChild() == null) {
+				xsw.writeEmptyElement(node.getNodeName());
+			} else {
+				xsw.writeStartElement(node.getNodeName());
+			}
+			NamedNodeMap attributes = node.getAttributes();
+			for (int i = 0; i < attributes.getLength(); i++) {
+				xsw.writeAttribute(attributes.item(i).getNodeName(), attributes.item(i).getNodeValue());
+			}
+			if (node.getFirstChild() != null) {
+				for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+					writeNode(xsw, child);
+				}
+				xsw.writeEndElement();
+			}
+		}
 	}
 
 	private Element buildHeader(Document doc, String bookTitle) {
@@ -2,12 +2,9 @@ package biblemulticonverter.format;
 
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.StringWriter;
 import java.io.Writer;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -30,6 +27,7 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.ParallelFileWriter;
 
 public class Obsidian implements ExportFormat {
 
@@ -39,7 +37,12 @@ public class Obsidian implements ExportFormat {
 			"Some features (like Strongs numbers or CSS formatting) can only be exported when",
 			"inline HTML is allowed via --html option.",
 			"",
-			"Usage: Obsidian <OutputDirectory> [-html]"
+			"Usage: Obsidian <OutputDirectory> [-html]",
+			"",
+			"Chapter files are rendered and written in parallel; set the system property",
+			"biblemulticonverter.threads to change the number of threads (1 to disable).",
+			"Set the system property biblemulticonverter.incremental to only rewrite files that",
+			"changed since the last export (and delete files that are no longer exported)."
 	};
 
 	@Override
@@ -47,36 +50,40 @@ public class Obsidian implements ExportFormat {
 		File outDir = new File(exportArgs[0]);
 		outDir.mkdirs();
 		boolean inlineHTML = exportArgs.length == 2 && exportArgs[1].equals("-html");
-		for (Book book : bible.getBooks()) {
-			File bookDir = new File(outDir, book.getShortName());
-			bookDir.mkdir();
-			for (int cn = 1; cn <= book.getChapters().size(); cn++) {
-				Chapter ch = book.getChapters().get(cn - 1);
-				AtomicInteger footnoteCounter = new AtomicInteger();
-				try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(new File(bookDir, book.getAbbr() + " " + cn + ".md")), StandardCharsets.UTF_8))) {
-					bw.write("# " + book.getShortName() + " " + cn);
-					bw.write("\n");
-					bw.write("\n");
-					if (ch.getProlog() != null) {
-						acceptWithFootnotes(bw, footnoteCounter, ch.getProlog(), inlineHTML);
+		try (ParallelFileWriter chapterWriter = new ParallelFileWriter(outDir)) {
+			for (Book book : bible.getBooks()) {
+				File bookDir = new File(outDir, book.getShortName());
+				bookDir.mkdir();
+				for (int cn = 1; cn <= book.getChapters().size(); cn++) {
+					Chapter ch = book.getChapters().get(cn - 1);
+					String heading = "# " + book.getShortName() + " " + cn;
+					chapterWriter.write(new File(bookDir, book.getAbbr() + " " + cn + ".md"), bw -> {
+						AtomicInteger footnoteCounter = new AtomicInteger();
+						bw.write(heading);
 						bw.write("\n");
-					}
-					for (VirtualVerse vv : ch.createVirtualVerses()) {
-						for (Headline hl : vv.getHeadlines()) {
-							bw.write("#####".substring(0, 1 + Math.max(hl.getDepth(), 4)));
-							bw.write(' ');
-							hl.accept(new ObsidianVisitor(bw, null, null, inlineHTML, ""));
+						bw.write("\n");
+						if (ch.getProlog() != null) {
+							acceptWithFootnotes(bw, footnoteCounter, ch.getProlog(), inlineHTML);
 							bw.write("\n");
 						}
-						for (Verse v : vv.getVerses()) {
-							bw.write("###### " + v.getNumber());
-							bw.write("\n");
-							acceptWithFootnotes(bw, footnoteCounter, v, inlineHTML);
-							bw.write("\n");
+						for (VirtualVerse vv : ch.createVirtualVerses()) {
+							for (Headline hl : vv.getHeadlines()) {
+								bw.write("#####".substring(0, 1 + Math.max(hl.getDepth(), 4)));
+								bw.write(' ');
+								hl.accept(new ObsidianVisitor(bw, null, null, inlineHTML, ""));
+								bw.write("\n");
+							}
+							for (Verse v : vv.getVerses()) {
+								bw.write("###### " + v.getNumber());
+								bw.write("\n");
+								acceptWithFootnotes(bw, footnoteCounter, v, inlineHTML);
+								bw.write("\n");
+							}
 						}
-					}
+					});
 				}
 			}
+			chapterWriter.finish();
 		}
 	}
 
@@ -9,7 +9,6 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.Writer;
@@ -18,9 +17,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 
 import biblemulticonverter.data.Bible;
@@ -38,6 +39,9 @@ import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
+import biblemulticonverter.utilities.MarkupEscaper;
+import biblemulticonverter.utilities.ParallelFileWriter;
+import biblemulticonverter.utilities.ParallelTasks;
 
 public class RoundtripHTML implements RoundtripFormat {
 
@@ -60,7 +64,14 @@ public class RoundtripHTML implements RoundtripFormat {
 			"edition, you can pass an extra parameter of a Properties file, which will be used to link",
 			"to those chapters. The file will be updated with all chapters that exist in the input file,",
 			"so you can just pass the file from one invocation to the next and don't have to create it",
-			"manually."
+			"manually.",
+			"",
+			"Chapter files are rendered and written in parallel; set the system property",
+			"biblemulticonverter.threads to change the number of threads (1 to disable).",
+			"",
+			"Set the system property biblemulticonverter.incremental to keep a manifest of",
+			"content hashes in the output directory, and only rewrite files that changed since the",
+			"last export (and delete files that are no longer exported)."
 	};
 
 	@Override
@@ -94,118 +105,121 @@ public class RoundtripHTML implements RoundtripFormat {
 			xrefMap.setProperty((String) key, newValue);
 		}
 
-		// metadata
-		try (BufferedWriter bw = createWriter(directory, filenames, "metadata.js")) {
-			bw.write("biblename = \"" + bible.getName().replace("\\", "\\\\").replace("\"", "\\\"") + "\";\n");
-			bw.write("metadata = [{\n");
-			boolean first = true;
-			for (Book bk : bible.getBooks()) {
-				if (!first)
-					bw.write("},{\n");
-				first = false;
-				String[] keys = new String[] { "abbr", "short", "long", "osis", "type" };
-				String[] values = new String[] { bk.getAbbr(), bk.getShortName(), bk.getLongName(), bk.getId().getOsisID(), getTypeDir(bk.getId()) };
-				for (int i = 0; i < keys.length; i++) {
-					bw.write(keys[i] + ":\"" + values[i].replace("\\", "\\\\").replace("\"", "\\\"") + "\",\n");
+		try (ParallelFileWriter fileWriter = new ParallelFileWriter(directory)) {
+			// metadata
+			writeFile(fileWriter, directory, filenames, "metadata.js", bw -> {
+				bw.write("biblename = \"" + bible.getName().replace("\\", "\\\\").replace("\"", "\\\"") + "\";\n");
+				bw.write("metadata = [{\n");
+				boolean first = true;
+				for (Book bk : bible.getBooks()) {
+					if (!first)
+						bw.write("},{\n");
+					first = false;
+					String[] keys = new String[] { "abbr", "short", "long", "osis", "type" };
+					String[] values = new String[] { bk.getAbbr(), bk.getShortName(), bk.getLongName(), bk.getId().getOsisID(), getTypeDir(bk.getId()) };
+					for (int i = 0; i < keys.length; i++) {
+						bw.write(keys[i] + ":\"" + values[i].replace("\\", "\\\\").replace("\"", "\\\"") + "\",\n");
+					}
+					bw.write("nt:" + bk.getId().isNT() + ",\n");
+					bw.write("chapters:" + bk.getChapters().size() + "\n");
 				}
-				bw.write("nt:" + bk.getId().isNT() + ",\n");
-				bw.write("chapters:" + bk.getChapters().size() + "\n");
-			}
-			bw.write("}];\n");
-		}
+				bw.write("}];\n");
+			});
 
-		// chapters
-		for (Book bk : bible.getBooks()) {
-			int cnumber = 0;
-			for (Chapter ch : bk.getChapters()) {
-				cnumber++;
-				try (BufferedWriter bw = createWriter(directory, filenames, getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_" + cnumber + ".html")) {
-					bw.write("<html><head>\n" +
-							"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
-							"<title>" + (bk.getChapters().size() == 1 ? "" : bk.getAbbr() + " " + cnumber + " &ndash; ") + bk.getLongName() + " &ndash; " + bible.getName() + "</title>\n" +
-							"<script type=\"text/javascript\" src=\"../metadata.js\"></script>\n" +
-							"<script type=\"text/javascript\" src=\"../script.js\"></script>\n" +
-							"<style type=\"text/css\">div.v { display:inline; } /*changed dynamically*/</style>\n" +
-							"<link rel=\"stylesheet\" type=\"text/css\" href=\"../style.css\">\n" +
-							"</head>\n");
-					bw.write("<body onload=\"showNavbar('" + bk.getAbbr() + "', " + cnumber + ");\">\n");
-					bw.write("<div id=\"navbar\"><a href=\"../index.html\">" + bible.getName() + "</a> &ndash; <b>" + bk.getLongName() + "</b>");
-					if (bk.getChapters().size() > 1) {
-						bw.write(" &ndash; ");
-						for (int i = 1; i <= bk.getChapters().size(); i++) {
-							if (i == cnumber) {
-								bw.write("<b>" + i + "</b> ");
-							} else if (i == 2 && cnumber > 4) {
-								bw.write("... ");
-								i = cnumber - 3;
-							} else if (i == cnumber + 3 && i < bk.getChapters().size()) {
-								bw.write("... ");
-								i = bk.getChapters().size() - 1;
-							} else {
-								bw.write("<a href=\"" + bk.getAbbr() + "_" + i + ".html\">" + i + "</a> ");
+			// chapters
+			for (Book bk : bible.getBooks()) {
+				for (int cnumber = 1; cnumber <= bk.getChapters().size(); cnumber++) {
+					Chapter ch = bk.getChapters().get(cnumber - 1);
+					int cnum = cnumber;
+					String name = getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_" + cnumber + ".html";
+					writeFile(fileWriter, directory, filenames, name, bw -> {
+						bw.write("<html><head>\n" +
+								"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
+								"<title>" + (bk.getChapters().size() == 1 ? "" : bk.getAbbr() + " " + cnum + " &ndash; ") + bk.getLongName() + " &ndash; " + bible.getName() + "</title>\n" +
+								"<script type=\"text/javascript\" src=\"../metadata.js\"></script>\n" +
+								"<script type=\"text/javascript\" src=\"../script.js\"></script>\n" +
+								"<style type=\"text/css\">div.v { display:inline; } /*changed dynamically*/</style>\n" +
+								"<link rel=\"stylesheet\" type=\"text/css\" href=\"../style.css\">\n" +
+								"</head>\n");
+						bw.write("<body onload=\"showNavbar('" + bk.getAbbr() + "', " + cnum + ");\">\n");
+						bw.write("<div id=\"navbar\"><a href=\"../index.html\">" + bible.getName() + "</a> &ndash; <b>" + bk.getLongName() + "</b>");
+						if (bk.getChapters().size() > 1) {
+							bw.write(" &ndash; ");
+							for (int i = 1; i <= bk.getChapters().size(); i++) {
+								if (i == cnum) {
+									bw.write("<b>" + i + "</b> ");
+								} else if (i == 2 && cnum > 4) {
+									bw.write("... ");
+									i = cnum - 3;
+								} else if (i == cnum + 3 && i < bk.getChapters().size()) {
+									bw.write("... ");
+									i = bk.getChapters().size() - 1;
+								} else {
+									bw.write("<a href=\"" + bk.getAbbr() + "_" + i + ".html\">" + i + "</a> ");
+								}
 							}
 						}
-					}
-					bw.write("</div><hr>\n");
-					bw.write("<h1>" + bk.getAbbr() + (bk.getChapters().size() == 1 ? "" : " " + cnumber) + "</h1>\n");
-					bw.write("<!-- PARSED BELOW; EDITING MAY BREAK PARSER -->\n");
-					exportChapter(ch, bw, xrefMap);
-					bw.write("<!-- PARSED ABOVE; EDITING MAY BREAK PARSER -->\n");
-					bw.write("</body></html>");
+						bw.write("</div><hr>\n");
+						bw.write("<h1>" + bk.getAbbr() + (bk.getChapters().size() == 1 ? "" : " " + cnum) + "</h1>\n");
+						bw.write("<!-- PARSED BELOW; EDITING MAY BREAK PARSER -->\n");
+						exportChapter(ch, bw, xrefMap);
+						bw.write("<!-- PARSED ABOVE; EDITING MAY BREAK PARSER -->\n");
+						bw.write("</body></html>");
+					});
 				}
 			}
-		}
 
-		// /// rest is not needed for roundtrip import /// //
-
-		// index file
-		try (BufferedWriter bw = createWriter(directory, filenames, "index.html")) {
-			bw.write("<html><head>\n" +
-					"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
-					"<title>" + bible.getName() + "</title>\n" +
-					"<script type=\"text/javascript\" src=\"metadata.js\"></script>\n" +
-					"<script type=\"text/javascript\" src=\"script.js\"></script>\n" +
-					"<link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n" +
-					"</head>\n");
-			bw.write("<body onload=\"showNavbar('', 0);\">\n");
-			bw.write("<div id=\"navbar\"><b>" + bible.getName() + "</b></div><hr>\n");
-			bw.write("<h1>" + bible.getName() + "</h1>\n");
-			for (Book bk : bible.getBooks()) {
-				bw.write("<a href=\"" + getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_1.html\">" + bk.getLongName() + "</a><br>\n");
-			}
-			bw.write("</body></html>");
-		}
-
-		// static files
-		for (String staticFile : Arrays.asList("script.js", "style.css", "crossdomain.html")) {
-			try (BufferedWriter bw = createWriter(directory, filenames, staticFile)) {
-				Reader r = new InputStreamReader(RoundtripHTML.class.getResourceAsStream("/RoundtripHTML/" + staticFile), StandardCharsets.UTF_8);
-				char[] buf = new char[4096];
-				int len;
-				while ((len = r.read(buf)) != -1) {
-					bw.write(buf, 0, len);
+			// /// rest is not needed for roundtrip import /// //
+
+			// index file
+			writeFile(fileWriter, directory, filenames, "index.html", bw -> {
+				bw.write("<html><head>\n" +
+						"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
+						"<title>" + bible.getName() + "</title>\n" +
+						"<script type=\"text/javascript\" src=\"metadata.js\"></script>\n" +
+						"<script type=\"text/javascript\" src=\"script.js\"></script>\n" +
+						"<link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n" +
+						"</head>\n");
+				bw.write("<body onload=\"showNavbar('', 0);\">\n");
+				bw.write("<div id=\"navbar\"><b>" + bible.getName() + "</b></div><hr>\n");
+				bw.write("<h1>" + bible.getName() + "</h1>\n");
+				for (Book bk : bible.getBooks()) {
+					bw.write("<a href=\"" + getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_1.html\">" + bk.getLongName() + "</a><br>\n");
 				}
+				bw.write("</body></html>");
+			});
+
+			// static files
+			for (String staticFile : Arrays.asList("script.js", "style.css", "crossdomain.html")) {
+				writeFile(fileWriter, directory, filenames, staticFile, bw -> {
+					Reader r = new InputStreamReader(RoundtripHTML.class.getResourceAsStream("/RoundtripHTML/" + staticFile), StandardCharsets.UTF_8);
+					char[] buf = new char[4096];
+					int len;
+					while ((len = r.read(buf)) != -1) {
+						bw.write(buf, 0, len);
+					}
+				});
 			}
-		}
 
-		// filelist.html (for mirroring)
-		try (BufferedWriter bw = createWriter(directory, filenames, "filelist.html")) {
-			bw.write("<html><head>\n" +
-					"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
-					"<title>File list &ndash; " + bible.getName() + "</title>\n" +
-					"<script type=\"text/javascript\" src=\"metadata.js\"></script>\n" +
-					"<script type=\"text/javascript\" src=\"script.js\"></script>\n" +
-					"<link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n" +
-					"</head>\n");
-			bw.write("<body onload=\"showNavbar('', 0);\">\n");
-			bw.write("<div id=\"navbar\"><a href=\"index.html\">" + bible.getName() + "</a></div><hr>\n");
-			bw.write("<h1>File list</h1>\n");
-			for (String name : filenames) {
-				bw.write("<a href=\"" + name + "\">" + name + "</a><br>\n");
-			}
-			bw.write("</body></html>");
+			// filelist.html (for mirroring)
+			writeFile(fileWriter, directory, filenames, "filelist.html", bw -> {
+				bw.write("<html><head>\n" +
+						"<meta http-equiv=\"Content-Type\" content=\"text/html;charset=utf-8\" />\n" +
+						"<title>File list &ndash; " + bible.getName() + "</title>\n" +
+						"<script type=\"text/javascript\" src=\"metadata.js\"></script>\n" +
+						"<script type=\"text/javascript\" src=\"script.js\"></script>\n" +
+						"<link rel=\"stylesheet\" type=\"text/css\" href=\"style.css\">\n" +
+						"</head>\n");
+				bw.write("<body onload=\"showNavbar('', 0);\">\n");
+				bw.write("<div id=\"navbar\"><a href=\"index.html\">" + bible.getName() + "</a></div><hr>\n");
+				bw.write("<h1>File list</h1>\n");
+				for (String name : filenames) {
+					bw.write("<a href=\"" + name + "\">" + name + "</a><br>\n");
+				}
+				bw.write("</body></html>");
+			});
+			fileWriter.finish();
 		}
-
 	}
 
 	protected void exportChapter(Chapter ch, BufferedWriter bw, Properties xrefMap) throws IOException {
@@ -244,12 +258,9 @@ public class RoundtripHTML implements RoundtripFormat {
 		return "ot";
 	}
 
-	private static BufferedWriter createWriter(File directory, List<String> filenames, String name) throws IOException {
+	private static void writeFile(ParallelFileWriter fileWriter, File directory, List<String> filenames, String name, ParallelFileWriter.Renderer renderer) throws IOException {
 		filenames.add(name);
-		File f = new File(directory, name);
-		if (!f.getParentFile().exists())
-			f.getParentFile().mkdirs();
-		return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8));
+		fileWriter.write(new File(directory, name), renderer);
 	}
 
 	@Override
@@ -285,19 +296,29 @@ public class RoundtripHTML implements RoundtripFormat {
 			}
 		}
 
-		// chapters
+		// chapters (independent of each other, so parse them in parallel)
+		List<Callable<Chapter>> chapterTasks = new ArrayList<>();
 		for (Book bk : bible.getBooks()) {
-			int cnumber = 0;
-			for (Chapter ch : bk.getChapters()) {
-				cnumber++;
-				try (BufferedReader br = createReader(inputDir, getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_" + cnumber + ".html")) {
-					List<FormattedText.Visitor<RuntimeException>> footnotes = new ArrayList<>();
-					parseChapter(ch, br, footnotes);
-					if (ch.getProlog() != null)
-						ch.getProlog().finished();
-					for (Verse v : ch.getVerses())
-						v.finished();
-				}
+			for (int cnumber = 1; cnumber <= bk.getChapters().size(); cnumber++) {
+				String name = getTypeDir(bk.getId()) + "/" + bk.getAbbr() + "_" + cnumber + ".html";
+				chapterTasks.add(() -> {
+					Chapter ch = new Chapter();
+					try (BufferedReader br = createReader(inputDir, name)) {
+						List<FormattedText.Visitor<RuntimeException>> footnotes = new ArrayList<>();
+						parseChapter(ch, br, footnotes);
+						if (ch.getProlog() != null)
+							ch.getProlog().finished();
+						for (Verse v : ch.getVerses())
+							v.finished();
+					}
+					return ch;
+				});
+			}
+		}
+		Iterator<Chapter> parsedChapters = ParallelTasks.runAll(chapterTasks).iterator();
+		for (Book bk : bible.getBooks()) {
+			for (int i = 0; i < bk.getChapters().size(); i++) {
+				bk.getChapters().set(i, parsedChapters.next());
 			}
 		}
 		return bible;
@@ -827,7 +848,10 @@ public class RoundtripHTML implements RoundtripFormat {
 			}
 			if (attributeKeys != null) {
 				for (int i = 0; i < attributeKeys.length; i++) {
-					writer.write(" ga-" + (attributeKeys[i] + "=" + attributeValues[i]).replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;"));
+					writer.write(" ga-");
+					MarkupEscaper.HTML_ATTRIBUTE.escape(writer, attributeKeys[i]);
+					writer.write("=");
+					MarkupEscaper.HTML_ATTRIBUTE.escape(writer, attributeValues[i]);
 				}
 			}
 			writer.write("\">");
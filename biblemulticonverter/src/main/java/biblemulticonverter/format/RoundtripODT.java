@@ -1,12 +1,15 @@
 package biblemulticonverter.format;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -18,18 +21,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
 import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -47,6 +49,8 @@ import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.format.Diffable.DiffableVisitor;
+import biblemulticonverter.utilities.MarkupEscaper;
+import biblemulticonverter.utilities.ParallelZipOutputStream;
 
 public class RoundtripODT implements RoundtripFormat {
 
@@ -84,6 +88,23 @@ public class RoundtripODT implements RoundtripFormat {
 			"custom styles.xml."
 	};
 
+	private static final MarkupEscaper XML_TEXT_ESCAPER, XML_ATTRIBUTE_ESCAPER;
+
+	static {
+		// escape control characters like the JDK's XML serializer does
+		MarkupEscaper textEscaper = MarkupEscaper.HTML_TEXT, attributeEscaper = MarkupEscaper.HTML_ATTRIBUTE;
+		for (char ch = 1; ch < 0x20; ch++) {
+			if (ch != '\t' && ch != '\n')
+				textEscaper = textEscaper.with(ch, "&#" + (int) ch + ";");
+			attributeEscaper = attributeEscaper.with(ch, "&#" + (int) ch + ";");
+		}
+		for (char ch = 0x7F; ch < 0xA0; ch++) {
+			textEscaper = textEscaper.with(ch, "&#" + (int) ch + ";");
+		}
+		XML_TEXT_ESCAPER = textEscaper;
+		XML_ATTRIBUTE_ESCAPER = attributeEscaper;
+	}
+
 	private static final String OFFICE = "urn:oasis:names:tc:opendocument:xmlns:office:1.0";
 	private static final String TEXT = "urn:oasis:names:tc:opendocument:xmlns:text:1.0";
 	private static final String XLINK = "http://www.w3.org/1999/xlink";
@@ -99,12 +120,12 @@ public class RoundtripODT implements RoundtripFormat {
 		if (in == null) {
 			in = new FileInputStream(styleName);
 		}
-		try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(exportFile))) {
+		try (ParallelZipOutputStream zos = new ParallelZipOutputStream(new FileOutputStream(exportFile))) {
 			ZipEntry mimetypeZE = new ZipEntry("mimetype");
 			mimetypeZE.setSize(39);
 			mimetypeZE.setCompressedSize(39);
 			mimetypeZE.setCrc(204654174);
-			mimetypeZE.setMethod(ZipOutputStream.STORED);
+			mimetypeZE.setMethod(ZipEntry.STORED);
 			zos.putNextEntry(mimetypeZE);
 			zos.write("application/vnd.oasis.opendocument.text".getBytes(StandardCharsets.US_ASCII));
 			zos.putNextEntry(new ZipEntry("content.xml"));
@@ -138,24 +159,13 @@ public class RoundtripODT implements RoundtripFormat {
 				}
 			}
 		}
-		DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-		dbf.setNamespaceAware(true);
-		Document doc = dbf.newDocumentBuilder().newDocument();
-		doc.appendChild(doc.createElementNS(OFFICE, "office:document-content"));
-		doc.getDocumentElement().appendChild(doc.createElementNS(OFFICE, "office:body"));
-		doc.getDocumentElement().setAttribute("xmlns:text", TEXT);
-		doc.getDocumentElement().setAttribute("xmlns:xlink", XLINK);
-		Element text = doc.createElementNS(OFFICE, "office:text");
-		doc.getDocumentElement().getFirstChild().appendChild(text);
+		ContentXmlWriter cxw = new ContentXmlWriter(out);
+		ContentElement text = cxw.startDocument();
 		RoundtripODTVisitor v = new RoundtripODTVisitor(text, false);
-		Element p = doc.createElementNS(TEXT, "text:p");
-		p.setAttributeNS(TEXT, "text:style-name", PARA_STYLE_NEXT_CHAPTER);
-		text.appendChild(p);
+		ContentElement p = cxw.appendElement(text, "text:p", PARA_STYLE_NEXT_CHAPTER);
 		appendSpan(p, TEXT_STYLE_CONTENT, bible.getName());
 		for (Book bb : bible.getBooks()) {
-			p = doc.createElementNS(TEXT, "text:p");
-			p.setAttributeNS(TEXT, "text:style-name", PARA_STYLE_BOOK);
-			text.appendChild(p);
+			p = cxw.appendElement(text, "text:p", PARA_STYLE_BOOK);
 			appendBookmarkTag(p, "start", "BMC-" + bb.getAbbr().replace('.', '_'));
 			appendSpan(p, TEXT_STYLE_VERSE, bb.getAbbr());
 			appendBookmarkTag(p, "end", "BMC-" + bb.getAbbr().replace('.', '_'));
@@ -168,9 +178,7 @@ public class RoundtripODT implements RoundtripFormat {
 			for (Chapter ch : bb.getChapters()) {
 				cnumber++;
 				if (cnumber != 1) {
-					p = doc.createElementNS(TEXT, "text:p");
-					p.setAttributeNS(TEXT, "text:style-name", PARA_STYLE_NEXT_CHAPTER);
-					text.appendChild(p);
+					p = cxw.appendElement(text, "text:p", PARA_STYLE_NEXT_CHAPTER);
 					appendSpan(p, TEXT_STYLE_IGNORED, "– " + cnumber + " –");
 				}
 				if (ch.getProlog() != null) {
@@ -198,45 +206,24 @@ public class RoundtripODT implements RoundtripFormat {
 				}
 			}
 		}
-		int paragraphCount = 0;
-		NodeList paraTags = doc.getElementsByTagNameNS(TEXT, "p");
-		for (int i = 0; i < paraTags.getLength(); i++) {
-			if (paraTags.item(i).getFirstChild() != null)
-				paragraphCount++;
-		}
-		TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(out));
-		return paragraphCount;
+		return cxw.finish();
 	}
 
-	private static Element appendSpan(Element elem, String style, String value) {
-		Element span = null;
-		if (elem.getLastChild() != null && elem.getLastChild() instanceof Element) {
-			Element last = (Element) elem.getLastChild();
-			if (last.getLocalName().equals("span") && style.equals(last.getAttributeNS(TEXT, "style-name"))) {
-				span = last;
-			}
+	private static ContentElement appendSpan(ContentElement elem, String style, String value) {
+		ContentElement span = elem.getLastOpenChild();
+		if (span == null || !span.name.equals("text:span") || !style.equals(span.styleName)) {
+			span = elem.writer.appendElement(elem, "text:span", style);
 		}
-		if (span == null) {
-			span = elem.getOwnerDocument().createElementNS(TEXT, "text:span");
-			span.setAttributeNS(TEXT, "text:style-name", style);
-			elem.appendChild(span);
-		}
-		span.appendChild(elem.getOwnerDocument().createTextNode(value));
+		elem.writer.appendText(span, value);
 		return span;
 	}
 
-	private void appendBookmarkTag(Element elem, String type, String bookmark) {
-		Element bmk = elem.getOwnerDocument().createElementNS(TEXT, "text:bookmark-" + type);
-		bmk.setAttributeNS(TEXT, "text:name", bookmark);
-		elem.appendChild(bmk);
+	private void appendBookmarkTag(ContentElement elem, String type, String bookmark) {
+		elem.writer.appendElement(elem, "text:bookmark-" + type, null, "text:name", bookmark);
 	}
 
-	private static Element appendLink(Element elem, String target) {
-		Element link = elem.getOwnerDocument().createElementNS(TEXT, "text:a");
-		link.setAttributeNS(XLINK, "xlink:type", "simple");
-		link.setAttributeNS(XLINK, "xlink:href", target);
-		elem.appendChild(link);
-		return link;
+	private static ContentElement appendLink(ContentElement elem, String target) {
+		return elem.writer.appendElement(elem, "text:a", null, "xlink:href", target, "xlink:type", "simple");
 	}
 
 	private void copyStream(InputStream in, OutputStream out) throws IOException {
@@ -254,95 +241,21 @@ public class RoundtripODT implements RoundtripFormat {
 			ZipEntry ze;
 			while ((ze = zis.getNextEntry()) != null) {
 				if (ze.getName().equals("content.xml")) {
-					DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-					dbf.setNamespaceAware(true);
-					Document doc = dbf.newDocumentBuilder().parse(zis);
-					return fromContentXml(doc);
-				}
-			}
-			throw new IOException("Invalid input file - no content.xml found!");
-		}
-	}
-
-	private Bible fromContentXml(Document doc) throws Exception {
-		NodeList texts = doc.getElementsByTagNameNS(OFFICE, "text");
-		if (texts.getLength() != 1)
-			throw new RuntimeException("Invalid number of text elements");
-		Element p = (Element) texts.item(0).getFirstChild();
-		if (p.getLocalName().equals("sequence-decls"))
-			p = (Element) p.getNextSibling();
-		if (!getParagraphStyle(p).equals(PARA_STYLE_NEXT_CHAPTER))
-			throw new IOException("Bible name not found!");
-		Span[] bibleNameSpans = parseParagraph(p);
-		if (bibleNameSpans.length != 1 || !bibleNameSpans[0].getStyleName().equals(PARA_STYLE_CONTENT))
-			throw new IOException("Invalid bible name formatting");
-		Bible bible = new Bible(bibleNameSpans[0].getContent());
-		p = (Element) p.getNextSibling();
-		while (p != null && getParagraphStyle(p).equals(PARA_STYLE_BOOK)) {
-			Span[] bookSpans = parseParagraph(p);
-			if (bookSpans.length < 3 || bookSpans.length > 4 || !bookSpans[0].getStyleName().equals(TEXT_STYLE_VERSE) || !bookSpans[1].getStyleName().equals(TEXT_STYLE_GRAMMAR))
-				throw new IOException("Incorrectly formatted book header");
-
-			String shortTitle = bookSpans[2].getContent(), longTitle;
-			if (bookSpans.length == 4) {
-				if (!bookSpans[2].getStyleName().equals(TEXT_STYLE_SPECIAL) || !bookSpans[3].getStyleName().equals(TEXT_STYLE_CONTENT))
-					throw new IOException("Incorrectly formatted book header");
-				longTitle = bookSpans[3].getContent();
-			} else {
-				if (!bookSpans[2].getStyleName().equals(TEXT_STYLE_CONTENT))
-					throw new IOException("Incorrectly formatted book header");
-				longTitle = shortTitle;
-			}
-			Book bk = new Book(bookSpans[0].getContent(), BookID.fromOsisId(bookSpans[1].getContent()), shortTitle, longTitle);
-			bible.getBooks().add(bk);
-			Chapter ch = new Chapter();
-			bk.getChapters().add(ch);
-			p = (Element) p.getNextSibling();
-			ImportContext ic = new ImportContext(ch);
-			boolean lastWasParagraph = false;
-			while (p != null) {
-				String pStyle = getParagraphStyle(p);
-				if (pStyle.equals(PARA_STYLE_BOOK)) {
-					break;
-				} else if (pStyle.equals(PARA_STYLE_NEXT_CHAPTER)) {
-					ic.finished();
-					ch = new Chapter();
-					bk.getChapters().add(ch);
-					ic = new ImportContext(ch);
-					lastWasParagraph = false;
-				} else if (pStyle.startsWith(PARA_STYLE_HEADING_PREFIX)) {
-					ic.pushVisitor(ic.getVisitor().visitHeadline(Integer.parseInt(pStyle.substring(PARA_STYLE_HEADING_PREFIX.length()))));
-					Span[] spans = parseParagraph(p);
-					for (int i = 0; i < spans.length; i++) {
-						i = appendSpan(spans, i, ic);
+					ContentXmlImporter importer = new ContentXmlImporter();
+					SAXParserFactory spf = SAXParserFactory.newInstance();
+					spf.setNamespaceAware(true);
+					try {
+						spf.newSAXParser().parse(zis, importer);
+					} catch (SAXException ex) {
+						if (ex.getException() instanceof IOException)
+							throw (IOException) ex.getException();
+						throw ex;
 					}
-					ic.popVisitor();
-					lastWasParagraph = false;
-				} else if (pStyle.equals(PARA_STYLE_CONTENT)) {
-					Span[] spans = parseParagraph(p);
-					if (lastWasParagraph && !(spans.length != 0 && spans[0].getStyleName().equals(TEXT_STYLE_VERSE)))
-						ic.visitLineBreak(ExtendedLineBreakKind.PARAGRAPH, 0);
-					for (int i = 0; i < spans.length; i++) {
-						if (spans[i].getStyleName().equals(TEXT_STYLE_VERSE)) {
-							ic.finished();
-							Verse verse = new Verse(spans[i].getContent().trim());
-							ch.getVerses().add(verse);
-							ic = new ImportContext(verse);
-						} else {
-							i = appendSpan(spans, i, ic);
-						}
-					}
-					lastWasParagraph = true;
-				} else {
-					throw new IOException("Unexpected paragraph with style " + getParagraphStyle(p));
+					return importer.finish();
 				}
-				p = (Element) p.getNextSibling();
 			}
-			ic.finished();
+			throw new IOException("Invalid input file - no content.xml found!");
 		}
-		if (p != null)
-			throw new IOException("Unexpected paragraph with style " + getParagraphStyle(p));
-		return bible;
 	}
 
 	private int appendSpan(Span[] spans, int index, ImportContext ic) throws IOException {
@@ -592,17 +505,17 @@ public class RoundtripODT implements RoundtripFormat {
 	}
 
 	private static class RoundtripODTVisitor implements FormattedText.Visitor<RuntimeException> {
-		private final Element parent;
-		private Element p;
+		private final ContentElement parent;
+		private ContentElement p;
 		private String textStyle = TEXT_STYLE_CONTENT, paragraphStyle;
 		private final List<String> suffixStack = new ArrayList<String>();
 		private FormattedText.FormattingInstructionKind pendingInstruction = null;
 
-		public RoundtripODTVisitor(Element parent, boolean isParagraph) {
+		public RoundtripODTVisitor(ContentElement parent, boolean isParagraph) {
 			this(parent, isParagraph, false);
 		}
 
-		private RoundtripODTVisitor(Element parent, boolean isParagraph, boolean isFootnote) {
+		private RoundtripODTVisitor(ContentElement parent, boolean isParagraph, boolean isFootnote) {
 			this.parent = isParagraph ? null : parent;
 			this.p = isParagraph ? parent : null;
 			suffixStack.add(null);
@@ -659,11 +572,9 @@ public class RoundtripODT implements RoundtripFormat {
 			return 0;
 		}
 
-		private Element makeParagraph() {
+		private ContentElement makeParagraph() {
 			if (p == null) {
-				p = parent.getOwnerDocument().createElementNS(TEXT, "text:p");
-				p.setAttributeNS(TEXT, "text:style-name", paragraphStyle);
-				parent.appendChild(p);
+				p = parent.writer.appendElement(parent, "text:p", paragraphStyle);
 			}
 			return p;
 		}
@@ -692,11 +603,8 @@ public class RoundtripODT implements RoundtripFormat {
 			if (ofCrossReferences) {
 				appendSpan(p, TEXT_STYLE_SPECIAL, "X");
 			}
-			Element note = p.getOwnerDocument().createElementNS(TEXT, "text:note");
-			appendSpan(p, textStyle, "").appendChild(note);
-			note.setAttributeNS(TEXT, "text:note-class", "footnote");
-			Element body = p.getOwnerDocument().createElementNS(TEXT, "text:note-body");
-			note.appendChild(body);
+			ContentElement note = p.writer.appendElement(appendSpan(p, textStyle, ""), "text:note", null, "text:note-class", "footnote");
+			ContentElement body = p.writer.appendElement(note, "text:note-body", null);
 			return new RoundtripODTVisitor(body, false, true);
 		}
 
@@ -747,11 +655,11 @@ public class RoundtripODT implements RoundtripFormat {
 		public void visitLineBreak(ExtendedLineBreakKind kind, int indent) throws RuntimeException {
 			makeParagraph();
 			if (kind == ExtendedLineBreakKind.NEWLINE && indent == 0) {
-				appendSpan(p, textStyle, "").appendChild(p.getOwnerDocument().createElementNS(TEXT, "text:line-break"));
+				p.writer.appendElement(appendSpan(p, textStyle, ""), "text:line-break", null);
 			} else if (kind == ExtendedLineBreakKind.NEWLINE && indent == 1) {
-				Element span = appendSpan(p, textStyle, "");
-				span.appendChild(p.getOwnerDocument().createElementNS(TEXT, "text:line-break"));
-				span.appendChild(p.getOwnerDocument().createElementNS(TEXT, "text:tab"));
+				ContentElement span = appendSpan(p, textStyle, "");
+				p.writer.appendElement(span, "text:line-break", null);
+				p.writer.appendElement(span, "text:tab", null);
 			} else if (kind == ExtendedLineBreakKind.PARAGRAPH && indent == 0) {
 				p = null;
 				makeParagraph();
@@ -759,7 +667,7 @@ public class RoundtripODT implements RoundtripFormat {
 				appendSpan(makeParagraph(), TEXT_STYLE_SPECIAL, "#");
 				withDiffableVisitor(v -> v.visitLineBreak(kind, indent), false);
 				if (kind.isSameParagraph()) {
-					appendSpan(p, textStyle, "").appendChild(p.getOwnerDocument().createElementNS(TEXT, "text:line-break"));
+					p.writer.appendElement(appendSpan(p, textStyle, ""), "text:line-break", null);
 				} else {
 					p = null;
 					makeParagraph();
@@ -865,6 +773,281 @@ public class RoundtripODT implements RoundtripFormat {
 		}
 	}
 
+	/**
+	 * Writes content.xml directly into the output stream. Like in a DOM,
+	 * content can be appended to every element that has not been closed yet.
+	 * Elements are closed (and written) as soon as content is appended to one
+	 * of their ancestors, so only the open elements are kept in memory.
+	 */
+	private static class ContentXmlWriter {
+		private final Writer writer;
+		private final List<ContentElement> openElements = new ArrayList<>();
+		private boolean startTagOpen = false;
+		private int paragraphCount = 0;
+
+		private ContentXmlWriter(OutputStream out) {
+			writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+		}
+
+		private ContentElement startDocument() throws IOException {
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"no\"?>");
+			ContentElement root = appendElement(null, "office:document-content", null, "xmlns:office", OFFICE, "xmlns:text", TEXT, "xmlns:xlink", XLINK);
+			return appendElement(appendElement(root, "office:body", null), "office:text", null);
+		}
+
+		private void prepareAppend(ContentElement parent) throws IOException {
+			int depth = parent == null ? -1 : parent.depth;
+			if (parent != null && (depth >= openElements.size() || openElements.get(depth) != parent))
+				throw new IllegalStateException("Element " + parent.name + " has already been closed");
+			while (openElements.size() > depth + 1) {
+				ContentElement element = openElements.remove(openElements.size() - 1);
+				if (startTagOpen) {
+					writer.write("/>");
+					startTagOpen = false;
+				} else {
+					writer.write("</" + element.name + ">");
+				}
+			}
+			if (parent != null && !parent.hasChildren) {
+				parent.hasChildren = true;
+				if (parent.name.equals("text:p"))
+					paragraphCount++;
+			}
+		}
+
+		private void closeStartTag() throws IOException {
+			if (startTagOpen) {
+				writer.write('>');
+				startTagOpen = false;
+			}
+		}
+
+		private ContentElement appendElement(ContentElement parent, String name, String styleName, String... attributes) {
+			try {
+				prepareAppend(parent);
+				closeStartTag();
+				writer.write("<" + name);
+				if (styleName != null)
+					writeAttribute("text:style-name", styleName);
+				for (int i = 0; i < attributes.length; i += 2) {
+					writeAttribute(attributes[i], attributes[i + 1]);
+				}
+				startTagOpen = true;
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+			ContentElement element = new ContentElement(this, name, styleName, openElements.size());
+			openElements.add(element);
+			return element;
+		}
+
+		private void writeAttribute(String name, String value) throws IOException {
+			writer.write(" " + name + "=\"");
+			XML_ATTRIBUTE_ESCAPER.escape(writer, value);
+			writer.write('"');
+		}
+
+		private void appendText(ContentElement parent, String text) {
+			try {
+				prepareAppend(parent);
+				if (!text.isEmpty()) {
+					closeStartTag();
+					XML_TEXT_ESCAPER.escape(writer, text);
+				}
+			} catch (IOException ex) {
+				throw new RuntimeException(ex);
+			}
+		}
+
+		private ContentElement getLastOpenChild(ContentElement parent) {
+			if (parent.depth + 1 < openElements.size() && openElements.get(parent.depth) == parent)
+				return openElements.get(parent.depth + 1);
+			return null;
+		}
+
+		/**
+		 * Close all elements and return the number of non-empty paragraphs.
+		 */
+		private int finish() throws IOException {
+			prepareAppend(null);
+			writer.flush();
+			return paragraphCount;
+		}
+	}
+
+	private static class ContentElement {
+		private final ContentXmlWriter writer;
+		private final String name, styleName;
+		private final int depth;
+		private boolean hasChildren = false;
+
+		private ContentElement(ContentXmlWriter writer, String name, String styleName, int depth) {
+			this.writer = writer;
+			this.name = name;
+			this.styleName = styleName;
+			this.depth = depth;
+		}
+
+		private ContentElement getLastOpenChild() {
+			return writer.getLastOpenChild(this);
+		}
+	}
+
+	/**
+	 * Reads content.xml in a single pass. Each child of the text element
+	 * (usually a paragraph) is collected into a small DOM tree and converted as
+	 * soon as it is complete, so the whole document is never kept in memory.
+	 */
+	private class ContentXmlImporter extends DefaultHandler {
+		private final Document doc;
+		private int textElementCount = 0;
+		private boolean insideText = false, firstChild = true;
+		private Element current = null;
+
+		private Bible bible = null;
+		private Book bk = null;
+		private Chapter ch = null;
+		private ImportContext ic = null;
+		private boolean lastWasParagraph = false;
+
+		private ContentXmlImporter() throws Exception {
+			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+			dbf.setNamespaceAware(true);
+			doc = dbf.newDocumentBuilder().newDocument();
+		}
+
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			if (current != null || insideText) {
+				Element elem = doc.createElementNS(uri, qName);
+				for (int i = 0; i < attributes.getLength(); i++) {
+					elem.setAttributeNS(attributes.getURI(i).isEmpty() ? null : attributes.getURI(i), attributes.getQName(i), attributes.getValue(i));
+				}
+				if (current != null)
+					current.appendChild(elem);
+				current = elem;
+			} else if (uri.equals(OFFICE) && localName.equals("text")) {
+				textElementCount++;
+				if (textElementCount != 1)
+					throw new RuntimeException("Invalid number of text elements");
+				insideText = true;
+			}
+		}
+
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			if (current != null) {
+				Element elem = current;
+				current = elem.getParentNode() instanceof Element ? (Element) elem.getParentNode() : null;
+				if (current == null) {
+					try {
+						handleParagraph(elem);
+					} catch (IOException ex) {
+						throw new SAXException(ex);
+					}
+				}
+			} else if (insideText) {
+				insideText = false;
+			}
+		}
+
+		@Override
+		public void characters(char[] ch, int start, int length) throws SAXException {
+			if (current == null)
+				return;
+			if (current.getLastChild() instanceof Text) {
+				((Text) current.getLastChild()).appendData(new String(ch, start, length));
+			} else {
+				current.appendChild(doc.createTextNode(new String(ch, start, length)));
+			}
+		}
+
+		private void handleParagraph(Element p) throws IOException {
+			if (firstChild) {
+				firstChild = false;
+				if (p.getLocalName().equals("sequence-decls"))
+					return;
+			}
+			if (bible == null) {
+				if (!getParagraphStyle(p).equals(PARA_STYLE_NEXT_CHAPTER))
+					throw new IOException("Bible name not found!");
+				Span[] bibleNameSpans = parseParagraph(p);
+				if (bibleNameSpans.length != 1 || !bibleNameSpans[0].getStyleName().equals(PARA_STYLE_CONTENT))
+					throw new IOException("Invalid bible name formatting");
+				bible = new Bible(bibleNameSpans[0].getContent());
+				return;
+			}
+			String pStyle = getParagraphStyle(p);
+			if (pStyle.equals(PARA_STYLE_BOOK)) {
+				if (ic != null)
+					ic.finished();
+				Span[] bookSpans = parseParagraph(p);
+				if (bookSpans.length < 3 || bookSpans.length > 4 || !bookSpans[0].getStyleName().equals(TEXT_STYLE_VERSE) || !bookSpans[1].getStyleName().equals(TEXT_STYLE_GRAMMAR))
+					throw new IOException("Incorrectly formatted book header");
+
+				String shortTitle = bookSpans[2].getContent(), longTitle;
+				if (bookSpans.length == 4) {
+					if (!bookSpans[2].getStyleName().equals(TEXT_STYLE_SPECIAL) || !bookSpans[3].getStyleName().equals(TEXT_STYLE_CONTENT))
+						throw new IOException("Incorrectly formatted book header");
+					longTitle = bookSpans[3].getContent();
+				} else {
+					if (!bookSpans[2].getStyleName().equals(TEXT_STYLE_CONTENT))
+						throw new IOException("Incorrectly formatted book header");
+					longTitle = shortTitle;
+				}
+				bk = new Book(bookSpans[0].getContent(), BookID.fromOsisId(bookSpans[1].getContent()), shortTitle, longTitle);
+				bible.getBooks().add(bk);
+				ch = new Chapter();
+				bk.getChapters().add(ch);
+				ic = new ImportContext(ch);
+				lastWasParagraph = false;
+			} else if (bk == null) {
+				throw new IOException("Unexpected paragraph with style " + pStyle);
+			} else if (pStyle.equals(PARA_STYLE_NEXT_CHAPTER)) {
+				ic.finished();
+				ch = new Chapter();
+				bk.getChapters().add(ch);
+				ic = new ImportContext(ch);
+				lastWasParagraph = false;
+			} else if (pStyle.startsWith(PARA_STYLE_HEADING_PREFIX)) {
+				ic.pushVisitor(ic.getVisitor().visitHeadline(Integer.parseInt(pStyle.substring(PARA_STYLE_HEADING_PREFIX.length()))));
+				Span[] spans = parseParagraph(p);
+				for (int i = 0; i < spans.length; i++) {
+					i = appendSpan(spans, i, ic);
+				}
+				ic.popVisitor();
+				lastWasParagraph = false;
+			} else if (pStyle.equals(PARA_STYLE_CONTENT)) {
+				Span[] spans = parseParagraph(p);
+				if (lastWasParagraph && !(spans.length != 0 && spans[0].getStyleName().equals(TEXT_STYLE_VERSE)))
+					ic.visitLineBreak(ExtendedLineBreakKind.PARAGRAPH, 0);
+				for (int i = 0; i < spans.length; i++) {
+					if (spans[i].getStyleName().equals(TEXT_STYLE_VERSE)) {
+						ic.finished();
+						Verse verse = new Verse(spans[i].getContent().trim());
+						ch.getVerses().add(verse);
+						ic = new ImportContext(verse);
+					} else {
+						i = appendSpan(spans, i, ic);
+					}
+				}
+				lastWasParagraph = true;
+			} else {
+				throw new IOException("Unexpected paragraph with style " + getParagraphStyle(p));
+			}
+		}
+
+		private Bible finish() throws IOException {
+			if (textElementCount != 1)
+				throw new RuntimeException("Invalid number of text elements");
+			if (bible == null)
+				throw new IOException("Bible name not found!");
+			if (ic != null)
+				ic.finished();
+			return bible;
+		}
+	}
+
 	private static class XrefVisitor extends FormattedText.VisitorAdapter<RuntimeException> {
 		private final Map<String, Set<String>> xrefTargets;
 
@@ -3,10 +3,7 @@ package biblemulticonverter.format;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
@@ -33,6 +30,7 @@ import biblemulticonverter.data.FormattedText.RawHTMLMode;
 import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
+import biblemulticonverter.utilities.CompressedIO;
 
 public class RoundtripTaggedText implements RoundtripFormat {
 
@@ -48,13 +46,16 @@ public class RoundtripTaggedText implements RoundtripFormat {
 			"Also, unlike Diffable format, everyhing uses tags here, no extra spaces are used",
 			"and every < > and ~ is part of a tag (others are replaced by escape tags).",
 			"",
-			"Each book info, prolog or verse is on a separate line; therefore diffing the files is still feasible."
+			"Each book info, prolog or verse is on a separate line; therefore diffing the files is still feasible.",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
 		File exportFile = new File(exportArgs[0]);
-		try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportFile), StandardCharsets.UTF_8))) {
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(CompressedIO.openOutput(exportFile), StandardCharsets.UTF_8))) {
 			w.write("<bible~1>" + escape(bible.getName()) + "</bible~1>\n");
 			for (Book book : bible.getBooks()) {
 				int tc = ++tagCounter;
@@ -120,7 +121,7 @@ public class RoundtripTaggedText implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			String line = br.readLine();
 			if (!line.startsWith("<bible~"))
 				throw new IOException("Invalid header line: " + line);
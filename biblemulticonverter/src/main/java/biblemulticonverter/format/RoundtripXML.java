@@ -2,19 +2,18 @@ package biblemulticonverter.format;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.xml.sax.SAXException;
 
@@ -47,6 +46,8 @@ import biblemulticonverter.schema.roundtripxml.HyperlinkTypeType;
 import biblemulticonverter.schema.roundtripxml.LineBreakKindType;
 import biblemulticonverter.schema.roundtripxml.ObjectFactory;
 import biblemulticonverter.schema.roundtripxml.RawHTMLModeType;
+import biblemulticonverter.utilities.CompressedIO;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 public class RoundtripXML implements RoundtripFormat {
 
@@ -55,19 +56,28 @@ public class RoundtripXML implements RoundtripFormat {
 			"",
 			"Usage (export): RountripXML <OutputFile>",
 			"",
-			"Export into a XML file that contains all features supported by the import file."
+			"Export into a XML file that contains all features supported by the import file.",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	public static final Versification.Reference NULL_MARKER_REFERENCE = new Versification.Reference(BookID.METADATA, 1, "1/n");
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			u.setSchema(getSchema());
-		return parseBible(u.unmarshal(new StreamSource(inputFile), BibleType.class));
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		JAXBElement<BibleType> doc;
+		try (InputStream in = CompressedIO.openInput(inputFile)) {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				u.setSchema(getSchema());
+			doc = u.unmarshal(new StreamSource(in, inputFile.toURI().toASCIIString()), BibleType.class);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
+		return parseBible(doc);
 	}
 
 	protected Bible parseBible(JAXBElement<BibleType> sBible) throws Exception {
@@ -260,15 +270,18 @@ public class RoundtripXML implements RoundtripFormat {
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
 		File file = new File(exportArgs[0]);
 		JAXBElement<BibleType> result = createBible(bible);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(result, file);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try (OutputStream out = CompressedIO.openOutput(file)) {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(result, out);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/RoundtripXML.xsd"));
+		return ValidateXML.getSchema("/RoundtripXML.xsd");
 	}
 
 	protected JAXBElement<BibleType> createBible(Bible sBible) throws Exception {
@@ -24,6 +24,7 @@ import biblemulticonverter.data.MetadataBook.MetadataBookKey;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class SimpleJSON implements ExportFormat {
 
@@ -95,7 +96,7 @@ public class SimpleJSON implements ExportFormat {
 
 	/** Escape JSON */
 	private static String json(String raw) {
-		return raw.replace("\\", "\\\\").replace("\"", "\\\"");
+		return MarkupEscaper.JSON.escape(raw);
 	}
 
 	private static class SimpleJSONVisitor implements Visitor<IOException> {
@@ -117,7 +118,7 @@ public class SimpleJSON implements ExportFormat {
 
 		@Override
 		public void visitText(String text) throws IOException {
-			writer.write(json(text));
+			MarkupEscaper.JSON.escape(writer, text);
 		}
 
 		@Override
@@ -34,6 +34,7 @@ import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.Versification.Reference;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 /**
  * Importer and exporter for SoftProjector.
@@ -51,6 +52,8 @@ public class SoftProjector implements RoundtripFormat {
 			"property 'softprojector.roundtrip' is also set."
 	};
 
+	private static final MarkupEscaper TEXT_ESCAPER = MarkupEscaper.NONE.with('&', "&amp;").with('"', "&quot;");
+
 	private static final BookID[] BOOK_IDS = new BookID[87];
 	private static final Map<BookID, Integer> BOOK_NUMBERS = new EnumMap<>(BookID.class);
 
@@ -321,7 +324,7 @@ public class SoftProjector implements RoundtripFormat {
 
 		@Override
 		public void visitText(String text) {
-			builders.get(builders.size() - 1).append(text.replace("\uFEFF", "").replace("&", "&amp;").replace("\"", "&quot;"));
+			TEXT_ESCAPER.escape(builders.get(builders.size() - 1), text.replace("\uFEFF", ""));
 		}
 
 		@Override
@@ -29,6 +29,7 @@ import biblemulticonverter.data.StandardVersification;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.VirtualVerse;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class SwordSearcher implements ExportFormat {
 
@@ -192,15 +193,19 @@ public class SwordSearcher implements ExportFormat {
 	private static class IncludedFeatures {
 		private boolean hasItalics, hasFootnotes, hasRedLetter;
 
+		private MarkupEscaper escaper;
+
 		private String escapeText(String text) {
-			text = text.replace("&", "&amp").replace("<", "&lt").replace(">", "&gt");
-			if (hasItalics)
-				text = text.replace("[", "&#91").replace("]", "&#93");
-			if (hasFootnotes)
-				text = text.replace("{", "&#123").replace("}", "&#125");
-			if (hasRedLetter)
-				text = text.replace("/", "&#47");
-			return text;
+			if (escaper == null) {
+				escaper = MarkupEscaper.NONE.with('&', "&amp").with('<', "&lt").with('>', "&gt");
+				if (hasItalics)
+					escaper = escaper.with('[', "&#91").with(']', "&#93");
+				if (hasFootnotes)
+					escaper = escaper.with('{', "&#123").with('}', "&#125");
+				if (hasRedLetter)
+					escaper = escaper.with('/', "&#47");
+			}
+			return escaper.escape(text);
 		}
 
 		private String getHeader() {
@@ -2,7 +2,6 @@ package biblemulticonverter.format;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -27,6 +26,7 @@ import biblemulticonverter.data.FormattedText.Visitor;
 import biblemulticonverter.data.Utils;
 import biblemulticonverter.data.Verse;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextID;
+import biblemulticonverter.utilities.InputDirectory;
 
 public class TranslatorsAmalgamated implements ImportFormat {
 
@@ -35,6 +35,9 @@ public class TranslatorsAmalgamated implements ImportFormat {
 			"",
 			"Usage: TranslatorsAmalgamated <directory>",
 			"",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
+			"",
 			"Download Translators Amalgamated Bibles <https://github.com/STEPBible/STEPBible-Data/>.",
 			"Note that this importer does not yet import all information from TAHOT/TAGNT."
 	};
@@ -52,15 +55,20 @@ public class TranslatorsAmalgamated implements ImportFormat {
 	};
 
 	@Override
-	public Bible doImport(File directory) throws Exception {
+	public Bible doImport(File inputFile) throws Exception {
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			return doImport(directory);
+		}
+	}
+
+	private Bible doImport(InputDirectory directory) throws Exception {
 		Bible bible = new Bible("Translators Amalgamated Hebrew OT / Greek NT");
 		Map<String, Book> startedBooks = new HashMap<>();
 		for (String fileName : FILE_NAMES_OT) {
-			File file = new File(directory, fileName);
 			Verse currVerse = null;
 			String currVersePrefix = null;
 			Visitor<RuntimeException> currVerseVisitor = null;
-			try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			try (BufferedReader br = new BufferedReader(new InputStreamReader(directory.openStream(fileName), StandardCharsets.UTF_8))) {
 				String line;
 				while ((line = br.readLine()) != null) {
 					if (line.startsWith("#"))
@@ -168,11 +176,10 @@ public class TranslatorsAmalgamated implements ImportFormat {
 			}
 		}
 		for (String fileName : FILE_NAMES_NT) {
-			File file = new File(directory, fileName);
 			Verse currVerse = null;
 			String currVersePrefix = null;
 			List<WordItem> items = new ArrayList<>();
-			try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			try (BufferedReader br = new BufferedReader(new InputStreamReader(directory.openStream(fileName), StandardCharsets.UTF_8))) {
 				String line;
 				while ((line = br.readLine()) != null) {
 					if (line.startsWith("#"))
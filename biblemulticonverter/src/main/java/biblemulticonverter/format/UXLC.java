@@ -2,17 +2,16 @@ package biblemulticonverter.format;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Unmarshaller;
+import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import biblemulticonverter.data.Bible;
 import biblemulticonverter.data.Book;
@@ -34,6 +33,8 @@ import biblemulticonverter.schema.uxlc.TanachRoot;
 import biblemulticonverter.schema.uxlc.V;
 import biblemulticonverter.schema.uxlc.W;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.InputDirectory;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 public class UXLC implements ImportFormat {
 
@@ -42,6 +43,9 @@ public class UXLC implements ImportFormat {
 			"",
 			"Usage: UXLC <directory>",
 			"",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
+			"",
 			"Download UXLC from <https://www.tanach.us/Pages/XMLFiles.html>."
 	};
 
@@ -90,13 +94,29 @@ public class UXLC implements ImportFormat {
 	}
 
 	@Override
-	public Bible doImport(File directory) throws Exception {
+	public Bible doImport(File inputFile) throws Exception {
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			return doImport(directory);
+		}
+	}
+
+	private Bible doImport(InputDirectory directory) throws Exception {
+		Unmarshaller unmarshaller = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		try {
+			return doImport(directory, unmarshaller);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, unmarshaller);
+		}
+	}
+
+	private Bible doImport(InputDirectory directory, Unmarshaller unmarshaller) throws Exception {
 		Bible bible = new Bible("UXLC");
-		Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/uxlc.xsd"));
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller unmarshaller = ctx.createUnmarshaller();
-		File indexFile = new File(directory, "TanachIndex.xml");
-		TanachRoot idxdoc = (TanachRoot) unmarshaller.unmarshal(indexFile);
+		Schema schema = ValidateXML.getSchema("/uxlc.xsd");
+		ValidateXML.validateWhileParsing(schema, unmarshaller);
+		TanachRoot idxdoc;
+		try (InputStream in = directory.openStream("TanachIndex.xml")) {
+			idxdoc = (TanachRoot) unmarshaller.unmarshal(new StreamSource(in, directory.getSystemId("TanachIndex.xml")));
+		}
 		for (biblemulticonverter.schema.uxlc.Book idxbook : idxdoc.getTanach().getBook()) {
 			String filename = idxbook.getNames().getFilename();
 			BookID bid = BOOK_ID_MAP.get(filename);
@@ -104,10 +124,13 @@ public class UXLC implements ImportFormat {
 			if (bid.getZefID() <= BookID.BOOK_Deut.getZefID()) {
 				dh = ".DH";
 			}
-			File dataFile = new File(directory, filename + dh + ".xml");
+			String dataFileName = filename + dh + ".xml";
 			System.out.println(bid + "\t" + filename);
-			ValidateXML.validateFileBeforeParsing(schema, dataFile);
-			TanachRoot datadoc = (TanachRoot) unmarshaller.unmarshal(dataFile);
+			ValidateXML.validateFileBeforeParsing(schema, directory, dataFileName);
+			TanachRoot datadoc;
+			try (InputStream in = directory.openStream(dataFileName)) {
+				datadoc = (TanachRoot) unmarshaller.unmarshal(new StreamSource(in, directory.getSystemId(dataFileName)));
+			}
 			if (datadoc.getTanach().getBook().size() != 1)
 				throw new IOException("Incorrect number of books");
 			biblemulticonverter.schema.uxlc.Book databook = datadoc.getTanach().getBook().get(0);
@@ -6,8 +6,6 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.List;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -19,7 +17,6 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -50,6 +47,8 @@ import biblemulticonverter.schema.zefdic1.TEnumDicType;
 import biblemulticonverter.schema.zefdic1.TItem;
 import biblemulticonverter.schema.zefdic1.TParagraph;
 import biblemulticonverter.schema.zefdic1.TStyle;
+import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for Zefania Dictionaries.
@@ -72,10 +71,14 @@ public class ZefDic implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		u.setSchema(getSchema());
-		Dictionary doc = (Dictionary) u.unmarshal(inputFile);
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		Dictionary doc;
+		try {
+			u.setSchema(getSchema());
+			doc = (Dictionary) u.unmarshal(inputFile);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
 		return parseBible(doc);
 	}
 
@@ -264,11 +267,14 @@ public class ZefDic implements RoundtripFormat {
 		Dictionary xmlbible = createXMLBible(bible);
 
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(xmlbible, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(xmlbible, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
 		if (Boolean.getBoolean("biblemulticonverter.indentxml")) {
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
@@ -278,7 +284,7 @@ public class ZefDic implements RoundtripFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/zefDic1.xsd"));
+		return ValidateXML.getSchema("/zefDic1.xsd");
 	}
 
 	protected Dictionary createXMLBible(Bible bible) throws Exception {
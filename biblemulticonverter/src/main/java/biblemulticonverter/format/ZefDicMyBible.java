@@ -8,7 +8,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.namespace.QName;
@@ -43,6 +42,7 @@ import biblemulticonverter.schema.zefdic1.SeeType;
 import biblemulticonverter.schema.zefdic1.TItem;
 import biblemulticonverter.schema.zefdic1.TParagraph;
 import biblemulticonverter.schema.zefdic1.TStyle;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Zefania Dictionary exporter for MyBible
@@ -79,9 +79,12 @@ public class ZefDicMyBible implements ExportFormat {
 		String[] idfields = (exportArgs.length > 1 ? exportArgs[1] : "long,short").split(",");
 		Dictionary xmlbible = createXMLBible(bible, idfields);
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class);
-		Marshaller m = ctx.createMarshaller();
-		m.marshal(xmlbible, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			m.marshal(xmlbible, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		doc.normalize();
 		maskWhitespaceNodes(doc.getDocumentElement());
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
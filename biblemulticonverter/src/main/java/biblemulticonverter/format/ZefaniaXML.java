@@ -1,7 +1,13 @@
 package biblemulticonverter.format;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -14,19 +20,24 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBIntrospector;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -60,6 +71,7 @@ import biblemulticonverter.schema.zef2005.EnumCaptionType;
 import biblemulticonverter.schema.zef2005.EnumModtyp;
 import biblemulticonverter.schema.zef2005.EnumStatus;
 import biblemulticonverter.schema.zef2005.GRAM;
+import biblemulticonverter.schema.zef2005.INFORMATION;
 import biblemulticonverter.schema.zef2005.NOTE;
 import biblemulticonverter.schema.zef2005.ObjectFactory;
 import biblemulticonverter.schema.zef2005.PROLOG;
@@ -69,6 +81,7 @@ import biblemulticonverter.schema.zef2005.VERS;
 import biblemulticonverter.schema.zef2005.XMLBIBLE;
 import biblemulticonverter.schema.zef2005.XREF;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for Zefania XML. This version may skip unknown features
@@ -107,80 +120,222 @@ public class ZefaniaXML implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		XMLBIBLE doc = (XMLBIBLE) u.unmarshal(inputFile);
-		return parseBible(doc);
+		if (Boolean.getBoolean("biblemulticonverter.zefania.jaxbimport")) {
+			Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+			XMLBIBLE doc;
+			try {
+				ValidateXML.validateWhileParsing(getSchema(), u);
+				doc = (XMLBIBLE) u.unmarshal(inputFile);
+			} finally {
+				JAXBContextRegistry.release(ObjectFactory.class, u);
+			}
+			return parseBible(doc);
+		}
+		return parseBibleStreaming(inputFile);
 	}
 
 	protected Bible parseBible(XMLBIBLE doc) throws Exception {
 		Bible result = new Bible(doc.getBiblename());
+		parseMetadata(result, doc.getStatus() == null ? null : doc.getStatus().value(), doc.getVersion(), doc.getRevision() == null ? null : doc.getRevision().toString(), doc.getINFORMATION());
+		Set<String> abbrs = new HashSet<String>();
+		Map<BookID, String> abbrMap = new EnumMap<BookID, String>(BookID.class);
+		List<BIBLEBOOK> nl = doc.getBIBLEBOOK();
+		for (BIBLEBOOK e : nl) {
+			addAbbreviation(abbrMap, abbrs, e.getBnumber().intValue(), e.getBsname());
+		}
+		BookParser parser = new BookParser(result, abbrMap);
+		for (BIBLEBOOK e : nl) {
+			if (!parser.startBook(e.getBnumber().intValue(), e.getBsname(), e.getBname()))
+				continue;
+			for (CHAPTER e2 : e.getCHAPTER()) {
+				parser.parseChapter(e2);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Parse the bible with a {@link XMLStreamReader}, so that only the
+	 * elements of a single chapter are kept in memory at the same time. As
+	 * cross references need the abbreviations of all books, the file is
+	 * scanned for book names first.
+	 */
+	protected Bible parseBibleStreaming(File inputFile) throws Exception {
+		XMLInputFactory xif = XMLInputFactory.newInstance();
+		Set<String> abbrs = new HashSet<String>();
+		Map<BookID, String> abbrMap = new EnumMap<BookID, String>(BookID.class);
+		try (InputStream in = new BufferedInputStream(new FileInputStream(inputFile))) {
+			XMLStreamReader r = xif.createXMLStreamReader(inputFile.toURI().toString(), in);
+			while (r.hasNext()) {
+				if (r.next() == XMLStreamConstants.START_ELEMENT && r.getLocalName().equals("BIBLEBOOK")) {
+					addAbbreviation(abbrMap, abbrs, parseInteger(r.getAttributeValue(null, "bnumber")), r.getAttributeValue(null, "bsname"));
+				}
+			}
+			r.close();
+		}
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		ValidateXML.validateWhileParsing(getSchema(), u);
+		Bible result = null;
+		BookParser parser = null;
+		INFORMATION information = null;
+		String status = null, version = null, revision = null;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(inputFile))) {
+			XMLStreamReader r = xif.createXMLStreamReader(inputFile.toURI().toString(), in);
+			int event = r.next();
+			while (event != XMLStreamConstants.END_DOCUMENT) {
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = r.getLocalName();
+					if (result == null) {
+						result = new Bible(r.getAttributeValue(null, "biblename"));
+						status = r.getAttributeValue(null, "status");
+						if (status != null) {
+							try {
+								status = EnumStatus.fromValue(status.trim()).value();
+							} catch (IllegalArgumentException ex) {
+								status = null;
+							}
+						}
+						version = r.getAttributeValue(null, "version");
+						revision = r.getAttributeValue(null, "revision");
+						if (revision != null) {
+							try {
+								revision = new BigInteger(revision.trim()).toString();
+							} catch (NumberFormatException ex) {
+								System.out.println("WARNING: Skipping invalid revision " + revision);
+								revision = null;
+							}
+						}
+					} else if (name.equals("INFORMATION")) {
+						information = (INFORMATION) JAXBIntrospector.getValue(u.unmarshal(r));
+						event = r.getEventType();
+						continue;
+					} else if (name.equals("BIBLEBOOK")) {
+						if (parser == null) {
+							parseMetadata(result, status, version, revision, information);
+							parser = new BookParser(result, abbrMap);
+						}
+						if (!parser.startBook(parseInteger(r.getAttributeValue(null, "bnumber")), r.getAttributeValue(null, "bsname"), r.getAttributeValue(null, "bname"))) {
+							skipElement(r);
+						}
+					} else if (name.equals("CHAPTER") && parser != null) {
+						parser.parseChapter((CHAPTER) JAXBIntrospector.getValue(u.unmarshal(r)));
+						event = r.getEventType();
+						continue;
+					} else {
+						skipElement(r);
+					}
+				}
+				event = r.next();
+			}
+			r.close();
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
+		if (parser == null)
+			parseMetadata(result, status, version, revision, information);
+		return result;
+	}
+
+	private static int parseInteger(String value) {
+		return new BigInteger(value.trim()).intValue();
+	}
+
+	private static void skipElement(XMLStreamReader r) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int event = r.next();
+			if (event == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (event == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+	}
+
+	private void parseMetadata(Bible result, String status, String version, String revision, INFORMATION information) {
 		MetadataBook metadata = new MetadataBook();
-		if (doc.getStatus() != null) {
-			metadata.setValue(MetadataBookKey.status, doc.getStatus().value());
+		if (status != null) {
+			metadata.setValue(MetadataBookKey.status, status);
 		}
-		if (doc.getVersion() != null) {
-			metadata.setValue(MetadataBookKey.version, doc.getVersion());
+		if (version != null) {
+			metadata.setValue(MetadataBookKey.version, version);
 		}
-		if (doc.getRevision() != null) {
-			metadata.setValue(MetadataBookKey.revision, doc.getRevision().toString());
+		if (revision != null) {
+			metadata.setValue(MetadataBookKey.revision, revision);
 		}
-		for (JAXBElement<?> elem : doc.getINFORMATION().getTitleOrCreatorOrDescription()) {
-			if (elem.getValue() == null)
-				continue;
-			String value = normalize(elem.getValue().toString(), true).trim();
-			if (value.length() != 0)
-				metadata.setValue(elem.getName().getLocalPart(), value);
+		if (information != null) {
+			for (JAXBElement<?> elem : information.getTitleOrCreatorOrDescription()) {
+				if (elem.getValue() == null)
+					continue;
+				String value = normalize(elem.getValue().toString(), true).trim();
+				if (value.length() != 0)
+					metadata.setValue(elem.getName().getLocalPart(), value);
+			}
 		}
 		metadata.finished();
 		if (metadata.getKeys().size() > 0)
 			result.getBooks().add(metadata.getBook());
-		Set<String> abbrs = new HashSet<String>();
-		Set<String> shortnames = new HashSet<String>();
-		Set<String> longnames = new HashSet<String>();
-		Map<BookID, String> abbrMap = new EnumMap<BookID, String>(BookID.class);
-		List<BIBLEBOOK> nl = doc.getBIBLEBOOK();
-		for (BIBLEBOOK e : nl) {
-			String shortname = e.getBsname();
-			int number = e.getBnumber().intValue();
-			BookID bookID;
-			try {
-				bookID = BookID.fromZefId(number);
-			} catch (IllegalArgumentException ex) {
-				continue;
-			}
-			if (shortname == null || shortname.length() == 0)
-				shortname = "_" + bookID.getOsisID();
-			String abbr = shortname.replaceAll("[^A-Z0-9a-zäöü]++", "");
-			if (abbr.length() == 0 || Character.isLowerCase(abbr.charAt(0)))
-				abbr = "X" + abbr;
-			if (abbr.length() == 1)
-				abbr += "x";
-			if (abbrs.contains(abbr)) {
-				for (int i = 2; i < 100; i++) {
-					if (!abbrs.contains(abbr + i)) {
-						abbr = abbr + i;
-						break;
-					}
+	}
+
+	private static void addAbbreviation(Map<BookID, String> abbrMap, Set<String> abbrs, int number, String shortname) {
+		BookID bookID;
+		try {
+			bookID = BookID.fromZefId(number);
+		} catch (IllegalArgumentException ex) {
+			return;
+		}
+		abbrMap.put(bookID, createAbbreviation(abbrs, bookID, shortname));
+	}
+
+	private static String createAbbreviation(Set<String> abbrs, BookID bookID, String shortname) {
+		if (shortname == null || shortname.length() == 0)
+			shortname = "_" + bookID.getOsisID();
+		String abbr = shortname.replaceAll("[^A-Z0-9a-zäöü]++", "");
+		if (abbr.length() == 0 || Character.isLowerCase(abbr.charAt(0)))
+			abbr = "X" + abbr;
+		if (abbr.length() == 1)
+			abbr += "x";
+		if (abbrs.contains(abbr)) {
+			for (int i = 2; i < 100; i++) {
+				if (!abbrs.contains(abbr + i)) {
+					abbr = abbr + i;
+					break;
 				}
 			}
-			abbrs.add(abbr);
-			abbrMap.put(bookID, abbr);
 		}
-		abbrs.clear();
-		EnumMap<BookID, Book> existingBooks = new EnumMap<BookID, Book>(BookID.class);
+		abbrs.add(abbr);
+		return abbr;
+	}
 
-		for (BIBLEBOOK e : nl) {
-			String shortname = e.getBsname();
-			String longname = e.getBname();
-			int number = e.getBnumber().intValue();
+	/**
+	 * Converts books and chapters into the internal model, independent of
+	 * whether the whole document was unmarshalled or the chapters are read one
+	 * by one.
+	 */
+	private class BookParser {
+		private final Bible result;
+		private final Map<BookID, String> abbrMap;
+		private final Set<String> abbrs = new HashSet<String>();
+		private final Set<String> shortnames = new HashSet<String>();
+		private final Set<String> longnames = new HashSet<String>();
+		private final EnumMap<BookID, Book> existingBooks = new EnumMap<BookID, Book>(BookID.class);
+		private final List<Headline> headlineBuffer = new ArrayList<Headline>();
+		private Book book = null;
+		private Chapter chapter = null;
+
+		private BookParser(Bible result, Map<BookID, String> abbrMap) {
+			this.result = result;
+			this.abbrMap = abbrMap;
+		}
+
+		private boolean startBook(int number, String shortname, String longname) {
 			BookID bookID;
 			try {
 				bookID = BookID.fromZefId(number);
 			} catch (IllegalArgumentException ex) {
 				System.out.println("WARNING: Skipping book with unknown id " + number);
-				continue;
+				return false;
 			}
 			if (shortname == null || shortname.length() == 0)
 				shortname = "_" + bookID.getOsisID();
@@ -188,20 +343,7 @@ public class ZefaniaXML implements RoundtripFormat {
 				longname = "_" + bookID.getEnglishName();
 			else
 				longname = longname.replaceAll("  ++", " ").trim();
-			String abbr = shortname.replaceAll("[^A-Z0-9a-zäöü]++", "");
-			if (abbr.length() == 0 || Character.isLowerCase(abbr.charAt(0)))
-				abbr = "X" + abbr;
-			if (abbr.length() == 1)
-				abbr += "x";
-			if (abbrs.contains(abbr)) {
-				for (int i = 2; i < 100; i++) {
-					if (!abbrs.contains(abbr + i)) {
-						abbr = abbr + i;
-						break;
-					}
-				}
-			}
-			abbrs.add(abbr);
+			String abbr = createAbbreviation(abbrs, bookID, shortname);
 			if (shortname.equals("Gen") && longname.equals("Genesis") && bookID == BookID.BOOK_Exod) {
 				System.out.println("WARNING: Book number " + bookID.getZefID() + " has name " + longname);
 				shortname = "Exo";
@@ -231,162 +373,166 @@ public class ZefaniaXML implements RoundtripFormat {
 				}
 			}
 			longnames.add(longname);
-			Book book = existingBooks.get(bookID);
+			book = existingBooks.get(bookID);
 			if (book == null) {
 				book = new Book(abbr, bookID, shortname, longname);
 				existingBooks.put(bookID, book);
 				result.getBooks().add(book);
 			}
-			List<Headline> headlineBuffer = new ArrayList<Headline>();
-			for (CHAPTER e2 : e.getCHAPTER()) {
-				int chapterNumber = e2.getCnumber().intValue();
-				while (book.getChapters().size() < chapterNumber)
-					book.getChapters().add(new Chapter());
-				Chapter chapter = book.getChapters().get(chapterNumber - 1);
-				int existingVerses = chapter.getVerses().size();
-				for (Object e3 : e2.getPROLOGOrCAPTIONOrVERS()) {
-					if (e3 instanceof CAPTION) {
-						CAPTION caption = (CAPTION) e3;
-						int depth;
-						if (caption.getType() == null) {
-							depth = 9;
-						} else {
-							switch (caption.getType()) {
-							case X_H_1:
-								depth = 1;
-								break;
-							case X_H_2:
-								depth = 2;
-								break;
-							case X_H_3:
-								depth = 3;
-								break;
-							case X_H_4:
-								depth = 4;
-								break;
-							case X_H_5:
-								depth = 5;
-								break;
-							case X_H_6:
-								depth = 6;
-								break;
-							default:
-								depth = 9;
-								break;
-							}
-						}
-						int lastDepth = headlineBuffer.size() == 0 ? -1 : headlineBuffer.get(headlineBuffer.size() - 1).getDepth();
-						if (depth <= lastDepth)
-							depth = lastDepth == 9 ? 9 : lastDepth + 1;
-						Headline h = new Headline(depth);
-						if (parseContent(h.getAppendVisitor(), caption.getContent(), abbrMap)) {
-							h.trimWhitespace();
-							h.finished();
-							headlineBuffer.add(h);
-						}
-					} else if (e3 instanceof REMARK) {
-						REMARK remark = (REMARK) e3;
-						int vref = remark.getVref().intValue();
-						int idx = chapter.getVerseIndex("" + vref);
-						if (idx == -1)
-							continue;
-						Verse v = chapter.getVerses().get(idx);
-						if (remark.getContent().size() != 1)
-							continue;
-						String remarkText = normalize((String) remark.getContent().get(0), true).trim();
-						v.getAppendVisitor().visitFootnote(false).visitText(remarkText);
-					} else if (e3 instanceof XREF) {
-						XREF xref = (XREF) e3;
-						int vref = xref.getVref().intValue();
-						int idx = chapter.getVerseIndex("" + vref);
-						if (idx == -1)
-							continue;
-						Verse v = chapter.getVerses().get(idx);
-						Visitor<RuntimeException> footnoteVisitor = v.getAppendVisitor().visitFootnote(false);
-						boolean first = true;
-						for (String mscope : xref.getMscope().split(" ")) {
-							Matcher m = Utils.compilePattern("([0-9]+);([0-9]+)(-[0-9]+)?;([0-9]+)(-[0-9]+)?").matcher(mscope);
-							if (!m.matches())
-								continue;
-							BookID xrefBookID = BookID.fromZefId(Integer.parseInt(m.group(1)));
-							int xrefChapter = Integer.parseInt(m.group(2)), endChapter = xrefChapter;
-							if (m.group(3) != null)
-								endChapter = Integer.parseInt(m.group(3).substring(1));
-							String verse = m.group(4);
-							String endVerse = m.group(5);
-							if (endVerse == null)
-								endVerse = verse;
-							else
-								endVerse = endVerse.substring(1);
-							if (verse.equals("0") || endVerse.equals("0"))
-								continue;
-							if (xrefChapter == endChapter && Integer.parseInt(verse) > Integer.parseInt(endVerse))
-								continue;
-							String xrefAbbr = abbrMap.get(xrefBookID);
-							if (xrefAbbr == null)
-								xrefAbbr = xrefBookID.getOsisID();
-							if (first)
-								first = false;
-							else
-								footnoteVisitor.visitText(" ");
-							footnoteVisitor.visitCrossReference(xrefAbbr, xrefBookID, xrefChapter, verse, xrefAbbr, xrefBookID, endChapter, endVerse).visitText(xrefAbbr + " " + xrefChapter + ":" + verse);
-						}
-						if (first)
-							visitEmptyMarker(footnoteVisitor);
-					} else if (e3 instanceof PROLOG) {
-						PROLOG prolog = (PROLOG) e3;
-						if (chapter.getProlog() != null)
-							continue;
-						FormattedText prologText = new FormattedText();
-						if (parseContent(prologText.getAppendVisitor(), prolog.getContent(), abbrMap)) {
-							prologText.trimWhitespace();
-							prologText.finished();
-							chapter.setProlog(prologText);
-						}
-					} else if (e3 instanceof VERS) {
-						VERS vers = (VERS) e3;
-						int vnumber = vers.getVnumber() == null ? 0 : vers.getVnumber().intValue();
-						if (vnumber == 0)
-							vnumber = chapter.getVerses().size() + 1;
-						String verseNumber = vnumber + (vers.getAix() == null ? "" : vers.getAix());
-						String infix = "";
-						while (chapter.getVerseIndex(verseNumber) != -1) {
-							for (char ch = 'a'; ch <= 'z'; ch++) {
-								if (chapter.getVerseIndex(vnumber + infix + ch) == -1) {
-									verseNumber = vnumber + infix + ch;
-									break;
-								}
-							}
-							infix += "-";
-						}
-						Verse verse = new Verse(verseNumber);
-						Visitor<RuntimeException> visitor = verse.getAppendVisitor();
-						boolean contentFound = false;
-						if (headlineBuffer.size() > 0) {
-							for (Headline h : headlineBuffer) {
-								h.accept(visitor.visitHeadline(h.getDepth()));
-							}
-							headlineBuffer.clear();
-							contentFound = true;
-						}
-						contentFound |= parseContent(visitor, vers.getContent(), abbrMap);
-						if (contentFound) {
-							verse.trimWhitespace();
-							chapter.getVerses().add(verse);
-						}
+			headlineBuffer.clear();
+			return true;
+		}
+
+		private void parseChapter(CHAPTER e2) throws IOException {
+			int chapterNumber = e2.getCnumber().intValue();
+			while (book.getChapters().size() < chapterNumber)
+				book.getChapters().add(new Chapter());
+			chapter = book.getChapters().get(chapterNumber - 1);
+			int existingVerses = chapter.getVerses().size();
+			for (Object e3 : e2.getPROLOGOrCAPTIONOrVERS()) {
+				parseChapterElement(e3);
+			}
+			for (Verse v : chapter.getVerses()) {
+				if (existingVerses > 0) {
+					existingVerses--;
+					continue;
+				}
+				v.finished();
+			}
+		}
+
+		private void parseChapterElement(Object e3) throws IOException {
+			if (e3 instanceof CAPTION) {
+				CAPTION caption = (CAPTION) e3;
+				int depth;
+				if (caption.getType() == null) {
+					depth = 9;
+				} else {
+					switch (caption.getType()) {
+					case X_H_1:
+						depth = 1;
+						break;
+					case X_H_2:
+						depth = 2;
+						break;
+					case X_H_3:
+						depth = 3;
+						break;
+					case X_H_4:
+						depth = 4;
+						break;
+					case X_H_5:
+						depth = 5;
+						break;
+					case X_H_6:
+						depth = 6;
+						break;
+					default:
+						depth = 9;
+						break;
 					}
 				}
-				for (Verse v : chapter.getVerses()) {
-					if (existingVerses > 0) {
-						existingVerses--;
+				int lastDepth = headlineBuffer.size() == 0 ? -1 : headlineBuffer.get(headlineBuffer.size() - 1).getDepth();
+				if (depth <= lastDepth)
+					depth = lastDepth == 9 ? 9 : lastDepth + 1;
+				Headline h = new Headline(depth);
+				if (parseContent(h.getAppendVisitor(), caption.getContent(), abbrMap)) {
+					h.trimWhitespace();
+					h.finished();
+					headlineBuffer.add(h);
+				}
+			} else if (e3 instanceof REMARK) {
+				REMARK remark = (REMARK) e3;
+				int vref = remark.getVref().intValue();
+				int idx = chapter.getVerseIndex("" + vref);
+				if (idx == -1)
+					return;
+				Verse v = chapter.getVerses().get(idx);
+				if (remark.getContent().size() != 1)
+					return;
+				String remarkText = normalize((String) remark.getContent().get(0), true).trim();
+				v.getAppendVisitor().visitFootnote(false).visitText(remarkText);
+			} else if (e3 instanceof XREF) {
+				XREF xref = (XREF) e3;
+				int vref = xref.getVref().intValue();
+				int idx = chapter.getVerseIndex("" + vref);
+				if (idx == -1)
+					return;
+				Verse v = chapter.getVerses().get(idx);
+				Visitor<RuntimeException> footnoteVisitor = v.getAppendVisitor().visitFootnote(false);
+				boolean first = true;
+				for (String mscope : xref.getMscope().split(" ")) {
+					Matcher m = Utils.compilePattern("([0-9]+);([0-9]+)(-[0-9]+)?;([0-9]+)(-[0-9]+)?").matcher(mscope);
+					if (!m.matches())
 						continue;
+					BookID xrefBookID = BookID.fromZefId(Integer.parseInt(m.group(1)));
+					int xrefChapter = Integer.parseInt(m.group(2)), endChapter = xrefChapter;
+					if (m.group(3) != null)
+						endChapter = Integer.parseInt(m.group(3).substring(1));
+					String verse = m.group(4);
+					String endVerse = m.group(5);
+					if (endVerse == null)
+						endVerse = verse;
+					else
+						endVerse = endVerse.substring(1);
+					if (verse.equals("0") || endVerse.equals("0"))
+						continue;
+					if (xrefChapter == endChapter && Integer.parseInt(verse) > Integer.parseInt(endVerse))
+						continue;
+					String xrefAbbr = abbrMap.get(xrefBookID);
+					if (xrefAbbr == null)
+						xrefAbbr = xrefBookID.getOsisID();
+					if (first)
+						first = false;
+					else
+						footnoteVisitor.visitText(" ");
+					footnoteVisitor.visitCrossReference(xrefAbbr, xrefBookID, xrefChapter, verse, xrefAbbr, xrefBookID, endChapter, endVerse).visitText(xrefAbbr + " " + xrefChapter + ":" + verse);
+				}
+				if (first)
+					visitEmptyMarker(footnoteVisitor);
+			} else if (e3 instanceof PROLOG) {
+				PROLOG prolog = (PROLOG) e3;
+				if (chapter.getProlog() != null)
+					return;
+				FormattedText prologText = new FormattedText();
+				if (parseContent(prologText.getAppendVisitor(), prolog.getContent(), abbrMap)) {
+					prologText.trimWhitespace();
+					prologText.finished();
+					chapter.setProlog(prologText);
+				}
+			} else if (e3 instanceof VERS) {
+				VERS vers = (VERS) e3;
+				int vnumber = vers.getVnumber() == null ? 0 : vers.getVnumber().intValue();
+				if (vnumber == 0)
+					vnumber = chapter.getVerses().size() + 1;
+				String verseNumber = vnumber + (vers.getAix() == null ? "" : vers.getAix());
+				String infix = "";
+				while (chapter.getVerseIndex(verseNumber) != -1) {
+					for (char ch = 'a'; ch <= 'z'; ch++) {
+						if (chapter.getVerseIndex(vnumber + infix + ch) == -1) {
+							verseNumber = vnumber + infix + ch;
+							break;
+						}
 					}
-					v.finished();
+					infix += "-";
+				}
+				Verse verse = new Verse(verseNumber);
+				Visitor<RuntimeException> visitor = verse.getAppendVisitor();
+				boolean contentFound = false;
+				if (headlineBuffer.size() > 0) {
+					for (Headline h : headlineBuffer) {
+						h.accept(visitor.visitHeadline(h.getDepth()));
+					}
+					headlineBuffer.clear();
+					contentFound = true;
+				}
+				contentFound |= parseContent(visitor, vers.getContent(), abbrMap);
+				if (contentFound) {
+					verse.trimWhitespace();
+					chapter.getVerses().add(verse);
 				}
 			}
 		}
-
-		return result;
 	}
 
 	private boolean parseContent(Visitor<RuntimeException> visitor, List<Object> contentList, Map<BookID, String> abbrMap) throws IOException {
@@ -624,30 +770,76 @@ public class ZefaniaXML implements RoundtripFormat {
 
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
-		File file = new File(exportArgs[0]);
-		XMLBIBLE xmlbible = createXMLBible(bible);
-		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			doExport(bible, new File(exportArgs[0]), m);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
+	}
+
+	private void doExport(Bible bible, File file, Marshaller m) throws Exception {
 		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
 			m.setSchema(getSchema());
-		m.marshal(xmlbible, doc);
-		doc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
-		doc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "zef2005.xsd");
-		Transformer transformer = TransformerFactory.newInstance().newTransformer();
 		if (Boolean.getBoolean("biblemulticonverter.indentxml")) {
+			XMLBIBLE xmlbible = createXMLBible(bible);
+			final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+			m.marshal(xmlbible, doc);
+			doc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
+			doc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "zef2005.xsd");
+			Transformer transformer = TransformerFactory.newInstance().newTransformer();
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
 			transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "2");
+			transformer.transform(new DOMSource(doc), new StreamResult(file));
+			return;
+		}
+		// write the root element directly and marshal one book at a time, so
+		// that only the JAXB tree of a single book is in memory
+		ObjectFactory of = new ObjectFactory();
+		XMLBIBLE header = createXMLBibleHeader(of, bible);
+		m.setProperty(Marshaller.JAXB_FRAGMENT, true);
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+			XMLStreamWriter xsw = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+			xsw.writeStartDocument("UTF-8", "1.0");
+			xsw.writeStartElement("XMLBIBLE");
+			xsw.writeNamespace("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI);
+			xsw.writeAttribute("biblename", header.getBiblename());
+			if (header.getRevision() != null)
+				xsw.writeAttribute("revision", header.getRevision().toString());
+			if (header.getStatus() != null)
+				xsw.writeAttribute("status", header.getStatus().value());
+			xsw.writeAttribute("type", header.getType().value());
+			if (header.getVersion() != null)
+				xsw.writeAttribute("version", header.getVersion());
+			xsw.writeAttribute("xsi", XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI, "noNamespaceSchemaLocation", "zef2005.xsd");
+			m.marshal(header.getINFORMATION(), xsw);
+			for (Book bk : bible.getBooks()) {
+				BIBLEBOOK bb = createBibleBook(of, bk);
+				if (bb != null)
+					m.marshal(bb, xsw);
+			}
+			xsw.writeEndElement();
+			xsw.writeEndDocument();
+			xsw.close();
 		}
-		transformer.transform(new DOMSource(doc), new StreamResult(file));
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/zef2005.xsd"));
+		return ValidateXML.getSchema("/zef2005.xsd");
 	}
 
 	protected XMLBIBLE createXMLBible(Bible bible) throws Exception {
 		ObjectFactory of = new ObjectFactory();
+		XMLBIBLE doc = createXMLBibleHeader(of, bible);
+		for (Book bk : bible.getBooks()) {
+			BIBLEBOOK bb = createBibleBook(of, bk);
+			if (bb != null)
+				doc.getBIBLEBOOK().add(bb);
+		}
+		return doc;
+	}
+
+	private XMLBIBLE createXMLBibleHeader(ObjectFactory of, Bible bible) {
 		XMLBIBLE doc = of.createXMLBIBLE();
 		doc.setBiblename(bible.getName());
 		doc.setType(EnumModtyp.X_BIBLE);
@@ -670,69 +862,69 @@ public class ZefaniaXML implements RoundtripFormat {
 			}
 		}
 		doc.getINFORMATION().getTitleOrCreatorOrDescription().add(new JAXBElement<String>(new QName("format"), String.class, "Zefania XML Bible Markup Language"));
+		return doc;
+	}
 
-		for (Book bk : bible.getBooks()) {
-			if (bk.getId().equals(BookID.METADATA))
-				continue;
-			if (bk.getId().getZefID() <= 0) {
-				System.out.println("WARNING: Unable to export book " + bk.getAbbr());
+	private BIBLEBOOK createBibleBook(ObjectFactory of, Book bk) throws IOException {
+		if (bk.getId().equals(BookID.METADATA))
+			return null;
+		if (bk.getId().getZefID() <= 0) {
+			System.out.println("WARNING: Unable to export book " + bk.getAbbr());
+			return null;
+		}
+		BIBLEBOOK bb = of.createBIBLEBOOK();
+		bb.setBnumber(BigInteger.valueOf(bk.getId().getZefID()));
+		bb.setBsname(bk.getShortName());
+		bb.setBname(bk.getLongName());
+
+		int cnumber = 0;
+		for (Chapter ccc : bk.getChapters()) {
+			cnumber++;
+			if (ccc.getVerses().size() == 0)
 				continue;
+			CHAPTER cc = of.createCHAPTER();
+			cc.setCnumber(BigInteger.valueOf(cnumber));
+			bb.getCHAPTER().add(cc);
+
+			if (ccc.getProlog() != null) {
+				PROLOG prolog = of.createPROLOG();
+				prolog.setVref(BigInteger.ONE);
+				ccc.getProlog().accept(new CreateContentVisitor(of, prolog.getContent(), null));
+				cc.getPROLOGOrCAPTIONOrVERS().add(prolog);
 			}
-			BIBLEBOOK bb = of.createBIBLEBOOK();
-			bb.setBnumber(BigInteger.valueOf(bk.getId().getZefID()));
-			bb.setBsname(bk.getShortName());
-			bb.setBname(bk.getLongName());
-
-			int cnumber = 0;
-			for (Chapter ccc : bk.getChapters()) {
-				cnumber++;
-				if (ccc.getVerses().size() == 0)
-					continue;
-				CHAPTER cc = of.createCHAPTER();
-				cc.setCnumber(BigInteger.valueOf(cnumber));
-				bb.getCHAPTER().add(cc);
-
-				if (ccc.getProlog() != null) {
-					PROLOG prolog = of.createPROLOG();
-					prolog.setVref(BigInteger.ONE);
-					ccc.getProlog().accept(new CreateContentVisitor(of, prolog.getContent(), null));
-					cc.getPROLOGOrCAPTIONOrVERS().add(prolog);
-				}
 
-				for (VirtualVerse vv : ccc.createVirtualVerses()) {
-					for (Headline h : vv.getHeadlines()) {
-						CAPTION caption = of.createCAPTION();
-						caption.setVref(BigInteger.valueOf(vv.getNumber()));
-						h.accept(new CreateContentVisitor(of, caption.getContent(), null));
-						EnumCaptionType[] types = new EnumCaptionType[] {
-								null,
-								EnumCaptionType.X_H_1, EnumCaptionType.X_H_2, EnumCaptionType.X_H_3,
-								EnumCaptionType.X_H_4, EnumCaptionType.X_H_5, EnumCaptionType.X_H_6,
-								null, null, null
-						};
-						caption.setType(types[h.getDepth()]);
-						cc.getPROLOGOrCAPTIONOrVERS().add(caption);
-					}
-					VERS vers = of.createVERS();
-					vers.setVnumber(BigInteger.valueOf(vv.getNumber()));
-					boolean firstVerse = true;
-					for (Verse v : vv.getVerses()) {
-						if (!firstVerse || !v.getNumber().equals("" + vv.getNumber())) {
-							STYLE verseNum = of.createSTYLE();
-							verseNum.setCss("font-weight: bold");
-							verseNum.getContent().add("(" + v.getNumber() + ")");
-							vers.getContent().add(new JAXBElement<STYLE>(new QName("STYLE"), STYLE.class, verseNum));
-							vers.getContent().add(" ");
-						}
-						v.accept(new CreateContentVisitor(of, vers.getContent(), vers));
-						firstVerse = false;
+			for (VirtualVerse vv : ccc.createVirtualVerses()) {
+				for (Headline h : vv.getHeadlines()) {
+					CAPTION caption = of.createCAPTION();
+					caption.setVref(BigInteger.valueOf(vv.getNumber()));
+					h.accept(new CreateContentVisitor(of, caption.getContent(), null));
+					EnumCaptionType[] types = new EnumCaptionType[] {
+							null,
+							EnumCaptionType.X_H_1, EnumCaptionType.X_H_2, EnumCaptionType.X_H_3,
+							EnumCaptionType.X_H_4, EnumCaptionType.X_H_5, EnumCaptionType.X_H_6,
+							null, null, null
+					};
+					caption.setType(types[h.getDepth()]);
+					cc.getPROLOGOrCAPTIONOrVERS().add(caption);
+				}
+				VERS vers = of.createVERS();
+				vers.setVnumber(BigInteger.valueOf(vv.getNumber()));
+				boolean firstVerse = true;
+				for (Verse v : vv.getVerses()) {
+					if (!firstVerse || !v.getNumber().equals("" + vv.getNumber())) {
+						STYLE verseNum = of.createSTYLE();
+						verseNum.setCss("font-weight: bold");
+						verseNum.getContent().add("(" + v.getNumber() + ")");
+						vers.getContent().add(new JAXBElement<STYLE>(new QName("STYLE"), STYLE.class, verseNum));
+						vers.getContent().add(" ");
 					}
-					cc.getPROLOGOrCAPTIONOrVERS().add(vers);
+					v.accept(new CreateContentVisitor(of, vers.getContent(), vers));
+					firstVerse = false;
 				}
+				cc.getPROLOGOrCAPTIONOrVERS().add(vers);
 			}
-			doc.getBIBLEBOOK().add(bb);
 		}
-		return doc;
+		return bb;
 	}
 
 	@Override
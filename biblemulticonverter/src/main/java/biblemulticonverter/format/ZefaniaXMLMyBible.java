@@ -7,8 +7,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.transform.OutputKeys;
@@ -55,6 +55,7 @@ import biblemulticonverter.schema.zef2005.STYLE;
 import biblemulticonverter.schema.zef2005.VERS;
 import biblemulticonverter.schema.zef2005.XMLBIBLE;
 import biblemulticonverter.schema.zef2005.XREF;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 public class ZefaniaXMLMyBible implements ExportFormat {
 
@@ -691,7 +692,12 @@ public class ZefaniaXMLMyBible implements ExportFormat {
 		}
 
 		final Document docc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext.newInstance(ObjectFactory.class.getPackage().getName()).createMarshaller().marshal(doc, docc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			m.marshal(doc, docc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		docc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
 		docc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "zef2005.xsd");
 		docc.normalize();
@@ -12,8 +12,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -25,7 +23,6 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -69,6 +66,7 @@ import biblemulticonverter.schema.zef2005.VERS;
 import biblemulticonverter.schema.zef2005.XMLBIBLE;
 import biblemulticonverter.schema.zef2005.XREF;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for Zefania XML. This version will reject Zefania XML
@@ -94,11 +92,16 @@ public class ZefaniaXMLRoundtrip implements RoundtripFormat {
 
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		u.setSchema(getSchema());
-		XMLBIBLE doc = (XMLBIBLE) u.unmarshal(inputFile);
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		XMLBIBLE doc;
+		try {
+			u.setSchema(getSchema());
+			doc = (XMLBIBLE) u.unmarshal(inputFile);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
 		return parseBible(doc);
 	}
 
@@ -567,11 +570,14 @@ public class ZefaniaXMLRoundtrip implements RoundtripFormat {
 		File file = new File(exportArgs[0]);
 		XMLBIBLE xmlbible = createXMLBible(bible);
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(xmlbible, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(xmlbible, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		doc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
 		doc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "zef2005.xsd");
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
@@ -583,7 +589,7 @@ public class ZefaniaXMLRoundtrip implements RoundtripFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/zef2005.xsd"));
+		return ValidateXML.getSchema("/zef2005.xsd");
 	}
 
 	protected XMLBIBLE createXMLBible(Bible bible) throws Exception {
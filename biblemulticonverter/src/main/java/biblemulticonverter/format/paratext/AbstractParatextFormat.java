@@ -1,8 +1,10 @@
 package biblemulticonverter.format.paratext;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
@@ -17,6 +19,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -48,6 +51,7 @@ import biblemulticonverter.format.paratext.ParatextBook.ParatextBookContentPart;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextBookContentVisitor;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextCharacterContentContainer;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextID;
+import biblemulticonverter.format.paratext.ParatextBook.SidebarStart;
 import biblemulticonverter.format.paratext.ParatextBook.TableCellStart;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.AutoClosingFormatting;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.AutoClosingFormattingKind;
@@ -63,6 +67,8 @@ import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
 import biblemulticonverter.format.paratext.utilities.LocationParser;
 import biblemulticonverter.format.paratext.utilities.StandardExportWarningMessages;
+import biblemulticonverter.utilities.InputDirectory;
+import biblemulticonverter.utilities.ParallelTasks;
 
 /**
  * Base class for Paratext formats (USFM/USFX/USX).
@@ -113,6 +119,37 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 		this.warningLogger = new StandardExportWarningMessages(formatName);
 	}
 
+	/**
+	 * Handles books in streaming mode.
+	 */
+	public static interface BookHandler {
+		public void handle(ParatextBook book) throws Exception;
+
+		/**
+		 * Called on the importing thread after a book has been handled, in
+		 * book order, even if books are handled on multiple threads. When this
+		 * is called, all books before this one have been handled, so stopping
+		 * here gives the same result regardless of the number of threads.
+		 */
+		public default void handledInOrder(ParatextID id) throws Exception {
+		}
+
+		/**
+		 * Called once after all books have been handled, or after handling
+		 * has been stopped by a {@link StopStreamingException}.
+		 */
+		public default void finish() throws Exception {
+		}
+	}
+
+	/**
+	 * Thrown by a {@link BookHandler} to stop handling books early. Books
+	 * that have not been imported yet are skipped, and the handler is
+	 * finished as usual.
+	 */
+	public static class StopStreamingException extends Exception {
+	}
+
 	@Override
 	public Bible doImport(File inputFile) throws Exception {
 		List<ParatextBook> books = doImportBooks(inputFile);
@@ -130,15 +167,40 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 			bookAbbrs.put(book.getId(), abbr);
 		}
 		Bible bible = new Bible((bibleName == null || bibleName.isEmpty()) ? "Imported Bible" : bibleName.trim());
-		List<Book> sidebars = new ArrayList<>();
+		List<Callable<List<Book>>> tasks = new ArrayList<>();
+		int sidebarCount = 0;
 		for (ParatextBook book : books) {
-			bible.getBooks().add(importParatextBook(book, bookAbbrs, sidebars));
+			final int sidebarOffset = sidebarCount;
+			tasks.add(() -> {
+				List<Book> bookSidebars = new ArrayList<>();
+				Book bk = importParatextBook(book, bookAbbrs, bookSidebars, sidebarOffset);
+				bookSidebars.add(0, bk);
+				return bookSidebars;
+			});
+			for (ParatextBookContentPart part : book.getContent()) {
+				if (part instanceof SidebarStart)
+					sidebarCount++;
+			}
 		}
+		List<Book> sidebars = new ArrayList<>();
+		ParallelTasks.runInOrder(tasks, result -> {
+			bible.getBooks().add(result.get(0));
+			sidebars.addAll(result.subList(1, result.size()));
+		});
 		bible.getBooks().addAll(sidebars);
 		return bible;
 	}
 
 	protected final Book importParatextBook(ParatextBook book, Map<ParatextID, String> bookAbbrs, List<Book> sidebars) {
+		return importParatextBook(book, bookAbbrs, sidebars, 0);
+	}
+
+	/**
+	 * Convert a single book. Sidebars are added to the given list (unless it
+	 * is {@code null}) and numbered after the given number of sidebars of
+	 * previous books, so that books can be converted independently.
+	 */
+	protected final Book importParatextBook(ParatextBook book, Map<ParatextID, String> bookAbbrs, List<Book> sidebars, int sidebarOffset) {
 		String longName = book.getAttributes().get("toc1");
 		if (longName == null || longName.isEmpty())
 			longName = book.getId().getEnglishName();
@@ -326,7 +388,7 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 
 			@Override
 			public void visitSidebarStart(String[] categories) throws RuntimeException {
-				int snum = sidebars == null ? 1 : sidebars.size() + 1;
+				int snum = sidebars == null ? 1 : sidebarOffset + sidebars.size() + 1;
 				Book sidebar = new Book("Sb"+snum, BookID.DICTIONARY_ENTRY, "Sidebar "+snum, "Sidebar "+snum);
 				ctx.startSidebar(sidebar);
 				if (sidebars == null) {
@@ -438,36 +500,117 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 
 	public final List<ParatextBook> doImportBooks(File inputFile) throws Exception {
 		List<ParatextBook> result = doImportAllBooks(inputFile);
-		String keepParts = System.getProperty("biblemulticonverter.paratext.keepparts", null);
-		if (keepParts != null) {
-			EnumSet<KeepIf> partsToKeep = EnumSet.noneOf(KeepIf.class);
-			for (String flag : keepParts.split("[^A-Za-z]+")) {
-				partsToKeep.add(KeepIf.valueOf(flag.toUpperCase()));
-			}
-			for (int i = 0; i < result.size(); i++) {
-				ParatextBook book = result.get(i);
-				boolean keep = true;
-				if (book.getId().getId().isDeuterocanonical()) {
-					keep = partsToKeep.contains(KeepIf.DC);
-				} else if (book.getId().getId().isNT()) {
-					keep = partsToKeep.contains(KeepIf.NT);
-				} else if (book.getId().getId().getZefID() > 0) {
-					keep = partsToKeep.contains(KeepIf.OT);
-				}
-				if (!keep) {
-					result.remove(i);
-					i--;
+		EnumSet<KeepIf> partsToKeep = getPartsToKeep();
+		if (partsToKeep != null) {
+			result.removeIf(book -> !filterBook(book, partsToKeep));
+		}
+		return result;
+	}
+
+	/**
+	 * Import the books one by one and pass each of them to the handler, so that
+	 * only the books currently being handled are kept in memory. Split books
+	 * are merged and books are handled in book order, like in
+	 * {@link #doImportBooks(File)}; to make this possible, the IDs of all books
+	 * are determined by {@link #peekBookID(InputDirectory, String)} first.
+	 * Files are then read in book order, which is cheap even for compressed
+	 * archives, as {@link InputDirectory} reads archive entries by position.
+	 * <p>
+	 * The handler is called on multiple threads at the same time, unless the
+	 * number of threads is 1. Only supported if {@link #supportsStreaming()}
+	 * returns {@code true}.
+	 */
+	public final void doImportBooksStreaming(File inputFile, BookHandler handler) throws Exception {
+		if (!supportsStreaming())
+			throw new UnsupportedOperationException(formatName + " does not support streaming");
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			loadDirectoryProperties(directory);
+			EnumSet<KeepIf> partsToKeep = getPartsToKeep();
+			Map<ParatextID, List<String>> filesPerID = new EnumMap<>(ParatextID.class);
+			List<String> otherFiles = new ArrayList<>();
+			for (String fileName : directory.list()) {
+				if (fileName.equals("biblemulticonverter.properties"))
 					continue;
+				ParatextID id = peekBookID(directory, fileName);
+				if (id != null) {
+					filesPerID.computeIfAbsent(id, x -> new ArrayList<>()).add(fileName);
+				} else {
+					otherFiles.add(fileName);
 				}
-				for (int j = 0; j < book.getContent().size(); j++) {
-					ParatextBookContentPart part = book.getContent().get(i);
-					if (part instanceof ParatextCharacterContent) {
-						filterContents(((ParatextCharacterContent) part).getContent(), partsToKeep);
+			}
+			List<List<String>> fileGroups = new ArrayList<>();
+			for (String fileName : otherFiles) {
+				fileGroups.add(Arrays.asList(fileName));
+			}
+			filesPerID.keySet().stream().sorted(getBookOrder()).forEach(id -> fileGroups.add(filesPerID.get(id)));
+			List<Callable<ParatextID>> tasks = new ArrayList<>();
+			for (List<String> fileNames : fileGroups) {
+				tasks.add(() -> {
+					List<ParatextBook> booksPerID = new ArrayList<>();
+					for (String fileName : fileNames) {
+						ParatextBook book;
+						try {
+							book = doImportBook(directory, fileName);
+						} catch (Exception ex) {
+							throw new RuntimeException("Failed parsing " + fileName, ex);
+						}
+						if (book != null)
+							booksPerID.add(book);
 					}
-				}
+					if (!booksPerID.isEmpty()) {
+						ParatextBook book = mergeSplitBooks(booksPerID);
+						if (partsToKeep == null || filterBook(book, partsToKeep)) {
+							handler.handle(book);
+							return book.getId();
+						}
+					}
+					return null;
+				});
+			}
+			try {
+				ParallelTasks.runInOrder(tasks, id -> {
+					if (id != null)
+						handler.handledInOrder(id);
+				});
+			} catch (StopStreamingException ex) {
+				// remaining books have been cancelled
 			}
 		}
-		return result;
+		handler.finish();
+	}
+
+	private static EnumSet<KeepIf> getPartsToKeep() {
+		String keepParts = System.getProperty("biblemulticonverter.paratext.keepparts", null);
+		if (keepParts == null)
+			return null;
+		EnumSet<KeepIf> partsToKeep = EnumSet.noneOf(KeepIf.class);
+		for (String flag : keepParts.split("[^A-Za-z]+")) {
+			partsToKeep.add(KeepIf.valueOf(flag.toUpperCase()));
+		}
+		return partsToKeep;
+	}
+
+	/**
+	 * Remove conditional parts that should not be kept from the book. Returns
+	 * {@code false} if the whole book should not be kept.
+	 */
+	private boolean filterBook(ParatextBook book, EnumSet<KeepIf> partsToKeep) {
+		boolean keep = true;
+		if (book.getId().getId().isDeuterocanonical()) {
+			keep = partsToKeep.contains(KeepIf.DC);
+		} else if (book.getId().getId().isNT()) {
+			keep = partsToKeep.contains(KeepIf.NT);
+		} else if (book.getId().getId().getZefID() > 0) {
+			keep = partsToKeep.contains(KeepIf.OT);
+		}
+		if (!keep)
+			return false;
+		for (ParatextBookContentPart part : book.getContent()) {
+			if (part instanceof ParatextCharacterContent) {
+				filterContents(((ParatextCharacterContent) part).getContent(), partsToKeep);
+			}
+		}
+		return true;
 	}
 
 	private void filterContents(List<ParatextCharacterContentPart> parts, EnumSet<KeepIf> partsToKeep) {
@@ -489,48 +632,77 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 
 	protected List<ParatextBook> doImportAllBooks(File inputFile) throws Exception {
 		List<ParatextBook> result = new ArrayList<ParatextBook>();
-		if (!inputFile.isDirectory())
-			throw new IOException("Not a directory: " + inputFile);
-		File propertyFile = new File(inputFile, "biblemulticonverter.properties");
-		if (propertyFile.exists()) {
-			Properties props = new Properties();
-			try (FileInputStream fis = new FileInputStream(propertyFile)) {
-				props.load(fis);
-			}
-			for (String name : props.stringPropertyNames()) {
-				if (System.getProperty(name) == null)
-					System.setProperty(name, props.getProperty(name));
-			}
-		}
 		Map<ParatextID, List<ParatextBook>> seenBooks = new EnumMap<>(ParatextID.class);
-		for (File file : inputFile.listFiles()) {
-			if (file.getName().equals("biblemulticonverter.properties"))
-				continue;
-			try {
-				ParatextBook book = doImportBook(file);
+		try (InputDirectory directory = InputDirectory.open(inputFile)) {
+			loadDirectoryProperties(directory);
+			List<Callable<ParatextBook>> tasks = new ArrayList<>();
+			for (String fileName : directory.list()) {
+				if (fileName.equals("biblemulticonverter.properties"))
+					continue;
+				tasks.add(() -> {
+					try {
+						return doImportBook(directory, fileName);
+					} catch (Exception ex) {
+						throw new RuntimeException("Failed parsing " + fileName, ex);
+					}
+				});
+			}
+			ParallelTasks.runInOrder(tasks, book -> {
 				if (book != null) {
 					seenBooks.computeIfAbsent(book.getId(), x -> new ArrayList<>()).add(book);
 					result.add(book);
 				}
-			} catch (Exception ex) {
-				throw new RuntimeException("Failed parsing " + file.getName(), ex);
-			}
+			});
 		}
 		for (List<ParatextBook> booksPerID : seenBooks.values()) {
-			if (booksPerID.size() > 1) {
-				Map<ParatextBook, Integer> firstChap = new HashMap<>();
-				for (ParatextBook book : booksPerID) {
-					firstChap.put(book, book.getContent().stream().filter(x -> x instanceof ChapterStart).mapToInt(x -> ((ChapterStart) x).getChapter()).min().orElse(0));
-				}
-				booksPerID.sort(Comparator.comparing(bk -> firstChap.get(bk)));
-				ParatextBook firstBook = booksPerID.remove(0);
-				for (ParatextBook nextBook : booksPerID) {
+			ParatextBook firstBook = mergeSplitBooks(booksPerID);
+			for (ParatextBook nextBook : booksPerID) {
+				if (nextBook != firstBook)
 					result.remove(nextBook);
-					firstBook.getContent().addAll(nextBook.getContent());
-					firstBook.getAttributes().putAll(nextBook.getAttributes());
-				}
 			}
 		}
+		result.sort(Comparator.comparing(ParatextBook::getId, getBookOrder()));
+		return result;
+	}
+
+	private static void loadDirectoryProperties(InputDirectory directory) throws IOException {
+		if (directory.exists("biblemulticonverter.properties")) {
+			Properties props = new Properties();
+			try (InputStream in = directory.openStream("biblemulticonverter.properties")) {
+				props.load(in);
+			}
+			for (String name : props.stringPropertyNames()) {
+				if (System.getProperty(name) == null)
+					System.setProperty(name, props.getProperty(name));
+			}
+		}
+	}
+
+	/**
+	 * Merge books with the same ID (which were split into multiple files) into
+	 * the book that contains the first chapter, and return it.
+	 */
+	private static ParatextBook mergeSplitBooks(List<ParatextBook> booksPerID) {
+		if (booksPerID.size() > 1) {
+			Map<ParatextBook, Integer> firstChap = new HashMap<>();
+			for (ParatextBook book : booksPerID) {
+				firstChap.put(book, book.getContent().stream().filter(x -> x instanceof ChapterStart).mapToInt(x -> ((ChapterStart) x).getChapter()).min().orElse(0));
+			}
+			booksPerID.sort(Comparator.comparing(bk -> firstChap.get(bk)));
+			ParatextBook firstBook = booksPerID.get(0);
+			for (ParatextBook nextBook : booksPerID.subList(1, booksPerID.size())) {
+				firstBook.getContent().addAll(nextBook.getContent());
+				firstBook.getAttributes().putAll(nextBook.getAttributes());
+			}
+		}
+		return booksPerID.get(0);
+	}
+
+	/**
+	 * Return the order of imported books, which can be changed by the
+	 * {@code biblemulticonverter.paratext.bookorder} property.
+	 */
+	protected static Comparator<ParatextID> getBookOrder() {
 		Map<ParatextID, Integer> bookOrder = new EnumMap<>(ParatextID.class);
 		String bookOrderProperty = System.getProperty("biblemulticonverter.paratext.bookorder");
 		if (bookOrderProperty != null && !bookOrderProperty.isEmpty()) {
@@ -545,22 +717,66 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 				}
 			}
 		}
-		result.sort(Comparator.<ParatextBook, Integer> comparing(b -> bookOrder.getOrDefault(b.getId(), Integer.MAX_VALUE)).thenComparing(ParatextBook::getId));
-		return result;
+		return Comparator.<ParatextID, Integer> comparing(id -> bookOrder.getOrDefault(id, Integer.MAX_VALUE)).thenComparing(Comparator.naturalOrder());
+	}
+
+	/**
+	 * Whether this format stores every book in its own file (using the default
+	 * implementations of {@link #doImportAllBooks(File)} and
+	 * {@link #doExportBooks(List, String...)}), so that books can be converted
+	 * one by one.
+	 */
+	public boolean supportsStreaming() {
+		return false;
 	}
 
+	/**
+	 * Determine the ID of the book in a file of the input directory, without
+	 * parsing the whole file. Returns {@code null} if the file does not
+	 * contain a book or its ID cannot be determined; such files are imported
+	 * separately and not merged with other parts of the same book.
+	 */
+	protected ParatextID peekBookID(InputDirectory directory, String fileName) throws Exception {
+		return null;
+	}
 
 	protected abstract ParatextBook doImportBook(File inputFile) throws Exception;
 
+	/**
+	 * Import a book from a file of the input directory, which may be inside an
+	 * archive. The default implementation calls {@link #doImportBook(File)},
+	 * after extracting the file to a temporary directory if needed. Formats
+	 * that can parse streams override this to avoid the temporary file.
+	 */
+	protected ParatextBook doImportBook(InputDirectory directory, String fileName) throws Exception {
+		File file = directory.getFile(fileName);
+		if (file != null)
+			return doImportBook(file);
+		Path tempDir = Files.createTempDirectory("~bmc");
+		Path tempFile = tempDir.resolve(fileName);
+		try {
+			try (InputStream in = directory.openStream(fileName)) {
+				Files.copy(in, tempFile);
+			}
+			return doImportBook(tempFile.toFile());
+		} finally {
+			Files.deleteIfExists(tempFile);
+			Files.delete(tempDir);
+		}
+	}
+
 	@Override
 	public void doExport(Bible bible, String... exportArgs) throws Exception {
-		List<ParatextBook> books = new ArrayList<>();
+		List<Callable<ParatextBook>> tasks = new ArrayList<>();
 		for (Book bk : bible.getBooks()) {
-			ParatextBook book = exportToParatextBook(bk, bible.getName());
+			tasks.add(() -> exportToParatextBook(bk, bible.getName()));
+		}
+		List<ParatextBook> books = new ArrayList<>();
+		ParallelTasks.runInOrder(tasks, book -> {
 			if (book != null) {
 				books.add(book);
 			}
-		}
+		});
 		doExportBooks(books, exportArgs);
 	}
 
@@ -634,10 +850,32 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 	}
 
 	public void doExportBooks(List<ParatextBook> books, String... exportArgs) throws Exception {
+		BookHandler exporter = getStreamingExporter(exportArgs);
+		List<Callable<ParatextID>> tasks = new ArrayList<>();
+		for (ParatextBook book : books) {
+			tasks.add(() -> {
+				exporter.handle(book);
+				return book.getId();
+			});
+		}
+		try {
+			ParallelTasks.runInOrder(tasks, exporter::handledInOrder);
+		} catch (StopStreamingException ex) {
+			// remaining books have been cancelled
+		}
+		exporter.finish();
+	}
+
+	/**
+	 * Return a handler that exports each book it is given to its own file(s),
+	 * like {@link #doExportBooks(List, String...)}. The handler may be called
+	 * on multiple threads at the same time.
+	 */
+	public BookHandler getStreamingExporter(String... exportArgs) {
 		File baseDir = new File(exportArgs[0]);
 		baseDir.mkdirs();
 		String namePattern = exportArgs[1];
-		for (ParatextBook book : books) {
+		return book -> {
 			String name = namePattern.replace("#", book.getId().getNumber()).replace("*", book.getId().getIdentifier());
 			if (name.contains("?")) {
 				List<ParatextBookContentPart> remainingContent = new ArrayList<>();
@@ -669,7 +907,7 @@ public abstract class AbstractParatextFormat implements RoundtripFormat {
 			} else {
 				doExportBook(book, new File(baseDir, name));
 			}
-		}
+		};
 	}
 
 	private void exportChapterBook(ParatextBook book, File baseDir, String name) throws Exception {
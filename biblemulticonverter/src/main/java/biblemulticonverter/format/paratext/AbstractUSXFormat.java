@@ -1,12 +1,19 @@
 package biblemulticonverter.format.paratext;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
 import biblemulticonverter.format.paratext.ParatextCharacterContent.AutoClosingFormattingKind;
+import biblemulticonverter.utilities.InputDirectory;
 
 public abstract class AbstractUSXFormat<ParaStyle extends Enum<ParaStyle>, CharStyle extends Enum<CharStyle>> extends AbstractParatextFormat {
 
@@ -35,6 +42,31 @@ public abstract class AbstractUSXFormat<ParaStyle extends Enum<ParaStyle>, CharS
 		prepareCharMaps();
 	}
 
+	@Override
+	public boolean supportsStreaming() {
+		return true;
+	}
+
+	@Override
+	protected ParatextBook.ParatextID peekBookID(InputDirectory directory, String fileName) throws Exception {
+		if (!fileName.toLowerCase().endsWith(".usx"))
+			return null;
+		try (InputStream in = directory.openStream(fileName)) {
+			XMLStreamReader xsr = XMLInputFactory.newFactory().createXMLStreamReader(in);
+			try {
+				while (xsr.hasNext()) {
+					if (xsr.next() == XMLStreamConstants.START_ELEMENT && xsr.getLocalName().equals("book")) {
+						String code = xsr.getAttributeValue(null, "code");
+						return code == null ? null : ParatextBook.ParatextID.fromIdentifier(code.toUpperCase());
+					}
+				}
+				return null;
+			} finally {
+				xsr.close();
+			}
+		}
+	}
+
 	private void prepareParaMaps() {
 		// Checks if every ParaGraphKind is mapped to a ParaStyle
 		Map<String, ParatextBook.ParagraphKind> paraTags = ParatextBook.ParagraphKind.allTags();
@@ -117,4 +149,13 @@ public abstract class AbstractUSXFormat<ParaStyle extends Enum<ParaStyle>, CharS
 
 		abstract String tag(Style style);
 	}
+
+	/**
+	 * An element on the root level (like a sidebar start) that is written
+	 * before the next root level element, so that content without its own
+	 * paragraph can still be added to the previous paragraph.
+	 */
+	static interface PendingElement {
+		void write() throws IOException;
+	}
 }
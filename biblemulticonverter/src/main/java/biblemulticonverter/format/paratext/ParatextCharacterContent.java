@@ -13,6 +13,7 @@ import biblemulticonverter.format.paratext.ParatextBook.ParatextBookContentPart;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextBookContentVisitor;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextCharacterContentContainer;
 import biblemulticonverter.format.paratext.ParatextBook.ParatextID;
+import biblemulticonverter.format.paratext.model.AttributeMap;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
 import biblemulticonverter.format.paratext.model.Version;
 import biblemulticonverter.format.paratext.utilities.LocationParser;
@@ -131,7 +132,7 @@ public class ParatextCharacterContent implements ParatextBookContentPart, Parate
 	public static class AutoClosingFormatting implements ParatextCharacterContentPart, ParatextCharacterContentContainer {
 		private final AutoClosingFormattingKind kind;
 		private final List<ParatextCharacterContentPart> content = new ArrayList<>(5);
-		private final Map<String, String> attributes = new HashMap<>(3);
+		private final AttributeMap attributes = new AttributeMap();
 
 		public AutoClosingFormatting(AutoClosingFormattingKind kind) {
 			this.kind = kind;
@@ -145,7 +146,7 @@ public class ParatextCharacterContent implements ParatextBookContentPart, Parate
 			return kind.getTag();
 		}
 
-		public Map<String, String> getAttributes() {
+		public AttributeMap getAttributes() {
 			return attributes;
 		}
 
@@ -449,7 +450,7 @@ public class ParatextCharacterContent implements ParatextBookContentPart, Parate
 	public static class Milestone implements ParatextCharacterContentPart {
 
 		private final String tag;
-		private final Map<String, String> attributes = new HashMap<>(3);
+		private final AttributeMap attributes = new AttributeMap();
 
 		public Milestone(String tag) {
 			this.tag = tag;
@@ -459,7 +460,7 @@ public class ParatextCharacterContent implements ParatextBookContentPart, Parate
 			return tag;
 		}
 
-		public Map<String, String> getAttributes() {
+		public AttributeMap getAttributes() {
 			return attributes;
 		}
 
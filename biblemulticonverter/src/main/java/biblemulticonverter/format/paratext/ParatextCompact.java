@@ -3,11 +3,7 @@ package biblemulticonverter.format.paratext;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -45,6 +41,7 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.SpecialSpace
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Text;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
+import biblemulticonverter.utilities.CompressedIO;
 
 /**
  * Simple importer and exporter that dumps the internal Paratext format to
@@ -58,6 +55,9 @@ public class ParatextCompact extends AbstractParatextFormat {
 			"Usage (export): ParatextDump <OutputFile>",
 			"",
 			"Point the importer to .txt files, not to directories!",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	public ParatextCompact() {
@@ -169,7 +169,7 @@ public class ParatextCompact extends AbstractParatextFormat {
 			}
 			paraMap.put(prefix + tag.substring(0, tag.length() - 1) + tag.substring(tag.length() - 1).toUpperCase(), pk);
 		}
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			String line = br.readLine();
 			if (!line.startsWith("ParatextCompactV1.0:"))
 				throw new IOException("Invalid file magic: " + line);
@@ -362,6 +362,7 @@ public class ParatextCompact extends AbstractParatextFormat {
 					m.getAttributes().put(key, u(line.substring(offset, pos)));
 					offset = pos + 2;
 				}
+				m.getAttributes().canonicalize();
 				if (!line.startsWith("*", offset))
 					throw new IOException("Invalid milestone content: " + line.substring(offset));
 				offset++;
@@ -401,6 +402,7 @@ public class ParatextCompact extends AbstractParatextFormat {
 					acf.getAttributes().put(key, u(line.substring(offset, pos)));
 					offset = pos + 2;
 				}
+				acf.getAttributes().canonicalize();
 				parent = acf;
 			}
 			if (parent != null) {
@@ -427,7 +429,7 @@ public class ParatextCompact extends AbstractParatextFormat {
 
 	@Override
 	public void doExportBooks(List<ParatextBook> books, String... exportArgs) throws Exception {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportArgs[0]), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(new File(exportArgs[0]))) {
 			bw.write("ParatextCompactV1.0:");
 			for (ParatextBook book : books) {
 				writeBook(bw, book);
@@ -437,7 +439,7 @@ public class ParatextCompact extends AbstractParatextFormat {
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws IOException {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(outFile)) {
 			bw.write("ParatextCompactV1.0:");
 			writeBook(bw, book);
 		}
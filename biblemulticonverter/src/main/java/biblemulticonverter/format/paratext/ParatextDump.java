@@ -3,11 +3,7 @@ package biblemulticonverter.format.paratext;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -40,6 +36,7 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.SpecialSpace
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Text;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
+import biblemulticonverter.utilities.CompressedIO;
 
 /**
  * Simple importer and exporter that dumps the internal Paratext format to a diffable plain text.
@@ -52,6 +49,9 @@ public class ParatextDump extends AbstractParatextFormat {
 			"Usage (export): ParatextDump <OutputFile>",
 			"",
 			"Point the importer to .txt files, not to directories!",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	public ParatextDump() {
@@ -63,7 +63,7 @@ public class ParatextDump extends AbstractParatextFormat {
 		List<ParatextBook> result = new ArrayList<ParatextBook>();
 		ParatextBook currentBook = null;
 		Map<String, ParagraphKind> allParagraphKinds = ParagraphKind.allTags();
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			String line;
 			while ((line = br.readLine()) != null) {
 				String[] parts = line.split("\t", 3);
@@ -153,6 +153,7 @@ public class ParatextDump extends AbstractParatextFormat {
 						importCharContent(acf.getContent(), br, line);
 					}
 				}
+				acf.getAttributes().canonicalize();
 				break;
 			case "MILESTONE":
 				final Milestone m = new Milestone(Objects.requireNonNull(parts[1]));
@@ -165,6 +166,7 @@ public class ParatextDump extends AbstractParatextFormat {
 						throw new RuntimeException("Unsupported milestone line: "+line);
 					}
 				}
+				m.getAttributes().canonicalize();
 				break;
 			case "REFERENCE":
 				target.add(Reference.parse(parts[1], parts[2]));
@@ -193,7 +195,7 @@ public class ParatextDump extends AbstractParatextFormat {
 
 	@Override
 	public void doExportBooks(List<ParatextBook> books, String... exportArgs) throws Exception {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportArgs[0]), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(new File(exportArgs[0]))) {
 			for (ParatextBook book : books) {
 				writeBook(bw, book);
 			}
@@ -202,7 +204,7 @@ public class ParatextDump extends AbstractParatextFormat {
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws IOException {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(outFile)) {
 			writeBook(bw, book);
 		}
 	}
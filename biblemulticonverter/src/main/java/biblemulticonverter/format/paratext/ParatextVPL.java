@@ -3,11 +3,7 @@ package biblemulticonverter.format.paratext;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -45,6 +41,7 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.SpecialSpace
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Text;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
+import biblemulticonverter.utilities.CompressedIO;
 
 /**
  * Simple importer and exporter that writes a diffable VPL-inspired plain text
@@ -58,6 +55,9 @@ public class ParatextVPL extends AbstractParatextFormat {
 			"Usage (export): ParatextDump <OutputFile>",
 			"",
 			"Point the importer to .txt files, not to directories!",
+			"",
+			"Gzip compressed input files are detected automatically. The output file is",
+			"compressed if its name ends with .gz."
 	};
 
 	private static final String MAGIC = "BibleMultiConverterParatext-1.0";
@@ -77,7 +77,7 @@ public class ParatextVPL extends AbstractParatextFormat {
 		Map<String, FootnoteXrefKind> allFootnoteKinds = FootnoteXrefKind.allTags();
 		Map<String, AutoClosingFormattingKind> allFormattingKinds = AutoClosingFormattingKind.allTags();
 		List<ParatextCharacterContentContainer> containerStack = new ArrayList<>();
-		try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(inputFile), StandardCharsets.UTF_8))) {
+		try (BufferedReader br = CompressedIO.openReader(inputFile)) {
 			String line = br.readLine();
 			if (!line.equals(MAGIC))
 				throw new IOException("Invalid header line: " + line);
@@ -234,6 +234,7 @@ public class ParatextVPL extends AbstractParatextFormat {
 										AutoClosingFormatting acf = new AutoClosingFormatting(formatting);
 										if (args != null) {
 											acf.getAttributes().putAll(args);
+											acf.getAttributes().canonicalize();
 											args = null;
 										}
 										currentContainer.getContent().add(acf);
@@ -258,6 +259,7 @@ public class ParatextVPL extends AbstractParatextFormat {
 										Milestone ms = new Milestone(tag.substring(10));
 										if (args != null) {
 											ms.getAttributes().putAll(args);
+											ms.getAttributes().canonicalize();
 											args = null;
 										}
 										currentContainer.getContent().add(ms);
@@ -301,7 +303,7 @@ public class ParatextVPL extends AbstractParatextFormat {
 
 	@Override
 	public void doExportBooks(List<ParatextBook> books, String... exportArgs) throws Exception {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(exportArgs[0]), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(new File(exportArgs[0]))) {
 			bw.write(MAGIC + "\n");
 			for (ParatextBook book : books) {
 				writeBook(bw, book);
@@ -311,7 +313,7 @@ public class ParatextVPL extends AbstractParatextFormat {
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws IOException {
-		try (BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+		try (BufferedWriter bw = CompressedIO.openWriter(outFile)) {
 			bw.write("BibleMultiConverterParatext-1.0\n");
 			writeBook(bw, book);
 		}
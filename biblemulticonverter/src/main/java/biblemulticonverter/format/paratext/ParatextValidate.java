@@ -1,9 +1,15 @@
 package biblemulticonverter.format.paratext;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 
 import biblemulticonverter.format.paratext.ParatextBook.ParagraphKind;
 import biblemulticonverter.format.paratext.ParatextBook.ParagraphKindCategory;
@@ -18,6 +24,9 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.ParatextChar
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Reference;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
+import biblemulticonverter.utilities.CompressedIO;
+import biblemulticonverter.utilities.MarkupEscaper;
+import biblemulticonverter.utilities.ParallelTasks;
 
 /**
  * Exporter that validates a Paratext bible.
@@ -25,7 +34,17 @@ import biblemulticonverter.format.paratext.model.VerseIdentifier;
 public class ParatextValidate extends AbstractParatextFormat {
 
 	public static final String[] HELP_TEXT = {
-			"Validate a Paratext bible"
+			"Validate a Paratext bible",
+			"",
+			"Usage: ParatextValidate [-json|-tsv] [-maxerrors=<N>] [<OutputFile>]",
+			"",
+			"Books are validated in parallel. Findings are printed to the console, or written to the",
+			"output file (compressed if its name ends with .gz). By default, findings are written as",
+			"text; with -json or -tsv, every finding is written with the fields 'book', 'chapter',",
+			"'verse', 'rule' and 'message' instead. With -maxerrors, validation stops after the",
+			"given (positive) number of findings. When used with ParatextConverter and an input",
+			"format that is imported book by book (USFM, USX, USX 3), the remaining books are not",
+			"imported either once validation has stopped."
 	};
 
 	public ParatextValidate() {
@@ -44,30 +63,263 @@ public class ParatextValidate extends AbstractParatextFormat {
 
 	@Override
 	public void doExportBooks(List<ParatextBook> books, String... exportArgs) throws Exception {
-		if (validateBooks(books) > 0) {
-			System.out.println("*** VALIDATION FAILED ***");
-		}
+		ReportOptions options = new ReportOptions(exportArgs);
+		options.writeReport(collectFindings(books, options.maxErrors));
+	}
+
+	/**
+	 * Books are validated one by one, so that they can be streamed from the
+	 * import and the import can be stopped when enough errors have been found.
+	 */
+	@Override
+	public boolean supportsStreaming() {
+		return true;
+	}
+
+	@Override
+	public BookHandler getStreamingExporter(String... exportArgs) {
+		ReportOptions options = new ReportOptions(exportArgs);
+		Map<ParatextID, List<Finding>> handledFindings = new EnumMap<>(ParatextID.class);
+		List<Finding> findings = new ArrayList<>();
+		return new BookHandler() {
+			@Override
+			public void handle(ParatextBook book) throws Exception {
+				List<Finding> bookFindings = collectFindings(book, options.maxErrors);
+				synchronized (handledFindings) {
+					handledFindings.put(book.getId(), bookFindings);
+				}
+			}
+
+			@Override
+			public void handledInOrder(ParatextID id) throws Exception {
+				// books are handled in parallel, so only count findings in book order
+				synchronized (handledFindings) {
+					findings.addAll(handledFindings.remove(id));
+				}
+				if (options.maxErrors > 0 && findings.size() >= options.maxErrors)
+					throw new StopStreamingException();
+			}
+
+			@Override
+			public void finish() throws Exception {
+				options.writeReport(options.maxErrors > 0 && findings.size() > options.maxErrors ? findings.subList(0, options.maxErrors) : findings);
+			}
+		};
 	}
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws Exception {
-		if (validateBook(book) > 0) {
-			System.out.println("*** VALIDATION FAILED ***");
-		}
+		StringWriter report = new StringWriter();
+		PrintWriter out = new PrintWriter(report);
+		writeText(out, collectFindings(book, 0), false);
+		out.flush();
+		System.out.print(report);
 	}
 
-	protected int validateBooks(List<ParatextBook> books) throws Exception {
-		int errorCount = 0;
+	/**
+	 * Validate all books in parallel and return the findings in book order.
+	 * If {@code maxErrors} is positive, validation stops as soon as that many
+	 * findings have been found.
+	 */
+	protected List<Finding> collectFindings(List<ParatextBook> books, int maxErrors) throws Exception {
+		List<Callable<List<Finding>>> tasks = new ArrayList<>();
 		for (ParatextBook book : books) {
-			errorCount += validateBook(book);
+			tasks.add(() -> collectFindings(book, maxErrors));
 		}
-		return errorCount;
+		List<Finding> findings = new ArrayList<>();
+		try {
+			ParallelTasks.runInOrder(tasks, bookFindings -> {
+				for (Finding finding : bookFindings) {
+					findings.add(finding);
+					if (findings.size() == maxErrors)
+						throw new MaxErrorsReachedException();
+				}
+			});
+		} catch (MaxErrorsReachedException ex) {
+			// remaining books have been cancelled
+		}
+		return findings;
 	}
 
-	protected int validateBook(ParatextBook book) throws Exception {
-		ValidateBookVisitor v = new ValidateBookVisitor(book.getId());
+	/**
+	 * Validate a single book. If {@code maxErrors} is positive, at most that
+	 * many findings are returned.
+	 */
+	protected List<Finding> collectFindings(ParatextBook book, int maxErrors) {
+		ValidateBookVisitor v = new ValidateBookVisitor(book.getId(), maxErrors);
 		book.accept(v);
-		return v.getErrorCount();
+		return v.getFindings();
+	}
+
+	protected int validateBooks(List<ParatextBook> books) throws Exception {
+		return collectFindings(books, 0).size();
+	}
+
+	protected int validateBook(ParatextBook book) {
+		return collectFindings(book, 0).size();
+	}
+
+	/**
+	 * Export arguments that select the report format, the output file and
+	 * the maximum number of findings.
+	 */
+	private static class ReportOptions {
+		private String outputFormat = "text", outputFile = null;
+		private int maxErrors = 0;
+
+		private ReportOptions(String... exportArgs) {
+			for (String arg : exportArgs) {
+				if (arg.equals("-json") || arg.equals("-tsv")) {
+					outputFormat = arg.substring(1);
+				} else if (arg.startsWith("-maxerrors=")) {
+					try {
+						maxErrors = Integer.parseInt(arg.substring(11));
+					} catch (NumberFormatException ex) {
+						maxErrors = -1;
+					}
+					if (maxErrors <= 0)
+						throw usageError("Invalid maximum number of errors: " + arg);
+				} else if (outputFile == null) {
+					outputFile = arg;
+				} else {
+					throw usageError("Unsupported argument: " + arg);
+				}
+			}
+		}
+
+		private static IllegalArgumentException usageError(String message) {
+			for (String line : HELP_TEXT) {
+				System.out.println(line);
+			}
+			return new IllegalArgumentException(message);
+		}
+
+		private void writeReport(List<Finding> findings) throws IOException {
+			boolean stopped = maxErrors > 0 && findings.size() >= maxErrors;
+			StringWriter report = new StringWriter();
+			PrintWriter out = new PrintWriter(report);
+			switch (outputFormat) {
+			case "json":
+				writeJSON(out, findings, stopped);
+				break;
+			case "tsv":
+				writeTSV(out, findings);
+				break;
+			default:
+				writeText(out, findings, stopped);
+				break;
+			}
+			out.flush();
+			if (outputFile == null) {
+				System.out.print(report);
+			} else {
+				try (BufferedWriter bw = CompressedIO.openWriter(new File(outputFile))) {
+					bw.write(report.toString());
+				}
+			}
+		}
+	}
+
+	private static void writeText(PrintWriter out, List<Finding> findings, boolean stopped) {
+		for (Finding finding : findings) {
+			out.println("[" + finding.getLocation() + "] " + finding.getMessage());
+		}
+		if (stopped) {
+			out.println("*** VALIDATION STOPPED AFTER " + findings.size() + " ERRORS ***");
+		}
+		if (!findings.isEmpty()) {
+			out.println("*** VALIDATION FAILED ***");
+		}
+	}
+
+	private static void writeJSON(PrintWriter out, List<Finding> findings, boolean stopped) {
+		out.println("{\"errors\":" + findings.size() + ",\"stopped\":" + stopped + ",\"findings\":[");
+		for (int i = 0; i < findings.size(); i++) {
+			Finding finding = findings.get(i);
+			out.print("{\"book\":\"" + finding.getBook().getIdentifier() + "\"");
+			out.print(",\"chapter\":" + (finding.getChapter() == -1 ? "null" : String.valueOf(finding.getChapter())));
+			out.print(",\"verse\":" + (finding.getVerse() == null ? "null" : "\"" + MarkupEscaper.JSON.escape(finding.getVerse()) + "\""));
+			out.print(",\"rule\":\"" + finding.getRule() + "\"");
+			out.print(",\"message\":\"" + MarkupEscaper.JSON.escape(finding.getMessage()) + "\"}");
+			out.println(i == findings.size() - 1 ? "" : ",");
+		}
+		out.println("]}");
+	}
+
+	private static void writeTSV(PrintWriter out, List<Finding> findings) {
+		out.println("book\tchapter\tverse\trule\tmessage");
+		for (Finding finding : findings) {
+			out.println(finding.getBook().getIdentifier() + "\t" +
+					(finding.getChapter() == -1 ? "" : String.valueOf(finding.getChapter())) + "\t" +
+					(finding.getVerse() == null ? "" : finding.getVerse()) + "\t" +
+					finding.getRule() + "\t" +
+					finding.getMessage().replaceAll("[\t\r\n]", " "));
+		}
+	}
+
+	/**
+	 * Kinds of problems found by the validation.
+	 */
+	public static enum Rule {
+		CONTENT_MISSING, PARAGRAPH_MISSING, PARAGRAPH_UNSUITABLE, CHAPTER_NOT_OPEN, CHAPTER_NOT_CLOSED, CHAPTER_MISMATCH, VERSE_NOT_CLOSED, VERSE_MISMATCH, MILESTONE_NOT_OPEN, MILESTONE_NOT_CLOSED
+	}
+
+	/**
+	 * A problem found by the validation.
+	 */
+	public static class Finding {
+		private final ParatextID book;
+		private final int chapter;
+		private final String verse, location;
+		private final Rule rule;
+		private final String message;
+
+		public Finding(ParatextID book, int chapter, String verse, String location, Rule rule, String message) {
+			this.book = book;
+			this.chapter = chapter;
+			this.verse = verse;
+			this.location = location;
+			this.rule = rule;
+			this.message = message;
+		}
+
+		public ParatextID getBook() {
+			return book;
+		}
+
+		/**
+		 * Return the chapter number, or -1 if the finding is outside of any
+		 * chapter.
+		 */
+		public int getChapter() {
+			return chapter;
+		}
+
+		/**
+		 * Return the verse number, or {@code null} if the finding is outside of
+		 * any verse.
+		 */
+		public String getVerse() {
+			return verse;
+		}
+
+		/**
+		 * Return the location in human readable form, like {@code GEN 1:2}.
+		 */
+		public String getLocation() {
+			return location;
+		}
+
+		public Rule getRule() {
+			return rule;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	private static class MaxErrorsReachedException extends Exception {
 	}
 
 	private static class ValidateBookVisitor implements ParatextBookContentVisitor<RuntimeException> {
@@ -78,38 +330,41 @@ public class ParatextValidate extends AbstractParatextFormat {
 		private ChapterIdentifier openChapter = null;
 		private VerseIdentifier openVerse = null, lastClosedVerse = null;
 		private ParagraphKind openParagraph = null;
-		private int errorCount = 0;
+		private final int maxErrors;
+		private final List<Finding> findings = new ArrayList<>();
 
-		public ValidateBookVisitor(ParatextID id) {
+		public ValidateBookVisitor(ParatextID id, int maxErrors) {
 			currentReference = Reference.book(id, "");
+			this.maxErrors = maxErrors;
 		}
 
-		public int getErrorCount() {
+		public List<Finding> getFindings() {
 			checkContent(false);
 			if (openVerse != null) {
-				violation("Verse open at end of book");
+				violation(Rule.VERSE_NOT_CLOSED, "Verse open at end of book");
 			}
 			if (openChapter != null) {
-				violation("Chapter open at end of book");
+				violation(Rule.CHAPTER_NOT_CLOSED, "Chapter open at end of book");
 			}
 			for (String ms : openMilestones) {
-				violation("Milestone not closed: " + ms);
+				violation(Rule.MILESTONE_NOT_CLOSED, "Milestone not closed: " + ms);
 			}
-			return errorCount;
+			return findings;
 		}
 
-		protected void violation(String message) {
+		protected void violation(Rule rule, String message) {
+			if (maxErrors > 0 && findings.size() >= maxErrors)
+				return;
 			String ref = String.valueOf(currentReference);
 			if (currentReference != null && currentReference.getFirstVerse() == null && lastClosedVerse != null) {
 				ref += " (after " + lastClosedVerse + ")";
 			}
-			System.out.println("[" + ref + "] " + message);
-			errorCount++;
+			findings.add(new Finding(currentReference.getBook(), currentReference.getFirstChapter(), currentReference.getFirstVerse(), ref, rule, message));
 		}
 
 		private void checkContent(boolean newExpectContent) {
 			if (expectContent && !foundContent) {
-				violation("Text content expected but not found in paragraph type " + openParagraph);
+				violation(Rule.CONTENT_MISSING, "Text content expected but not found in paragraph type " + openParagraph);
 			}
 			foundContent = false;
 			expectContent = newExpectContent;
@@ -118,10 +373,10 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitChapterStart(ChapterIdentifier location) {
 			if (openVerse != null) {
-				violation("Verse still open when opening chapter " + location);
+				violation(Rule.VERSE_NOT_CLOSED, "Verse still open when opening chapter " + location);
 			}
 			if (openChapter != null) {
-				violation("Chapter still open when opening chapter " + location);
+				violation(Rule.CHAPTER_NOT_CLOSED, "Chapter still open when opening chapter " + location);
 			}
 			openChapter = location;
 			openVerse = null;
@@ -134,12 +389,12 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitChapterEnd(ChapterIdentifier location) {
 			if (openVerse != null) {
-				violation("Verse still open when closing chapter " + location);
+				violation(Rule.VERSE_NOT_CLOSED, "Verse still open when closing chapter " + location);
 			}
 			if (openChapter == null) {
-				violation("No chapter open when closing chapter " + location);
+				violation(Rule.CHAPTER_NOT_OPEN, "No chapter open when closing chapter " + location);
 			} else if (openChapter.chapter != location.chapter || openChapter.book != location.book) {
-				violation("Other chapter open: " + openChapter + ", when closing chapter " + location);
+				violation(Rule.CHAPTER_MISMATCH, "Other chapter open: " + openChapter + ", when closing chapter " + location);
 			}
 			openChapter = null;
 			openVerse = null;
@@ -163,11 +418,11 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitTableCellStart(String tag) {
 			if (!expectContent) {
-				violation("Paragraph expected before table cell start");
+				violation(Rule.PARAGRAPH_MISSING, "Paragraph expected before table cell start");
 			}
 			foundContent = true;
 			if (openParagraph != ParagraphKind.TABLE_ROW) {
-				violation("Table cell found in paragraph type" + openParagraph);
+				violation(Rule.PARAGRAPH_UNSUITABLE, "Table cell found in paragraph type" + openParagraph);
 			}
 		}
 
@@ -194,18 +449,18 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitVerseStart(VerseIdentifier location, String verseNumber) throws RuntimeException {
 			if (!expectContent) {
-				violation("Paragraph expected before start of verse " + location);
+				violation(Rule.PARAGRAPH_MISSING, "Paragraph expected before start of verse " + location);
 			}
 			if (openVerse != null) {
-				violation("Verse already open when starting verse " + location);
+				violation(Rule.VERSE_NOT_CLOSED, "Verse already open when starting verse " + location);
 			}
 			if (openChapter == null) {
-				violation("No chapter open when starting verse " + location);
+				violation(Rule.CHAPTER_NOT_OPEN, "No chapter open when starting verse " + location);
 			}
 			if (openParagraph == null) {
-				violation("No paragraph open when starting verse " + location);
+				violation(Rule.PARAGRAPH_MISSING, "No paragraph open when starting verse " + location);
 			} else if (openParagraph != ParagraphKind.SPEAKER_TITLE && (openParagraph.getCategory() != ParagraphKindCategory.TEXT || openParagraph.name().startsWith("INTRO_"))) {
-				violation("Paragraph of type " + openParagraph + " not suitable to start verse " + location);
+				violation(Rule.PARAGRAPH_UNSUITABLE, "Paragraph of type " + openParagraph + " not suitable to start verse " + location);
 			}
 			openVerse = location;
 			currentReference = Reference.verse(currentReference.getBook(), currentReference.getFirstChapter(), verseNumber, "");
@@ -214,18 +469,18 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitVerseEnd(VerseIdentifier verseLocation) throws RuntimeException {
 			if (!expectContent) {
-				violation("Paragraph expected before end of verse " + verseLocation);
+				violation(Rule.PARAGRAPH_MISSING, "Paragraph expected before end of verse " + verseLocation);
 			}
 			if (openVerse != verseLocation && (openVerse == null || verseLocation == null || !openVerse.toString().matches(verseLocation.toString()))) {
-				violation("Other verse open: " + openVerse + ", when closing verse " + verseLocation);
+				violation(Rule.VERSE_MISMATCH, "Other verse open: " + openVerse + ", when closing verse " + verseLocation);
 			}
 			if (openChapter == null) {
-				violation("No chapter open when closing verse " + verseLocation);
+				violation(Rule.CHAPTER_NOT_OPEN, "No chapter open when closing verse " + verseLocation);
 			}
 			if (openParagraph == null) {
-				violation("No paragraph open when starting verse " + verseLocation);
+				violation(Rule.PARAGRAPH_MISSING, "No paragraph open when starting verse " + verseLocation);
 			} else if (openParagraph.getCategory() != ParagraphKindCategory.TEXT || openParagraph.name().startsWith("INTRO_")) {
-				violation("Paragraph of type " + openParagraph + " not suitable to close verse " + verseLocation);
+				violation(Rule.PARAGRAPH_UNSUITABLE, "Paragraph of type " + openParagraph + " not suitable to close verse " + verseLocation);
 			}
 			openVerse = null;
 			lastClosedVerse = verseLocation;
@@ -235,7 +490,7 @@ public class ParatextValidate extends AbstractParatextFormat {
 		@Override
 		public void visitFigure(String caption, Map<String, String> attributes) throws RuntimeException {
 			if (!expectContent) {
-				violation("Paragraph expected before figure");
+				violation(Rule.PARAGRAPH_MISSING, "Paragraph expected before figure");
 			}
 			foundContent = true;
 		}
@@ -257,7 +512,7 @@ public class ParatextValidate extends AbstractParatextFormat {
 					break;
 				}
 				if (isRealContent) {
-					violation("Paragraph expected before character content");
+					violation(Rule.PARAGRAPH_MISSING, "Paragraph expected before character content");
 				}
 			}
 			foundContent = true;
@@ -292,7 +547,7 @@ public class ParatextValidate extends AbstractParatextFormat {
 				String subtag = tag.substring(0, tag.length() - 2);
 				int pos = openMilestones.lastIndexOf(subtag);
 				if (pos == -1) {
-					vbv.violation("Milestone " + subtag + " closed but not open");
+					vbv.violation(Rule.MILESTONE_NOT_OPEN, "Milestone " + subtag + " closed but not open");
 				} else {
 					openMilestones.remove(pos);
 				}
@@ -7,7 +7,6 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -25,8 +24,10 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.Milestone;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.ParatextCharacterContentPart;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Reference;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Text;
+import biblemulticonverter.format.paratext.model.AttributeMap;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
+import biblemulticonverter.format.paratext.utilities.UBXFDatabase;
 
 /**
  * Exporter that can convert certain UBXF tags.
@@ -38,6 +39,7 @@ public class UBXFConverter extends AbstractParatextFormat {
 			"",
 			"Usage: UBXFConverter createsrcloc <prefix>      -- <ParatextExportFormat> [<ExportArgs>...]",
 			"Usage: UBXFConverter analyze <dbfile>",
+			"Usage: UBXFConverter exportdb <dbfile> <textdbfile>",
 			"Usage: UBXFConverter augmentmilestones <dbfile> -- <ParatextExportFormat> [<ExportArgs>...]",
 			"Usage: UBXFConverter fillwordattr               -- <ParatextExportFormat> [<ExportArgs>...]",
 			"Usage: UBXFConverter createwordattr             -- <ParatextExportFormat> [<ExportArgs>...]",
@@ -45,6 +47,8 @@ public class UBXFConverter extends AbstractParatextFormat {
 			"",
 			"First add srcloc to source bibles if not present yet.",
 			"Then analzye source and augment milestones in derived translations.",
+			"Database files whose name ends with .ubxfdb are written in an indexed binary format, which is",
+			"faster for large projects; use exportdb to convert them to the text format for debugging.",
 			"Next, you can either fill the existing word attributes with Strongs and morphology",
 			"(needed if they are another source translation, or if you want to keep the words separate), ",
 			"or you can drop all existing word attributes and create new ones based on milestones (so you",
@@ -89,100 +93,135 @@ public class UBXFConverter extends AbstractParatextFormat {
 						index++;
 						String srcloc = acf.getAttributes().get("srcloc");
 						acf.getAttributes().put("srcloc", (srcloc == null ? "" : srcloc + " ") + prefix + ":" + where.getBook().getNumber() + "." + where.getFirstChapter() + "." + where.getFirstVerse() + "." + index);
+						acf.getAttributes().canonicalize();
 					}
 				}));
 			}
 			formatArg = 3;
 		} else if (exportArgs[0].equals("analyze")) {
-			Map<String, Integer> occurrences = new HashMap<>();
-			Map<String, String> words = new HashMap<>();
-			for (ParatextBook book : books) {
-				book.accept(new UBXFBookVisitor(book.getId(), false, new UBXFGrammarHandlerVisitor() {
-					private void extractContent(StringBuilder sb, ParatextCharacterContentContainer pccc) {
-						for (ParatextCharacterContentPart part : pccc.getContent()) {
-							if (part instanceof ParatextCharacterContentContainer) {
-								extractContent(sb, (ParatextCharacterContentContainer) part);
-							} else if (part instanceof Text) {
-								sb.append(((Text) part).getChars());
+			final File dbfile = new File(exportArgs[1]);
+			Properties props = null;
+			boolean binary = UBXFDatabase.isDatabaseFile(dbfile) || (!dbfile.exists() && dbfile.getName().endsWith(".ubxfdb"));
+			if (!binary) {
+				props = new Properties();
+				if (dbfile.exists()) {
+					try (FileInputStream fis = new FileInputStream(dbfile)) {
+						props.load(fis);
+					}
+				}
+			}
+			try (UBXFDatabase.Writer writer = binary ? new UBXFDatabase.Writer(dbfile) : null) {
+				for (ParatextBook book : books) {
+					Map<String, Integer> occurrences = new HashMap<>();
+					List<String[]> words = new ArrayList<>();
+					book.accept(new UBXFBookVisitor(book.getId(), false, new UBXFGrammarHandlerVisitor() {
+						private void extractContent(StringBuilder sb, ParatextCharacterContentContainer pccc) {
+							for (ParatextCharacterContentPart part : pccc.getContent()) {
+								if (part instanceof ParatextCharacterContentContainer) {
+									extractContent(sb, (ParatextCharacterContentContainer) part);
+								} else if (part instanceof Text) {
+									sb.append(((Text) part).getChars());
+								}
 							}
 						}
-					}
 
-					@Override
-					protected void handleWordlist(AutoClosingFormatting acf, Reference where) {
-						StringBuilder sb = new StringBuilder();
-						extractContent(sb, acf);
-						String word = sb.toString();
-						sb = new StringBuilder();
-						for (Map.Entry<String, String> attr : acf.getAttributes().entrySet()) {
-							String akey = attr.getKey(), aval = attr.getValue();
-							if (akey.startsWith(" ") || akey.indexOf('"') != -1 || aval.indexOf('"') != -1) {
-								System.out.println("WARNING: Skipping attribute " + akey + "=\"" + aval + "\" - unable to parse back");
-								continue;
-							}
-							if (!akey.startsWith("x-"))
-								akey = "x-" + akey;
-							if (sb.length() > 0) {
-								sb.append(' ');
+						@Override
+						protected void handleWordlist(AutoClosingFormatting acf, Reference where) {
+							StringBuilder sb = new StringBuilder();
+							extractContent(sb, acf);
+							String word = sb.toString();
+							sb = new StringBuilder();
+							for (Map.Entry<String, String> attr : acf.getAttributes().entrySet()) {
+								String akey = attr.getKey(), aval = attr.getValue();
+								if (akey.startsWith(" ") || akey.indexOf('"') != -1 || aval.indexOf('"') != -1) {
+									System.out.println("WARNING: Skipping attribute " + akey + "=\"" + aval + "\" - unable to parse back");
+									continue;
+								}
+								if (!akey.startsWith("x-"))
+									akey = "x-" + akey;
+								if (sb.length() > 0) {
+									sb.append(' ');
+								}
+								sb.append(akey + "\"" + aval + "\"");
 							}
-							sb.append(akey + "\"" + aval + "\"");
+							String verse = where.getBook().getIdentifier() + "." + where.getFirstChapter() + "." + where.getFirstVerse();
+							String key = word + "@" + verse;
+							int index = occurrences.getOrDefault(key, 0) + 1;
+							occurrences.put(key, index);
+							words.add(new String[] { verse, word, String.valueOf(index), sb.toString() });
+						}
+					}));
+					// occurrence counts are complete after each book, so write its words right away
+					for (String[] entry : words) {
+						String occurrence = entry[2] + "/" + occurrences.get(entry[1] + "@" + entry[0]);
+						if (writer != null) {
+							writer.put(UBXFDatabase.key(entry[0], entry[1], occurrence), entry[3]);
+						} else {
+							props.setProperty(entry[1] + "@" + entry[0] + "@" + occurrence, entry[3]);
 						}
-						String key = word + "@" + where.getBook().getIdentifier() + "." + where.getFirstChapter() + "." + where.getFirstVerse();
-						int index = occurrences.getOrDefault(key, 0) + 1;
-						occurrences.put(key, index);
-						words.put(index + "#" + key, sb.toString());
 					}
-				}));
+				}
+				if (writer != null) {
+					writer.commit();
+				} else {
+					try (FileOutputStream fos = new FileOutputStream(dbfile)) {
+						props.store(fos, "UBXF database");
+					}
+				}
 			}
-			final String dbfile = exportArgs[1];
+			return;
+		} else if (exportArgs[0].equals("exportdb")) {
 			Properties props = new Properties();
-			if (new File(dbfile).exists()) {
-				try (FileInputStream fis = new FileInputStream(dbfile)) {
-					props.load(fis);
+			try (UBXFDatabase db = new UBXFDatabase(new File(exportArgs[1]))) {
+				for (int i = 0; i < db.size(); i++) {
+					props.setProperty(UBXFDatabase.toTextKey(db.getKey(i)), db.getValue(i));
 				}
 			}
-			for (Map.Entry<String, String> entry : words.entrySet()) {
-				String[] keyParts = entry.getKey().split("#", 2);
-				int count = occurrences.get(keyParts[1]);
-				props.setProperty(keyParts[1] + "@" + keyParts[0] + "/" + count, entry.getValue());
-			}
-			try (FileOutputStream fos = new FileOutputStream(dbfile)) {
+			try (FileOutputStream fos = new FileOutputStream(exportArgs[2])) {
 				props.store(fos, "UBXF database");
 			}
 			return;
 		} else if (exportArgs[0].equals("augmentmilestones") && exportArgs[2].equals("--")) {
-			final String dbfile = exportArgs[1];
-			Properties props = new Properties();
-			try (FileInputStream fis = new FileInputStream(dbfile)) {
-				props.load(fis);
-			}
-			for (ParatextBook book : books) {
-				book.accept(new UBXFBookVisitor(book.getId(), true, new UBXFGrammarHandlerVisitor() {
-					@Override
-					protected void handleAlignMilestone(boolean start, Milestone milestone, Reference where) {
-						if (!start)
-							return;
-						String key = milestone.getAttributes().get("x-content") + "@" + where.getBook().getIdentifier() + "." + where.getFirstChapter() + "." + where.getFirstVerse() + "@" + milestone.getAttributes().get("x-occurrence") + "/" + milestone.getAttributes().get("x-occurrences");
-						String value = props.getProperty(key);
-						if (value == null) {
-							System.out.println("WARNING: Unable to augment milestone in " + where + " due to missing database key: " + key);
-							return;
-						}
-						String[] keyvals = value.split("\"");
-						for (int i = 0; i < keyvals.length; i += 2) {
-							String akey = keyvals[i].trim(), avalue = keyvals[i + 1];
-							String oldVal = milestone.getAttributes().get(akey);
-							if (oldVal != null && !oldVal.equals(avalue)) {
-								System.out.println("WARNING: Overwriting milestone attribute " + akey + " old value " + oldVal + " with new value " + avalue + " in milestone: " + key);
+			final File dbfile = new File(exportArgs[1]);
+			try (UBXFDatabase db = UBXFDatabase.isDatabaseFile(dbfile) ? new UBXFDatabase(dbfile) : null) {
+				Properties props = new Properties();
+				if (db == null) {
+					try (FileInputStream fis = new FileInputStream(dbfile)) {
+						props.load(fis);
+					}
+				}
+				for (ParatextBook book : books) {
+					book.accept(new UBXFBookVisitor(book.getId(), true, new UBXFGrammarHandlerVisitor() {
+						@Override
+						protected void handleAlignMilestone(boolean start, Milestone milestone, Reference where) {
+							if (!start)
+								return;
+							String content = milestone.getAttributes().get("x-content");
+							String verse = where.getBook().getIdentifier() + "." + where.getFirstChapter() + "." + where.getFirstVerse();
+							String occurrence = milestone.getAttributes().get("x-occurrence") + "/" + milestone.getAttributes().get("x-occurrences");
+							String key = content + "@" + verse + "@" + occurrence;
+							String value = db != null ? db.get(UBXFDatabase.key(verse, content, occurrence)) : props.getProperty(key);
+							if (value == null) {
+								System.out.println("WARNING: Unable to augment milestone in " + where + " due to missing database key: " + key);
+								return;
 							}
-							milestone.getAttributes().put(akey, avalue);
+							String[] keyvals = value.split("\"");
+							for (int i = 0; i < keyvals.length; i += 2) {
+								String akey = keyvals[i].trim(), avalue = keyvals[i + 1];
+								String oldVal = milestone.getAttributes().get(akey);
+								if (oldVal != null && !oldVal.equals(avalue)) {
+									System.out.println("WARNING: Overwriting milestone attribute " + akey + " old value " + oldVal + " with new value " + avalue + " in milestone: " + key);
+								}
+								milestone.getAttributes().put(akey, avalue);
+							}
+							milestone.getAttributes().canonicalize();
 						}
-					}
 
-					@Override
-					protected void handleWordlist(AutoClosingFormatting acf, Reference where) {
-					}
-				}));
+						@Override
+						protected void handleWordlist(AutoClosingFormatting acf, Reference where) {
+						}
+					}));
+				}
 			}
 			formatArg = 3;
 		} else if ((exportArgs[0].equals("fillwordattr") || exportArgs[0].equals("createwordattr")) && exportArgs[1].equals("--")) {
@@ -252,7 +291,7 @@ public class UBXFConverter extends AbstractParatextFormat {
 					}
 
 					List<Milestone> openMilestones = new ArrayList<>();
-					Map<String, String> activeAttributes = null;
+					AttributeMap activeAttributes = null;
 
 					@Override
 					protected void handleAlignMilestone(boolean start, Milestone milestone, Reference where) {
@@ -270,7 +309,7 @@ public class UBXFConverter extends AbstractParatextFormat {
 							return;
 						}
 						if (activeAttributes == null) {
-							activeAttributes = new Hashtable<>();
+							activeAttributes = new AttributeMap();
 							for (Milestone ms : openMilestones) {
 								for (Map.Entry<String, String> e : ms.getAttributes().entrySet()) {
 									String key = e.getKey();
@@ -282,8 +321,10 @@ public class UBXFConverter extends AbstractParatextFormat {
 									activeAttributes.put(key, (existingValue == null ? "" : existingValue + " ") + e.getValue());
 								}
 							}
+							activeAttributes.canonicalize();
 						}
 						acf.getAttributes().putAll(activeAttributes);
+						acf.getAttributes().canonicalize();
 					}
 				}));
 			}
@@ -415,12 +456,13 @@ public class UBXFConverter extends AbstractParatextFormat {
 							}
 							acf.getAttributes().put("x-morph", String.join(" ", morph));
 						}
+						acf.getAttributes().canonicalize();
 					}
 				}));
 			}
 			formatArg = 2;
 		} else {
-			System.out.println("Supported operations: createsrcloc, analyze, augmentmilestones, fillwordattr, createwordattr, convertgrammar");
+			System.out.println("Supported operations: createsrcloc, analyze, exportdb, augmentmilestones, fillwordattr, createwordattr, convertgrammar");
 			return;
 		}
 		AbstractParatextFormat exportFormat = (AbstractParatextFormat) Main.exportFormats.get(exportArgs[formatArg]).getImplementationClass().newInstance();
@@ -4,7 +4,9 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
@@ -44,12 +46,14 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.ParatextChar
 import biblemulticonverter.format.paratext.ParatextCharacterContent.ParatextCharacterContentVisitor;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.Reference;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.SpecialSpace;
+import biblemulticonverter.format.paratext.model.AttributeMap;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
 import biblemulticonverter.format.paratext.model.Version;
 import biblemulticonverter.format.paratext.utilities.ImportUtilities;
 import biblemulticonverter.format.paratext.utilities.StandardExportWarningMessages;
-import biblemulticonverter.format.paratext.utilities.TextUtilities;
+import biblemulticonverter.format.paratext.utilities.USFMTokenizer;
+import biblemulticonverter.utilities.InputDirectory;
 
 /**
  * Importer and exporter for USFM.
@@ -62,6 +66,8 @@ public class USFM extends AbstractParatextFormat {
 			"Usage (export): USFM <outdir> <filenamepattern>",
 			"",
 			"Point the importer to a directory that contains the .usfm files.",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
 			"",
 			"When exporting, you need to give a file name pattern. You can use # for ",
 			"the book number and * for the book name. Use ? to split by chapters, for ",
@@ -74,6 +80,13 @@ public class USFM extends AbstractParatextFormat {
 	public static final Map<String, FootnoteXrefKind> FOOTNOTE_XREF_TAGS = FootnoteXrefKind.allTags();
 	public static final Map<String, AutoClosingFormattingKind> AUTO_CLOSING_TAGS = AutoClosingFormattingKind.allTags();
 
+	static {
+		KNOWN_CHARACTER_TAGS.addAll(AUTO_CLOSING_TAGS.keySet());
+	}
+
+	private static final Pattern TABLE_CELL_TAG_PATTERN = Pattern.compile(TableCellStart.TABLE_CELL_TAG_REGEX);
+	private static final Pattern MILESTONE_TAG_PATTERN = Pattern.compile("qt[1-5]?(-[se])?|ts?(\\-[se])?");
+
 	private final boolean preserveSpacesAtEndOfLines;
 
 	public USFM() {
@@ -91,21 +104,52 @@ public class USFM extends AbstractParatextFormat {
 
 	@Override
 	protected ParatextBook doImportBook(File inputFile) throws Exception {
-		return doImportBook(inputFile, StandardCharsets.UTF_8);
+		if (!isUSFMFile(inputFile.getName()))
+			return null;
+		return doImportBook(inputFile.getPath(), Files.readAllBytes(inputFile.toPath()), StandardCharsets.UTF_8);
 	}
 
-	private ParatextBook doImportBook(File inputFile, Charset charset) throws Exception {
-		KNOWN_CHARACTER_TAGS.addAll(AUTO_CLOSING_TAGS.keySet());
-		if (!inputFile.getName().toLowerCase().endsWith(".usfm") && !inputFile.getName().toLowerCase().endsWith(".sfm"))
+	@Override
+	protected ParatextBook doImportBook(InputDirectory directory, String fileName) throws Exception {
+		if (!isUSFMFile(fileName))
 			return null;
-		String data = TextUtilities.usfmWhitespaceNormalization(new String(Files.readAllBytes(inputFile.toPath()), charset), preserveSpacesAtEndOfLines) + "\\$EOF$";
-		if (!data.startsWith("\\id ")) {
-			System.out.println("WARNING: Skipping malformed file " + inputFile);
+		return doImportBook(directory.getPath(fileName), directory.readAllBytes(fileName), StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean supportsStreaming() {
+		return true;
+	}
+
+	@Override
+	protected ParatextID peekBookID(InputDirectory directory, String fileName) throws Exception {
+		if (!isUSFMFile(fileName))
 			return null;
+		byte[] header = new byte[4096];
+		int len = 0, read;
+		try (InputStream in = directory.openStream(fileName)) {
+			while (len < header.length && (read = in.read(header, len, header.length - len)) != -1)
+				len += read;
 		}
-		int startPos = data.indexOf("\\", 2);
-		int finalPos = data.length() - "\\$EOF$".length();
-		String[] idParts = data.substring(4, startPos).trim().split(" ", 2);
+		USFMTokenizer tokenizer = new USFMTokenizer(StandardCharsets.UTF_8.decode(ByteBuffer.wrap(header, 0, len)), preserveSpacesAtEndOfLines, KNOWN_CHARACTER_TAGS);
+		if (!tokenizer.lookingAt("\\id "))
+			return null;
+		tokenizer.skip(4);
+		return ParatextID.fromIdentifier(tokenizer.readRawText().toString().trim().split(" ", 2)[0].toUpperCase());
+	}
+
+	private static boolean isUSFMFile(String fileName) {
+		return fileName.toLowerCase().endsWith(".usfm") || fileName.toLowerCase().endsWith(".sfm");
+	}
+
+	private ParatextBook doImportBook(String filePath, byte[] fileContent, Charset charset) throws Exception {
+		USFMTokenizer tokenizer = new USFMTokenizer(charset.decode(ByteBuffer.wrap(fileContent)), preserveSpacesAtEndOfLines, KNOWN_CHARACTER_TAGS);
+		if (!tokenizer.lookingAt("\\id ")) {
+			System.out.println("WARNING: Skipping malformed file " + filePath);
+			return null;
+		}
+		tokenizer.skip(4);
+		String[] idParts = tokenizer.readRawText().toString().trim().split(" ", 2);
 		ParatextID id = ParatextID.fromIdentifier(idParts[0].toUpperCase());
 		if (id == null) {
 			System.out.println("WARNING: Skipping book with unknown ID: " + idParts[0]);
@@ -131,23 +175,13 @@ public class USFM extends AbstractParatextFormat {
 		ChapterStart openChapter = null;
 		boolean parseAttributes = false;
 
-		while (startPos < finalPos) {
-			if (data.charAt(startPos) != '\\')
+		while (!tokenizer.atEnd()) {
+			if (!tokenizer.atMarker())
 				throw new IllegalStateException();
-			int pos = data.indexOf('\\', startPos + 1);
-			String textPart = data.substring(startPos + 1, pos);
-			startPos = pos;
-			pos = Math.min(textPart.length(), 1 + Math.min((textPart + " ").indexOf(' '), (textPart + "*").indexOf('*')));
-			String origTag = textPart.substring(0, pos).trim();
+			String origTag = tokenizer.readMarker();
 			String tag = origTag.toLowerCase();
-			textPart = textPart.substring(pos);
-			if (textPart.endsWith(" ")) {
-				String nextTag = data.substring(startPos + 1, Math.min(data.length(), startPos + 10)) + " *\\";
-				pos = Math.min(nextTag.indexOf('\\'), Math.min(nextTag.indexOf(' '), nextTag.indexOf('*')));
-				if (!KNOWN_CHARACTER_TAGS.contains(nextTag.substring(0, pos)) && !nextTag.startsWith("z")) {
-					textPart = textPart.substring(0, textPart.length() - 1);
-				}
-			}
+			String textPart = tokenizer.readTextString();
+			int pos;
 			if (containerStack.isEmpty() && (AUTO_CLOSING_TAGS.containsKey(tag) || tag.equals("v") || FOOTNOTE_XREF_TAGS.containsKey(tag))) {
 				ParatextCharacterContent container = new ParatextCharacterContent();
 				result.getContent().add(container);
@@ -229,18 +263,10 @@ public class USFM extends AbstractParatextFormat {
 				result.getContent().add(fig);
 				closeCharacterAttributes = true;
 				textPart = "";
-				if (data.startsWith("\\fig*", startPos)) {
-					pos = data.indexOf('\\', startPos + 5);
-					textPart = data.substring(startPos + 5, pos);
-					startPos = pos;
-					if (textPart.endsWith(" ")) {
-						String nextTag = data.substring(startPos + 1, Math.min(data.length(), startPos + 10)) + " *\\";
-						pos = Math.min(nextTag.indexOf('\\'), Math.min(nextTag.indexOf(' '), nextTag.indexOf('*')));
-						if (!KNOWN_CHARACTER_TAGS.contains(nextTag.substring(0, pos)) && !nextTag.startsWith("z")) {
-							textPart = textPart.substring(0, textPart.length() - 1);
-						}
-					}
-				} else if (data.startsWith("\\+", startPos)) {
+				if (tokenizer.lookingAt("\\fig*")) {
+					tokenizer.skip(5);
+					textPart = tokenizer.readTextString();
+				} else if (tokenizer.lookingAt("\\+")) {
 					System.out.println("WARNING: Nested tags inside figure are not supported!");
 				}
 			} else if (tag.equals("v")) {
@@ -288,21 +314,20 @@ public class USFM extends AbstractParatextFormat {
 				result.getContent().add(openChapter);
 				closeCharacterAttributes = true;
 				textPart = parts.length == 1 ? "" : parts[1];
-			} else if (tag.matches(TableCellStart.TABLE_CELL_TAG_REGEX)) {
+			} else if (TABLE_CELL_TAG_PATTERN.matcher(tag).matches()) {
 				result.getContent().add(new TableCellStart(tag));
 				closeCharacterAttributes = true;
 			} else if (FOOTNOTE_XREF_TAGS.containsKey(tag)) {
 				String[] parts = textPart.split(" ", 2);
 				List<String> categories = new ArrayList<>();
-				while (data.startsWith("\\cat ", startPos)) {
-					pos = data.indexOf("\\", startPos + 5);
-					categories.add(data.substring(startPos + 5, pos).trim());
-					if (data.startsWith("\\cat* ", pos)) {
-						pos += 6;
-					} else if (data.startsWith("\\cat*", pos)) {
-						pos += 5;
+				while (tokenizer.lookingAt("\\cat ")) {
+					tokenizer.skip(5);
+					categories.add(tokenizer.readRawText().toString().trim());
+					if (tokenizer.lookingAt("\\cat* ")) {
+						tokenizer.skip(6);
+					} else if (tokenizer.lookingAt("\\cat*")) {
+						tokenizer.skip(5);
 					}
-					startPos = pos;
 				}
 				FootnoteXref nextContainer = new FootnoteXref(FOOTNOTE_XREF_TAGS.get(tag), parts[0], categories.toArray(new String[0]));
 				containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
@@ -337,20 +362,19 @@ public class USFM extends AbstractParatextFormat {
 					if (!charset.equals(StandardCharsets.UTF_8)) {
 						throw new IOException("Two charsets specified: " + charset + " and " + correctCharset);
 					}
-					return doImportBook(inputFile, correctCharset);
+					return doImportBook(filePath, fileContent, correctCharset);
 				}
 				textPart = "";
 			} else if (tag.equals("esb")) {
 				List<String> categories = new ArrayList<>();
-				while (data.startsWith("\\cat ", startPos)) {
-					pos = data.indexOf("\\", startPos + 5);
-					categories.add(data.substring(startPos + 5, pos).trim());
-					if (data.startsWith("\\cat* ", pos)) {
-						pos += 6;
-					} else if (data.startsWith("\\cat*", pos)) {
-						pos += 5;
+				while (tokenizer.lookingAt("\\cat ")) {
+					tokenizer.skip(5);
+					categories.add(tokenizer.readRawText().toString().trim());
+					if (tokenizer.lookingAt("\\cat* ")) {
+						tokenizer.skip(6);
+					} else if (tokenizer.lookingAt("\\cat*")) {
+						tokenizer.skip(5);
 					}
-					startPos = pos;
 				}
 				result.getContent().add(new SidebarStart(categories.toArray(new String[0])));
 				textPart = "";
@@ -384,7 +408,7 @@ public class USFM extends AbstractParatextFormat {
 					result.getAttributes().put(tag, textPart);
 				}
 				textPart = "";
-			} else if ((tag.startsWith("z") || tag.matches("qt[1-5]?(-[se])?|ts?(\\-[se])?")) && data.startsWith("\\*", startPos)) {
+			} else if ((tag.startsWith("z") || MILESTONE_TAG_PATTERN.matcher(tag).matches()) && tokenizer.lookingAt("\\*")) {
 				Milestone milestone = new Milestone(tag.startsWith("z") ? origTag : tag);
 				if (containerStack.isEmpty()) {
 					ParatextCharacterContent container = new ParatextCharacterContent();
@@ -395,19 +419,12 @@ public class USFM extends AbstractParatextFormat {
 				if (textPart.startsWith("|")) {
 					String attList = textPart.substring(1).trim();
 					parseAttributeList(attList, milestone.getAttributes());
+					milestone.getAttributes().canonicalize();
 				} else if (!textPart.isEmpty()){
 					System.out.println("WARNING: Skipping unsupported milestone content: "+textPart);
 				}
-				pos = data.indexOf('\\', startPos + 2);
-				textPart = data.substring(startPos + 2, pos);
-				startPos = pos;
-				if (textPart.endsWith(" ")) {
-					String nextTag = data.substring(startPos + 1, Math.min(data.length(), startPos + 10)) + " *\\";
-					pos = Math.min(nextTag.indexOf('\\'), Math.min(nextTag.indexOf(' '), nextTag.indexOf('*')));
-					if (!KNOWN_CHARACTER_TAGS.contains(nextTag.substring(0, pos)) && !nextTag.startsWith("z")) {
-						textPart = textPart.substring(0, textPart.length() - 1);
-					}
-				}
+				tokenizer.skip(2);
+				textPart = tokenizer.readTextString();
 			} else if (tag.startsWith("z")) {
 				if (containerStack.isEmpty()) {
 					ParatextCharacterContent container = new ParatextCharacterContent();
@@ -422,12 +439,11 @@ public class USFM extends AbstractParatextFormat {
 				containerStack.clear();
 			}
 
-			if (!containerStack.isEmpty() && textPart.contains("|") && containerStack.get(containerStack.size() - 1) instanceof AutoClosingFormatting) {
+			if (!containerStack.isEmpty() && textPart.indexOf('|') != -1 && containerStack.get(containerStack.size() - 1) instanceof AutoClosingFormatting) {
 				AutoClosingFormatting nextContainer = (AutoClosingFormatting) containerStack.get(containerStack.size() - 1);
-				String nextTag = data.substring(startPos, Math.min(startPos+10, data.length()));
-				if ((nextContainer.getKind() == AutoClosingFormattingKind.WORDLIST || parseAttributes) && (nextContainer.getKind().getDefaultAttribute() != null || textPart.matches(".*\\|[^|]*?=[^|]*")) && nextTag.matches("\\\\[^+].*|\\\\[^ *]+\\*.*")) {
+				pos = textPart.lastIndexOf('|');
+				if ((nextContainer.getKind() == AutoClosingFormattingKind.WORDLIST || parseAttributes) && (nextContainer.getKind().getDefaultAttribute() != null || textPart.indexOf('=', pos) != -1) && tokenizer.atAttributeEnd()) {
 					String defaultAttribute = nextContainer.getKind().getDefaultAttribute();
-					pos = textPart.lastIndexOf("|");
 					String attList = textPart.substring(pos+1).trim();
 					textPart = textPart.substring(0, pos);
 					if (textPart.endsWith(" ")) {
@@ -438,12 +454,14 @@ public class USFM extends AbstractParatextFormat {
 					} else {
 						nextContainer.getAttributes().put(defaultAttribute, attList);
 					}
+					nextContainer.getAttributes().canonicalize();
 				}
 			}
 
 			List<ParatextCharacterContentPart> texts = new ArrayList<>();
+			int textStart = 0;
 			while (true) {
-				int pos1 = textPart.indexOf("~"), pos2 = textPart.indexOf(" // ");
+				int pos1 = textPart.indexOf('~', textStart), pos2 = textPart.indexOf(" // ", textStart);
 				ParatextCharacterContent.SpecialSpace space;
 				if (pos2 != -1 && (pos1 == -1 || pos2 < pos1)) {
 					pos1 = pos2;
@@ -455,13 +473,13 @@ public class USFM extends AbstractParatextFormat {
 				} else {
 					break;
 				}
-				ParatextCharacterContent.Text prefix = ParatextCharacterContent.Text.from(textPart.substring(0, pos1));
+				ParatextCharacterContent.Text prefix = ParatextCharacterContent.Text.from(textPart.substring(textStart, pos1));
 				if (prefix != null)
 					texts.add(prefix);
 				texts.add(space);
-				textPart = textPart.substring(pos2);
+				textStart = pos2;
 			}
-			ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(textPart);
+			ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(textPart.substring(textStart));
 			if (text != null) {
 				texts.add(text);
 			}
@@ -921,7 +939,7 @@ public class USFM extends AbstractParatextFormat {
 			return "+"+f.getUsedTag();
 		}
 
-		public Map<String, String> getAttributes() {
+		public AttributeMap getAttributes() {
 			return f.getAttributes();
 		}
 
@@ -1,29 +1,30 @@
 package biblemulticonverter.format.paratext;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.OutputKeys;
 import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.stream.Collectors;
 
@@ -56,6 +57,7 @@ import biblemulticonverter.format.paratext.model.VerseIdentifier;
 import biblemulticonverter.format.paratext.utilities.ImportUtilities;
 import biblemulticonverter.format.paratext.utilities.TagParser;
 import biblemulticonverter.format.paratext.utilities.TextUtilities;
+import biblemulticonverter.format.paratext.utilities.USXStreamReader;
 import biblemulticonverter.schema.usfx.NoteContents;
 import biblemulticonverter.schema.usfx.ObjectFactory;
 import biblemulticonverter.schema.usfx.PType;
@@ -68,6 +70,7 @@ import biblemulticonverter.schema.usfx.Usfx.Book;
 import biblemulticonverter.schema.usfx.Usfx.Book.Cp;
 import biblemulticonverter.schema.usfx.Usfx.Book.Table;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 /**
  * Importer and exporter for USFX.
@@ -91,101 +94,128 @@ public class USFX extends AbstractParatextFormat {
 
 	@Override
 	protected List<ParatextBook> doImportAllBooks(File inputFile) throws Exception {
-		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		Usfx doc = (Usfx) u.unmarshal(inputFile);
 		List<ParatextBook> result = new ArrayList<ParatextBook>();
-		for (Serializable s : doc.getContent()) {
-			if (s instanceof String) {
-				if (!s.toString().trim().isEmpty()) {
-					System.out.println("WARNING: Skipping text outside of book: " + s);
-				}
-			} else if (s instanceof JAXBElement<?>) {
-				JAXBElement<?> elem = (JAXBElement<?>) s;
-				if (elem.getName().getLocalPart().equals("book")) {
-					Usfx.Book book = (Usfx.Book) elem.getValue();
-					ParatextBook bk = parseBook(book);
-					if (bk != null)
-						result.add(bk);
-
-				} else {
-					System.out.println("WARNING: Skipping unsupported tag outside of book: " + elem.getName());
+		try (InputStream in = new FileInputStream(inputFile)) {
+			USXStreamReader reader = new USXStreamReader(inputFile.getName(), XMLInputFactory.newFactory().createXMLStreamReader(inputFile.toURI().toString(), in), ValidateXML.createStreamValidator(getSchema()));
+			try {
+				if (!reader.readRootElement().equals("usfx"))
+					throw new IOException("Unsupported root element: " + reader.getLocalName());
+				int type;
+				while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+					if (type == USXStreamReader.TEXT) {
+						if (!reader.getText().trim().isEmpty()) {
+							System.out.println("WARNING: Skipping text outside of book: " + reader.getText());
+						}
+					} else if (reader.getLocalName().equals("book")) {
+						ParatextBook bk = parseBook(reader);
+						if (bk != null)
+							result.add(bk);
+					} else if (ROOT_CONTENT.contains(reader.getLocalName())) {
+						System.out.println("WARNING: Skipping unsupported tag outside of book: " + reader.getLocalName());
+						reader.skipElement();
+					} else {
+						reader.skipElement();
+					}
 				}
-			} else {
-				System.out.println("WARNING: Skipping unsupported content outside of book " + s);
+				reader.finish();
+			} finally {
+				reader.close();
 			}
 		}
 		result.sort(Comparator.comparing(ParatextBook::getId));
 		return result;
 	}
 
+	// elements allowed by the schema; other elements are skipped, like JAXB does
+	private static final Set<String> ROOT_CONTENT = new HashSet<>(Arrays.asList("languageCode", "rem", "ide"));
+	private static final Set<String> BOOK_CONTENT = new HashSet<>(Arrays.asList("id", "ide", "rem", "h", "cl", "p", "q", "mt", "d", "s", "sectionBoundary", "b", "generated", "c", "ca", "toc", "milestone", "table", "periph", "v", "ve", "cp", "f"));
+	private static final Set<String> PARAGRAPH_CONTENT = new HashSet<>(Arrays.asList("c", "v", "ve", "qt", "nd", "tl", "milestone", "ca", "cp", "va", "vp", "qs", "qac", "table", "generated", "f", "ef", "fm", "x", "ex", "sls", "dc", "bk", "pn", "k", "ord", "add", "sig", "bd", "it", "bdit", "sc", "no", "fig", "ndx", "w", "wh", "wg", "wr", "quoteStart", "quoteRemind", "quoteEnd", "ior", "wj", "cs", "fs", "wtp", "da", "cl", "optionalLineBreak", "ref", "rq", "em", "periph", "rem", "xt", "gw"));
+	private static final Set<String> NOTE_CONTENT = new HashSet<>(Arrays.asList("ref", "nd", "c", "tl", "it", "qt", "sls", "dc", "bdit", "bk", "pn", "k", "ord", "add", "bd", "sc", "wh", "wg", "wr", "wj", "cs", "optionalLineBreak", "em", "fp", "fr", "fk", "fq", "fqa", "fl", "fdc", "fv", "ft", "fm", "xo", "xk", "xq", "xt", "xot", "xnt", "xdc"));
+	private static final Set<String> VERSE_AND_CHAPTER_TAGS = new HashSet<>(Arrays.asList("c", "v", "ve"));
+	private static final Map<String, String> FIGURE_ATTRIBUTES = Arrays.asList("description:alt", "catalog:src", "size:size", "location:loc", "copyright:copy", "reference:ref").stream().map(s -> s.split(":")).collect(Collectors.toMap(x -> x[0], x -> x[1]));
+
 	private static class ImportBookContext {
-		ChapterStart openChapter = null;
-	}
+		private final USXStreamReader reader;
+		private final ParatextBook result;
+		private final List<ParatextCharacterContentContainer> containerStack = new ArrayList<>();
+		private ChapterStart openChapter = null;
+
+		private ImportBookContext(USXStreamReader reader, ParatextBook result) {
+			this.reader = reader;
+			this.result = result;
+		}
 
-	private ParatextBook parseBook(Book book) {
+		private ParatextCharacterContentContainer getCurrentContainer() {
+			if (containerStack.isEmpty()) {
+				ParatextCharacterContent container = new ParatextCharacterContent();
+				containerStack.add(container);
+				result.getContent().add(container);
+			}
+			return containerStack.get(containerStack.size() - 1);
+		}
+	}
 
-		String bookID = book.getId();
-		while(book.getContent().size() > 1 && book.getContent().get(0) instanceof String && ((String)book.getContent().get(0)).trim().isEmpty()) {
-			book.getContent().remove(0);
+	private ParatextBook parseBook(USXStreamReader reader) throws IOException, XMLStreamException {
+		String bookID = reader.getAttribute("id");
+		int type = reader.next();
+		if (type == USXStreamReader.TEXT && reader.getText().trim().isEmpty()) {
+			type = reader.next();
 		}
-		if (!book.getContent().isEmpty() && book.getContent().get(0) instanceof JAXBElement<?> && ((JAXBElement<?>) book.getContent().get(0)).getName().getLocalPart().equals("id")) {
-			Usfx.Book.Id id = (Usfx.Book.Id) ((JAXBElement<?>) book.getContent().remove(0)).getValue();
-			bookID = (id.getId() + " " + id.getValue()).trim();
+		if (type == USXStreamReader.START_ELEMENT && reader.getLocalName().equals("id")) {
+			String id = reader.getAttribute("id");
+			bookID = (id + " " + reader.readElementText()).trim();
+		} else {
+			reader.pushBack();
 		}
+		if (bookID == null)
+			throw new IOException("Book without ID found at " + reader.getHumanReadableLocation());
 		String[] idParts = bookID.trim().split(" ", 2);
 		ParatextID id = ParatextID.fromIdentifier(idParts[0].toUpperCase());
 		if (id == null) {
 			System.out.println("WARNING: Skipping book with unknown ID: " + idParts[0]);
+			reader.readElementText();
 			return null;
 		}
-		ParatextBook result = new ParatextBook(id, idParts.length == 1 ? "" : idParts[1]);
-		List<ParatextCharacterContentContainer> containerStack = new ArrayList<>();
-		ImportBookContext context = new ImportBookContext();
-		parseElements(result, containerStack, book.getContent(), context);
-		ImportUtilities.closeOpenChapter(result, context.openChapter);
-		return result;
+		ImportBookContext context = new ImportBookContext(reader, new ParatextBook(id, idParts.length == 1 ? "" : idParts[1]));
+		parseElements(context, BOOK_CONTENT);
+		ImportUtilities.closeOpenChapter(context.result, context.openChapter);
+		return context.result;
 	}
 
-	private void parseElements(ParatextBook result, List<ParatextCharacterContentContainer> containerStack, List<Serializable> elements, ImportBookContext context) {
-		for (int i = 0; i < elements.size() - 1; i++) {
-			Serializable s1 = elements.get(i);
-			Serializable s2 = elements.get(i + 1);
-			if (s1 instanceof String && s2 instanceof JAXBElement) {
-				if (Arrays.asList("c", "v", "ve").contains(((JAXBElement<?>) s2).getName().getLocalPart())) {
-					elements.set(i, s1.toString().replaceAll("[\r\n\t ]+$", ""));
+	private void parseElements(ImportBookContext context, Set<String> allowedContent) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		String previousElement = null;
+		int type;
+		while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+			if (type == USXStreamReader.TEXT) {
+				String value = reader.getText();
+				if (VERSE_AND_CHAPTER_TAGS.contains(previousElement)) {
+					value = value.replaceAll("^[\r\n\t ]", "");
 				}
-			} else if (s1 instanceof JAXBElement<?> && s2 instanceof String) {
-				if (Arrays.asList("c", "v", "ve").contains(((JAXBElement<?>) s1).getName().getLocalPart())) {
-					elements.set(i + 1, s2.toString().replaceAll("^[\r\n\t ]", ""));
+				if (reader.next() == USXStreamReader.START_ELEMENT && VERSE_AND_CHAPTER_TAGS.contains(reader.getLocalName())) {
+					value = value.replaceAll("[\r\n\t ]+$", "");
 				}
-			}
-		}
-		for (Serializable s : elements) {
-			if (s instanceof String) {
-				Text text = Text.from((String) s);
-				if(text == null) {
-					continue;
-				}
-				if (containerStack.isEmpty()) {
-					ParatextCharacterContent container = new ParatextCharacterContent();
-					containerStack.add(container);
-					result.getContent().add(container);
+				reader.pushBack();
+				previousElement = null;
+				Text text = Text.from(value);
+				if (text != null) {
+					context.getCurrentContainer().getContent().add(text);
 				}
-				containerStack.get(containerStack.size() - 1).getContent().add(text);
-			} else if (s instanceof JAXBElement<?>) {
-				parseElement(result, containerStack, (JAXBElement<?>) s, context);
+			} else if (allowedContent.contains(reader.getLocalName())) {
+				previousElement = reader.getLocalName();
+				parseElement(context, previousElement, allowedContent);
 			} else {
-				System.out.println("WARNING: Skipping unsupported content inside of book " + s);
+				reader.skipElement();
 			}
 		}
 	}
 
-	private void parseElement(ParatextBook result, List<ParatextCharacterContentContainer> containerStack, JAXBElement<?> element, ImportBookContext context) {
-		String localName = element.getName().getLocalPart();
+	private void parseElement(ImportBookContext context, String localName, Set<String> contentModel) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		ParatextBook result = context.result;
+		List<ParatextCharacterContentContainer> containerStack = context.containerStack;
 		if (localName.equals("rem")) {
-			String value = TextUtilities.whitespaceNormalization((String) element.getValue()).trim();
+			String value = TextUtilities.whitespaceNormalization(reader.readElementText()).trim();
 			if (value.startsWith("@@STATUS@@ ")) {
 				result.getAttributes().put("sts", value.substring(11));
 			} else if (!result.getContent().isEmpty()) {
@@ -202,100 +232,76 @@ public class USFX extends AbstractParatextFormat {
 			result.getContent().add(new ParagraphStart(ParagraphKind.CHAPTER_LABEL));
 			ParatextCharacterContent pcc = new ParatextCharacterContent();
 			result.getContent().add(pcc);
-			pcc.getContent().add(ParatextCharacterContent.Text.from(TextUtilities.whitespaceNormalization((String) element.getValue()).trim()));
+			pcc.getContent().add(ParatextCharacterContent.Text.from(TextUtilities.whitespaceNormalization(reader.readElementText()).trim()));
 		} else if (localName.equals("h")) {
-			Usfx.Book.H h = (Usfx.Book.H) element.getValue();
-			result.getAttributes().put("h" + (h.getLevel() == null ? "" : h.getLevel()), TextUtilities.whitespaceNormalization(h.getValue()).trim());
-		} else if (localName.equals("b") && element.getValue() instanceof Usfx.Book.B) {
-			Usfx.Book.B b = (Usfx.Book.B) element.getValue();
-			String tag = (b.getSfm() == null ? localName : b.getSfm());
+			Integer level = reader.getIntegerAttribute("level");
+			result.getAttributes().put("h" + (level == null ? "" : level), TextUtilities.whitespaceNormalization(reader.readElementText()).trim());
+		} else if (localName.equals("b")) {
+			String sfm = reader.getAttribute("sfm");
+			reader.skipElement();
+			String tag = (sfm == null ? localName : sfm);
 			ParagraphKind kind = USFM.PARAGRAPH_TAGS.get(tag);
 			if (kind == null) {
-				System.out.println("WARNING: Unsupported paragraph kind: " + kind);
+				System.out.println("WARNING: Unsupported paragraph kind: " + tag);
 				kind = ParagraphKind.PARAGRAPH_P;
 			}
 			result.getContent().add(new ParagraphStart(kind));
 			containerStack.clear();
-		} else if (Arrays.asList("p", "q", "d", "s", "mt", "b").contains(localName)) {
-			PType pt = (PType) element.getValue();
-			String tag = (pt.getSfm() == null ? localName : pt.getSfm()) + (pt.getLevel() == null ? "" : "" + pt.getLevel());
+		} else if (Arrays.asList("p", "q", "d", "s", "mt").contains(localName)) {
+			String sfm = reader.getAttribute("sfm");
+			Integer level = reader.getIntegerAttribute("level");
+			String tag = (sfm == null ? localName : sfm) + (level == null ? "" : "" + level);
 			ParagraphKind kind = USFM.PARAGRAPH_TAGS.get(tag);
 			if (kind == null) {
-				System.out.println("WARNING: Unsupported paragraph kind: " + kind);
+				System.out.println("WARNING: Unsupported paragraph kind: " + tag);
 				kind = ParagraphKind.PARAGRAPH_P;
 			}
 			result.getContent().add(new ParagraphStart(kind));
 			containerStack.clear();
-			parseElements(result, containerStack, pt.getContent(), context);
+			parseElements(context, PARAGRAPH_CONTENT);
 		} else if (Arrays.asList("sectionBoundary", "fm", "gw", "wr").contains(localName)) {
 			System.out.println("WARNING: Skipping unsupported tag: " + localName);
+			reader.skipElement();
 		} else if (Arrays.asList("generated", "wtp", "da", "fs").contains(localName)) {
 			// to be skipped
-		} else if (localName.equals("c")) {
+			reader.skipElement();
+		} else if (localName.equals("c") && contentModel != NOTE_CONTENT) {
 			ImportUtilities.closeOpenChapter(result, context.openChapter);
-			String id;
-			if (element.getValue() instanceof Usfx.Book.C) {
-				Usfx.Book.C c = (Usfx.Book.C) element.getValue();
-				id = c.getId();
-			} else if (element.getValue() instanceof PType.C) {
-				PType.C c = (PType.C) element.getValue();
-				id = c.getId();
-			} else {
-				throw new IllegalStateException(element.getValue().getClass().getName());
-			}
+			String id = reader.getAttribute("id");
+			reader.skipElement();
 			context.openChapter = new ChapterStart(new ChapterIdentifier(result.getId(), Integer.parseInt(id)));
 			result.getContent().add(context.openChapter);
 			containerStack.clear();
 		} else if (localName.equals("va")) {
-			String value = (String) element.getValue();
 			AutoClosingFormatting va = new AutoClosingFormatting(AutoClosingFormattingKind.ALTERNATE_VERSE);
-			va.getContent().add(Text.from(value));
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(va);
+			va.getContent().add(Text.from(reader.readElementText()));
+			context.getCurrentContainer().getContent().add(va);
 		} else if (localName.equals("ca")) {
-			String value = ((PType.Ca) element.getValue()).getValue();
 			AutoClosingFormatting ca = new AutoClosingFormatting(AutoClosingFormattingKind.ALTERNATE_CHAPTER);
-			ca.getContent().add(Text.from(value));
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(ca);
-		} else if (localName.equals("cp") && element.getValue() instanceof Usfx.Book.Cp) {
-			Usfx.Book.Cp cp = (Usfx.Book.Cp) element.getValue();
+			ca.getContent().add(Text.from(reader.readElementText()));
+			context.getCurrentContainer().getContent().add(ca);
+		} else if (localName.equals("cp") && contentModel == BOOK_CONTENT) {
+			String id = reader.getAttribute("id");
+			reader.skipElement();
 			result.getContent().add(new ParagraphStart(ParagraphKind.CHAPTER_PRESENTATION));
 			ParatextCharacterContent pcc = new ParatextCharacterContent();
-			pcc.getContent().add(Text.from(cp.getId()));
+			pcc.getContent().add(Text.from(id));
 			result.getContent().add(pcc);
 		} else if (localName.equals("vp")) {
-			String vp = (String) element.getValue();
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
 			AutoClosingFormatting acf = new AutoClosingFormatting(AutoClosingFormattingKind.PUBLISHED_VERSE);
-			acf.getContent().add(Text.from(vp));
-			containerStack.get(containerStack.size() - 1).getContent().add(acf);
+			acf.getContent().add(Text.from(reader.readElementText()));
+			context.getCurrentContainer().getContent().add(acf);
 		} else if (localName.equals("fig")) {
-			PType.Fig fig = (PType.Fig) element.getValue();
 			String caption = "";
 			Map<String, String> attributes = new HashMap<>();
-			Map<String, String> tagMap = Arrays.asList("description:alt", "catalog:src", "size:size", "location:loc", "copyright:copy", "reference:ref").stream().map(s -> s.split(":")).collect(Collectors.toMap(x -> x[0], x -> x[1]));
-			for (Serializable s : fig.getContent()) {
-				if (!(s instanceof JAXBElement<?>))
-					continue;
-				JAXBElement<String> je = (JAXBElement<String>) s;
-				String figLocalName = je.getName().getLocalPart();
+			while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+				String figLocalName = reader.getLocalName();
 				if (figLocalName.equals("caption")) {
-					caption = je.getValue();
+					caption = reader.readElementText();
+				} else if (FIGURE_ATTRIBUTES.containsKey(figLocalName)) {
+					attributes.put(FIGURE_ATTRIBUTES.get(figLocalName), reader.readElementText());
 				} else {
-					attributes.put(tagMap.getOrDefault(figLocalName, "-ignored-"), je.getValue());
+					reader.skipElement();
 				}
 			}
 			for (String optatt : Arrays.asList("alt", "loc", "copy", "ref", "size")) {
@@ -306,42 +312,31 @@ public class USFX extends AbstractParatextFormat {
 			figure.getAttributes().putAll(attributes);
 			result.getContent().add(figure);
 		} else if (localName.equals("toc")) {
-			StyledString ss = (StyledString) element.getValue();
-			String tag = ss.getSfm() == null ? "toc" : ss.getSfm();
-			result.getAttributes().put(tag + ss.getLevel(), TextUtilities.whitespaceNormalization(ss.getContent().stream().filter(c -> c instanceof String).map(Serializable::toString).collect(Collectors.joining())).trim());
-		} else if (localName.equals("table") && element.getValue() instanceof Usfx.Book.Table) {
-			Usfx.Book.Table table = (Usfx.Book.Table) element.getValue();
-			for (Usfx.Book.Table.Tr tr : table.getTr()) {
-				result.getContent().add(new ParagraphStart(ParagraphKind.TABLE_ROW));
-				for (JAXBElement<PType> cell : tr.getThOrThrOrTc()) {
-					result.getContent().add(new TableCellStart(cell.getName().getLocalPart() + cell.getValue().getLevel()));
-					containerStack.clear();
-					parseElements(result, containerStack, cell.getValue().getContent(), context);
+			String sfm = reader.getAttribute("sfm");
+			String tag = sfm == null ? "toc" : sfm;
+			result.getAttributes().put(tag + reader.getIntegerAttribute("level"), TextUtilities.whitespaceNormalization(reader.readElementText()).trim());
+		} else if (localName.equals("table")) {
+			while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+				if (!reader.getLocalName().equals("tr")) {
+					reader.skipElement();
+					continue;
 				}
-			}
-		} else if (localName.equals("table") && element.getValue() instanceof PType.Table) {
-			PType.Table table = (PType.Table) element.getValue();
-			for (PType.Table.Tr tr : table.getTr()) {
 				result.getContent().add(new ParagraphStart(ParagraphKind.TABLE_ROW));
-				for (JAXBElement<PType> cell : tr.getThOrThrOrTc()) {
-					result.getContent().add(new TableCellStart(cell.getName().getLocalPart() + cell.getValue().getLevel()));
+				while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+					if (!Arrays.asList("th", "thr", "tc", "tcr").contains(reader.getLocalName())) {
+						reader.skipElement();
+						continue;
+					}
+					result.getContent().add(new TableCellStart(reader.getLocalName() + reader.getIntegerAttribute("level")));
 					containerStack.clear();
-					parseElements(result, containerStack, cell.getValue().getContent(), context);
+					parseElements(context, PARAGRAPH_CONTENT);
 				}
 			}
 		} else if (localName.equals("periph")) {
-			result.getContent().add(new PeripheralStart((String) element.getValue(), null));
+			result.getContent().add(new PeripheralStart(reader.readElementText(), null));
 		} else if (localName.equals("v")) {
-			String id;
-			if (element.getValue() instanceof Usfx.Book.V) {
-				Usfx.Book.V v = (Usfx.Book.V) element.getValue();
-				id = v.getId();
-			} else if (element.getValue() instanceof PType.V) {
-				PType.V v = (PType.V) element.getValue();
-				id = v.getId();
-			} else {
-				throw new IllegalStateException(element.getValue().getClass().getName());
-			}
+			String id = reader.getAttribute("id");
+			reader.skipElement();
 			ChapterStart chapter = result.findLastBookContent(ChapterStart.class);
 			if (chapter == null) {
 				throw new IllegalStateException("Verse found before chapter start: " + id);
@@ -350,6 +345,7 @@ public class USFX extends AbstractParatextFormat {
 			result.getContent().add(new VerseStart(location, id));
 			containerStack.clear();
 		} else if (localName.equals("ve")) {
+			reader.skipElement();
 			VerseStart start = result.findLastBookContent(VerseStart.class);
 			if (start == null) {
 				throw new IllegalStateException("Verse end found before verse start!");
@@ -357,58 +353,48 @@ public class USFX extends AbstractParatextFormat {
 			result.getContent().add(new VerseEnd(start.getLocation()));
 			containerStack.clear();
 		} else if (Arrays.asList("f", "x", "fe", "ef", "ex").contains(localName)) {
-			NoteContents nc = (NoteContents) element.getValue();
-			String sfm = nc.getSfm();
+			String sfm = reader.getAttribute("sfm");
 			if (sfm == null || sfm.isEmpty())
 				sfm = localName;
-			String caller = nc.getCaller();
+			String caller = reader.getAttribute("caller");
 			if (caller == null || caller.isEmpty())
 				caller = "+";
 			FootnoteXref nextContainer = new FootnoteXref(USFM.FOOTNOTE_XREF_TAGS.get(sfm), caller, new String[0]);
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
+			context.getCurrentContainer().getContent().add(nextContainer);
 			containerStack.add(nextContainer);
-			parseElements(result, containerStack, nc.getContent(), context);
+			parseElements(context, NOTE_CONTENT);
 			containerStack.remove(nextContainer);
 		} else if (Arrays.asList("fp", "fr", "fk", "fq", "fqa", "fl", "fdc", "fv", "ft", "fm", "xo", "xk", "xq", "xt", "xot", "xnt", "xdc").contains(localName)
-				|| (Arrays.asList("nd", "c", "tl", "it", "qt", "sls", "dc", "bdit", "bk", "pn", "k", "ord", "add", "bd", "sc", "wh", "wg", "wr", "wj", "cs", "em").contains(localName) && element.getValue() instanceof NoteContents)) {
-
-			NoteContents nc = (NoteContents) element.getValue();
-			String sfm = nc.getSfm();
+				|| (Arrays.asList("nd", "c", "tl", "it", "qt", "sls", "dc", "bdit", "bk", "pn", "k", "ord", "add", "bd", "sc", "wh", "wg", "wr", "wj", "cs", "em").contains(localName) && contentModel == NOTE_CONTENT)) {
+			String sfm = reader.getAttribute("sfm");
 			if (sfm == null || sfm.isEmpty())
 				sfm = localName;
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
+			ParatextCharacterContentContainer container = context.getCurrentContainer();
 			if (!USFM.AUTO_CLOSING_TAGS.containsKey(sfm)) {
 				System.out.println("WARNING: Replacing char style \\" + sfm + " by \\no");
 				sfm = "no";
 			}
 			AutoClosingFormatting nextContainer = new AutoClosingFormatting(USFM.AUTO_CLOSING_TAGS.get(sfm));
-			containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
+			container.getContent().add(nextContainer);
 			containerStack.add(nextContainer);
-			parseElements(result, containerStack, nc.getContent(), context);
+			parseElements(context, NOTE_CONTENT);
 			containerStack.remove(nextContainer);
 		} else if (localName.equals("optionalLineBreak")) {
+			reader.skipElement();
 			containerStack.get(containerStack.size() - 1).getContent().add(new ParatextCharacterContent.SpecialSpace(false, true));
 		} else if (localName.equals("ref")) {
-			RefType rt = (RefType) element.getValue();
-			ParatextCharacterContentPart ref = Text.from(rt.getContent());
+			String tgt = reader.getAttribute("tgt");
+			String content = reader.readElementText();
+			ParatextCharacterContentPart ref = Text.from(content);
 
 			// TODO
 			// The following code does not seem to be exactly according to the specification found here:
 			// https://ebible.org/usfx/usfx_xsd.html#refType
 			// This code does not allow for a second book, as in: ISA.7.14-ISA.7.15.
-			if (rt.getTgt() == null || !rt.getTgt().matches("[A-Z1-4]{3}\\.[0-9]+\\.[0-9]+(-[0-9]+(\\.[0-9]+)?)?")) {
-				System.out.println("WARNING: Unsupported structured reference format - replaced by plain text: " + rt.getTgt());
+			if (tgt == null || !tgt.matches("[A-Z1-4]{3}\\.[0-9]+\\.[0-9]+(-[0-9]+(\\.[0-9]+)?)?")) {
+				System.out.println("WARNING: Unsupported structured reference format - replaced by plain text: " + tgt);
 			} else {
-				String[] parts = rt.getTgt().split("[ .-]");
+				String[] parts = tgt.split("[ .-]");
 				ParatextID id = ParatextID.fromIdentifier(parts[0]);
 				if (id == null) {
 					System.out.println("WARNING: Unsupported book in structured reference - replaced by plain text: " + parts[0]);
@@ -421,73 +407,44 @@ public class USFX extends AbstractParatextFormat {
 						if (parts.length == 5) {
 							// second chapter
 							int c2 = Integer.parseInt(parts[3]);
-							ref = Reference.verseRange(id, c1, v1, c2, v2, rt.getContent());
+							ref = Reference.verseRange(id, c1, v1, c2, v2, content);
 						} else {
 							// No second chapter, but we do have a second verse, use first chapter as second chapter.
-							ref = Reference.verseRange(id, c1, v1, c1, v2, rt.getContent());
+							ref = Reference.verseRange(id, c1, v1, c1, v2, content);
 						}
 					} else {
-						ref = Reference.verse(id, c1, v1, rt.getContent());
+						ref = Reference.verse(id, c1, v1, content);
 					}
 				}
 			}
 			if(ref != null) {
-				if (containerStack.isEmpty()) {
-					ParatextCharacterContent container = new ParatextCharacterContent();
-					containerStack.add(container);
-					result.getContent().add(container);
-				}
-				containerStack.get(containerStack.size() - 1).getContent().add(ref);
+				context.getCurrentContainer().getContent().add(ref);
 			}
 		} else if (localName.equals("w")) {
-			PType.W w = (PType.W) element.getValue();
-			String sfm = w.getSfm();
+			String sfm = reader.getAttribute("sfm");
 			if (sfm == null || sfm.isEmpty())
 				sfm = localName;
 			AutoClosingFormatting nextContainer = new AutoClosingFormatting(USFM.AUTO_CLOSING_TAGS.get(sfm));
-			if (w.getL() != null && !w.getL().isEmpty())
-				nextContainer.getAttributes().put("lemma", w.getL());
-			if (w.getS() != null && !w.getS().isEmpty())
-				nextContainer.getAttributes().put("strong", w.getS());
-			if (w.getM() != null && !w.getM().isEmpty())
-				nextContainer.getAttributes().put("x-morph", w.getM());
-			if (w.getSrcloc() != null && !w.getSrcloc().isEmpty())
-				nextContainer.getAttributes().put("srcloc", w.getSrcloc());
-			if (w.isPlural() != null)
-				nextContainer.getAttributes().put("x-plural", "" + w.isPlural());
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
+			for (String[] attribute : new String[][] { { "l", "lemma" }, { "s", "strong" }, { "m", "x-morph" }, { "srcloc", "srcloc" } }) {
+				String value = reader.getAttribute(attribute[0]);
+				if (value != null && !value.isEmpty())
+					nextContainer.getAttributes().put(attribute[1], value);
+			}
+			String plural = reader.getCollapsedAttribute("plural");
+			if (plural != null)
+				nextContainer.getAttributes().put("x-plural", "" + (plural.equals("true") || plural.equals("1")));
+			nextContainer.getAttributes().canonicalize();
+			context.getCurrentContainer().getContent().add(nextContainer);
 			containerStack.add(nextContainer);
-			parseElements(result, containerStack, w.getContent(), context);
+			parseElements(context, PARAGRAPH_CONTENT);
 			containerStack.remove(nextContainer);
-		} else if (localName.equals("quoteStart")) {
-			PType.QuoteStart qs = (PType.QuoteStart) element.getValue();
-			Text text = Text.from(qs.getValue());
-			if(text != null) {
-				if (containerStack.isEmpty()) {
-					ParatextCharacterContent container = new ParatextCharacterContent();
-					containerStack.add(container);
-					result.getContent().add(container);
-				}
-				containerStack.get(containerStack.size() - 1).getContent().add(text);
-			}
-		} else if (localName.equals("quoteRemind") || localName.equals("quoteEnd")) {
-			Text text = Text.from((String) element.getValue());
+		} else if (Arrays.asList("quoteStart", "quoteRemind", "quoteEnd").contains(localName)) {
+			Text text = Text.from(reader.readElementText());
 			if(text != null) {
-				if (containerStack.isEmpty()) {
-					ParatextCharacterContent container = new ParatextCharacterContent();
-					containerStack.add(container);
-					result.getContent().add(container);
-				}
-				containerStack.get(containerStack.size() - 1).getContent().add(text);
+				context.getCurrentContainer().getContent().add(text);
 			}
 		} else if (Arrays.asList("rq", "em", "qt", "nd", "tl", "qs", "qac", "sls", "dc", "bk", "k", "add", "sig", "bd", "it", "bdit", "sc", "wj", "cs").contains(localName)) {
-			PType v = (PType) element.getValue();
-			String sfm = v.getSfm();
+			String sfm = reader.getAttribute("sfm");
 			if (sfm == null || sfm.isEmpty())
 				sfm = localName;
 			if (!USFM.AUTO_CLOSING_TAGS.containsKey(sfm)) {
@@ -495,39 +452,26 @@ public class USFX extends AbstractParatextFormat {
 				sfm = "no";
 			}
 			AutoClosingFormatting nextContainer = new AutoClosingFormatting(USFM.AUTO_CLOSING_TAGS.get(sfm));
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
+			context.getCurrentContainer().getContent().add(nextContainer);
 			containerStack.add(nextContainer);
-			parseElements(result, containerStack, v.getContent(), context);
+			parseElements(context, PARAGRAPH_CONTENT);
 			containerStack.remove(nextContainer);
 		} else if (Arrays.asList("pn", "ord", "no", "ndx", "wh", "wg", "ior").contains(localName)) {
 			AutoClosingFormatting nextContainer = new AutoClosingFormatting(USFM.AUTO_CLOSING_TAGS.get(localName));
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			containerStack.get(containerStack.size() - 1).getContent().add(nextContainer);
+			context.getCurrentContainer().getContent().add(nextContainer);
 
-			Text text = Text.from((String) element.getValue());
+			Text text = Text.from(reader.readElementText());
 			if(text != null) {
 				nextContainer.getContent().add(text);
 			}
 		} else if (localName.equals("milestone")) {
-			if (containerStack.isEmpty()) {
-				ParatextCharacterContent container = new ParatextCharacterContent();
-				containerStack.add(container);
-				result.getContent().add(container);
-			}
-			Milestone ms = (Milestone) element.getValue();
-			String tag = ms.getSfm() + (ms.getLevel() == null ? "" : ms.getLevel());
-			String attr = ms.getAttribute();
+			ParatextCharacterContentContainer container = context.getCurrentContainer();
+			Integer level = reader.getIntegerAttribute("level");
+			String tag = reader.getAttribute("sfm") + (level == null ? "" : level);
+			String attr = reader.getAttribute("attribute");
+			reader.skipElement();
 			ParatextCharacterContentPart pccp = null;
-			if (tag.startsWith("z") && attr.equals("z")) {
+			if (tag.startsWith("z") && "z".equals(attr)) {
 				if (tag.endsWith("*")) {
 					pccp = new ParatextCharacterContent.CustomMarkup(tag.substring(0, tag.length() - 1), true);
 				} else {
@@ -536,7 +480,7 @@ public class USFX extends AbstractParatextFormat {
 			} else if ((tag.startsWith("z") || tag.matches("qt[1-5]?(-[se])?|ts?(\\-[se])?"))) {
 				ParatextCharacterContent.Milestone pms = new ParatextCharacterContent.Milestone(tag);
 				pccp = pms;
-				while (!attr.isEmpty()) {
+				while (attr != null && !attr.isEmpty()) {
 					int pos = attr.indexOf("=\"");
 					int pos2 = attr.indexOf('"', pos + 2);
 					if (pos == -1 || pos2 == -1) {
@@ -546,14 +490,16 @@ public class USFX extends AbstractParatextFormat {
 					pms.getAttributes().put(attr.substring(0, pos), attr.substring(pos + 2, pos2));
 					attr = attr.substring(pos2 + 1).trim();
 				}
+				pms.getAttributes().canonicalize();
 			} else {
 				System.out.println("WARNING: Skipping unsupported milestone: \\" + tag);
 			}
 			if (pccp != null) {
-				containerStack.get(containerStack.size() - 1).getContent().add(pccp);
+				container.getContent().add(pccp);
 			}
 		} else {
 			System.out.println("WARNING: Unexpected tag: " + localName);
+			reader.skipElement();
 		}
 	}
 
@@ -571,11 +517,14 @@ public class USFX extends AbstractParatextFormat {
 			usfx.getContent().add(of.createUsfxBook(createBook(book)));
 		}
 		final Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		m.marshal(usfx, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(usfx, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		doc.getDocumentElement().setAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
 		doc.getDocumentElement().setAttribute("xsi:noNamespaceSchemaLocation", "https://eBible.org/usfx.xsd");
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
@@ -805,7 +754,7 @@ public class USFX extends AbstractParatextFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/usfx.xsd"));
+		return ValidateXML.getSchema("/usfx.xsd");
 	}
 
 	private static class USFXCharacterContentVisitor implements ParatextCharacterContentVisitor<RuntimeException> {
@@ -1,30 +1,30 @@
 package biblemulticonverter.format.paratext;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.math.BigInteger;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
 
 import org.xml.sax.SAXException;
 
@@ -53,28 +53,15 @@ import biblemulticonverter.format.paratext.model.VerseIdentifier;
 import biblemulticonverter.format.paratext.model.Version;
 import biblemulticonverter.format.paratext.utilities.ImportUtilities;
 import biblemulticonverter.format.paratext.utilities.StandardExportWarningMessages;
-import biblemulticonverter.format.paratext.utilities.UnifiedScriptureXMLWriter;
-import biblemulticonverter.schema.usx.Cell;
+import biblemulticonverter.format.paratext.utilities.USXStreamReader;
+import biblemulticonverter.format.paratext.utilities.USXStreamWriter;
 import biblemulticonverter.schema.usx.CellAlign;
 import biblemulticonverter.schema.usx.CellStyle;
-import biblemulticonverter.schema.usx.Chapter;
-import biblemulticonverter.schema.usx.Char;
 import biblemulticonverter.schema.usx.CharStyle;
-import biblemulticonverter.schema.usx.Figure;
-import biblemulticonverter.schema.usx.Note;
 import biblemulticonverter.schema.usx.NoteStyle;
-import biblemulticonverter.schema.usx.ObjectFactory;
-import biblemulticonverter.schema.usx.Optbreak;
-import biblemulticonverter.schema.usx.Para;
 import biblemulticonverter.schema.usx.ParaStyle;
-import biblemulticonverter.schema.usx.Ref;
-import biblemulticonverter.schema.usx.Row;
-import biblemulticonverter.schema.usx.Sidebar;
-import biblemulticonverter.schema.usx.Table;
-import biblemulticonverter.schema.usx.Usx;
-import biblemulticonverter.schema.usx.Verse;
 import biblemulticonverter.tools.ValidateXML;
-import biblemulticonverter.utilities.UnmarshallerLocationListener;
+import biblemulticonverter.utilities.InputDirectory;
 
 /**
  * Importer and exporter for USX.
@@ -87,6 +74,8 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 			"Usage (export): USX <outdir> <filenamepattern>",
 			"",
 			"Point the importer to a directory that contains the .usx version 2 files.",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
 			"",
 			"When exporting, you need to give a file name pattern. You can use # for ",
 			"the book number and * for the book name. Use ? to split by chapters, for ",
@@ -100,7 +89,6 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 	private Map<FootnoteXrefKind, NoteStyle> NOTE_KIND_MAP = new EnumMap<>(FootnoteXrefKind.class);
 
 	private final StandardExportWarningMessages logger = new StandardExportWarningMessages("USX 2");
-	private UnmarshallerLocationListener unmarshallerLocationListener = new UnmarshallerLocationListener();
 
 	public USX() {
 		super("USX 2", new ParaStyleWrapper(), new CharStyleWrapper());
@@ -164,114 +152,71 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 		PARA_KIND_MAP.put(ParatextBook.ParagraphKind.PARAGRAPH_RIGHT, ParaStyle.PMR);
 	}
 
+	private static final Set<String> PARA_CONTENT = new HashSet<>(Arrays.asList("ref", "note", "char", "figure", "verse", "optbreak"));
+	private static final Set<String> CELL_CONTENT = new HashSet<>(Arrays.asList("note", "char", "figure", "verse", "optbreak"));
+	private static final Set<String> CHAR_CONTENT = new HashSet<>(Arrays.asList("ref", "char", "note", "optbreak"));
+	private static final Set<String> NOTE_CONTENT = Collections.singleton("char");
+
 	private static class ImportContext {
+		final USXStreamReader reader;
+		final ParatextBook result;
+		ParatextCharacterContent charContent = null;
 		VerseStart openVerse = null;
 		ChapterStart openChapter = null;
+
+		ImportContext(USXStreamReader reader, ParatextBook result) {
+			this.reader = reader;
+			this.result = result;
+		}
 	}
 
 	@Override
 	protected ParatextBook doImportBook(File inputFile) throws Exception {
-		if (!inputFile.getName().toLowerCase().endsWith(".usx"))
+		try (InputDirectory directory = InputDirectory.open(inputFile.getAbsoluteFile().getParentFile())) {
+			return doImportBook(directory, inputFile.getName());
+		}
+	}
+
+	@Override
+	protected ParatextBook doImportBook(InputDirectory directory, String fileName) throws Exception {
+		if (!fileName.toLowerCase().endsWith(".usx"))
 			return null;
-		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-
-		XMLInputFactory xif = XMLInputFactory.newFactory();
-		XMLStreamReader xsr = xif.createXMLStreamReader(new FileInputStream(inputFile));
-		Unmarshaller u = ctx.createUnmarshaller();
-		u.setListener(unmarshallerLocationListener);
-		unmarshallerLocationListener.setXMLStreamReader(inputFile.getName(), xsr);
-		Usx doc = (Usx) u.unmarshal(xsr);
-		xsr.close();
-
-		ParatextID id = ParatextID.fromIdentifier(doc.getBook().getCode().toUpperCase());
+		try (InputStream in = directory.openStream(fileName)) {
+			USXStreamReader reader = new USXStreamReader(fileName, XMLInputFactory.newFactory().createXMLStreamReader(directory.getSystemId(fileName), in), ValidateXML.createStreamValidator(getSchema()));
+			try {
+				ParatextBook book = parseBook(reader);
+				reader.finish();
+				return book;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private ParatextBook parseBook(USXStreamReader reader) throws IOException, XMLStreamException {
+		if (!reader.readRootElement().equals("usx"))
+			throw new IOException("Unsupported root element: " + reader.getLocalName());
+		if (reader.nextTag() != USXStreamReader.START_ELEMENT || !reader.getLocalName().equals("book"))
+			throw new IOException("Missing book element at " + reader.getHumanReadableLocation());
+		String code = reader.getCollapsedAttribute("code");
+		String bibleName = reader.readElementText();
+		ParatextID id = ParatextID.fromIdentifier(code.toUpperCase());
 		if (id == null) {
-			System.out.println("WARNING: Skipping book with unknown ID: " + doc.getBook().getCode());
+			System.out.println("WARNING: Skipping book with unknown ID: " + code);
 			return null;
 		}
 
-		ParatextBook result = new ParatextBook(id, doc.getBook().getContent());
-		ParatextCharacterContent charContent = null;
-		ImportContext context = new ImportContext();
-		for (Object o : doc.getParaOrTableOrChapter()) {
-			if (o instanceof Para) {
-				Para para = (Para) o;
-				if (BOOK_HEADER_ATTRIBUTE_TAGS.contains(para.getStyle().value())) {
-					String value = "";
-					for (Object oo : para.getContent()) {
-						if (oo instanceof String) {
-							value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-						} else {
-							throw new RuntimeException("Unsupported content in attribute: " + oo.getClass());
-						}
-					}
-					result.getAttributes().put(para.getStyle().value(), value);
-					charContent = null;
-				} else if (para.getStyle().value().equals("rem")) {
-					String value = "";
-					for (Object oo : para.getContent()) {
-						if (oo instanceof String) {
-							value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-						} else {
-							throw new RuntimeException("Unsupported content in remark: " + oo.getClass());
-						}
-					}
-					if (value.startsWith("@@STATUS@@ ")) {
-						result.getAttributes().put("sts", value.substring(11));
-					} else if (!result.getContent().isEmpty()) {
-						result.getContent().add(new Remark(value));
-					} else if (result.getAttributes().containsKey("rem")) {
-						int number = 2;
-						while (result.getAttributes().containsKey("rem@" + number))
-							number++;
-						result.getAttributes().put("rem@" + number, value);
-					} else {
-						result.getAttributes().put("rem", value);
-					}
-					charContent = null;
-				} else if (PARA_STYLE_UNSUPPORTED.contains(para.getStyle())) {
-					// skip
-					charContent = null;
-				} else if (para.getStyle() == ParaStyle.PERIPH) {
-					String value = "";
-					for (Object oo : para.getContent()) {
-						if (oo instanceof String) {
-							value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-						} else {
-							throw new RuntimeException("Unsupported content in periph: " + oo.getClass());
-						}
-					}
-					result.getContent().add(new PeripheralStart(value, null));
-				} else {
-					result.getContent().add(new ParagraphStart(PARA_STYLE_MAP.get(para.getStyle())));
-					charContent = null;
-					if (!para.getContent().isEmpty()) {
-						charContent = new ParatextCharacterContent();
-						result.getContent().add(charContent);
-						parseCharContent(para.getContent(), charContent, false, result, context);
-					}
-				}
-			} else if (o instanceof Table) {
-				Table table = (Table) o;
-				for (Row row : table.getRow()) {
-					result.getContent().add(new ParagraphStart(ParagraphKind.TABLE_ROW));
-					for (Object oo : row.getVerseOrCell()) {
-						if (oo instanceof Verse) {
-							ImportUtilities.closeOpenVerse(result, context.openVerse);
-							result.getContent().add(context.openVerse);
-						} else if (oo instanceof Cell) {
-							Cell cell = (Cell) oo;
-							result.getContent().add(new ParatextBook.TableCellStart(cell.getStyle().value()));
-							charContent = new ParatextCharacterContent();
-							result.getContent().add(charContent);
-							parseCharContent(cell.getContent(), charContent, false, result, context);
-						} else {
-							throw new IOException("Unsupported table row element: " + o.getClass().getName());
-						}
-					}
-				}
-				charContent = null;
-			} else if (o instanceof Chapter) {
+		ImportContext context = new ImportContext(reader, new ParatextBook(id, bibleName));
+		ParatextBook result = context.result;
+		while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "para":
+				parsePara(context, true);
+				break;
+			case "table":
+				parseTable(context);
+				break;
+			case "chapter":
 				ImportUtilities.closeOpenVerse(result, context.openVerse);
 				context.openVerse = null;
 
@@ -282,9 +227,12 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 				// this might lead to unexpected results.
 				ImportUtilities.closeOpenChapter(result, context.openChapter);
 
-				context.openChapter = new ChapterStart(new ChapterIdentifier(result.getId(), ((Chapter) o).getNumber().intValue()));
+				Integer number = reader.getIntegerAttribute("number");
+				if (number == null)
+					throw new IOException("Chapter without number found at " + reader.getHumanReadableLocation());
+				context.openChapter = new ChapterStart(new ChapterIdentifier(result.getId(), number));
 				result.getContent().add(context.openChapter);
-				String altnumber = ((Chapter) o).getAltnumber();
+				String altnumber = reader.getAttribute("altnumber");
 				if (altnumber != null) {
 					ParatextCharacterContent pcc = new ParatextCharacterContent();
 					AutoClosingFormatting acf = new AutoClosingFormatting(AutoClosingFormattingKind.ALTERNATE_CHAPTER);
@@ -292,95 +240,35 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 					pcc.getContent().add(acf);
 					result.getContent().add(pcc);
 				}
-				charContent = null;
-			} else if (o instanceof Note) {
-				if (charContent == null) {
-					charContent = new ParatextCharacterContent();
-					result.getContent().add(charContent);
-				}
-				Note note = (Note) o;
-				List<Object> nc = note.getContent();
-				List<String> categories = new ArrayList<>();
-				while (!nc.isEmpty() && nc.get(0) instanceof Char && ((Char) nc.get(0)).getStyle() == CharStyle.CAT && ((Char) nc.get(0)).getContent().size() == 1 && ((Char) nc.get(0)).getContent().get(0) instanceof String) {
-					nc = new ArrayList<>(nc);
-					categories.add(((Char) nc.remove(0)).getContent().get(0).toString().trim());
-				}
-				FootnoteXref nx = new FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), categories.toArray(new String[0]));
-				charContent.getContent().add(nx);
-				parseCharContent(nc, nx, true, result, context);
-			} else if (o instanceof Sidebar) {
-				Sidebar s = (Sidebar) o;
-				result.getContent().add(new SidebarStart(s.getCategory() == null ? new String[0] : s.getCategory().split(" ")));
-				for (Object os : s.getParaOrTableOrNote()) {
-					if (os instanceof Para) {
-						Para para = (Para) os;
-						if (para.getStyle().value().equals("rem")) {
-							String value = "";
-							for (Object oo : para.getContent()) {
-								if (oo instanceof String) {
-									value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-								} else {
-									throw new RuntimeException("Unsupported content in remark: " + oo.getClass());
-								}
-							}
-							result.getContent().add(new Remark(value));
-							charContent = null;
-						} else if (PARA_STYLE_UNSUPPORTED.contains(para.getStyle())) {
-							// skip
-							charContent = null;
-						} else {
-							result.getContent().add(new ParagraphStart(PARA_STYLE_MAP.get(para.getStyle())));
-							charContent = null;
-							if (!para.getContent().isEmpty()) {
-								charContent = new ParatextCharacterContent();
-								result.getContent().add(charContent);
-								parseCharContent(para.getContent(), charContent, false, result, context);
-							}
-						}
-					} else if (os instanceof Table) {
-						Table table = (Table) os;
-						for (Row row : table.getRow()) {
-							result.getContent().add(new ParagraphStart(ParagraphKind.TABLE_ROW));
-							for (Object oo : row.getVerseOrCell()) {
-								if (oo instanceof Verse) {
-									ImportUtilities.closeOpenVerse(result, context.openVerse);
-									context.openVerse = handleVerse(result, (Verse) oo);
-									result.getContent().add(context.openVerse);
-								} else if (oo instanceof Cell) {
-									Cell cell = (Cell) oo;
-									result.getContent().add(new ParatextBook.TableCellStart(cell.getStyle().value()));
-									charContent = new ParatextCharacterContent();
-									result.getContent().add(charContent);
-									parseCharContent(cell.getContent(), charContent, false, result, context);
-								} else {
-									throw new IOException("Unsupported table row element: " + os.getClass().getName());
-								}
-							}
-						}
-						charContent = null;
-					} else if (os instanceof Note) {
-						if (charContent == null) {
-							charContent = new ParatextCharacterContent();
-							result.getContent().add(charContent);
-						}
-						Note note = (Note) os;
-						List<Object> nc = note.getContent();
-						List<String> categories = new ArrayList<>();
-						while (!nc.isEmpty() && nc.get(0) instanceof Char && ((Char) nc.get(0)).getStyle() == CharStyle.CAT && ((Char) nc.get(0)).getContent().size() == 1 && ((Char) nc.get(0)).getContent().get(0) instanceof String) {
-							nc = new ArrayList<>(nc);
-							categories.add(((Char) nc.remove(0)).getContent().get(0).toString().trim());
-						}
-						FootnoteXref nx = new FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), categories.toArray(new String[0]));
-						charContent.getContent().add(nx);
-						parseCharContent(nc, nx, true, result, context);
-					} else {
-						throw new IOException("Unsupported sidebar level element: " + os.getClass().getName());
+				reader.skipElement();
+				context.charContent = null;
+				break;
+			case "note":
+				parseBookLevelNote(context);
+				break;
+			case "sidebar":
+				String category = reader.getAttribute("category");
+				result.getContent().add(new SidebarStart(category == null ? new String[0] : category.split(" ")));
+				while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+					switch (reader.getLocalName()) {
+					case "para":
+						parsePara(context, false);
+						break;
+					case "table":
+						parseTable(context);
+						break;
+					case "note":
+						parseBookLevelNote(context);
+						break;
+					default:
+						reader.skipElement();
 					}
 				}
 				result.getContent().add(new SidebarEnd());
-				charContent = null;
-			} else {
-				throw new IOException("Unsupported book level element: " + o.getClass().getName());
+				context.charContent = null;
+				break;
+			default:
+				reader.skipElement();
 			}
 		}
 		ImportUtilities.closeOpenVerse(result, context.openVerse);
@@ -388,311 +276,520 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 		return result;
 	}
 
-	private void parseCharContent(List<Object> content, ParatextCharacterContentContainer container, boolean nested, ParatextBook result, ImportContext context) throws IOException {
-		for (Object o : content) {
-			if (o instanceof Optbreak) {
+	private void parsePara(ImportContext context, boolean topLevel) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		ParatextBook result = context.result;
+		String style = reader.getAttribute("style");
+		if (topLevel && BOOK_HEADER_ATTRIBUTE_TAGS.contains(style)) {
+			result.getAttributes().put(style, readPlainText(reader, "attribute"));
+		} else if ("rem".equals(style)) {
+			String value = readPlainText(reader, "remark");
+			if (!topLevel || (!value.startsWith("@@STATUS@@ ") && !result.getContent().isEmpty())) {
+				result.getContent().add(new Remark(value));
+			} else if (value.startsWith("@@STATUS@@ ")) {
+				result.getAttributes().put("sts", value.substring(11));
+			} else if (result.getAttributes().containsKey("rem")) {
+				int number = 2;
+				while (result.getAttributes().containsKey("rem@" + number))
+					number++;
+				result.getAttributes().put("rem@" + number, value);
+			} else {
+				result.getAttributes().put("rem", value);
+			}
+		} else {
+			ParaStyle paraStyle = parseStyle(reader, ParaStyle::fromValue, style);
+			if (PARA_STYLE_UNSUPPORTED.contains(paraStyle)) {
+				reader.skipElement();
+			} else if (topLevel && paraStyle == ParaStyle.PERIPH) {
+				result.getContent().add(new PeripheralStart(readPlainText(reader, "periph"), null));
+				return;
+			} else {
+				result.getContent().add(new ParagraphStart(PARA_STYLE_MAP.get(paraStyle)));
+				context.charContent = null;
+				if (reader.next() != USXStreamReader.END_ELEMENT) {
+					reader.pushBack();
+					context.charContent = new ParatextCharacterContent();
+					result.getContent().add(context.charContent);
+					parseCharContent(context, PARA_CONTENT, context.charContent, false);
+				}
+				return;
+			}
+		}
+		context.charContent = null;
+	}
+
+	private String readPlainText(USXStreamReader reader, String what) throws IOException, XMLStreamException {
+		String value = "";
+		int type;
+		while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+			if (type == USXStreamReader.TEXT) {
+				value += reader.getText().replaceAll("[ \r\n\t]+", " ");
+			} else if (PARA_CONTENT.contains(reader.getLocalName())) {
+				throw new RuntimeException("Unsupported content in " + what + " at " + reader.getHumanReadableLocation() + ": " + reader.getLocalName());
+			} else {
+				reader.skipElement();
+			}
+		}
+		return value;
+	}
+
+	private void parseTable(ImportContext context) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		ParatextBook result = context.result;
+		while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+			if (!reader.getLocalName().equals("row")) {
+				reader.skipElement();
+				continue;
+			}
+			result.getContent().add(new ParagraphStart(ParagraphKind.TABLE_ROW));
+			while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+				if (reader.getLocalName().equals("verse")) {
+					ImportUtilities.closeOpenVerse(result, context.openVerse);
+					context.openVerse = handleVerse(context);
+					result.getContent().add(context.openVerse);
+					reader.skipElement();
+				} else if (reader.getLocalName().equals("cell")) {
+					result.getContent().add(new ParatextBook.TableCellStart(reader.getAttribute("style")));
+					context.charContent = new ParatextCharacterContent();
+					result.getContent().add(context.charContent);
+					parseCharContent(context, CELL_CONTENT, context.charContent, false);
+				} else {
+					reader.skipElement();
+				}
+			}
+		}
+		context.charContent = null;
+	}
+
+	private void parseBookLevelNote(ImportContext context) throws IOException, XMLStreamException {
+		if (context.charContent == null) {
+			context.charContent = new ParatextCharacterContent();
+			context.result.getContent().add(context.charContent);
+		}
+		parseNote(context, context.charContent);
+	}
+
+	private void parseNote(ImportContext context, ParatextCharacterContentContainer container) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		NoteStyle style = parseStyle(reader, NoteStyle::fromValue, reader.getAttribute("style"));
+		String caller = reader.getAttribute("caller");
+		// categories are stored as char elements (containing only text) at the beginning of the note
+		List<String> categories = new ArrayList<>();
+		String pendingCategoryText = null;
+		boolean pendingCategory = false, pendingCategoryEnded = false;
+		while (true) {
+			if (reader.next() != USXStreamReader.START_ELEMENT || !reader.getLocalName().equals("char") || !CharStyle.CAT.value().equals(reader.getAttribute("style"))) {
+				reader.pushBack();
+				break;
+			}
+			int type = reader.next();
+			if (type == USXStreamReader.TEXT) {
+				String text = reader.getText();
+				if (reader.next() == USXStreamReader.END_ELEMENT) {
+					categories.add(text.trim());
+					continue;
+				}
+				reader.pushBack();
+				pendingCategoryText = text;
+			} else if (type == USXStreamReader.END_ELEMENT) {
+				pendingCategoryEnded = true;
+			} else {
+				reader.pushBack();
+			}
+			pendingCategory = true;
+			break;
+		}
+		FootnoteXref nx = new FootnoteXref(NOTE_STYLE_MAP.get(style), caller, categories.toArray(new String[0]));
+		container.getContent().add(nx);
+		if (pendingCategory) {
+			AutoClosingFormatting f = new AutoClosingFormatting(CHAR_STYLE_MAP.get(CharStyle.CAT));
+			nx.getContent().add(f);
+			Text text = pendingCategoryText == null ? null : Text.from(pendingCategoryText);
+			if (text != null)
+				f.getContent().add(text);
+			if (!pendingCategoryEnded)
+				parseCharContent(context, CHAR_CONTENT, f, true);
+		}
+		parseCharContent(context, NOTE_CONTENT, nx, true);
+	}
+
+	private static <T> T parseStyle(USXStreamReader reader, Function<String, T> parser, String style) throws IOException {
+		try {
+			return parser.apply(style);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Unsupported style at " + reader.getHumanReadableLocation() + ": " + style, ex);
+		}
+	}
+
+	private void parseCharContent(ImportContext context, Set<String> allowedElements, ParatextCharacterContentContainer container, boolean nested) throws IOException, XMLStreamException {
+		USXStreamReader reader = context.reader;
+		ParatextBook result = context.result;
+		int type;
+		while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+			if (type == USXStreamReader.TEXT) {
+				final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(reader.getText());
+				if (text != null) {
+					container.getContent().add(text);
+				}
+				continue;
+			}
+			String name = reader.getLocalName();
+			if (!allowedElements.contains(name)) {
+				reader.skipElement();
+				continue;
+			}
+			if (name.equals("optbreak")) {
 				container.getContent().add(new SpecialSpace(false, true));
-			} else if (o instanceof Ref) {
-				Ref r = (Ref) o;
+				reader.skipElement();
+			} else if (name.equals("ref")) {
+				String location = reader.getHumanReadableLocation();
+				String loc = reader.getAttribute("loc");
+				String content = reader.readElementText();
 				try {
-					container.getContent().add(ParatextCharacterContent.Reference.parse(r.getLoc(), r.getContent()));
+					container.getContent().add(ParatextCharacterContent.Reference.parse(loc, content));
 				} catch (IllegalArgumentException e) {
-					String location = unmarshallerLocationListener.getHumanReadableLocation(o);
-					System.out.println("WARNING: Unsupported structured reference format at " + location + " - replaced by plain text: " + r.getLoc());
-					final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(r.getContent());
-					if(text != null) {
+					System.out.println("WARNING: Unsupported structured reference format at " + location + " - replaced by plain text: " + loc);
+					final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(content);
+					if (text != null) {
 						container.getContent().add(text);
 					}
 				}
-			} else if (o instanceof String) {
-				final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from((String) o);
-				if(text != null) {
-					container.getContent().add(text);
-				}
-			} else if (o instanceof Figure && !nested) {
-				Figure fig = (Figure) o;
-				ParatextBook.Figure f = new ParatextBook.Figure(fig.getContent());
-				if (!fig.getCopy().isEmpty())
-					f.getAttributes().put("copy", fig.getCopy());
-				if (!fig.getDesc().isEmpty())
-					f.getAttributes().put("alt", fig.getDesc());
-				f.getAttributes().put("src", fig.getFile());
-				if (!fig.getLoc().isEmpty())
-					f.getAttributes().put("loc", fig.getLoc());
-				f.getAttributes().put("ref", fig.getRef());
-				f.getAttributes().put("size", fig.getSize());
+			} else if (name.equals("figure") && !nested) {
+				String copy = reader.getAttribute("copy"), desc = reader.getAttribute("desc"), file = reader.getAttribute("file");
+				String loc = reader.getAttribute("loc"), ref = reader.getAttribute("ref"), size = reader.getAttribute("size");
+				ParatextBook.Figure f = new ParatextBook.Figure(reader.readElementText());
+				if (copy != null && !copy.isEmpty())
+					f.getAttributes().put("copy", copy);
+				if (desc != null && !desc.isEmpty())
+					f.getAttributes().put("alt", desc);
+				f.getAttributes().put("src", file);
+				if (loc != null && !loc.isEmpty())
+					f.getAttributes().put("loc", loc);
+				f.getAttributes().put("ref", ref);
+				f.getAttributes().put("size", size);
 				result.getContent().add(f);
 				container = new ParatextCharacterContent();
-				result.getContent().add((ParatextCharacterContent)container);
-			} else if (o instanceof Char) {
-				Char chr = (Char) o;
-				if (CHAR_STYLE_UNSUPPORTED.contains(chr.getStyle())) {
-					parseCharContent(chr.getContent(), container, nested, result, context);
+				result.getContent().add((ParatextCharacterContent) container);
+			} else if (name.equals("char")) {
+				CharStyle style = parseStyle(reader, CharStyle::fromValue, reader.getAttribute("style"));
+				if (CHAR_STYLE_UNSUPPORTED.contains(style)) {
+					parseCharContent(context, CHAR_CONTENT, container, nested);
 				} else {
-					AutoClosingFormatting f = new AutoClosingFormatting(CHAR_STYLE_MAP.get(chr.getStyle()));
-					String lemma = chr.getLemma();
+					AutoClosingFormatting f = new AutoClosingFormatting(CHAR_STYLE_MAP.get(style));
+					String lemma = reader.getAttribute("lemma");
 					if (f.getKind() == AutoClosingFormattingKind.WORDLIST && lemma != null && !lemma.isEmpty()) {
 						f.getAttributes().put("lemma", lemma);
+						f.getAttributes().canonicalize();
 					}
 					container.getContent().add(f);
-					parseCharContent(chr.getContent(), f, true, result, context);
+					parseCharContent(context, CHAR_CONTENT, f, true);
 				}
-			} else if (o instanceof Verse && !nested) {
+			} else if (name.equals("verse") && !nested) {
 				ImportUtilities.closeOpenVerse(result, context.openVerse);
-				context.openVerse = handleVerse(result, (Verse) o);
+				context.openVerse = handleVerse(context);
 				result.getContent().add(context.openVerse);
+				reader.skipElement();
 				container = new ParatextCharacterContent();
-				result.getContent().add((ParatextCharacterContent)container);
-			} else if (o instanceof Note) {
-				Note note = (Note) o;
-				List<Object> nc = note.getContent();
-				List<String> categories = new ArrayList<>();
-				while (!nc.isEmpty() && nc.get(0) instanceof Char && ((Char) nc.get(0)).getStyle() == CharStyle.CAT && ((Char) nc.get(0)).getContent().size() == 1 && ((Char) nc.get(0)).getContent().get(0) instanceof String) {
-					nc = new ArrayList<>(nc);
-					categories.add(((Char) nc.remove(0)).getContent().get(0).toString().trim());
-				}
-				FootnoteXref nx = new FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), categories.toArray(new String[0]));
-				container.getContent().add(nx);
-				parseCharContent(nc, nx, true, result, context);
+				result.getContent().add((ParatextCharacterContent) container);
+			} else if (name.equals("note")) {
+				parseNote(context, container);
 			} else {
-				throw new IOException("Unsupported character content element: " + o.getClass().getName());
+				throw new IOException("Unsupported character content element at " + reader.getHumanReadableLocation() + ": " + name);
 			}
 		}
 	}
 
-	private VerseStart handleVerse(ParatextBook result, Verse verse) throws IOException {
-		ChapterStart chapter = result.findLastBookContent(ChapterStart.class);
+	private VerseStart handleVerse(ImportContext context) throws IOException {
+		String number = context.reader.getAttribute("number");
+		ChapterStart chapter = context.result.findLastBookContent(ChapterStart.class);
 		if (chapter == null) {
-			throw new IllegalStateException("Verse found before chapter start: " + verse.getNumber());
+			throw new IllegalStateException("Verse found before chapter start: " + number);
 		}
 		// A verse number in USX 2 may be in the format 6-7, 6a or even 6-7a.
 		// Attempt to parse these numbers by first adding the book and chapter and then parsing it as a whole.
-		VerseIdentifier location = VerseIdentifier.fromStringOrThrow(chapter.getLocation() + ":" + verse.getNumber());
-		return new VerseStart(location, verse.getNumber());
+		VerseIdentifier location = VerseIdentifier.fromStringOrThrow(chapter.getLocation() + ":" + number);
+		return new VerseStart(location, number);
 	}
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws Exception {
-		ObjectFactory of = new ObjectFactory();
-		Usx usx = of.createUsx();
-		usx.setVersion("2.5");
-		usx.setBook(of.createBook());
-		usx.getBook().setStyle("id");
-		usx.getBook().setCode(book.getId().getIdentifier());
-		usx.getBook().setContent(book.getBibleName());
-
-		for (Map.Entry<String, String> attr : book.getAttributes().entrySet()) {
-			if (attr.getKey().startsWith("toca")) {
-				logger.logSkippedMetadataWarning(attr.getKey());
-				continue;
-			}
-			Para para = new Para();
-			if (attr.getKey().equals("sts")) {
-				para.setStyle(ParaStyle.REM);
-				para.getContent().add("@@STATUS@@ ");
-			} else {
-				para.setStyle(ParaStyle.fromValue(attr.getKey().replaceFirst("@[0-9]+$", "")));
+		ValidatorHandler validator = Boolean.getBoolean("biblemulticonverter.skipxmlvalidation") ? null : getSchema().newValidatorHandler();
+		boolean success = false;
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+			USXStreamWriter writer = new USXStreamWriter(w, validator);
+			int root = writer.startDocument("2.5");
+			writer.startElement("book");
+			writer.attribute("code", book.getId().getIdentifier());
+			writer.attribute("style", "id");
+			writer.text(book.getBibleName());
+
+			for (Map.Entry<String, String> attr : book.getAttributes().entrySet()) {
+				if (attr.getKey().startsWith("toca")) {
+					logger.logSkippedMetadataWarning(attr.getKey());
+					continue;
+				}
+				writer.continueElement(root);
+				writer.startElement("para");
+				if (attr.getKey().equals("sts")) {
+					writer.attribute("style", ParaStyle.REM.value());
+					writer.text("@@STATUS@@ ");
+				} else {
+					writer.attribute("style", ParaStyle.fromValue(attr.getKey().replaceFirst("@[0-9]+$", "")).value());
+				}
+				writer.text(attr.getValue());
 			}
-			para.getContent().add(attr.getValue());
-			usx.getParaOrTableOrChapter().add(para);
+
+			USXBookExportVisitor visitor = new USXBookExportVisitor(writer, root);
+			book.accept(visitor);
+			visitor.flushPending();
+			writer.endDocument();
+			success = true;
+		} finally {
+			// do not leave incomplete files behind
+			if (!success)
+				outFile.delete();
 		}
+	}
 
-		book.accept(new ParatextBookContentVisitor<IOException>() {
+	protected Schema getSchema() throws SAXException {
+		return ValidateXML.getSchema("/usx.xsd");
+	}
 
-			List<Object> currentRoot = usx.getParaOrTableOrChapter();
-			List<Object> currentContent = null;
-			Table currentTable = null;
+	/**
+	 * Writes the content of a book. Chapter elements are written when the next
+	 * content arrives, as an alternate chapter number following them is written
+	 * as attribute. Sidebar boundaries and peripheral starts are written before
+	 * the next root element, as content without its own paragraph following
+	 * them still belongs to the previous paragraph.
+	 */
+	private class USXBookExportVisitor implements ParatextBookContentVisitor<IOException> {
+
+		private final USXStreamWriter writer;
+		private final int root;
+		private int currentRoot, currentContent = -1, currentTable = -1, currentRow = -1;
+		private boolean chapterPending = false, inSidebar = false;
+		private String chapterNumber, chapterAltnumber;
+		private final List<PendingElement> pendingElements = new ArrayList<>();
+
+		private USXBookExportVisitor(USXStreamWriter writer, int root) {
+			this.writer = writer;
+			this.root = root;
+			this.currentRoot = root;
+		}
 
-			@Override
-			public void visitChapterStart(ChapterIdentifier location) throws IOException {
-				Chapter ch = new Chapter();
-				ch.setStyle("c");
-				ch.setNumber(BigInteger.valueOf(location.chapter));
-				currentRoot.add(ch);
-				currentContent = null;
-				currentTable = null;
-			}
+		private int startRootElement(String name) throws IOException {
+			flushPending();
+			writer.continueElement(currentRoot);
+			currentContent = -1;
+			currentTable = -1;
+			return writer.startElement(name);
+		}
 
-			@Override
-			public void visitChapterEnd(ChapterIdentifier location) throws IOException {
-				// Chapter end does not exist in USX 2
-			}
+		private void flushChapter() throws IOException {
+			if (!chapterPending)
+				return;
+			chapterPending = false;
+			writer.continueElement(currentRoot);
+			writer.startElement("chapter");
+			writer.attribute("number", chapterNumber);
+			writer.attribute("style", "c");
+			writer.attribute("altnumber", chapterAltnumber);
+		}
 
-			@Override
-			public void visitRemark(String content) throws IOException {
-				Para para = new Para();
-				para.setStyle(ParaStyle.REM);
-				currentRoot.add(para);
-				para.getContent().add(content);
-				currentContent = null;
-				currentTable = null;
+		private void flushPending() throws IOException {
+			flushChapter();
+			for (PendingElement element : pendingElements) {
+				element.write();
 			}
+			pendingElements.clear();
+		}
 
-			@Override
-			public void visitParagraphStart(ParagraphKind kind) throws IOException {
-				if (kind == ParagraphKind.TABLE_ROW) {
-					if (currentTable == null) {
-						currentTable = new Table();
-						currentRoot.add(currentTable);
-					}
-					Row row = new Row();
-					row.setStyle("tr");
-					currentTable.getRow().add(row);
-					currentContent = currentTable.getRow().get(currentTable.getRow().size() - 1).getVerseOrCell();
-				} else if (USX_2_PARAGRAPH_KINDS.contains(kind)) {
-					ParaStyle style = PARA_KIND_MAP.get(kind);
-					if (style == null) {
-						throw new RuntimeException("Error could not get ParaStyle for ParagraphKind: " + kind);
-					}
-					Para para = new Para();
-					para.setStyle(style);
-					currentRoot.add(para);
-					currentContent = para.getContent();
-					currentTable = null;
+		@Override
+		public void visitChapterStart(ChapterIdentifier location) throws IOException {
+			flushPending();
+			chapterPending = true;
+			chapterNumber = String.valueOf(location.chapter);
+			chapterAltnumber = null;
+			currentContent = -1;
+			currentTable = -1;
+		}
+
+		@Override
+		public void visitChapterEnd(ChapterIdentifier location) throws IOException {
+			// Chapter end does not exist in USX 2
+		}
+
+		@Override
+		public void visitRemark(String content) throws IOException {
+			startRootElement("para");
+			writer.attribute("style", ParaStyle.REM.value());
+			writer.text(content);
+		}
+
+		@Override
+		public void visitParagraphStart(ParagraphKind kind) throws IOException {
+			if (kind == ParagraphKind.TABLE_ROW) {
+				if (currentTable == -1) {
+					currentTable = startRootElement("table");
 				} else {
-					ParagraphKind replacement = ParatextStripped.replaceParagraphKind(kind);
-					logger.logReplaceWarning(kind, replacement);
-					visitParagraphStart(replacement);
+					writer.continueElement(currentTable);
 				}
+				currentRow = writer.startElement("row");
+				writer.attribute("style", "tr");
+				currentContent = currentRow;
+			} else if (USX_2_PARAGRAPH_KINDS.contains(kind)) {
+				ParaStyle style = PARA_KIND_MAP.get(kind);
+				if (style == null) {
+					throw new RuntimeException("Error could not get ParaStyle for ParagraphKind: " + kind);
+				}
+				currentContent = startRootElement("para");
+				writer.attribute("style", style.value());
+			} else {
+				ParagraphKind replacement = ParatextStripped.replaceParagraphKind(kind);
+				logger.logReplaceWarning(kind, replacement);
+				visitParagraphStart(replacement);
 			}
+		}
 
-			@Override
-			public void visitTableCellStart(String tag) throws IOException {
-				if (currentTable == null) {
-					System.out.println("WARNING: Table cell outside of table");
-					return;
-				}
-				if (tag.contains("-")) {
-					Matcher m = Utils.compilePattern("(t[hcr]+)([0-9]+)-([0-9]+)").matcher(tag);
-					if (!m.matches())
-						throw new RuntimeException("Unsupported table tag "+tag);
-					String prefix = m.group(1);
-					int min = Integer.parseInt(m.group(2));
-					int max = Integer.parseInt(m.group(3));
-					for(int i=min; i<=max; i++) {
-						visitTableCellStart(prefix+i);
-					}
-					return;
+		@Override
+		public void visitTableCellStart(String tag) throws IOException {
+			if (currentTable == -1) {
+				System.out.println("WARNING: Table cell outside of table");
+				return;
+			}
+			if (tag.contains("-")) {
+				Matcher m = Utils.compilePattern("(t[hcr]+)([0-9]+)-([0-9]+)").matcher(tag);
+				if (!m.matches())
+					throw new RuntimeException("Unsupported table tag "+tag);
+				String prefix = m.group(1);
+				int min = Integer.parseInt(m.group(2));
+				int max = Integer.parseInt(m.group(3));
+				for(int i=min; i<=max; i++) {
+					visitTableCellStart(prefix+i);
 				}
-				Row currentRow = currentTable.getRow().get(currentTable.getRow().size() - 1);
-				Cell cell = new Cell();
-				cell.setAlign(tag.contains("r") ? CellAlign.END : CellAlign.START);
-				cell.setStyle(CellStyle.fromValue(tag));
-				currentRow.getVerseOrCell().add(cell);
-				currentContent = cell.getContent();
+				return;
 			}
+			CellAlign align = tag.contains("r") ? CellAlign.END : CellAlign.START;
+			CellStyle style = CellStyle.fromValue(tag);
+			writer.continueElement(currentRow);
+			currentContent = writer.startElement("cell");
+			writer.attribute("style", style.value());
+			writer.attribute("align", align.value());
+		}
 
-			@Override
-			public void visitSidebarStart(String[] categories) throws IOException {
-				if (currentRoot != usx.getParaOrTableOrChapter())
-					throw new RuntimeException("Nested sidebars are not supported");
-				Sidebar sidebar = new Sidebar();
-				sidebar.setStyle("esb");
+		@Override
+		public void visitSidebarStart(String[] categories) throws IOException {
+			flushChapter();
+			if (inSidebar)
+				throw new RuntimeException("Nested sidebars are not supported");
+			inSidebar = true;
+			pendingElements.add(() -> {
+				writer.continueElement(root);
+				currentRoot = writer.startElement("sidebar");
+				writer.attribute("style", "esb");
 				if (categories.length > 0)
-					sidebar.setCategory(String.join(" ", categories));
-				currentRoot.add(sidebar);
-				currentRoot = sidebar.getParaOrTableOrNote();
-			}
+					writer.attribute("category", String.join(" ", categories));
+			});
+		}
 
-			@Override
-			public void visitSidebarEnd() throws IOException {
-				if (currentRoot == usx.getParaOrTableOrChapter())
-					throw new RuntimeException("No sidebar open");
-				currentRoot = usx.getParaOrTableOrChapter();
-			}
+		@Override
+		public void visitSidebarEnd() throws IOException {
+			flushChapter();
+			if (!inSidebar)
+				throw new RuntimeException("No sidebar open");
+			inSidebar = false;
+			pendingElements.add(() -> currentRoot = root);
+		}
 
-			@Override
-			public void visitPeripheralStart(String title, String id) throws IOException {
-				Para para = new Para();
-				para.setStyle(ParaStyle.PERIPH);
-				currentRoot.add(para);
-				para.getContent().add(title);
-			}
+		@Override
+		public void visitPeripheralStart(String title, String id) throws IOException {
+			flushChapter();
+			pendingElements.add(() -> {
+				writer.continueElement(currentRoot);
+				writer.startElement("para");
+				writer.attribute("style", ParaStyle.PERIPH.value());
+				writer.text(title);
+			});
+		}
 
-			@Override
-			public void visitVerseStart(VerseIdentifier location, String verseNumber) throws IOException {
-				if (currentContent == null)
-					visitParagraphStart(ParagraphKind.PARAGRAPH_P);
-				else if (!currentContent.isEmpty() && verseSeparatorText != null)
-					currentContent.add(verseSeparatorText);
-				Verse verse = new Verse();
-				verse.setStyle("v");
-				verse.setNumber(verseNumber);
-				currentContent.add(verse);
+		@Override
+		public void visitVerseStart(VerseIdentifier location, String verseNumber) throws IOException {
+			if (currentContent == -1) {
+				visitParagraphStart(ParagraphKind.PARAGRAPH_P);
+			} else {
+				writer.continueElement(currentContent);
+				if (writer.hasContent() && verseSeparatorText != null)
+					writer.text(verseSeparatorText);
 			}
+			writer.startElement("verse");
+			writer.attribute("number", verseNumber);
+			writer.attribute("style", "v");
+		}
 
-			@Override
-			public void visitVerseEnd(VerseIdentifier verseNumber) throws IOException {
-				// USX 2.x does not support verse end milestones, hence we don't add them.
-			}
+		@Override
+		public void visitVerseEnd(VerseIdentifier verseNumber) throws IOException {
+			// USX 2.x does not support verse end milestones, hence we don't add them.
+		}
 
-			@Override
-			public void visitFigure(String caption, Map<String, String> attributes) throws IOException {
-				Figure fig = new Figure();
-				fig.setStyle("fig");
-				fig.setContent(caption);
-				fig.setCopy(attributes.getOrDefault("copy",""));
-				fig.setDesc(attributes.getOrDefault("alt",""));
-				fig.setFile(attributes.get("src"));
-				fig.setLoc(attributes.getOrDefault("loc",""));
-				fig.setRef(attributes.get("ref"));
-				fig.setSize(attributes.get("size"));
-				if (currentContent == null)
-					visitParagraphStart(ParagraphKind.PARAGRAPH_P);
-				currentContent.add(fig);
-			}
+		private void continueContent() throws IOException {
+			if (currentContent == -1)
+				visitParagraphStart(ParagraphKind.PARAGRAPH_P);
+			else
+				writer.continueElement(currentContent);
+		}
 
-			@Override
-			public void visitParatextCharacterContent(ParatextCharacterContent content) throws IOException {
-				if (currentContent == null && content.getContent().size() == 1 && content.getContent().get(0) instanceof AutoClosingFormatting && !currentRoot.isEmpty() && currentRoot.get(currentRoot.size() - 1) instanceof Chapter) {
-					AutoClosingFormatting acf = (AutoClosingFormatting) content.getContent().get(0);
-					if (acf.getKind() == AutoClosingFormattingKind.ALTERNATE_CHAPTER && acf.getContent().size() == 1 && acf.getContent().get(0) instanceof Text) {
-						Chapter c = (Chapter) currentRoot.get(currentRoot.size() - 1);
-						String num = ((Text) acf.getContent().get(0)).getChars();
-						c.setAltnumber(num);
-						return;
-					}
+		@Override
+		public void visitFigure(String caption, Map<String, String> attributes) throws IOException {
+			continueContent();
+			writer.startElement("figure");
+			writer.attribute("style", "fig");
+			writer.attribute("desc", attributes.getOrDefault("alt", ""));
+			writer.attribute("file", attributes.get("src"));
+			writer.attribute("size", attributes.get("size"));
+			writer.attribute("loc", attributes.getOrDefault("loc", ""));
+			writer.attribute("copy", attributes.getOrDefault("copy", ""));
+			writer.attribute("ref", attributes.get("ref"));
+			writer.text(caption);
+		}
+
+		@Override
+		public void visitParatextCharacterContent(ParatextCharacterContent content) throws IOException {
+			if (currentContent == -1 && chapterPending && content.getContent().size() == 1 && content.getContent().get(0) instanceof AutoClosingFormatting) {
+				AutoClosingFormatting acf = (AutoClosingFormatting) content.getContent().get(0);
+				if (acf.getKind() == AutoClosingFormattingKind.ALTERNATE_CHAPTER && acf.getContent().size() == 1 && acf.getContent().get(0) instanceof Text) {
+					chapterAltnumber = ((Text) acf.getContent().get(0)).getChars();
+					return;
 				}
-				if (currentContent == null)
-					visitParagraphStart(ParagraphKind.PARAGRAPH_P);
-				content.accept(new USXCharacterContentVisitor(logger, currentContent));
 			}
-		});
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		try (OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8)) {
-			m.marshal(usx, new UnifiedScriptureXMLWriter(osw, "UTF-8"));
+			continueContent();
+			content.accept(new USXCharacterContentVisitor(logger, writer, currentContent));
 		}
 	}
 
-	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/usx.xsd"));
-	}
-
 	private class USXCharacterContentVisitor implements ParatextCharacterContentVisitor<IOException> {
-		private final List<Object> target;
+		private final USXStreamWriter writer;
+		private final int target;
 		private final StandardExportWarningMessages logger;
 
-		public USXCharacterContentVisitor(StandardExportWarningMessages logger, List<Object> target) {
+		public USXCharacterContentVisitor(StandardExportWarningMessages logger, USXStreamWriter writer, int target) {
+			this.writer = writer;
 			this.target = target;
 			this.logger = logger;
 		}
 
 		@Override
 		public ParatextCharacterContentVisitor<IOException> visitFootnoteXref(FootnoteXrefKind kind, String caller, String[] categories) throws IOException {
-			Note note = new Note();
-			note.setCaller(caller);
-			note.setStyle(NOTE_KIND_MAP.get(kind));
-			target.add(note);
+			writer.continueElement(target);
+			int note = writer.startElement("note");
+			writer.attribute("style", NOTE_KIND_MAP.get(kind).value());
+			writer.attribute("caller", caller);
 			for(String cat: categories) {
-				Char ch = new Char();
-				ch.setStyle(CharStyle.CAT);
-				ch.getContent().add(cat);
-				note.getContent().add(ch);
+				writer.continueElement(note);
+				writer.startElement("char");
+				writer.attribute("style", CharStyle.CAT.value());
+				writer.text(cat);
 			}
-			return new USXCharacterContentVisitor(USX.this.logger, note.getContent());
+			return new USXCharacterContentVisitor(USX.this.logger, writer, note);
 		}
 
 		@Override
@@ -702,11 +799,11 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 				if (style == null) {
 					throw new RuntimeException("Error could not get CharStyle for AutoClosingFormattingKind: " + kind);
 				}
-				Char chr = new Char();
-				chr.setLemma(attributes.get("lemma"));
-				chr.setStyle(CHAR_KIND_MAP.get(kind));
-				target.add(chr);
-				return new USXCharacterContentVisitor(USX.this.logger, chr.getContent());
+				writer.continueElement(target);
+				int chr = writer.startElement("char");
+				writer.attribute("style", style.value());
+				writer.attribute("lemma", attributes.get("lemma"));
+				return new USXCharacterContentVisitor(USX.this.logger, writer, chr);
 			} else {
 				return visitUnsupportedAutoClosingFormatting(kind, attributes);
 			}
@@ -720,12 +817,12 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 				USX.this.logger.logSkippedWarning(kind, "This might lead to text that is not" +
 						"separated by whitespace, since the previous text and superscript text may not have had been" +
 						"separated by whitespace.");
-				return new USXCharacterContentVisitor(USX.this.logger, target);
+				return new USXCharacterContentVisitor(USX.this.logger, writer, target);
 			} else if (kind == AutoClosingFormattingKind.RUBY) {
 				// Replace by putting the gloss into PRONUNCIATION.
 				USX.this.logger.logReplaceWarning(kind, AutoClosingFormattingKind.PRONUNCIATION);
 				final USXCharacterContentVisitor outer = this;
-				return new USXCharacterContentVisitor(USX.this.logger, target) {
+				return new USXCharacterContentVisitor(USX.this.logger, writer, target) {
 					public void visitEnd() throws IOException {
 						outer.visitAutoClosingFormatting(AutoClosingFormattingKind.PRONUNCIATION, new HashMap<>(3)).visitText(attributes.get("gloss"));
 					}
@@ -737,7 +834,7 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 					return null;
 				} else if (replacement.length == 0) {
 					USX.this.logger.logSkippedWarning(kind);
-					return new USXCharacterContentVisitor(USX.this.logger, target);
+					return new USXCharacterContentVisitor(USX.this.logger, writer, target);
 				} else if (replacement.length == 1) {
 					USX.this.logger.logReplaceWarning(kind, replacement[0]);
 					return visitAutoClosingFormatting(replacement[0], attributes);
@@ -759,10 +856,10 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 
 		@Override
 		public void visitReference(Reference reference) throws IOException {
-			Ref ref = new Ref();
-			ref.setLoc(reference.toString());
-			ref.setContent(reference.getContent());
-			target.add(ref);
+			writer.continueElement(target);
+			writer.startElement("ref");
+			writer.attribute("loc", reference.toString());
+			writer.text(reference.getContent());
 		}
 
 		@Override
@@ -775,13 +872,15 @@ public class USX extends AbstractUSXFormat<ParaStyle, CharStyle> {
 			if (nonBreakSpace) {
 				visitText("\u00A0");
 			} else {
-				target.add(new Optbreak());
+				writer.continueElement(target);
+				writer.startElement("optbreak");
 			}
 		}
 
 		@Override
 		public void visitText(String text) throws IOException {
-			target.add(text);
+			writer.continueElement(target);
+			writer.text(text);
 		}
 
 		@Override
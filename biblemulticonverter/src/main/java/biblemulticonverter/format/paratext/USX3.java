@@ -1,31 +1,32 @@
 package biblemulticonverter.format.paratext;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
-import javax.xml.bind.Marshaller;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamException;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.ValidatorHandler;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStreamWriter;
-import java.math.BigInteger;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 
 import org.w3c.dom.Document;
@@ -45,30 +46,15 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent.Reference;
 import biblemulticonverter.format.paratext.ParatextCharacterContent.SpecialSpace;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
-import biblemulticonverter.format.paratext.utilities.UnifiedScriptureXMLWriter;
-import biblemulticonverter.schema.usx3.Cell;
+import biblemulticonverter.format.paratext.utilities.USXStreamReader;
+import biblemulticonverter.format.paratext.utilities.USXStreamWriter;
 import biblemulticonverter.schema.usx3.CellAlign;
 import biblemulticonverter.schema.usx3.CellStyle;
-import biblemulticonverter.schema.usx3.Chapter;
-import biblemulticonverter.schema.usx3.Char;
 import biblemulticonverter.schema.usx3.CharStyle;
-import biblemulticonverter.schema.usx3.Figure;
-import biblemulticonverter.schema.usx3.Ms;
-import biblemulticonverter.schema.usx3.Note;
 import biblemulticonverter.schema.usx3.NoteStyle;
-import biblemulticonverter.schema.usx3.ObjectFactory;
-import biblemulticonverter.schema.usx3.Optbreak;
-import biblemulticonverter.schema.usx3.Para;
 import biblemulticonverter.schema.usx3.ParaStyle;
-import biblemulticonverter.schema.usx3.Periph;
-import biblemulticonverter.schema.usx3.Ref;
-import biblemulticonverter.schema.usx3.Row;
-import biblemulticonverter.schema.usx3.Sidebar;
-import biblemulticonverter.schema.usx3.Table;
-import biblemulticonverter.schema.usx3.Usx;
-import biblemulticonverter.schema.usx3.Verse;
 import biblemulticonverter.tools.ValidateXML;
-import biblemulticonverter.utilities.UnmarshallerLocationListener;
+import biblemulticonverter.utilities.InputDirectory;
 
 /**
  * Importer and exporter for USX3.
@@ -81,6 +67,8 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 			"Usage (export): USX <outdir> <filenamepattern>",
 			"",
 			"Point the importer to a directory that contains the .usx version 3 files.",
+			"The directory may also be a .zip, .tar or .tar.gz archive, optionally followed by",
+			"!/ and a subdirectory inside the archive.",
 			"",
 			"When exporting, you need to give a file name pattern. You can use # for ",
 			"the book number and * for the book name. Use ? to split by chapters, for ",
@@ -90,7 +78,6 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 	private Map<NoteStyle, ParatextCharacterContent.FootnoteXrefKind> NOTE_STYLE_MAP = new EnumMap<>(NoteStyle.class);
 	private Map<ParatextCharacterContent.FootnoteXrefKind, NoteStyle> NOTE_KIND_MAP = new EnumMap<>(ParatextCharacterContent.FootnoteXrefKind.class);
 
-	private UnmarshallerLocationListener unmarshallerLocationListener = new UnmarshallerLocationListener();
 
 	public USX3() {
 		super("USX 3", new ParaStyleWrapper(), new CharStyleWrapper());
@@ -143,13 +130,23 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 
 	@Override
 	protected ParatextBook doImportBook(File inputFile) throws Exception {
-		if (!inputFile.getName().toLowerCase().endsWith(".usx"))
+		try (InputDirectory directory = InputDirectory.open(inputFile.getAbsoluteFile().getParentFile())) {
+			return doImportBook(directory, inputFile.getName());
+		}
+	}
+
+	@Override
+	protected ParatextBook doImportBook(InputDirectory directory, String fileName) throws Exception {
+		if (!fileName.toLowerCase().endsWith(".usx"))
 			return null;
 		if (Boolean.getBoolean("biblemulticonverter.usx3.unmilestonedchapters")) {
 			// NOTE: This is not valid USX3 - yet there exist USX3 bibles that
 			// nest the chapter contents inside the chapter tags, which would
 			// result in empty imports without this workaround.
-			Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(inputFile);
+			Document doc;
+			try (InputStream in = directory.openStream(fileName)) {
+				doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in, directory.getSystemId(fileName));
+			}
 			for (Node child = doc.getDocumentElement().getFirstChild(); child != null; child = child.getNextSibling()) {
 				if (child instanceof Element && child.getNodeName().equals("chapter")) {
 					Element startElem = (Element) child;
@@ -164,385 +161,371 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 					child = endElem;
 				}
 			}
-			inputFile = File.createTempFile("~bmc", ".usx");
-			inputFile.deleteOnExit();
-			TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(inputFile));
-		}
-		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-
-		XMLInputFactory xif = XMLInputFactory.newFactory();
-		XMLStreamReader xsr = xif.createXMLStreamReader(new FileInputStream(inputFile));
-		Unmarshaller u = ctx.createUnmarshaller();
-		u.setListener(unmarshallerLocationListener);
-		unmarshallerLocationListener.setXMLStreamReader(inputFile.getName(), xsr);
-		Usx doc = (Usx) u.unmarshal(xsr);
-		xsr.close();
-
-		ParatextBook.ParatextID id = ParatextBook.ParatextID.fromIdentifier(doc.getBook().getCode().toUpperCase());
+			File tempFile = File.createTempFile("~bmc", ".usx");
+			tempFile.deleteOnExit();
+			TransformerFactory.newInstance().newTransformer().transform(new DOMSource(doc), new StreamResult(tempFile));
+			directory = InputDirectory.open(tempFile.getParentFile());
+			fileName = tempFile.getName();
+		}
+		try (InputStream in = directory.openStream(fileName)) {
+			USXStreamReader reader = new USXStreamReader(fileName, XMLInputFactory.newFactory().createXMLStreamReader(directory.getSystemId(fileName), in), ValidateXML.createStreamValidator(getSchema()));
+			try {
+				ParatextBook book = parseBook(reader);
+				reader.finish();
+				return book;
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	private static final Set<String> PARA_CONTENT = new HashSet<>(Arrays.asList("ref", "note", "char", "figure", "verse", "optbreak", "ms"));
+	private static final Set<String> CELL_CONTENT = new HashSet<>(Arrays.asList("note", "char", "figure", "verse", "optbreak", "ms"));
+	private static final Set<String> CHAR_CONTENT = new HashSet<>(Arrays.asList("ref", "char", "note", "optbreak", "ms"));
+	private static final Set<String> NOTE_CONTENT = Collections.singleton("char");
+
+	private static class ImportContext {
+		private final USXStreamReader reader;
+		private final ParatextBook result;
+		private ParatextCharacterContent charContent = null;
+
+		private ImportContext(USXStreamReader reader, ParatextBook result) {
+			this.reader = reader;
+			this.result = result;
+		}
+	}
+
+	private ParatextBook parseBook(USXStreamReader reader) throws IOException, XMLStreamException {
+		if (!reader.readRootElement().equals("usx"))
+			throw new IOException("Unsupported root element: " + reader.getLocalName());
+		if (reader.nextTag() != USXStreamReader.START_ELEMENT || !reader.getLocalName().equals("book"))
+			throw new IOException("Missing book element at " + reader.getHumanReadableLocation());
+		String code = reader.getCollapsedAttribute("code");
+		String bibleName = reader.readElementText();
+		ParatextBook.ParatextID id = ParatextBook.ParatextID.fromIdentifier(code.toUpperCase());
 		if (id == null) {
-			System.out.println("WARNING: Skipping book with unknown ID: " + doc.getBook().getCode());
+			System.out.println("WARNING: Skipping book with unknown ID: " + code);
 			return null;
 		}
-		ParatextBook result = new ParatextBook(id, doc.getBook().getContent());
-		ParatextCharacterContent charContent = null;
-		for (Object o : doc.getParaOrTableOrChapter()) {
-			if (o instanceof Para) {
-				Para para = (Para) o;
-				if (BOOK_HEADER_ATTRIBUTE_TAGS.contains(para.getStyle().value())) {
-					String value = "";
-					for (Object oo : para.getContent()) {
-						if (oo instanceof String) {
-							value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-						} else {
-							throw new RuntimeException("Unsupported content in attribute: " + oo.getClass());
-						}
-					}
-					result.getAttributes().put(para.getStyle().value(), value);
-					charContent = null;
-				} else if (para.getStyle().value().equals("rem")) {
-					String value = "";
-					for (Object oo : para.getContent()) {
-						if (oo instanceof String) {
-							value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-						} else {
-							throw new RuntimeException("Unsupported content in remark: " + oo.getClass());
-						}
-					}
-					if (value.startsWith("@@STATUS@@ ")) {
-						result.getAttributes().put("sts", value.substring(11));
-					} else if (!result.getContent().isEmpty()) {
-						result.getContent().add(new Remark(value));
-					} else if (result.getAttributes().containsKey("rem")) {
-						int number = 2;
-						while (result.getAttributes().containsKey("rem@" + number))
-							number++;
-						result.getAttributes().put("rem@" + number, value);
-					} else {
-						result.getAttributes().put(para.getStyle().value(), value);
-					}
-					charContent = null;
-				} else if (PARA_STYLE_UNSUPPORTED.contains(para.getStyle())) {
-					// skip
-					charContent = null;
-				} else {
-					result.getContent().add(new ParatextBook.ParagraphStart(PARA_STYLE_MAP.get(para.getStyle())));
-					charContent = null;
-					if (!para.getContent().isEmpty()) {
-						charContent = new ParatextCharacterContent();
-						result.getContent().add(charContent);
-						parseCharContent(para.getContent(), charContent, result);
+		ImportContext ctx = new ImportContext(reader, new ParatextBook(id, bibleName));
+		while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+			switch (reader.getLocalName()) {
+			case "para":
+				parsePara(ctx, true, ctx.result);
+				break;
+			case "table":
+				parseTable(ctx, true);
+				break;
+			case "chapter":
+				parseChapter(ctx);
+				break;
+			case "note":
+				parseBookLevelNote(ctx);
+				break;
+			case "sidebar":
+				ctx.result.getContent().add(new SidebarStart(splitCategories(reader.getAttribute("category"))));
+				while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+					switch (reader.getLocalName()) {
+					case "para":
+						parsePara(ctx, false, null);
+						break;
+					case "table":
+						parseTable(ctx, false);
+						break;
+					case "note":
+						parseBookLevelNote(ctx);
+						break;
+					default:
+						reader.skipElement();
 					}
 				}
-			} else if (o instanceof Table) {
-				Table table = (Table) o;
-				for (Row row : table.getRow()) {
-					result.getContent().add(new ParatextBook.ParagraphStart(ParatextBook.ParagraphKind.TABLE_ROW));
-					for (Object oo : row.getVerseOrCell()) {
-						if (oo instanceof Verse) {
-							Verse verse = (Verse) oo;
-							ParatextBook.ParatextBookContentPart verseStartOrEnd = handleVerse(verse);
-							result.getContent().add(verseStartOrEnd);
-						} else if (oo instanceof Cell) {
-							Cell cell = (Cell) oo;
-							String tag = cell.getStyle().value();
-							if (cell.getColspan() != null && cell.getColspan().intValue() > 1) {
-								tag += "-" + (Integer.parseInt((tag.replaceFirst("t[hcr]+", ""))) + cell.getColspan().intValue() - 1);
-							}
-							result.getContent().add(new ParatextBook.TableCellStart(tag));
-							charContent = new ParatextCharacterContent();
-							result.getContent().add(charContent);
-							parseCharContent(cell.getContent(), charContent, result);
-						} else {
-							throw new IOException("Unsupported table row element: " + o.getClass().getName());
-						}
+				ctx.result.getContent().add(new SidebarEnd());
+				ctx.charContent = null;
+				break;
+			case "periph":
+				ctx.result.getContent().add(new PeripheralStart(reader.getAttribute("alt"), reader.getAttribute("id")));
+				while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+					switch (reader.getLocalName()) {
+					case "para":
+						parsePara(ctx, false, ctx.result);
+						break;
+					case "table":
+						parseTable(ctx, false);
+						break;
+					case "note":
+						parseBookLevelNote(ctx);
+						break;
+					case "chapter":
+					case "sidebar":
+						throw new IOException("Unsupported peripheral element at " + reader.getHumanReadableLocation() + ": " + reader.getLocalName());
+					default:
+						reader.skipElement();
 					}
 				}
-				charContent = null;
-			} else if (o instanceof Chapter) {
-				Chapter chapter = (Chapter) o;
-				if (chapter.getSid() != null) {
-					// Assume start chapter
-					result.getContent().add(new ParatextBook.ChapterStart(new ChapterIdentifier(result.getId(), ((Chapter) o).getNumber().intValue())));
-					String altnumber = ((Chapter) o).getAltnumber();
-					if (altnumber != null) {
-						ParatextCharacterContent pcc = new ParatextCharacterContent();
-						ParatextCharacterContent.AutoClosingFormatting acf = new ParatextCharacterContent.AutoClosingFormatting(ParatextCharacterContent.AutoClosingFormattingKind.ALTERNATE_CHAPTER);
-						acf.getContent().add(ParatextCharacterContent.Text.from(altnumber));
-						pcc.getContent().add(acf);
-						result.getContent().add(pcc);
-					}
-				} else if (chapter.getEid() != null) {
-					// Assume end chapter
-					ChapterIdentifier location = ChapterIdentifier.fromLocationString(chapter.getEid());
-					if (location == null) {
-						throw new IOException("Invalid chapter eid found: " + chapter.getEid());
-					}
-					result.getContent().add(new ParatextBook.ChapterEnd(location));
-				} else {
-					throw new IOException("Invalid chapter found, both sid and eid are undefined: " + chapter);
-				}
-				charContent = null;
-			} else if (o instanceof Note) {
-				if (charContent == null) {
-					charContent = new ParatextCharacterContent();
-					result.getContent().add(charContent);
-				}
-				Note note = (Note) o;
-				ParatextCharacterContent.FootnoteXref nx = new ParatextCharacterContent.FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), note.getCategory() == null ? new String[0] : note.getCategory().split(" "));
-				charContent.getContent().add(nx);
-				parseCharContent(note.getContent(), nx, null);
-			} else if (o instanceof Sidebar) {
-				Sidebar s = (Sidebar) o;
-				result.getContent().add(new SidebarStart(s.getCategory() == null ? new String[0] : s.getCategory().split(" ")));
-				for (Object os : s.getParaOrTableOrNote()) {
-					if (os instanceof Para) {
-						Para para = (Para) os;
-						if (para.getStyle().value().equals("rem")) {
-							String value = "";
-							for (Object oo : para.getContent()) {
-								if (oo instanceof String) {
-									value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-								} else {
-									throw new RuntimeException("Unsupported content in remark: " + oo.getClass());
-								}
-							}
-							result.getContent().add(new Remark(value));
-							charContent = null;
-						} else if (PARA_STYLE_UNSUPPORTED.contains(para.getStyle())) {
-							// skip
-							charContent = null;
-						} else {
-							result.getContent().add(new ParatextBook.ParagraphStart(PARA_STYLE_MAP.get(para.getStyle())));
-							charContent = null;
-							if (!para.getContent().isEmpty()) {
-								charContent = new ParatextCharacterContent();
-								result.getContent().add(charContent);
-								parseCharContent(para.getContent(), charContent, null);
-							}
-						}
-					} else if (os instanceof Table) {
-						Table table = (Table) os;
-						for (Row row : table.getRow()) {
-							result.getContent().add(new ParatextBook.ParagraphStart(ParatextBook.ParagraphKind.TABLE_ROW));
-							for (Object oo : row.getVerseOrCell()) {
-								if (oo instanceof Verse) {
-									Verse verse = (Verse) oo;
-									ParatextBook.ParatextBookContentPart verseStartOrEnd = handleVerse(verse);
-									result.getContent().add(verseStartOrEnd);
-								} else if (oo instanceof Cell) {
-									Cell cell = (Cell) oo;
-									result.getContent().add(new ParatextBook.TableCellStart(cell.getStyle().value()));
-									charContent = new ParatextCharacterContent();
-									result.getContent().add(charContent);
-									parseCharContent(cell.getContent(), charContent, result);
-								} else {
-									throw new IOException("Unsupported table row element: " + os.getClass().getName());
-								}
-							}
-						}
-						charContent = null;
-					} else if (os instanceof Note) {
-						if (charContent == null) {
-							charContent = new ParatextCharacterContent();
-							result.getContent().add(charContent);
-						}
-						Note note = (Note) os;
-						ParatextCharacterContent.FootnoteXref nx = new ParatextCharacterContent.FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), note.getCategory() == null ? new String[0] : note.getCategory().split(" "));
-						charContent.getContent().add(nx);
-						parseCharContent(note.getContent(), nx, null);
-					} else {
-						throw new IOException("Unsupported sidebar element: " + os.getClass().getName());
-					}
+				ctx.charContent = null;
+				break;
+			default:
+				reader.skipElement();
+			}
+		}
+		return ctx.result;
+	}
+
+	private void parsePara(ImportContext ctx, boolean topLevel, ParatextBook bookIfToplevel) throws IOException, XMLStreamException {
+		USXStreamReader reader = ctx.reader;
+		ParatextBook result = ctx.result;
+		String style = reader.getAttribute("style");
+		if (topLevel && BOOK_HEADER_ATTRIBUTE_TAGS.contains(style)) {
+			result.getAttributes().put(style, readPlainText(reader, "attribute"));
+		} else if ("rem".equals(style)) {
+			String value = readPlainText(reader, "remark");
+			if (!topLevel || (!value.startsWith("@@STATUS@@ ") && !result.getContent().isEmpty())) {
+				result.getContent().add(new Remark(value));
+			} else if (value.startsWith("@@STATUS@@ ")) {
+				result.getAttributes().put("sts", value.substring(11));
+			} else if (result.getAttributes().containsKey("rem")) {
+				int number = 2;
+				while (result.getAttributes().containsKey("rem@" + number))
+					number++;
+				result.getAttributes().put("rem@" + number, value);
+			} else {
+				result.getAttributes().put(style, value);
+			}
+		} else {
+			ParaStyle paraStyle = parseStyle(reader, ParaStyle::fromValue, style);
+			if (PARA_STYLE_UNSUPPORTED.contains(paraStyle)) {
+				reader.skipElement();
+			} else {
+				result.getContent().add(new ParatextBook.ParagraphStart(PARA_STYLE_MAP.get(paraStyle)));
+				ctx.charContent = null;
+				if (reader.next() != USXStreamReader.END_ELEMENT) {
+					reader.pushBack();
+					ctx.charContent = new ParatextCharacterContent();
+					result.getContent().add(ctx.charContent);
+					parseCharContent(ctx, PARA_CONTENT, ctx.charContent, bookIfToplevel);
 				}
-				result.getContent().add(new SidebarEnd());
-				charContent = null;
-			} else if (o instanceof Periph) {
-				Periph p = (Periph) o;
-				result.getContent().add(new PeripheralStart(p.getAlt(), p.getId()));
-				for (Object os : p.getParaOrTableOrNote()) {
-					if (os instanceof Para) {
-						Para para = (Para) os;
-						if (para.getStyle().value().equals("rem")) {
-							String value = "";
-							for (Object oo : para.getContent()) {
-								if (oo instanceof String) {
-									value += ((String) oo).replaceAll("[ \r\n\t]+", " ");
-								} else {
-									throw new RuntimeException("Unsupported content in remark: " + oo.getClass());
-								}
-							}
-							result.getContent().add(new Remark(value));
-							charContent = null;
-						} else if (PARA_STYLE_UNSUPPORTED.contains(para.getStyle())) {
-							// skip
-							charContent = null;
-						} else {
-							result.getContent().add(new ParatextBook.ParagraphStart(PARA_STYLE_MAP.get(para.getStyle())));
-							charContent = null;
-							if (!para.getContent().isEmpty()) {
-								charContent = new ParatextCharacterContent();
-								result.getContent().add(charContent);
-								parseCharContent(para.getContent(), charContent, result);
-							}
-						}
-					} else if (os instanceof Table) {
-						Table table = (Table) os;
-						for (Row row : table.getRow()) {
-							result.getContent().add(new ParatextBook.ParagraphStart(ParatextBook.ParagraphKind.TABLE_ROW));
-							for (Object oo : row.getVerseOrCell()) {
-								if (oo instanceof Verse) {
-									Verse verse = (Verse) oo;
-									ParatextBook.ParatextBookContentPart verseStartOrEnd = handleVerse(verse);
-									result.getContent().add(verseStartOrEnd);
-								} else if (oo instanceof Cell) {
-									Cell cell = (Cell) oo;
-									result.getContent().add(new ParatextBook.TableCellStart(cell.getStyle().value()));
-									charContent = new ParatextCharacterContent();
-									result.getContent().add(charContent);
-									parseCharContent(cell.getContent(), charContent, result);
-								} else {
-									throw new IOException("Unsupported table row element: " + os.getClass().getName());
-								}
-							}
-						}
-						charContent = null;
-					} else if (os instanceof Note) {
-						if (charContent == null) {
-							charContent = new ParatextCharacterContent();
-							result.getContent().add(charContent);
-						}
-						Note note = (Note) os;
-						ParatextCharacterContent.FootnoteXref nx = new ParatextCharacterContent.FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), note.getCategory() == null ? new String[0] : note.getCategory().split(" "));
-						charContent.getContent().add(nx);
-						parseCharContent(note.getContent(), nx, null);
-					} else {
-						throw new IOException("Unsupported peripheral element: " + os.getClass().getName());
+				return;
+			}
+		}
+		ctx.charContent = null;
+	}
+
+	private String readPlainText(USXStreamReader reader, String what) throws IOException, XMLStreamException {
+		String value = "";
+		int type;
+		while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+			if (type == USXStreamReader.TEXT) {
+				value += reader.getText().replaceAll("[ \r\n\t]+", " ");
+			} else if (PARA_CONTENT.contains(reader.getLocalName())) {
+				throw new RuntimeException("Unsupported content in " + what + " at " + reader.getHumanReadableLocation() + ": " + reader.getLocalName());
+			} else {
+				reader.skipElement();
+			}
+		}
+		return value;
+	}
+
+	private void parseTable(ImportContext ctx, boolean topLevel) throws IOException, XMLStreamException {
+		USXStreamReader reader = ctx.reader;
+		while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+			if (!reader.getLocalName().equals("row")) {
+				reader.skipElement();
+				continue;
+			}
+			ctx.result.getContent().add(new ParatextBook.ParagraphStart(ParatextBook.ParagraphKind.TABLE_ROW));
+			while (reader.nextTag() == USXStreamReader.START_ELEMENT) {
+				if (reader.getLocalName().equals("verse")) {
+					ctx.result.getContent().add(handleVerse(reader));
+					reader.skipElement();
+				} else if (reader.getLocalName().equals("cell")) {
+					String tag = reader.getAttribute("style");
+					Integer colspan = reader.getIntegerAttribute("colspan");
+					if (topLevel && colspan != null && colspan > 1) {
+						tag += "-" + (Integer.parseInt((tag.replaceFirst("t[hcr]+", ""))) + colspan - 1);
 					}
+					ctx.result.getContent().add(new ParatextBook.TableCellStart(tag));
+					ctx.charContent = new ParatextCharacterContent();
+					ctx.result.getContent().add(ctx.charContent);
+					parseCharContent(ctx, CELL_CONTENT, ctx.charContent, ctx.result);
+				} else {
+					reader.skipElement();
 				}
-				charContent = null;
-			} else {
-				throw new IOException("Unsupported book level element: " + o.getClass().getName());
 			}
 		}
+		ctx.charContent = null;
+	}
+
+	private void parseChapter(ImportContext ctx) throws IOException, XMLStreamException {
+		USXStreamReader reader = ctx.reader;
+		String sid = reader.getAttribute("sid"), eid = reader.getAttribute("eid");
+		if (sid != null) {
+			// Assume start chapter
+			Integer number = reader.getIntegerAttribute("number");
+			if (number == null)
+				throw new IOException("Chapter without number found at " + reader.getHumanReadableLocation());
+			ctx.result.getContent().add(new ParatextBook.ChapterStart(new ChapterIdentifier(ctx.result.getId(), number)));
+			String altnumber = reader.getAttribute("altnumber");
+			if (altnumber != null) {
+				ParatextCharacterContent pcc = new ParatextCharacterContent();
+				ParatextCharacterContent.AutoClosingFormatting acf = new ParatextCharacterContent.AutoClosingFormatting(ParatextCharacterContent.AutoClosingFormattingKind.ALTERNATE_CHAPTER);
+				acf.getContent().add(ParatextCharacterContent.Text.from(altnumber));
+				pcc.getContent().add(acf);
+				ctx.result.getContent().add(pcc);
+			}
+		} else if (eid != null) {
+			// Assume end chapter
+			ChapterIdentifier location = ChapterIdentifier.fromLocationString(eid);
+			if (location == null) {
+				throw new IOException("Invalid chapter eid found: " + eid);
+			}
+			ctx.result.getContent().add(new ParatextBook.ChapterEnd(location));
+		} else {
+			throw new IOException("Invalid chapter found at " + reader.getHumanReadableLocation() + ", both sid and eid are undefined");
+		}
+		reader.skipElement();
+		ctx.charContent = null;
+	}
+
+	private void parseBookLevelNote(ImportContext ctx) throws IOException, XMLStreamException {
+		if (ctx.charContent == null) {
+			ctx.charContent = new ParatextCharacterContent();
+			ctx.result.getContent().add(ctx.charContent);
+		}
+		parseNote(ctx, ctx.charContent);
+	}
 
-		return result;
+	private void parseNote(ImportContext ctx, ParatextBook.ParatextCharacterContentContainer container) throws IOException, XMLStreamException {
+		USXStreamReader reader = ctx.reader;
+		NoteStyle style = parseStyle(reader, NoteStyle::fromValue, reader.getAttribute("style"));
+		ParatextCharacterContent.FootnoteXref nx = new ParatextCharacterContent.FootnoteXref(NOTE_STYLE_MAP.get(style), reader.getAttribute("caller"), splitCategories(reader.getAttribute("category")));
+		container.getContent().add(nx);
+		parseCharContent(ctx, NOTE_CONTENT, nx, null);
 	}
 
-	private void parseCharContent(List<Object> content, ParatextBook.ParatextCharacterContentContainer container, ParatextBook bookIfToplevel) throws IOException {
-		for (Object o : content) {
-			if (o instanceof Optbreak) {
+	private static String[] splitCategories(String category) {
+		return category == null ? new String[0] : category.split(" ");
+	}
+
+	private static <T> T parseStyle(USXStreamReader reader, Function<String, T> parser, String style) throws IOException {
+		try {
+			return parser.apply(style);
+		} catch (IllegalArgumentException ex) {
+			throw new IOException("Unsupported style at " + reader.getHumanReadableLocation() + ": " + style, ex);
+		}
+	}
+
+	private void parseCharContent(ImportContext ctx, Set<String> allowedElements, ParatextBook.ParatextCharacterContentContainer container, ParatextBook bookIfToplevel) throws IOException, XMLStreamException {
+		USXStreamReader reader = ctx.reader;
+		int type;
+		while ((type = reader.next()) != USXStreamReader.END_ELEMENT) {
+			if (type == USXStreamReader.TEXT) {
+				final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(reader.getText());
+				if (text != null) {
+					container.getContent().add(text);
+				}
+				continue;
+			}
+			String name = reader.getLocalName();
+			if (!allowedElements.contains(name)) {
+				reader.skipElement();
+				continue;
+			}
+			if (name.equals("optbreak")) {
 				container.getContent().add(new SpecialSpace(false, true));
-			} else if (o instanceof Ref) {
-				Ref r = (Ref) o;
+				reader.skipElement();
+			} else if (name.equals("ref")) {
+				String location = reader.getHumanReadableLocation();
+				String loc = reader.getAttribute("loc");
+				String content = reader.readElementText();
 				try {
-					container.getContent().add(ParatextCharacterContent.Reference.parse(r.getLoc(), r.getContent()));
+					container.getContent().add(ParatextCharacterContent.Reference.parse(loc, content));
 				} catch (IllegalArgumentException e) {
-					String location = unmarshallerLocationListener.getHumanReadableLocation(o);
-					System.out.println("WARNING: Unsupported structured reference format at " + location + " - replaced by plain text: " + r.getLoc());
-					final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(r.getContent());
-					if(text != null) {
+					System.out.println("WARNING: Unsupported structured reference format at " + location + " - replaced by plain text: " + loc);
+					final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from(content);
+					if (text != null) {
 						container.getContent().add(text);
 					}
 				}
-			} else if (o instanceof String) {
-				final ParatextCharacterContent.Text text = ParatextCharacterContent.Text.from((String) o);
-				if(text != null) {
-					container.getContent().add(text);
-				}
-			} else if (o instanceof Figure && bookIfToplevel != null) {
-				Figure fig = (Figure) o;
-				ParatextBook.Figure f = new ParatextBook.Figure(fig.getContent());
-				if (fig.getCopy() != null)
-					f.getAttributes().put("copy", fig.getCopy());
-				if (fig.getAlt() != null)
-					f.getAttributes().put("alt", fig.getAlt());
-				f.getAttributes().put("src", fig.getFile());
-				if (fig.getLoc() != null)
-					f.getAttributes().put("loc", fig.getLoc());
-				if (fig.getRef() != null)
-					f.getAttributes().put("ref", fig.getRef());
-				if (fig.getSize() != null)
-					f.getAttributes().put("size", fig.getSize());
+			} else if (name.equals("figure") && bookIfToplevel != null) {
+				String copy = reader.getAttribute("copy"), alt = reader.getAttribute("alt"), file = reader.getAttribute("file");
+				String loc = reader.getAttribute("loc"), ref = reader.getAttribute("ref"), size = reader.getAttribute("size");
+				ParatextBook.Figure f = new ParatextBook.Figure(reader.readElementText());
+				if (copy != null)
+					f.getAttributes().put("copy", copy);
+				if (alt != null)
+					f.getAttributes().put("alt", alt);
+				f.getAttributes().put("src", file);
+				if (loc != null)
+					f.getAttributes().put("loc", loc);
+				if (ref != null)
+					f.getAttributes().put("ref", ref);
+				if (size != null)
+					f.getAttributes().put("size", size);
 				bookIfToplevel.getContent().add(f);
 				container = new ParatextCharacterContent();
 				bookIfToplevel.getContent().add((ParatextCharacterContent) container);
-			} else if (o instanceof Ms) {
-				Ms ms = (Ms) o;
-				ParatextCharacterContent.Milestone m = new ParatextCharacterContent.Milestone(ms.getStyle());
-				if (ms.getSid() != null)
-					m.getAttributes().put("sid", ms.getSid());
-				if (ms.getEid() != null)
-					m.getAttributes().put("eid", ms.getEid());
-				if (ms.getWho() != null)
-					m.getAttributes().put("who", ms.getWho());
+			} else if (name.equals("ms")) {
+				ParatextCharacterContent.Milestone m = new ParatextCharacterContent.Milestone(reader.getAttribute("style"));
+				for (String attr : Arrays.asList("sid", "eid", "who")) {
+					String value = reader.getAttribute(attr);
+					if (value != null)
+						m.getAttributes().put(attr, value);
+				}
+				m.getAttributes().canonicalize();
 				container.getContent().add(m);
-			} else if (o instanceof Char) {
-				Char chr = (Char) o;
-				if (CHAR_STYLE_UNSUPPORTED.contains(chr.getStyle())) {
-					parseCharContent(chr.getContent(), container, bookIfToplevel);
+				reader.skipElement();
+			} else if (name.equals("char")) {
+				CharStyle style = parseStyle(reader, CharStyle::fromValue, reader.getAttribute("style"));
+				if (CHAR_STYLE_UNSUPPORTED.contains(style)) {
+					parseCharContent(ctx, CHAR_CONTENT, container, bookIfToplevel);
 				} else {
-					ParatextCharacterContent.AutoClosingFormatting f = new ParatextCharacterContent.AutoClosingFormatting(CHAR_STYLE_MAP.get(chr.getStyle()));
+					ParatextCharacterContent.AutoClosingFormatting f = new ParatextCharacterContent.AutoClosingFormatting(CHAR_STYLE_MAP.get(style));
 					if (f.getKind() == ParatextCharacterContent.AutoClosingFormattingKind.WORDLIST) {
-						String lemma = chr.getLemma();
-						String strong = chr.getStrong();
-						String srcloc = chr.getSrcloc();
-						if (lemma != null && !lemma.isEmpty()) {
-							f.getAttributes().put("lemma", lemma);
-						}
-						if (strong != null && !strong.isEmpty()) {
-							f.getAttributes().put("strong", strong);
-						}
-						if (srcloc != null && !srcloc.isEmpty()) {
-							f.getAttributes().put("srcloc", srcloc);
-						}
+						putNonEmptyAttribute(reader, f, "lemma");
+						putNonEmptyAttribute(reader, f, "strong");
+						putNonEmptyAttribute(reader, f, "srcloc");
 					} else if (f.getKind() == ParatextCharacterContent.AutoClosingFormattingKind.RUBY) {
-						String gloss = chr.getGloss();
-						if (gloss != null && !gloss.isEmpty()) {
-							f.getAttributes().put("gloss", gloss);
-						}
-					}
-					String href = chr.getLinkHref();
-					if (href != null && !href.isEmpty()) {
-						f.getAttributes().put("link-href", href);
-					}
-					String linkid = chr.getLinkId();
-					if (linkid != null && !linkid.isEmpty()) {
-						f.getAttributes().put("link-id", linkid);
-					}
-					String linktitle = chr.getLinkTitle();
-					if (linktitle != null && !linktitle.isEmpty()) {
-						f.getAttributes().put("link-title", linktitle);
+						putNonEmptyAttribute(reader, f, "gloss");
 					}
+					putNonEmptyAttribute(reader, f, "link-href");
+					putNonEmptyAttribute(reader, f, "link-id");
+					putNonEmptyAttribute(reader, f, "link-title");
+					f.getAttributes().canonicalize();
 					container.getContent().add(f);
-					parseCharContent(chr.getContent(), f, null);
+					parseCharContent(ctx, CHAR_CONTENT, f, null);
 				}
-			} else if (o instanceof Verse && bookIfToplevel != null) {
-				bookIfToplevel.getContent().add(handleVerse((Verse) o));
+			} else if (name.equals("verse") && bookIfToplevel != null) {
+				bookIfToplevel.getContent().add(handleVerse(reader));
+				reader.skipElement();
 				container = new ParatextCharacterContent();
 				bookIfToplevel.getContent().add((ParatextCharacterContent) container);
-			} else if (o instanceof Note) {
-				Note note = (Note) o;
-				ParatextCharacterContent.FootnoteXref nx = new ParatextCharacterContent.FootnoteXref(NOTE_STYLE_MAP.get(note.getStyle()), note.getCaller(), note.getCategory() == null ? new String[0] : note.getCategory().split(" "));
-				container.getContent().add(nx);
-				parseCharContent(note.getContent(), nx, null);
+			} else if (name.equals("note")) {
+				parseNote(ctx, container);
 			} else {
-				throw new IOException("Unsupported character content element: " + o.getClass().getName());
+				throw new IOException("Unsupported character content element at " + reader.getHumanReadableLocation() + ": " + name);
 			}
 		}
 	}
 
-	private ParatextBook.ParatextBookContentPart handleVerse(Verse verse) throws IOException {
+	private static void putNonEmptyAttribute(USXStreamReader reader, ParatextCharacterContent.AutoClosingFormatting f, String name) {
+		String value = reader.getAttribute(name);
+		if (value != null && !value.isEmpty()) {
+			f.getAttributes().put(name, value);
+		}
+	}
+
+	private ParatextBook.ParatextBookContentPart handleVerse(USXStreamReader reader) throws IOException {
+		String sid = reader.getAttribute("sid"), eid = reader.getAttribute("eid");
 		try {
-			if (verse.getSid() != null) {
+			if (sid != null) {
 				return new ParatextBook.VerseStart(
-						VerseIdentifier.fromStringOrThrow(verse.getSid()),
-						verse.getNumber());
-			} else if (verse.getEid() != null) {
+						VerseIdentifier.fromStringOrThrow(sid),
+						reader.getAttribute("number"));
+			} else if (eid != null) {
 				return new ParatextBook.VerseEnd(
-						VerseIdentifier.fromStringOrThrow(verse.getEid()));
+						VerseIdentifier.fromStringOrThrow(eid));
 			} else {
-				throw new IOException("Invalid verse found, both sid and eid are undefined: " + verse);
+				throw new IOException("Invalid verse found at " + reader.getHumanReadableLocation() + ", both sid and eid are undefined");
 			}
 		} catch (IllegalArgumentException e) {
 			throw new IOException(e);
@@ -551,246 +534,305 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 
 	@Override
 	protected void doExportBook(ParatextBook book, File outFile) throws Exception {
-		ObjectFactory of = new ObjectFactory();
-		Usx usx = of.createUsx();
-		usx.setVersion("3.0");
-		usx.setBook(of.createBook());
-		usx.getBook().setStyle("id");
-		usx.getBook().setCode(book.getId().getIdentifier());
-		usx.getBook().setContent(book.getBibleName());
-
-		for (Map.Entry<String, String> attr : book.getAttributes().entrySet()) {
-			Para para = new Para();
-			if (attr.getKey().equals("sts")) {
-				para.setStyle(ParaStyle.REM);
-				para.getContent().add("@@STATUS@@ ");
-			} else {
-				para.setStyle(ParaStyle.fromValue(attr.getKey().replaceFirst("@[0-9]+$", "")));
+		ValidatorHandler validator = Boolean.getBoolean("biblemulticonverter.skipxmlvalidation") ? null : getSchema().newValidatorHandler();
+		boolean success = false;
+		try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8))) {
+			USXStreamWriter writer = new USXStreamWriter(w, validator);
+			int root = writer.startDocument("3.0");
+			writer.startElement("book");
+			writer.attribute("code", book.getId().getIdentifier());
+			writer.attribute("style", "id");
+			writer.text(book.getBibleName());
+
+			for (Map.Entry<String, String> attr : book.getAttributes().entrySet()) {
+				writer.continueElement(root);
+				writer.startElement("para");
+				if (attr.getKey().equals("sts")) {
+					writer.attribute("style", ParaStyle.REM.value());
+					writer.text("@@STATUS@@ ");
+				} else {
+					writer.attribute("style", ParaStyle.fromValue(attr.getKey().replaceFirst("@[0-9]+$", "")).value());
+				}
+				writer.text(attr.getValue());
 			}
-			para.getContent().add(attr.getValue());
-			usx.getParaOrTableOrChapter().add(para);
+
+			USXBookExportVisitor visitor = new USXBookExportVisitor(writer, root);
+			book.accept(visitor);
+			visitor.flushPending();
+			writer.endDocument();
+			success = true;
+		} finally {
+			// do not leave incomplete files behind
+			if (!success)
+				outFile.delete();
 		}
+	}
 
-		book.accept(new ParatextBook.ParatextBookContentVisitor<IOException>() {
+	protected Schema getSchema() throws SAXException {
+		return ValidateXML.getSchema("/usx3.xsd");
+	}
 
-			List<Object> currentRoot = usx.getParaOrTableOrChapter();
-			List<Object> currentContent = null;
-			Table currentTable = null;
+	/**
+	 * Writes the content of a book. Chapter elements are written when the next
+	 * content arrives, as an alternate chapter number following them is written
+	 * as attribute. Sidebar and peripheral boundaries are written before the
+	 * next root element, as content without its own paragraph following them
+	 * still belongs to the previous paragraph.
+	 */
+	private class USXBookExportVisitor implements ParatextBook.ParatextBookContentVisitor<IOException> {
+
+		private final USXStreamWriter writer;
+		private final int root;
+		private int currentRoot, currentContent = -1, currentTable = -1, currentRow = -1;
+		private boolean chapterPending = false, inContainer = false;
+		private String chapterNumber, chapterSid, chapterEid, chapterAltnumber;
+		private final List<PendingElement> pendingElements = new ArrayList<>();
+
+		private USXBookExportVisitor(USXStreamWriter writer, int root) {
+			this.writer = writer;
+			this.root = root;
+			this.currentRoot = root;
+		}
 
-			@Override
-			public void visitChapterStart(ChapterIdentifier location) throws IOException {
-				Chapter ch = new Chapter();
-				ch.setStyle("c");
-				ch.setSid(location.toString());
-				ch.setNumber(BigInteger.valueOf(location.chapter));
-				currentRoot.add(ch);
-				currentContent = null;
-				currentTable = null;
-			}
+		private int startRootElement(String name) throws IOException {
+			flushPending();
+			writer.continueElement(currentRoot);
+			currentContent = -1;
+			currentTable = -1;
+			return writer.startElement(name);
+		}
 
-			@Override
-			public void visitChapterEnd(ChapterIdentifier location) throws IOException {
-				Chapter ch = new Chapter();
-				ch.setEid(location.toString());
-				currentRoot.add(ch);
-				currentContent = null;
-				currentTable = null;
-			}
+		private void flushChapter() throws IOException {
+			if (!chapterPending)
+				return;
+			chapterPending = false;
+			writer.continueElement(currentRoot);
+			writer.startElement("chapter");
+			writer.attribute("number", chapterNumber);
+			writer.attribute("style", chapterNumber == null ? null : "c");
+			writer.attribute("sid", chapterSid);
+			writer.attribute("altnumber", chapterAltnumber);
+			writer.attribute("eid", chapterEid);
+		}
 
-			@Override
-			public void visitRemark(String content) throws IOException {
-				Para para = new Para();
-				para.setStyle(ParaStyle.REM);
-				currentRoot.add(para);
-				para.getContent().add(content);
-				currentContent = null;
-				currentTable = null;
+		private void flushPending() throws IOException {
+			flushChapter();
+			for (PendingElement element : pendingElements) {
+				element.write();
 			}
+			pendingElements.clear();
+		}
 
+		private void setPendingChapter(String number, String sid, String eid) throws IOException {
+			flushPending();
+			chapterPending = true;
+			chapterNumber = number;
+			chapterSid = sid;
+			chapterEid = eid;
+			chapterAltnumber = null;
+			currentContent = -1;
+			currentTable = -1;
+		}
 
-			@Override
-			public void visitParagraphStart(ParatextBook.ParagraphKind kind) throws IOException {
-				if (kind == ParatextBook.ParagraphKind.TABLE_ROW) {
-					if (currentTable == null) {
-						currentTable = new Table();
-						currentRoot.add(currentTable);
-					}
-					Row row = new Row();
-					row.setStyle("tr");
-					currentTable.getRow().add(row);
-					currentContent = currentTable.getRow().get(currentTable.getRow().size() - 1).getVerseOrCell();
+		@Override
+		public void visitChapterStart(ChapterIdentifier location) throws IOException {
+			setPendingChapter(String.valueOf(location.chapter), location.toString(), null);
+		}
+
+		@Override
+		public void visitChapterEnd(ChapterIdentifier location) throws IOException {
+			setPendingChapter(null, null, location.toString());
+		}
+
+		@Override
+		public void visitRemark(String content) throws IOException {
+			startRootElement("para");
+			writer.attribute("style", ParaStyle.REM.value());
+			writer.text(content);
+		}
+
+		@Override
+		public void visitParagraphStart(ParatextBook.ParagraphKind kind) throws IOException {
+			if (kind == ParatextBook.ParagraphKind.TABLE_ROW) {
+				if (currentTable == -1) {
+					currentTable = startRootElement("table");
 				} else {
-					Para para = new Para();
-					para.setStyle(PARA_KIND_MAP.get(kind));
-					currentRoot.add(para);
-					currentContent = para.getContent();
-					currentTable = null;
+					writer.continueElement(currentTable);
 				}
+				currentRow = writer.startElement("row");
+				writer.attribute("style", "tr");
+				currentContent = currentRow;
+			} else {
+				currentContent = startRootElement("para");
+				writer.attribute("style", PARA_KIND_MAP.get(kind).value());
 			}
+		}
 
-			@Override
-			public void visitTableCellStart(String tag) throws IOException {
-				if (currentTable == null) {
-					System.out.println("WARNING: Table cell outside of table");
-					return;
-				}
-				Row currentRow = currentTable.getRow().get(currentTable.getRow().size() - 1);
-				Cell cell = new Cell();
-				cell.setAlign(tag.contains("r") ? CellAlign.END : CellAlign.START);
-				if (tag.contains("-")) {
-					Matcher m = Utils.compilePattern("(t[hcr]+)([0-9]+)-([0-9]+)").matcher(tag);
-					if (!m.matches())
-						throw new RuntimeException("Unsupported table tag " + tag);
-					String prefix = m.group(1);
-					int min = Integer.parseInt(m.group(2));
-					int max = Integer.parseInt(m.group(3));
-					cell.setColspan(BigInteger.valueOf(max - min + 1));
-					tag = prefix + min;
-				}
-				cell.setStyle(CellStyle.fromValue(tag));
-				currentRow.getVerseOrCell().add(cell);
-				currentContent = cell.getContent();
+		@Override
+		public void visitTableCellStart(String tag) throws IOException {
+			if (currentTable == -1) {
+				System.out.println("WARNING: Table cell outside of table");
+				return;
+			}
+			CellAlign align = tag.contains("r") ? CellAlign.END : CellAlign.START;
+			String colspan = null;
+			if (tag.contains("-")) {
+				Matcher m = Utils.compilePattern("(t[hcr]+)([0-9]+)-([0-9]+)").matcher(tag);
+				if (!m.matches())
+					throw new RuntimeException("Unsupported table tag " + tag);
+				String prefix = m.group(1);
+				int min = Integer.parseInt(m.group(2));
+				int max = Integer.parseInt(m.group(3));
+				colspan = String.valueOf(max - min + 1);
+				tag = prefix + min;
 			}
+			CellStyle style = CellStyle.fromValue(tag);
+			writer.continueElement(currentRow);
+			currentContent = writer.startElement("cell");
+			writer.attribute("style", style.value());
+			writer.attribute("align", align.value());
+			writer.attribute("colspan", colspan);
+		}
 
-			@Override
-			public void visitSidebarStart(String[] categories) throws IOException {
-				if (currentRoot != usx.getParaOrTableOrChapter())
-					throw new RuntimeException("Nested sidebars are not supported");
-				Sidebar sidebar = new Sidebar();
-				sidebar.setStyle("esb");
+		@Override
+		public void visitSidebarStart(String[] categories) throws IOException {
+			flushChapter();
+			if (inContainer)
+				throw new RuntimeException("Nested sidebars are not supported");
+			inContainer = true;
+			pendingElements.add(() -> {
+				writer.continueElement(root);
+				currentRoot = writer.startElement("sidebar");
+				writer.attribute("style", "esb");
 				if (categories.length > 0) {
-					sidebar.setCategory(String.join(" ", categories));
+					writer.attribute("category", String.join(" ", categories));
 				}
-				currentRoot.add(sidebar);
-				currentRoot = sidebar.getParaOrTableOrNote();
-			}
+			});
+		}
 
-			@Override
-			public void visitSidebarEnd() throws IOException {
-				if (currentRoot == usx.getParaOrTableOrChapter())
-					throw new RuntimeException("No sidebar open");
-				currentRoot = usx.getParaOrTableOrChapter();
-			}
+		@Override
+		public void visitSidebarEnd() throws IOException {
+			flushChapter();
+			if (!inContainer)
+				throw new RuntimeException("No sidebar open");
+			inContainer = false;
+			pendingElements.add(() -> currentRoot = root);
+		}
 
-			@Override
-			public void visitPeripheralStart(String title, String id) throws IOException {
-				currentRoot = usx.getParaOrTableOrChapter();
-				Periph periph = new Periph();
-				periph.setAlt(title);
-				if (id == null) {
-					for(String[] predef : PeripheralStart.DEFINED_PERIPHERALS) {
-						if (predef[1].equals(title)) {
-							id = predef[2];
-							break;
-						}
-					}
-					if (id == null) {
-						id="x-undefined";
+		@Override
+		public void visitPeripheralStart(String title, String id) throws IOException {
+			flushChapter();
+			if (id == null) {
+				for (String[] predef : PeripheralStart.DEFINED_PERIPHERALS) {
+					if (predef[1].equals(title)) {
+						id = predef[2];
+						break;
 					}
 				}
-				periph.setId(id);
-				currentRoot.add(periph);
-				currentRoot = periph.getParaOrTableOrNote();
+				if (id == null) {
+					id = "x-undefined";
+				}
 			}
+			String periphId = id;
+			inContainer = true;
+			pendingElements.add(() -> {
+				writer.continueElement(root);
+				currentRoot = writer.startElement("periph");
+				writer.attribute("id", periphId);
+				writer.attribute("alt", title);
+			});
+		}
 
-			@Override
-			public void visitVerseStart(VerseIdentifier location, String verseNumber) throws IOException {
-				if (currentContent == null)
-					visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
-				else if (!currentContent.isEmpty() && verseSeparatorText != null)
-					currentContent.add(verseSeparatorText);
-				Verse verse = new Verse();
-				verse.setStyle("v");
-				verse.setSid(location.toString());
-				verse.setNumber(verseNumber);
-				currentContent.add(verse);
-			}
-			@Override
-			public void visitVerseEnd(VerseIdentifier location) throws IOException {
-				if (currentContent == null)
-					visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
-				Verse verse = new Verse();
-				verse.setEid(location.toString());
-				currentContent.add(verse);
-			}
+		private void continueContent() throws IOException {
+			if (currentContent == -1)
+				visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
+			else
+				writer.continueElement(currentContent);
+		}
 
-			@Override
-			public void visitFigure(String caption, Map<String, String> attributes) throws IOException {
-				Figure fig = new Figure();
-				fig.setStyle("fig");
-				fig.setContent(caption);
-				fig.setCopy(attributes.get("copy"));
-				fig.setAlt(attributes.get("alt"));
-				fig.setFile(attributes.get("src"));
-				fig.setLoc(attributes.get("loc"));
-				fig.setRef(attributes.get("ref"));
-				fig.setSize(attributes.get("size"));
-				if (currentContent == null)
-					visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
-				currentContent.add(fig);
+		@Override
+		public void visitVerseStart(VerseIdentifier location, String verseNumber) throws IOException {
+			if (currentContent == -1) {
+				visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
+			} else {
+				writer.continueElement(currentContent);
+				if (writer.hasContent() && verseSeparatorText != null)
+					writer.text(verseSeparatorText);
 			}
+			writer.startElement("verse");
+			writer.attribute("number", verseNumber);
+			writer.attribute("style", "v");
+			writer.attribute("sid", location.toString());
+		}
 
-			@Override
-			public void visitParatextCharacterContent(ParatextCharacterContent content) throws IOException {
-				if (currentContent == null && content.getContent().size() == 1 && content.getContent().get(0) instanceof ParatextCharacterContent.AutoClosingFormatting && !currentRoot.isEmpty() && currentRoot.get(currentRoot.size() - 1) instanceof Chapter) {
-					ParatextCharacterContent.AutoClosingFormatting acf = (ParatextCharacterContent.AutoClosingFormatting) content.getContent().get(0);
-					if (acf.getKind() == ParatextCharacterContent.AutoClosingFormattingKind.ALTERNATE_CHAPTER && acf.getContent().size() == 1 && acf.getContent().get(0) instanceof ParatextCharacterContent.Text) {
-						Chapter c = (Chapter) currentRoot.get(currentRoot.size() - 1);
-						String num = ((ParatextCharacterContent.Text) acf.getContent().get(0)).getChars();
-						c.setAltnumber(num);
-						return;
-					}
-				}
-				if (currentContent == null)
-					visitParagraphStart(ParatextBook.ParagraphKind.PARAGRAPH_P);
-				content.accept(new USX3.USXCharacterContentVisitor(currentContent));
-			}
-		});
+		@Override
+		public void visitVerseEnd(VerseIdentifier location) throws IOException {
+			continueContent();
+			writer.startElement("verse");
+			writer.attribute("eid", location.toString());
+		}
 
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
-		try (OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(outFile), StandardCharsets.UTF_8)) {
-			m.marshal(usx, new UnifiedScriptureXMLWriter(osw, "UTF-8"));
+		@Override
+		public void visitFigure(String caption, Map<String, String> attributes) throws IOException {
+			continueContent();
+			writer.startElement("figure");
+			writer.attribute("style", "fig");
+			writer.attribute("alt", attributes.get("alt"));
+			writer.attribute("file", attributes.get("src"));
+			writer.attribute("size", attributes.get("size"));
+			writer.attribute("loc", attributes.get("loc"));
+			writer.attribute("copy", attributes.get("copy"));
+			writer.attribute("ref", attributes.get("ref"));
+			writer.text(caption);
 		}
-	}
 
-	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/usx3.xsd"));
+		@Override
+		public void visitParatextCharacterContent(ParatextCharacterContent content) throws IOException {
+			if (currentContent == -1 && chapterPending && content.getContent().size() == 1 && content.getContent().get(0) instanceof ParatextCharacterContent.AutoClosingFormatting) {
+				ParatextCharacterContent.AutoClosingFormatting acf = (ParatextCharacterContent.AutoClosingFormatting) content.getContent().get(0);
+				if (acf.getKind() == ParatextCharacterContent.AutoClosingFormattingKind.ALTERNATE_CHAPTER && acf.getContent().size() == 1 && acf.getContent().get(0) instanceof ParatextCharacterContent.Text) {
+					chapterAltnumber = ((ParatextCharacterContent.Text) acf.getContent().get(0)).getChars();
+					return;
+				}
+			}
+			continueContent();
+			content.accept(new USX3.USXCharacterContentVisitor(writer, currentContent));
+		}
 	}
 
 	private class USXCharacterContentVisitor implements ParatextCharacterContent.ParatextCharacterContentVisitor<IOException> {
-		private List<Object> target;
+		private final USXStreamWriter writer;
+		private final int target;
 
-		public USXCharacterContentVisitor(List<Object> target) {
+		public USXCharacterContentVisitor(USXStreamWriter writer, int target) {
+			this.writer = writer;
 			this.target = target;
 		}
 
 		@Override
 		public ParatextCharacterContent.ParatextCharacterContentVisitor<IOException> visitFootnoteXref(ParatextCharacterContent.FootnoteXrefKind kind, String caller, String[] categories) throws IOException {
-			Note note = new Note();
-			note.setCaller(caller);
-			note.setStyle(NOTE_KIND_MAP.get(kind));
+			writer.continueElement(target);
+			int note = writer.startElement("note");
+			writer.attribute("style", NOTE_KIND_MAP.get(kind).value());
+			writer.attribute("caller", caller);
 			if (categories.length > 0)
-				note.setCategory(String.join(" ", categories));
-			target.add(note);
-			return new USX3.USXCharacterContentVisitor(note.getContent());
+				writer.attribute("category", String.join(" ", categories));
+			return new USX3.USXCharacterContentVisitor(writer, note);
 		}
 
 		@Override
 		public ParatextCharacterContent.ParatextCharacterContentVisitor<IOException> visitAutoClosingFormatting(ParatextCharacterContent.AutoClosingFormattingKind kind, Map<String, String> attributes) throws IOException {
-				Char chr = new Char();
-				chr.setLemma(nullIfEmpty(attributes.get("lemma")));
-				chr.setStrong(nullIfEmpty(attributes.get("strong")));
-				chr.setSrcloc(nullIfEmpty(attributes.get("srcloc")));
-				chr.setLinkHref(nullIfEmpty(attributes.get("link-href")));
-				chr.setLinkId(nullIfEmpty(attributes.get("link-id")));
-				chr.setLinkTitle(attributes.get("link-title"));
-				chr.setGloss(nullIfEmpty(attributes.get("gloss")));
-				chr.setStyle(CHAR_KIND_MAP.get(kind));
-				target.add(chr);
-				return new USX3.USXCharacterContentVisitor(chr.getContent());
+			writer.continueElement(target);
+			int chr = writer.startElement("char");
+			writer.attribute("style", CHAR_KIND_MAP.get(kind).value());
+			writer.attribute("gloss", nullIfEmpty(attributes.get("gloss")));
+			writer.attribute("lemma", nullIfEmpty(attributes.get("lemma")));
+			writer.attribute("strong", nullIfEmpty(attributes.get("strong")));
+			writer.attribute("srcloc", nullIfEmpty(attributes.get("srcloc")));
+			writer.attribute("link-href", nullIfEmpty(attributes.get("link-href")));
+			writer.attribute("link-title", attributes.get("link-title"));
+			writer.attribute("link-id", nullIfEmpty(attributes.get("link-id")));
+			return new USX3.USXCharacterContentVisitor(writer, chr);
 		}
 
 		private String nullIfEmpty(String s) {
@@ -799,20 +841,20 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 
 		@Override
 		public void visitMilestone(String tag, Map<String, String> attributes) throws IOException {
-			Ms ms = new Ms();
-			ms.setStyle(tag);
-			ms.setSid(attributes.get("sid"));
-			ms.setEid(attributes.get("eid"));
-			ms.setWho(attributes.get("who"));
-			target.add(ms);
+			writer.continueElement(target);
+			writer.startElement("ms");
+			writer.attribute("style", tag);
+			writer.attribute("sid", attributes.get("sid"));
+			writer.attribute("eid", attributes.get("eid"));
+			writer.attribute("who", attributes.get("who"));
 		}
 
 		@Override
 		public void visitReference(ParatextCharacterContent.Reference reference) throws IOException {
-			Ref ref = new Ref();
-			ref.setLoc(reference.toString());
-			ref.setContent(reference.getContent());
-			target.add(ref);
+			writer.continueElement(target);
+			writer.startElement("ref");
+			writer.attribute("loc", reference.toString());
+			writer.text(reference.getContent());
 		}
 
 		@Override
@@ -825,13 +867,15 @@ public class USX3 extends AbstractUSXFormat<ParaStyle, CharStyle> {
 			if (nonBreakSpace) {
 				visitText("\u00A0");
 			} else {
-				target.add(new Optbreak());
+				writer.continueElement(target);
+				writer.startElement("optbreak");
 			}
 		}
 
 		@Override
 		public void visitText(String text) throws IOException {
-			target.add(text);
+			writer.continueElement(target);
+			writer.text(text);
 		}
 
 		@Override
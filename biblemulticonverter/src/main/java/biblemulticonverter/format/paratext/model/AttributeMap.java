@@ -0,0 +1,223 @@
+package biblemulticonverter.format.paratext.model;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact map for the attributes of character formattings and milestones.
+ * <p>
+ * Keys and values are stored alternately in a single array, sorted by key, so
+ * iteration is in key order. Keys are interned. The array is never modified
+ * once it has been filled (every change creates a new one), so that
+ * attribute maps with the same content can share their array; parsers call
+ * {@link #canonicalize()} after filling a map for that.
+ */
+public class AttributeMap extends AbstractMap<String, String> {
+
+	private static final String[] EMPTY = new String[0];
+	private static final int MAX_INTERNED_KEYS = 4096;
+	private static final Map<String, String> INTERNED_KEYS = new ConcurrentHashMap<>();
+	private static final Canonicalizer CANONICALIZER = new Canonicalizer(65536);
+
+	private String[] entries = EMPTY;
+
+	private static String internKey(String key) {
+		String interned = INTERNED_KEYS.get(key);
+		if (interned != null)
+			return interned;
+		if (INTERNED_KEYS.size() >= MAX_INTERNED_KEYS)
+			return key;
+		interned = INTERNED_KEYS.putIfAbsent(key, key);
+		return interned == null ? key : interned;
+	}
+
+	private int indexOf(Object key) {
+		if (!(key instanceof String))
+			return -1;
+		int low = 0, high = entries.length / 2 - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = entries[mid * 2].compareTo((String) key);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return mid * 2;
+		}
+		return -(low * 2) - 2;
+	}
+
+	@Override
+	public int size() {
+		return entries.length / 2;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public String get(Object key) {
+		int index = indexOf(key);
+		return index >= 0 ? entries[index + 1] : null;
+	}
+
+	@Override
+	public String put(String key, String value) {
+		if (key == null)
+			throw new NullPointerException();
+		int index = indexOf(key);
+		if (index >= 0) {
+			String oldValue = entries[index + 1];
+			String[] newEntries = entries.clone();
+			newEntries[index + 1] = value;
+			entries = newEntries;
+			return oldValue;
+		}
+		index = -index - 2;
+		String[] newEntries = new String[entries.length + 2];
+		System.arraycopy(entries, 0, newEntries, 0, index);
+		newEntries[index] = internKey(key);
+		newEntries[index + 1] = value;
+		System.arraycopy(entries, index, newEntries, index + 2, entries.length - index);
+		entries = newEntries;
+		return null;
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends String> m) {
+		if (entries.length == 0 && m instanceof AttributeMap) {
+			entries = ((AttributeMap) m).entries;
+		} else {
+			super.putAll(m);
+		}
+	}
+
+	@Override
+	public String remove(Object key) {
+		int index = indexOf(key);
+		if (index < 0)
+			return null;
+		String oldValue = entries[index + 1];
+		String[] newEntries = new String[entries.length - 2];
+		System.arraycopy(entries, 0, newEntries, 0, index);
+		System.arraycopy(entries, index + 2, newEntries, index, newEntries.length - index);
+		entries = newEntries;
+		return oldValue;
+	}
+
+	@Override
+	public void clear() {
+		entries = EMPTY;
+	}
+
+	/**
+	 * Make this map share its array with other canonicalized maps that have
+	 * the same content. To be called once the map has been filled.
+	 */
+	public void canonicalize() {
+		CANONICALIZER.canonicalize(this);
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet() {
+		return new AbstractSet<Map.Entry<String, String>>() {
+			@Override
+			public int size() {
+				return AttributeMap.this.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, String>> iterator() {
+				return new EntryIterator();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the entries at the time the iterator was created; changes
+	 * through the iterator or its entries are written through to the map.
+	 */
+	private class EntryIterator implements Iterator<Map.Entry<String, String>> {
+		private final String[] snapshot = entries;
+		private int next = 0;
+
+		@Override
+		public boolean hasNext() {
+			return next < snapshot.length;
+		}
+
+		@Override
+		public Map.Entry<String, String> next() {
+			if (next >= snapshot.length)
+				throw new NoSuchElementException();
+			next += 2;
+			return new SimpleEntry<String, String>(snapshot[next - 2], snapshot[next - 1]) {
+				@Override
+				public String setValue(String value) {
+					put(getKey(), value);
+					return super.setValue(value);
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			if (next == 0)
+				throw new IllegalStateException();
+			AttributeMap.this.remove(snapshot[next - 2]);
+		}
+	}
+
+	/**
+	 * Makes attribute maps with the same content share a single array, and
+	 * attribute values that are equal share a single string. May be used from
+	 * multiple threads at the same time. Once more than the given number of
+	 * arrays or values are cached, the cache is cleared, so that streaming
+	 * imports do not keep the attributes of all books alive.
+	 */
+	public static class Canonicalizer {
+
+		private final int maxSize;
+		private final Map<List<String>, String[]> entrySets = new ConcurrentHashMap<>();
+		private final Map<String, String> values = new ConcurrentHashMap<>();
+
+		public Canonicalizer(int maxSize) {
+			this.maxSize = maxSize;
+		}
+
+		public void canonicalize(AttributeMap map) {
+			String[] entries = map.entries;
+			if (entries.length == 0)
+				return;
+			String[] canonical = entrySets.get(Arrays.asList(entries));
+			if (canonical == null) {
+				if (entrySets.size() >= maxSize || values.size() >= maxSize) {
+					entrySets.clear();
+					values.clear();
+				}
+				canonical = entries.clone();
+				for (int i = 1; i < canonical.length; i += 2) {
+					if (canonical[i] == null)
+						continue;
+					String value = values.putIfAbsent(canonical[i], canonical[i]);
+					if (value != null)
+						canonical[i] = value;
+				}
+				String[] existing = entrySets.putIfAbsent(Arrays.asList(canonical), canonical);
+				if (existing != null)
+					canonical = existing;
+			}
+			map.entries = canonical;
+		}
+	}
+}
@@ -44,13 +44,14 @@ public class ImportUtilities {
 			ListIterator<ParatextBook.ParatextBookContentPart> bookPartsIterator = bookParts.listIterator(bookParts.size());
 			boolean didAddVerseEndMilestone = false, verseStartFound = false, paraSwitchFound = false;
 			ParatextCharacterContent lastSuitableContentContainer = null;
+			int lastSuitableContentIndex = -1;
 			while (bookPartsIterator.hasPrevious()) {
 				ParatextBook.ParatextBookContentPart bookPart = bookPartsIterator.previous();
 				if (bookPart instanceof ParatextBook.ParagraphStart) {
 					ParagraphKind kind = ((ParatextBook.ParagraphStart) bookPart).getKind();
 					ParagraphKindCategory category = kind.getCategory();
 					if (category == ParatextBook.ParagraphKindCategory.TEXT && !kind.name().startsWith("INTRO_") && lastSuitableContentContainer != null) {
-						bookParts.add(bookParts.indexOf(lastSuitableContentContainer) + 1, new ParatextBook.VerseEnd(openVerse.getLocation()));
+						bookParts.add(lastSuitableContentIndex + 1, new ParatextBook.VerseEnd(openVerse.getLocation()));
 						didAddVerseEndMilestone = true;
 						break;
 					} else if (verseStartFound) {
@@ -62,7 +63,7 @@ public class ImportUtilities {
 					}
 				} else if (bookPart instanceof ParatextBook.TableCellStart || bookPart instanceof ParatextBook.ChapterStart) {
 					if (lastSuitableContentContainer != null) {
-						bookParts.add(bookParts.indexOf(lastSuitableContentContainer) + 1, new ParatextBook.VerseEnd(openVerse.getLocation()));
+						bookParts.add(lastSuitableContentIndex + 1, new ParatextBook.VerseEnd(openVerse.getLocation()));
 						didAddVerseEndMilestone = true;
 						break;
 					} else if (verseStartFound) {
@@ -73,6 +74,7 @@ public class ImportUtilities {
 					if (!content.getContent().isEmpty() && (!verseStartFound || paraSwitchFound)) {
 						// Only put the verse end milestone in a ParatextCharacterContentContainer that is not empty.
 						lastSuitableContentContainer = content;
+						lastSuitableContentIndex = bookPartsIterator.nextIndex();
 						if (verseStartFound) {
 							lastSuitableContentContainer = null;
 						}
@@ -82,9 +84,11 @@ public class ImportUtilities {
 						if (prevPart == openVerse) {
 							// Empty containers are okay if they are just behind the verse start (i.e. an empty verse)
 							lastSuitableContentContainer = content;
+							lastSuitableContentIndex = bookPartsIterator.nextIndex();
 						} else if (prevIdx > 0 && bookParts.get(prevIdx-1) == openVerse && prevPart instanceof ParatextBook.ParagraphStart) {
 							// Empty containers are also okay if they are after a paragraph start behind the verse start (i.e. a verse only consisting of a paragraph break)
 							lastSuitableContentContainer = content;
+							lastSuitableContentIndex = bookPartsIterator.nextIndex();
 						}
 					}
 				} else if (bookPart == openVerse) {
@@ -9,6 +9,12 @@ import biblemulticonverter.format.paratext.ParatextCharacterContent;
 /**
  * A simple class that provides some standard log messages that can be used to
  * make log messages consistent across different exporters.
+ * <p>
+ * Instances are stateless and may be shared by books that are exported in
+ * parallel. Each message is printed by a single call to {@link System#out},
+ * so when the books are exported via
+ * {@link biblemulticonverter.utilities.ParallelTasks}, the messages are
+ * printed in book order without being interleaved.
  */
 public class StandardExportWarningMessages {
 
@@ -16,6 +16,8 @@ public class TextUtilities {
 	 * @return the input text with normalized whitespaces.
 	 */
 	public static String whitespaceNormalization(String text) {
+		if (isWhitespaceNormalized(text))
+			return text;
 		// First detect XML indention, which can occur in mixed content XML, and completly remove the indention,
 		// Since it is undesired to transform indention to spaces.
 		String result = XML_INDENTION_MATCHER.matcher(text).replaceAll("");
@@ -25,6 +27,36 @@ public class TextUtilities {
 		return result;
 	}
 
+	/**
+	 * Check whether the text only contains single spaces as whitespace, so
+	 * that the regular expressions of {@link #whitespaceNormalization(String)}
+	 * would not change it. This is the case for most text runs, and much
+	 * cheaper to check.
+	 */
+	private static boolean isWhitespaceNormalized(String text) {
+		boolean lastWasSpace = false;
+		for (int i = 0; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch == ' ') {
+				if (lastWasSpace)
+					return false;
+				lastWasSpace = true;
+				continue;
+			}
+			lastWasSpace = false;
+			if (ch > ' ' && ch < 0x7F)
+				continue;
+			switch (Character.getType(ch)) {
+			case Character.CONTROL:
+			case Character.SPACE_SEPARATOR:
+			case Character.LINE_SEPARATOR:
+			case Character.PARAGRAPH_SEPARATOR:
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Normalizes whitespace usage in USFM content, by replacing any sequence of control characters and whitespace with
 	 * a single space.
@@ -0,0 +1,351 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Indexed binary database of word attributes, as written by
+ * {@code UBXFConverter analyze} and read by
+ * {@code UBXFConverter augmentmilestones}.
+ * <p>
+ * Keys are built by {@link #key(String, String, String)} and start with the
+ * verse, so that all entries of a verse are stored next to each other. The
+ * file consists of a header (magic, entry count, index offset), the entries
+ * (key and value, each as length-prefixed UTF-8) in the order they were
+ * written, and an index sorted by the UTF-8 bytes of the keys. Every index
+ * entry contains the first 8 bytes of the key and the offset of the entry, so
+ * that most comparisons of a lookup do not need to read the key itself. The
+ * file is memory mapped for reading, so lookups are binary searches that only
+ * touch the pages they need.
+ */
+public class UBXFDatabase implements Closeable {
+
+	private static final byte[] MAGIC = "BMCUBXF1".getBytes(StandardCharsets.US_ASCII);
+	private static final int HEADER_SIZE = MAGIC.length + 8;
+	private static final int INDEX_ENTRY_SIZE = 12;
+
+	/**
+	 * Return whether the given file exists and is a binary database.
+	 */
+	public static boolean isDatabaseFile(File file) throws IOException {
+		if (!file.isFile() || file.length() < HEADER_SIZE)
+			return false;
+		byte[] magic = new byte[MAGIC.length];
+		try (FileInputStream fis = new FileInputStream(file)) {
+			int len = 0;
+			while (len < magic.length) {
+				int read = fis.read(magic, len, magic.length - len);
+				if (read == -1)
+					return false;
+				len += read;
+			}
+		}
+		return Arrays.equals(magic, MAGIC);
+	}
+
+	/**
+	 * Build the key of a word in a verse.
+	 *
+	 * @param verse
+	 *            verse reference, like {@code GEN.1.1}
+	 * @param content
+	 *            the word
+	 * @param occurrence
+	 *            occurrence of the word in the verse and number of
+	 *            occurrences, like {@code 1/2}
+	 */
+	public static String key(String verse, String content, String occurrence) {
+		return verse + "@" + content + "@" + occurrence;
+	}
+
+	/**
+	 * Convert a key to the key used in the text database
+	 * ({@code content@verse@occurrence}).
+	 */
+	public static String toTextKey(String key) {
+		int first = key.indexOf('@'), last = key.lastIndexOf('@');
+		return key.substring(first + 1, last) + "@" + key.substring(0, first) + key.substring(last);
+	}
+
+	private final FileChannel channel;
+	private final ByteBuffer data;
+	private final int count, indexOffset;
+
+	public UBXFDatabase(File file) throws IOException {
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+			if (channel.size() > Integer.MAX_VALUE)
+				throw new IOException("Database too large: " + file);
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			byte[] magic = new byte[MAGIC.length];
+			buffer.get(magic);
+			if (!Arrays.equals(magic, MAGIC))
+				throw new IOException("Not a UBXF database: " + file);
+			count = buffer.getInt();
+			indexOffset = buffer.getInt();
+			data = buffer;
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Look up the value of a key, or return {@code null} if it is missing.
+	 */
+	public String get(String key) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		long prefix = keyPrefix(keyBytes);
+		int low = 0, high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int entry = indexOffset + mid * INDEX_ENTRY_SIZE;
+			int cmp = Long.compareUnsigned(data.getLong(entry), prefix);
+			if (cmp == 0)
+				cmp = compareKey(data, data.getInt(entry + 8), keyBytes);
+			if (cmp < 0)
+				low = mid + 1;
+			else if (cmp > 0)
+				high = mid - 1;
+			else
+				return getValue(mid);
+		}
+		return null;
+	}
+
+	/**
+	 * Return the key of the entry at the given position in key order.
+	 */
+	public String getKey(int index) {
+		return readString(data, data.getInt(indexOffset + index * INDEX_ENTRY_SIZE + 8));
+	}
+
+	/**
+	 * Return the value of the entry at the given position in key order.
+	 */
+	public String getValue(int index) {
+		int offset = data.getInt(indexOffset + index * INDEX_ENTRY_SIZE + 8);
+		return readString(data, offset + 4 + data.getInt(offset));
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static String readString(ByteBuffer data, int offset) {
+		byte[] bytes = new byte[data.getInt(offset)];
+		ByteBuffer source = data.duplicate();
+		source.position(offset + 4);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Return the first 8 bytes of the key (padded with zero bytes) as a long
+	 * that compares (unsigned) like the key bytes.
+	 */
+	private static long keyPrefix(byte[] key) {
+		long prefix = 0;
+		for (int i = 0; i < 8; i++) {
+			prefix = (prefix << 8) | (i < key.length ? key[i] & 0xFF : 0);
+		}
+		return prefix;
+	}
+
+	private static int compareKey(ByteBuffer data, int offset, byte[] key) {
+		int len = data.getInt(offset);
+		for (int i = 0; i < len && i < key.length; i++) {
+			int cmp = Integer.compare(data.get(offset + 4 + i) & 0xFF, key[i] & 0xFF);
+			if (cmp != 0)
+				return cmp;
+		}
+		return Integer.compare(len, key.length);
+	}
+
+	/**
+	 * Writes a database. Entries are written to disk as they are added; only
+	 * their keys and offsets are kept in memory, to build the index when the
+	 * database is committed. If the file already exists and is a binary
+	 * database, its entries are kept unless they have been added again. The new
+	 * database is written to a temporary file that replaces the original file
+	 * in {@link #commit()}; closing the writer without committing deletes the
+	 * temporary file. No file is memory mapped while writing, so that the
+	 * original file can be replaced on every platform.
+	 */
+	public static class Writer implements Closeable {
+
+		private final File file, tempFile;
+		private final DataOutputStream out;
+		private int[] offsets = new int[1024], keyStarts = new int[1025];
+		private byte[] keys = new byte[65536];
+		private int count = 0;
+		private long position = HEADER_SIZE;
+		private boolean committed = false;
+
+		public Writer(File file) throws IOException {
+			this.file = file;
+			this.tempFile = new File(file.getPath() + ".tmp");
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+			try {
+				out.write(new byte[HEADER_SIZE]);
+			} catch (IOException ex) {
+				close();
+				throw ex;
+			}
+		}
+
+		public void put(String key, String value) throws IOException {
+			put(key.getBytes(StandardCharsets.UTF_8), value.getBytes(StandardCharsets.UTF_8));
+		}
+
+		private void put(byte[] keyBytes, byte[] valueBytes) throws IOException {
+			if (committed)
+				throw new IllegalStateException("Database already committed");
+			if (position + 8 + keyBytes.length + valueBytes.length > Integer.MAX_VALUE)
+				throw new IOException("Database too large: " + file);
+			if (count == offsets.length) {
+				offsets = Arrays.copyOf(offsets, count * 2);
+				keyStarts = Arrays.copyOf(keyStarts, count * 2 + 1);
+			}
+			int keysLength = keyStarts[count];
+			if (keysLength + keyBytes.length > keys.length)
+				keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keysLength + keyBytes.length));
+			System.arraycopy(keyBytes, 0, keys, keysLength, keyBytes.length);
+			keyStarts[count + 1] = keysLength + keyBytes.length;
+			offsets[count++] = (int) position;
+			out.writeInt(keyBytes.length);
+			out.write(keyBytes);
+			out.writeInt(valueBytes.length);
+			out.write(valueBytes);
+			position += 8 + keyBytes.length + valueBytes.length;
+		}
+
+		/**
+		 * Add the entries of an existing database, reading it sequentially.
+		 */
+		private void putAll(File oldFile) throws IOException {
+			int[] entryOffsets;
+			try (RandomAccessFile raf = new RandomAccessFile(oldFile, "r")) {
+				byte[] magic = new byte[MAGIC.length];
+				raf.readFully(magic);
+				if (!Arrays.equals(magic, MAGIC))
+					throw new IOException("Not a UBXF database: " + oldFile);
+				entryOffsets = new int[raf.readInt()];
+				raf.seek(raf.readInt());
+				for (int i = 0; i < entryOffsets.length; i++) {
+					raf.readLong();
+					entryOffsets[i] = raf.readInt();
+				}
+			}
+			// only entries referenced by the index are current, and they are read in file order
+			Arrays.sort(entryOffsets);
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(oldFile)))) {
+				long pos = 0;
+				for (int offset : entryOffsets) {
+					while (pos < offset) {
+						int skipped = in.skipBytes((int) (offset - pos));
+						if (skipped <= 0)
+							throw new EOFException("Truncated UBXF database: " + oldFile);
+						pos += skipped;
+					}
+					byte[] key = new byte[in.readInt()];
+					in.readFully(key);
+					byte[] value = new byte[in.readInt()];
+					in.readFully(value);
+					put(key, value);
+					pos += 8 + key.length + value.length;
+				}
+			}
+		}
+
+		private int compareKeys(int entry1, int entry2) {
+			int start1 = keyStarts[entry1], len1 = keyStarts[entry1 + 1] - start1;
+			int start2 = keyStarts[entry2], len2 = keyStarts[entry2 + 1] - start2;
+			for (int i = 0; i < len1 && i < len2; i++) {
+				int cmp = Integer.compare(keys[start1 + i] & 0xFF, keys[start2 + i] & 0xFF);
+				if (cmp != 0)
+					return cmp;
+			}
+			return Integer.compare(len1, len2);
+		}
+
+		/**
+		 * Merge the existing database (if any), write the index and replace the
+		 * original file by the new database.
+		 */
+		public void commit() throws IOException {
+			if (committed)
+				throw new IllegalStateException("Database already committed");
+			int oldStart = count;
+			if (isDatabaseFile(file)) {
+				putAll(file);
+			}
+			committed = true;
+			Integer[] sorted = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				sorted[i] = i;
+			}
+			// for equal keys, the entry added last comes first, and entries of the old database come last
+			Arrays.sort(sorted, (e1, e2) -> {
+				int cmp = compareKeys(e1, e2);
+				return cmp != 0 ? cmp : Integer.compare(e2 < oldStart ? e2 : -1, e1 < oldStart ? e1 : -1);
+			});
+			int unique = 0;
+			for (int i = 0; i < sorted.length; i++) {
+				if (unique == 0 || compareKeys(sorted[unique - 1], sorted[i]) != 0)
+					sorted[unique++] = sorted[i];
+			}
+			if (position + (long) INDEX_ENTRY_SIZE * unique > Integer.MAX_VALUE)
+				throw new IOException("Database too large: " + file);
+			for (int i = 0; i < unique; i++) {
+				int entry = sorted[i];
+				out.writeLong(keyPrefix(Arrays.copyOfRange(keys, keyStarts[entry], Math.min(keyStarts[entry + 1], keyStarts[entry] + 8))));
+				out.writeInt(offsets[entry]);
+			}
+			out.close();
+			try (RandomAccessFile raf = new RandomAccessFile(tempFile, "rw")) {
+				raf.write(MAGIC);
+				raf.writeInt(unique);
+				raf.writeInt((int) position);
+			}
+			Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		/**
+		 * Close the writer. If the database has not been committed (or
+		 * committing failed), the temporary file is deleted and the original file
+		 * is left unchanged.
+		 */
+		@Override
+		public void close() throws IOException {
+			try {
+				out.close();
+			} finally {
+				if (tempFile.exists())
+					tempFile.delete();
+			}
+		}
+	}
+}
@@ -0,0 +1,266 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import java.nio.CharBuffer;
+import java.util.Set;
+
+/**
+ * Cursor based tokenizer for USFM content.
+ * <p>
+ * The content is whitespace normalized (see
+ * {@link TextUtilities#usfmWhitespaceNormalization(String, boolean)}) in a
+ * single pass into a character array when the tokenizer is created. Markers
+ * and text runs are then read from the current position; text runs are
+ * returned as {@link CharBuffer} slices of that array, so that strings only
+ * need to be created for the parts that are actually kept.
+ */
+public class USFMTokenizer {
+
+	private static final String[] FOOTNOTE_END_MARKERS = { "\\f*", "\\fw*", "\\x*", "\\fp*" };
+
+	private final char[] data;
+	private final int length;
+	private final String[] characterTagTable;
+	private int position;
+
+	/**
+	 * @param content
+	 *            the content to tokenize; if it is backed by a writable array,
+	 *            that array is normalized in place and must not be used by the
+	 *            caller afterwards
+	 * @param preserveSpacesAtEndOfLines
+	 *            see
+	 *            {@link TextUtilities#usfmWhitespaceNormalization(String, boolean)}
+	 * @param characterTags
+	 *            tags of character markers; a single space before these markers
+	 *            is kept as part of the text before them
+	 */
+	public USFMTokenizer(CharBuffer content, boolean preserveSpacesAtEndOfLines, Set<String> characterTags) {
+		this.characterTagTable = createTagTable(characterTags);
+		boolean trimBeforeFootnoteEnd = !Boolean.parseBoolean(System.getProperty("biblemulticonverter.paratext.usfm.preserveSpacesAtEndOfFootnotes", Boolean.toString(preserveSpacesAtEndOfLines)));
+		char[] input;
+		int inputStart, inputEnd;
+		if (content.hasArray()) {
+			input = content.array();
+			inputStart = content.arrayOffset() + content.position();
+			inputEnd = inputStart + content.remaining();
+		} else {
+			input = content.toString().toCharArray();
+			inputStart = 0;
+			inputEnd = input.length;
+		}
+		// normalize whitespace in place, as the output is never longer than the input
+		char[] output = content.hasArray() && !content.isReadOnly() ? input : new char[inputEnd];
+		int outputLength = 0, runStart = -1;
+		boolean newLine = false;
+		for (int i = inputStart < inputEnd && input[inputStart] == '\uFEFF' ? inputStart + 1 : inputStart; i < inputEnd; i++) {
+			char ch = input[i];
+			if (isWhitespace(ch)) {
+				if (runStart == -1) {
+					runStart = i;
+					newLine = false;
+				}
+				if (ch == '\n' || ch == '\r')
+					newLine = true;
+				continue;
+			}
+			if (runStart != -1) {
+				if (!trimBeforeFootnoteEnd || !startsWithFootnoteEndMarker(input, i, inputEnd))
+					outputLength = appendSpace(output, outputLength, preserveSpacesAtEndOfLines && newLine && input[runStart] == ' ');
+				runStart = -1;
+			}
+			output[outputLength++] = ch;
+		}
+		if (runStart != -1 && preserveSpacesAtEndOfLines)
+			outputLength = appendSpace(output, outputLength, newLine && input[runStart] == ' ');
+		int start = 0;
+		while (start < outputLength && output[start] == ' ')
+			start++;
+		this.data = output;
+		this.length = outputLength;
+		this.position = start;
+	}
+
+	/**
+	 * Append the replacement of a whitespace run. Runs that start with a space
+	 * and contain a line break are replaced by two spaces when preserving
+	 * spaces at end of lines, as the parser drops a single space before most
+	 * markers.
+	 */
+	private static int appendSpace(char[] output, int outputLength, boolean doubleSpace) {
+		output[outputLength++] = ' ';
+		if (doubleSpace)
+			output[outputLength++] = ' ';
+		return outputLength;
+	}
+
+	/**
+	 * Create an open addressing hash table of the given tags, using
+	 * {@link String#hashCode()}, so that tags can be looked up by a region
+	 * of the content without creating a string.
+	 */
+	private static String[] createTagTable(Set<String> tags) {
+		String[] table = new String[Integer.highestOneBit(tags.size() * 2 + 1) * 2];
+		for (String tag : tags) {
+			int slot = tag.hashCode() & (table.length - 1);
+			while (table[slot] != null)
+				slot = (slot + 1) & (table.length - 1);
+			table[slot] = tag;
+		}
+		return table;
+	}
+
+	private static boolean isWhitespace(char ch) {
+		if (ch > ' ' && ch < 0x7F)
+			return false;
+		switch (Character.getType(ch)) {
+		case Character.CONTROL:
+		case Character.SPACE_SEPARATOR:
+		case Character.LINE_SEPARATOR:
+		case Character.PARAGRAPH_SEPARATOR:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private static boolean startsWithFootnoteEndMarker(char[] input, int pos, int end) {
+		for (String marker : FOOTNOTE_END_MARKERS) {
+			if (regionMatches(input, pos, end, marker))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean regionMatches(char[] input, int pos, int end, String prefix) {
+		if (pos + prefix.length() > end)
+			return false;
+		for (int i = 0; i < prefix.length(); i++) {
+			if (input[pos + i] != prefix.charAt(i))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Return whether the whole content has been read.
+	 */
+	public boolean atEnd() {
+		return position >= length;
+	}
+
+	/**
+	 * Return whether the content at the current position starts with the
+	 * given prefix.
+	 */
+	public boolean lookingAt(String prefix) {
+		return regionMatches(data, position, length, prefix);
+	}
+
+	/**
+	 * Return whether the current position is at a marker.
+	 */
+	public boolean atMarker() {
+		return position < length && data[position] == '\\';
+	}
+
+	/**
+	 * Skip the given number of characters.
+	 */
+	public void skip(int count) {
+		position += count;
+	}
+
+	/**
+	 * Read the marker at the current position, including a trailing
+	 * {@code *}. The space that separates the marker from its content is
+	 * consumed but not returned.
+	 */
+	public String readMarker() {
+		int start = ++position, end = indexOf('\\', start);
+		int tagEnd = start;
+		while (tagEnd < end && data[tagEnd] != ' ' && data[tagEnd] != '*')
+			tagEnd++;
+		position = Math.min(end, tagEnd + 1);
+		return new String(data, start, (tagEnd < end && data[tagEnd] == '*' ? tagEnd + 1 : tagEnd) - start).trim();
+	}
+
+	/**
+	 * Read the text up to the next marker. A single trailing space is removed
+	 * unless the next marker is a character marker (so that the space is
+	 * part of the text before the character marker).
+	 */
+	public CharBuffer readText() {
+		int start = position, end = indexOf('\\', start);
+		position = end;
+		if (end > start && data[end - 1] == ' ' && !isCharacterMarkerAt(end))
+			end--;
+		return CharBuffer.wrap(data, start, end - start);
+	}
+
+	/**
+	 * Read the text up to the next marker like {@link #readText()}, as a
+	 * string. No string is created for empty text, like after most paragraph
+	 * markers.
+	 */
+	public String readTextString() {
+		CharBuffer text = readText();
+		return text.length() == 0 ? "" : text.toString();
+	}
+
+	/**
+	 * Read the text up to the next marker, without removing a trailing
+	 * space.
+	 */
+	public CharBuffer readRawText() {
+		int start = position, end = indexOf('\\', start);
+		position = end;
+		return CharBuffer.wrap(data, start, end - start);
+	}
+
+	private boolean isCharacterMarkerAt(int pos) {
+		if (pos >= length)
+			return false;
+		int start = pos + 1, end = Math.min(length, pos + 10), tagEnd = start;
+		while (tagEnd < end && data[tagEnd] != '\\' && data[tagEnd] != ' ' && data[tagEnd] != '*')
+			tagEnd++;
+		if (start < end && data[start] == 'z')
+			return true;
+		int hash = 0;
+		for (int i = start; i < tagEnd; i++)
+			hash = 31 * hash + data[i];
+		for (int slot = hash & (characterTagTable.length - 1); characterTagTable[slot] != null; slot = (slot + 1) & (characterTagTable.length - 1)) {
+			String tag = characterTagTable[slot];
+			if (tag.length() == tagEnd - start && regionMatches(data, start, tagEnd, tag))
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return whether the marker at the current position may follow attributes
+	 * of a character marker, i.e. is not a nested character marker that does
+	 * not end right away. This is also true at the end of the content.
+	 */
+	public boolean atAttributeEnd() {
+		if (position >= length)
+			return true;
+		if (data[position] != '\\')
+			return false;
+		if (position + 1 >= length || data[position + 1] != '+')
+			return true;
+		int end = Math.min(length, position + 10);
+		for (int i = position + 2; i < end && data[i] != ' '; i++) {
+			if (data[i] == '*')
+				return true;
+		}
+		return false;
+	}
+
+	private int indexOf(char ch, int from) {
+		for (int i = from; i < length; i++) {
+			if (data[i] == ch)
+				return i;
+		}
+		return length;
+	}
+}
@@ -0,0 +1,308 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import java.io.IOException;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads the mixed content of USX and USFX files from an {@link XMLStreamReader}.
+ * <p>
+ * The content of the current element is returned as a sequence of
+ * {@link #TEXT} (adjacent text, CDATA and entity content is merged, like JAXB
+ * does for mixed content), {@link #START_ELEMENT} and {@link #END_ELEMENT}
+ * events, where the latter marks the end of the current element. Elements
+ * that are not handled by the caller have to be skipped using
+ * {@link #skipElement()}.
+ * <p>
+ * When a {@link ValidatorHandler} is given, all events read from the
+ * {@link XMLStreamReader} (including skipped elements) are passed to it as
+ * well, so that the file is validated in the same pass. Call
+ * {@link #finish()} after parsing, to validate the rest of the file.
+ */
+public class USXStreamReader {
+
+	public static final int START_ELEMENT = XMLStreamConstants.START_ELEMENT;
+	public static final int END_ELEMENT = XMLStreamConstants.END_ELEMENT;
+	public static final int TEXT = XMLStreamConstants.CHARACTERS;
+
+	private final String fileName;
+	private final XMLStreamReader xsr;
+	private final ValidatorHandler validator;
+	private final StringBuilder text = new StringBuilder();
+	private int event = -1;
+	private boolean tagPending = false, pushedBack = false;
+
+	public USXStreamReader(String fileName, XMLStreamReader xsr, ValidatorHandler validator) throws XMLStreamException {
+		this.fileName = fileName;
+		this.xsr = xsr;
+		this.validator = validator;
+		if (validator != null) {
+			validator.setDocumentLocator(new StreamLocator());
+			try {
+				validator.startDocument();
+			} catch (SAXException ex) {
+				throw new XMLStreamException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Move to the root element.
+	 */
+	public String readRootElement() throws XMLStreamException {
+		int type;
+		while ((type = nextEvent()) != START_ELEMENT) {
+			if (type == XMLStreamConstants.END_DOCUMENT)
+				throw new XMLStreamException("Missing root element in " + fileName);
+		}
+		event = START_ELEMENT;
+		return xsr.getLocalName();
+	}
+
+	/**
+	 * Read the rest of the file, and finish validation.
+	 */
+	public void finish() throws XMLStreamException {
+		while (xsr.hasNext())
+			nextEvent();
+		if (validator != null) {
+			try {
+				validator.endDocument();
+			} catch (SAXException ex) {
+				throw new XMLStreamException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Read the next event from the underlying reader and pass it to the
+	 * validator.
+	 */
+	private int nextEvent() throws XMLStreamException {
+		int type = xsr.next();
+		if (validator == null)
+			return type;
+		try {
+			switch (type) {
+			case XMLStreamConstants.START_ELEMENT:
+				for (int i = 0; i < xsr.getNamespaceCount(); i++) {
+					validator.startPrefixMapping(nonNull(xsr.getNamespacePrefix(i)), nonNull(xsr.getNamespaceURI(i)));
+				}
+				AttributesImpl attributes = new AttributesImpl();
+				for (int i = 0; i < xsr.getAttributeCount(); i++) {
+					attributes.addAttribute(nonNull(xsr.getAttributeNamespace(i)), xsr.getAttributeLocalName(i), qName(xsr.getAttributePrefix(i), xsr.getAttributeLocalName(i)), "CDATA", xsr.getAttributeValue(i));
+				}
+				validator.startElement(nonNull(xsr.getNamespaceURI()), xsr.getLocalName(), qName(xsr.getPrefix(), xsr.getLocalName()), attributes);
+				break;
+			case XMLStreamConstants.END_ELEMENT:
+				validator.endElement(nonNull(xsr.getNamespaceURI()), xsr.getLocalName(), qName(xsr.getPrefix(), xsr.getLocalName()));
+				for (int i = 0; i < xsr.getNamespaceCount(); i++) {
+					validator.endPrefixMapping(nonNull(xsr.getNamespacePrefix(i)));
+				}
+				break;
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				validator.characters(xsr.getTextCharacters(), xsr.getTextStart(), xsr.getTextLength());
+				break;
+			}
+		} catch (SAXException ex) {
+			throw new XMLStreamException(ex);
+		}
+		return type;
+	}
+
+	private static String nonNull(String value) {
+		return value == null ? "" : value;
+	}
+
+	private static String qName(String prefix, String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+
+	/**
+	 * Read the next event inside the current element.
+	 */
+	public int next() throws XMLStreamException {
+		if (pushedBack) {
+			pushedBack = false;
+			return event;
+		}
+		if (tagPending) {
+			tagPending = false;
+			return event = xsr.getEventType();
+		}
+		text.setLength(0);
+		while (true) {
+			int type = nextEvent();
+			switch (type) {
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE:
+			case XMLStreamConstants.ENTITY_REFERENCE:
+				text.append(xsr.getTextCharacters(), xsr.getTextStart(), xsr.getTextLength());
+				break;
+			case XMLStreamConstants.START_ELEMENT:
+			case XMLStreamConstants.END_ELEMENT:
+			case XMLStreamConstants.END_DOCUMENT:
+				if (text.length() > 0) {
+					tagPending = true;
+					return event = TEXT;
+				}
+				return event = type;
+			default:
+				// comments and processing instructions
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Make the next call to {@link #next()} return the current event again.
+	 */
+	public void pushBack() {
+		pushedBack = true;
+	}
+
+	/**
+	 * Read the next event that is not {@link #TEXT}. Text is ignored, like
+	 * JAXB does for element-only content.
+	 */
+	public int nextTag() throws XMLStreamException {
+		int type;
+		while ((type = next()) == TEXT)
+			;
+		return type;
+	}
+
+	/**
+	 * Return the text of the current {@link #TEXT} event.
+	 */
+	public String getText() {
+		return text.toString();
+	}
+
+	/**
+	 * Return the local name of the current {@link #START_ELEMENT} event.
+	 */
+	public String getLocalName() {
+		return xsr.getLocalName();
+	}
+
+	/**
+	 * Return the value of an attribute of the current element, or
+	 * {@code null}.
+	 */
+	public String getAttribute(String name) {
+		return xsr.getAttributeValue(null, name);
+	}
+
+	/**
+	 * Return the value of an attribute of the current element with whitespace
+	 * collapsed (for token typed attributes), or {@code null}.
+	 */
+	public String getCollapsedAttribute(String name) {
+		String value = getAttribute(name);
+		return value == null ? null : value.trim().replaceAll("[ \t\r\n]+", " ");
+	}
+
+	/**
+	 * Return the value of an integer attribute of the current element, or
+	 * {@code null}.
+	 */
+	public Integer getIntegerAttribute(String name) throws IOException {
+		String value = getAttribute(name);
+		if (value == null)
+			return null;
+		try {
+			return Integer.valueOf(value.trim());
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid " + name + " attribute at " + getHumanReadableLocation() + ": " + value, ex);
+		}
+	}
+
+	/**
+	 * Read the text content of the current element, skipping child elements.
+	 */
+	public String readElementText() throws XMLStreamException {
+		StringBuilder result = new StringBuilder();
+		int type;
+		while ((type = next()) != END_ELEMENT) {
+			if (type == TEXT)
+				result.append(text);
+			else
+				skipElement();
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Skip the current element, including all its content.
+	 */
+	public void skipElement() throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			int type = nextEvent();
+			if (type == XMLStreamConstants.START_ELEMENT)
+				depth++;
+			else if (type == XMLStreamConstants.END_ELEMENT)
+				depth--;
+		}
+		event = END_ELEMENT;
+	}
+
+	/**
+	 * Return the file name and the current line and column number, for use in
+	 * messages.
+	 */
+	public String getHumanReadableLocation() {
+		Location location = xsr.getLocation();
+		if (location == null) {
+			return fileName;
+		} else {
+			return fileName + " line " + location.getLineNumber() + ", column " + location.getColumnNumber();
+		}
+	}
+
+	public void close() throws XMLStreamException {
+		xsr.close();
+	}
+
+	/**
+	 * Reports the location of the underlying reader to the validator.
+	 */
+	private class StreamLocator implements Locator {
+
+		@Override
+		public String getPublicId() {
+			return null;
+		}
+
+		@Override
+		public String getSystemId() {
+			Location location = xsr.getLocation();
+			return location == null || location.getSystemId() == null ? fileName : location.getSystemId();
+		}
+
+		@Override
+		public int getLineNumber() {
+			Location location = xsr.getLocation();
+			return location == null ? -1 : location.getLineNumber();
+		}
+
+		@Override
+		public int getColumnNumber() {
+			Location location = xsr.getLocation();
+			return location == null ? -1 : location.getColumnNumber();
+		}
+	}
+}
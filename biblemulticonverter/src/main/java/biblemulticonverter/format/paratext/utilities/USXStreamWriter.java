@@ -0,0 +1,222 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import javax.xml.validation.ValidatorHandler;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import biblemulticonverter.utilities.MarkupEscaper;
+
+/**
+ * Writes USX files element by element.
+ * <p>
+ * The output is formatted the same way as USX files used to be formatted when
+ * they were marshalled by JAXB: every child of the root element starts on a
+ * new line, indented by two spaces; no other whitespace is added, as
+ * whitespace is significant in the mixed content of the other elements. Only
+ * {@code &}, {@code <}, {@code >} (and {@code "} in attribute values) are
+ * escaped. Like JAXB, a space is inserted between two texts that are written
+ * into the same element without any element in between.
+ * <p>
+ * Every element gets a handle when it is started. Elements are closed lazily:
+ * {@link #continueElement(int)} closes all elements that have been started
+ * inside the given element, so that content can be added to it again. Callers
+ * therefore do not need to end nested elements explicitly.
+ * <p>
+ * When a {@link ValidatorHandler} is given, all content is passed to it as
+ * well, so that the file is validated while it is written.
+ */
+public class USXStreamWriter {
+
+	private static final String ROOT_CHILD_INDENT = "\n  ";
+
+	private final Writer out;
+	private final ValidatorHandler validator;
+	private final AttributesImpl attributes = new AttributesImpl();
+	private String[] openNames = new String[16];
+	private int[] openHandles = new int[16];
+	private boolean[] openHasContent = new boolean[16];
+	private int depth = 0, nextHandle = 0;
+	private boolean startTagOpen = false, textWritten = false;
+
+	public USXStreamWriter(Writer out, ValidatorHandler validator) {
+		this.out = out;
+		this.validator = validator;
+	}
+
+	/**
+	 * Write the XML declaration and start the {@code usx} root element.
+	 *
+	 * @return handle of the root element
+	 */
+	public int startDocument(String version) throws IOException {
+		out.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+		if (validator != null) {
+			try {
+				validator.startDocument();
+			} catch (SAXException ex) {
+				throw new IOException(ex);
+			}
+		}
+		int root = startElement("usx");
+		attribute("version", version);
+		return root;
+	}
+
+	/**
+	 * Start a new element inside the current element.
+	 *
+	 * @return handle of the new element
+	 */
+	public int startElement(String name) throws IOException {
+		closeStartTag();
+		if (depth > 0)
+			openHasContent[depth - 1] = true;
+		if (depth == openNames.length) {
+			openNames = Arrays.copyOf(openNames, depth * 2);
+			openHandles = Arrays.copyOf(openHandles, depth * 2);
+			openHasContent = Arrays.copyOf(openHasContent, depth * 2);
+		}
+		textWritten = false;
+		int handle = nextHandle++;
+		openNames[depth] = name;
+		openHandles[depth] = handle;
+		openHasContent[depth] = false;
+		depth++;
+		out.write('<');
+		out.write(name);
+		startTagOpen = true;
+		if (validator != null)
+			attributes.clear();
+		return handle;
+	}
+
+	/**
+	 * Add an attribute to the element that has just been started. Attributes
+	 * with a {@code null} value are skipped.
+	 */
+	public void attribute(String name, String value) throws IOException {
+		if (value == null)
+			return;
+		if (!startTagOpen)
+			throw new IllegalStateException("Attribute " + name + " written outside of start tag");
+		out.write(' ');
+		out.write(name);
+		out.write("=\"");
+		MarkupEscaper.HTML_ATTRIBUTE.escape(out, value);
+		out.write('"');
+		if (validator != null)
+			attributes.addAttribute("", name, name, "CDATA", value);
+	}
+
+	/**
+	 * Add text to the current element. Empty text still counts as content,
+	 * {@code null} text is ignored.
+	 */
+	public void text(String text) throws IOException {
+		if (text == null)
+			return;
+		closeStartTag();
+		openHasContent[depth - 1] = true;
+		if (textWritten)
+			text = " " + text;
+		textWritten = true;
+		MarkupEscaper.HTML_TEXT.escape(out, text);
+		if (validator != null) {
+			try {
+				validator.characters(text.toCharArray(), 0, text.length());
+			} catch (SAXException ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+
+	/**
+	 * Return whether the current element has any content yet.
+	 */
+	public boolean hasContent() {
+		return openHasContent[depth - 1];
+	}
+
+	/**
+	 * Close all elements that have been started inside the given element, so
+	 * that it becomes the current element again.
+	 *
+	 * @throws IllegalStateException
+	 *             if the given element has already been closed
+	 */
+	public void continueElement(int handle) throws IOException {
+		int targetDepth = depth;
+		while (targetDepth > 0 && openHandles[targetDepth - 1] != handle)
+			targetDepth--;
+		if (targetDepth == 0)
+			throw new IllegalStateException("Element has already been closed");
+		while (depth > targetDepth)
+			endElement();
+	}
+
+	/**
+	 * End the current element.
+	 */
+	public void endElement() throws IOException {
+		String name = openNames[depth - 1];
+		if (startTagOpen) {
+			out.write("/>");
+			finishStartTag();
+		} else {
+			out.write("</");
+			out.write(name);
+			out.write('>');
+		}
+		depth--;
+		textWritten = false;
+		if (validator != null) {
+			try {
+				validator.endElement("", name, name);
+			} catch (SAXException ex) {
+				throw new IOException(ex);
+			}
+		}
+		if (depth == 1)
+			out.write(ROOT_CHILD_INDENT);
+	}
+
+	/**
+	 * Close all open elements, including the root element.
+	 */
+	public void endDocument() throws IOException {
+		while (depth > 0)
+			endElement();
+		out.write("\n\n");
+		if (validator != null) {
+			try {
+				validator.endDocument();
+			} catch (SAXException ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+
+	private void closeStartTag() throws IOException {
+		if (startTagOpen) {
+			out.write('>');
+			finishStartTag();
+		}
+	}
+
+	private void finishStartTag() throws IOException {
+		startTagOpen = false;
+		if (validator != null) {
+			String name = openNames[depth - 1];
+			try {
+				validator.startElement("", name, name, attributes);
+			} catch (SAXException ex) {
+				throw new IOException(ex);
+			}
+		}
+	}
+}
@@ -1,10 +1,13 @@
 package biblemulticonverter.tools;
 
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -31,6 +34,23 @@ public class MobiPocketBXR {
 		}
 	}
 
+	public MobiPocketBXR(String name, String title, List<BookInfo> books) {
+		this.name = name;
+		this.title = title;
+		this.books.addAll(books);
+	}
+
+	public void write(File f) throws IOException {
+		try (final BufferedWriter bw = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), "UTF-8"))) {
+			bw.write(title);
+			bw.newLine();
+			for (BookInfo book : books) {
+				bw.write(book.book + "|" + book.ref + "|" + book.chapterCount);
+				bw.newLine();
+			}
+		}
+	}
+
 	public static class BookInfo {
 		public final String book;
 		public final int chapterCount;
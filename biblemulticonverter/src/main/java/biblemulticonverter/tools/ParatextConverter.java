@@ -28,7 +28,12 @@ public class ParatextConverter implements Tool {
 			"",
 			"Use the option -Dbiblemulticonverter.paratext.usfm.preserveSpacesAtEndOfLines to keep",
 			"single spaces at the end of lines when importing from USFM (sometimes these spaces are",
-			"significant). Supported values are true and false (defaults to false)."
+			"significant). Supported values are true and false (defaults to false).",
+			"",
+			"When converting between formats that store every book in its own file (USFM, USX, USX 3),",
+			"or validating such a format with ParatextValidate, books are imported, converted and written",
+			"one at a time, so that memory usage does not depend on the size of the project. Use",
+			"-Dbiblemulticonverter.paratext.streaming=false to import all books before exporting them instead."
 	};
 
 	@Override
@@ -37,7 +42,13 @@ public class ParatextConverter implements Tool {
 		Module<ExportFormat> exportModule = Main.exportFormats.get(args[2]);
 		AbstractParatextFormat importFormat = (AbstractParatextFormat) importModule.getImplementationClass().newInstance();
 		AbstractParatextFormat exportFormat = (AbstractParatextFormat) exportModule.getImplementationClass().newInstance();
+		String[] exportArgs = Arrays.copyOfRange(args, 3, args.length);
+		boolean streaming = Boolean.parseBoolean(System.getProperty("biblemulticonverter.paratext.streaming", "true"));
+		if (streaming && importFormat.supportsStreaming() && exportFormat.supportsStreaming()) {
+			importFormat.doImportBooksStreaming(new File(args[1]), exportFormat.getStreamingExporter(exportArgs));
+			return;
+		}
 		List<ParatextBook> books = importFormat.doImportBooks(new File(args[1]));
-		exportFormat.doExportBooks(books, Arrays.copyOfRange(args, 3, args.length));
+		exportFormat.doExportBooks(books, exportArgs);
 	}
 }
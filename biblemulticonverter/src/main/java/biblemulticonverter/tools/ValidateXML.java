@@ -2,19 +2,47 @@ package biblemulticonverter.tools;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.XMLConstants;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.bind.ValidationEvent;
+import javax.xml.bind.ValidationEventHandler;
+import javax.xml.bind.ValidationEventLocator;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
 import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 
+import org.w3c.dom.Document;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.XMLFilterImpl;
 
 import biblemulticonverter.schema.roundtripxml.ObjectFactory;
+import biblemulticonverter.utilities.CompressedIO;
+import biblemulticonverter.utilities.InputDirectory;
 
 public class ValidateXML implements Tool {
 
@@ -24,9 +52,34 @@ public class ValidateXML implements Tool {
 			"Validate one or more XML files according to a XSD schema.",
 			"Schema can be a file name/path, a URL, or one of the predefined schemas:",
 			"ZefaniaXML, HaggaiXML, RoundtripXML, ZefDic or OSIS.",
-			"Validation errors are printed to the console."
+			"Validation errors are printed to the console.",
+			"",
+			"Importers validate their input files in a separate pass before parsing them. Set the",
+			"system property biblemulticonverter.validatewhileparsing to validate during parsing",
+			"instead, to avoid reading the file twice. Streaming importers (USX, USFX) always validate",
+			"during parsing.",
 	};
 
+	private static final boolean VALIDATE_WHILE_PARSING = Boolean.getBoolean("biblemulticonverter.validatewhileparsing");
+
+	private static final Map<String, Schema> SCHEMA_CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the compiled schema for one of the predefined XSD resources. As
+	 * compiling large schemas is expensive and {@link Schema} objects are
+	 * thread-safe, they are cached for the lifetime of the process.
+	 */
+	public static Schema getSchema(String resourceName) throws SAXException {
+		Schema schema = SCHEMA_CACHE.get(resourceName);
+		if (schema == null) {
+			schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource(resourceName));
+			Schema existing = SCHEMA_CACHE.putIfAbsent(resourceName, schema);
+			if (existing != null)
+				schema = existing;
+		}
+		return schema;
+	}
+
 	@Override
 	public void run(String... args) throws Exception {
 		String schemaResourceName;
@@ -53,63 +106,197 @@ public class ValidateXML implements Tool {
 		} else {
 			schemaResourceName = null;
 		}
-		URL schemaURL;
+		Schema schema;
 		if (schemaResourceName != null) {
-			schemaURL = ObjectFactory.class.getResource(schemaResourceName);
-		} else if (new File(args[0]).exists()) {
-			schemaURL = new File(args[0]).toURI().toURL();
+			schema = getSchema(schemaResourceName);
 		} else {
-			schemaURL = new URL(args[0]);
+			URL schemaURL;
+			if (new File(args[0]).exists()) {
+				schemaURL = new File(args[0]).toURI().toURL();
+			} else {
+				schemaURL = new URL(args[0]);
+			}
+			schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaURL);
 		}
-		Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(schemaURL);
 
 		for (int i = 1; i < args.length; i++) {
 			System.out.print(args[i] + ": ");
-			validateFile(schema, new File(args[i]), "Schema validation failed:", "Schema validation ok.", null);
+			validate(schema, new StreamSource(new File(args[i])), "Schema validation failed:", "Schema validation ok.", null);
 		}
 	}
 
 	public static void validateFileBeforeParsing(Schema schema, File file) throws IOException {
-		validateFile(schema, file, "WARNING: Schema validation failed: ", null, "WARNING: Parsing anyway after validation errors");
+		if (VALIDATE_WHILE_PARSING)
+			return;
+		try (InputStream in = CompressedIO.openInput(file)) {
+			validate(schema, new StreamSource(in, file.toURI().toASCIIString()), "WARNING: Schema validation failed: ", null, "WARNING: Parsing anyway after validation errors");
+		}
 	}
 
-	private static void validateFile(Schema schema, File file, final String errorHeader, String okMessage, String errorFooter) throws IOException {
-		Validator validator = schema.newValidator();
-		final int[] errorCountHolder = new int[1];
-		validator.setErrorHandler(new ErrorHandler() {
+	/**
+	 * Validate a file of an input directory (which may be inside an archive)
+	 * before parsing it.
+	 */
+	public static void validateFileBeforeParsing(Schema schema, InputDirectory directory, String name) throws IOException {
+		if (VALIDATE_WHILE_PARSING)
+			return;
+		try (InputStream in = directory.openStream(name)) {
+			validate(schema, new StreamSource(in, directory.getSystemId(name)), "WARNING: Schema validation failed: ", null, "WARNING: Parsing anyway after validation errors");
+		}
+	}
 
-			private void printHeader() {
-				if (errorCountHolder[0] == 0 && errorHeader != null) {
-					System.out.println(errorHeader);
-				}
-				errorCountHolder[0]++;
+	/**
+	 * Create a validator for a streaming parser, which passes all events it
+	 * reads to the validator, so that the file is validated while parsing it.
+	 * Validation errors are printed as warnings.
+	 */
+	public static ValidatorHandler createStreamValidator(Schema schema) {
+		ValidatorHandler validator = schema.newValidatorHandler();
+		validator.setErrorHandler(new PrintingErrorHandler("WARNING: Schema validation failed: "));
+		return validator;
+	}
+
+	/**
+	 * If validation while parsing is enabled, make the unmarshaller validate
+	 * against the schema, printing errors as warnings instead of failing.
+	 */
+	public static void validateWhileParsing(Schema schema, Unmarshaller u) throws JAXBException {
+		if (!VALIDATE_WHILE_PARSING)
+			return;
+		u.setSchema(schema);
+		u.setEventHandler(new PrintingErrorHandler("WARNING: Schema validation failed: "));
+	}
+
+	/**
+	 * Parse the file into a DOM tree (without namespace support). If validation
+	 * while parsing is enabled, a {@link ValidatorHandler} is added to the
+	 * parsing pipeline, so that the file only has to be read once.
+	 */
+	public static Document parseDocument(Schema schema, File file) throws IOException, SAXException, ParserConfigurationException, TransformerConfigurationException {
+		if (!VALIDATE_WHILE_PARSING)
+			return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(file);
+		TransformerHandler domBuilder = ((SAXTransformerFactory) TransformerFactory.newInstance()).newTransformerHandler();
+		DOMResult result = new DOMResult();
+		domBuilder.setResult(result);
+		parse(schema, file, domBuilder);
+		return (Document) result.getNode();
+	}
+
+	/**
+	 * Parse the file with SAX (without namespace support, so element and
+	 * attribute names are reported as qualified names). If the handler is also
+	 * a {@link LexicalHandler}, it will receive comments as well. If validation
+	 * while parsing is enabled, a {@link ValidatorHandler} is added to the
+	 * parsing pipeline, so that the file only has to be read once.
+	 */
+	public static void parse(Schema schema, File file, ContentHandler handler) throws IOException, SAXException, ParserConfigurationException {
+		SAXParserFactory spf = SAXParserFactory.newInstance();
+		spf.setNamespaceAware(VALIDATE_WHILE_PARSING);
+		XMLReader reader = spf.newSAXParser().getXMLReader();
+		if (!VALIDATE_WHILE_PARSING) {
+			reader.setContentHandler(handler);
+			if (handler instanceof LexicalHandler)
+				reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+			reader.parse(new InputSource(file.toURI().toString()));
+			return;
+		}
+		ValidatorHandler validatorHandler = schema.newValidatorHandler();
+		validatorHandler.setErrorHandler(new PrintingErrorHandler("WARNING: Schema validation failed: "));
+		XMLFilterImpl namespaceStripper = new XMLFilterImpl() {
+			@Override
+			public void startPrefixMapping(String prefix, String uri) {
 			}
 
 			@Override
-			public void warning(SAXParseException exception) throws SAXException {
-				printHeader();
-				System.out.println("\t[Warning] " + exception.toString());
+			public void endPrefixMapping(String prefix) {
 			}
 
 			@Override
-			public void fatalError(SAXParseException exception) throws SAXException {
-				printHeader();
-				System.out.println("\t[Fatal Error] " + exception.toString());
+			public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+				AttributesImpl plainAtts = new AttributesImpl();
+				for (int i = 0; i < atts.getLength(); i++) {
+					plainAtts.addAttribute(stripURI(atts.getURI(i), atts.getQName(i)), atts.getQName(i), atts.getQName(i), atts.getType(i), atts.getValue(i));
+				}
+				super.startElement(stripURI(uri, qName), qName, qName, plainAtts);
 			}
 
 			@Override
-			public void error(SAXParseException exception) throws SAXException {
-				printHeader();
-				System.out.println("\t[Error] " + exception.toString());
+			public void endElement(String uri, String localName, String qName) throws SAXException {
+				super.endElement(stripURI(uri, qName), qName, qName);
 			}
-		});
+
+			private String stripURI(String uri, String qName) {
+				// prefixed names (like xml:lang) need to keep their namespace
+				return qName.contains(":") ? uri : "";
+			}
+		};
+		namespaceStripper.setContentHandler(handler);
+		validatorHandler.setContentHandler(namespaceStripper);
+		reader.setContentHandler(validatorHandler);
+		reader.setErrorHandler(validatorHandler.getErrorHandler());
+		// comments are not validated, so they can bypass the validator
+		if (handler instanceof LexicalHandler)
+			reader.setProperty("http://xml.org/sax/properties/lexical-handler", handler);
+		reader.parse(new InputSource(file.toURI().toString()));
+	}
+
+	private static void validate(Schema schema, Source source, final String errorHeader, String okMessage, String errorFooter) throws IOException {
+		Validator validator = schema.newValidator();
+		PrintingErrorHandler errorHandler = new PrintingErrorHandler(errorHeader);
+		validator.setErrorHandler(errorHandler);
 		try {
-			validator.validate(new StreamSource(file));
+			validator.validate(source);
 		} catch (SAXException ex) {
 			// already handled by ValidationHandler
 		}
-		String resultMessage = (errorCountHolder[0] > 0) ? errorFooter : okMessage;
+		String resultMessage = (errorHandler.errorCount > 0) ? errorFooter : okMessage;
 		if (resultMessage != null)
 			System.out.println(resultMessage);
 	}
+
+	private static class PrintingErrorHandler implements ErrorHandler, ValidationEventHandler {
+
+		private final String errorHeader;
+		private int errorCount = 0;
+
+		private PrintingErrorHandler(String errorHeader) {
+			this.errorHeader = errorHeader;
+		}
+
+		private void printHeader() {
+			if (errorCount == 0 && errorHeader != null) {
+				System.out.println(errorHeader);
+			}
+			errorCount++;
+		}
+
+		@Override
+		public void warning(SAXParseException exception) throws SAXException {
+			printHeader();
+			System.out.println("\t[Warning] " + exception.toString());
+		}
+
+		@Override
+		public void fatalError(SAXParseException exception) throws SAXException {
+			printHeader();
+			System.out.println("\t[Fatal Error] " + exception.toString());
+		}
+
+		@Override
+		public void error(SAXParseException exception) throws SAXException {
+			printHeader();
+			System.out.println("\t[Error] " + exception.toString());
+		}
+
+		@Override
+		public boolean handleEvent(ValidationEvent event) {
+			printHeader();
+			String severity = event.getSeverity() == ValidationEvent.WARNING ? "Warning" : event.getSeverity() == ValidationEvent.ERROR ? "Error" : "Fatal Error";
+			ValidationEventLocator locator = event.getLocator();
+			String location = locator == null ? "" : "; lineNumber: " + locator.getLineNumber() + "; columnNumber: " + locator.getColumnNumber();
+			System.out.println("\t[" + severity + "] " + event.getMessage() + location);
+			// parsing cannot continue after a fatal error
+			return event.getSeverity() != ValidationEvent.FATAL_ERROR;
+		}
+	}
 }
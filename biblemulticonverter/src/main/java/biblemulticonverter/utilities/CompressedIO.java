@@ -0,0 +1,199 @@
+package biblemulticonverter.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Open input and output files of text based formats, transparently handling
+ * GZIP compression.
+ * <p>
+ * Compressed input is detected by its magic number, regardless of the file
+ * name. Unless the system property {@code biblemulticonverter.threads} is 1,
+ * it is decompressed on a separate thread, so that decompression overlaps
+ * with parsing. Output is compressed if the file name ends with {@code .gz}.
+ * <p>
+ * XZ compression is detected as well, but not supported, as it would require
+ * an additional library.
+ */
+public class CompressedIO {
+
+	private static final int BUFFER_SIZE = 65536;
+
+	private CompressedIO() {
+	}
+
+	/**
+	 * Open the given file for reading, decompressing it if needed.
+	 */
+	public static InputStream openInput(File file) throws IOException {
+		BufferedInputStream in = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+		try {
+			byte[] magic = new byte[6];
+			in.mark(magic.length);
+			int len = 0, read;
+			while (len < magic.length && (read = in.read(magic, len, magic.length - len)) != -1)
+				len += read;
+			in.reset();
+			if (len >= 2 && (magic[0] & 0xFF) == 0x1F && (magic[1] & 0xFF) == 0x8B) {
+				InputStream gzin = new GZIPInputStream(in, BUFFER_SIZE);
+				return ParallelTasks.getThreadCount() > 1 ? new ReadAheadInputStream(gzin, file.getName()) : new BufferedInputStream(gzin, BUFFER_SIZE);
+			}
+			if (len == 6 && Arrays.equals(magic, new byte[] { (byte) 0xFD, '7', 'z', 'X', 'Z', 0 }))
+				throw new IOException("XZ compressed input is not supported, please decompress it first: " + file);
+			return in;
+		} catch (IOException | RuntimeException ex) {
+			in.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Open the given file for reading UTF-8 text, decompressing it if needed.
+	 */
+	public static BufferedReader openReader(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(openInput(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Open the given file for writing, compressing it if the file name ends
+	 * with {@code .gz}.
+	 */
+	public static OutputStream openOutput(File file) throws IOException {
+		String lowerName = file.getName().toLowerCase();
+		if (lowerName.endsWith(".xz"))
+			throw new IOException("XZ compressed output is not supported: " + file);
+		OutputStream out = new FileOutputStream(file);
+		if (lowerName.endsWith(".gz")) {
+			try {
+				return new GZIPOutputStream(out, BUFFER_SIZE);
+			} catch (IOException ex) {
+				out.close();
+				throw ex;
+			}
+		}
+		return out;
+	}
+
+	/**
+	 * Open the given file for writing UTF-8 text, compressing it if the file
+	 * name ends with {@code .gz}.
+	 */
+	public static BufferedWriter openWriter(File file) throws IOException {
+		return new BufferedWriter(new OutputStreamWriter(openOutput(file), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Input stream that reads its source on a separate thread, handing over
+	 * blocks of data through a bounded queue.
+	 */
+	private static class ReadAheadInputStream extends InputStream {
+
+		private static final byte[] END_OF_STREAM = new byte[0];
+
+		private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(16);
+		private final Thread readerThread;
+		private volatile Throwable readerError = null;
+		private byte[] current = null;
+		private int currentPos = 0;
+		private boolean finished = false;
+
+		private ReadAheadInputStream(InputStream source, String name) {
+			readerThread = new Thread(() -> {
+				try (InputStream in = source) {
+					boolean more = true;
+					while (more) {
+						byte[] buffer = new byte[BUFFER_SIZE];
+						int len = 0, read = 0;
+						while (len < buffer.length && (read = in.read(buffer, len, buffer.length - len)) != -1)
+							len += read;
+						more = read != -1;
+						if (len > 0)
+							queue.put(len == buffer.length ? buffer : Arrays.copyOf(buffer, len));
+					}
+				} catch (InterruptedException ex) {
+					// stream has been closed; keep the flag so that the end marker is not waited for
+					Thread.currentThread().interrupt();
+				} catch (Throwable ex) {
+					readerError = ex;
+				} finally {
+					try {
+						queue.put(END_OF_STREAM);
+					} catch (InterruptedException ex) {
+						// stream has been closed
+					}
+				}
+			}, "CompressedIO-" + name);
+			readerThread.setDaemon(true);
+			readerThread.start();
+		}
+
+		private boolean fill() throws IOException {
+			if (finished)
+				return false;
+			if (current != null && currentPos < current.length)
+				return true;
+			try {
+				current = queue.take();
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			currentPos = 0;
+			if (current == END_OF_STREAM) {
+				finished = true;
+				Throwable error = readerError;
+				if (error instanceof IOException)
+					throw (IOException) error;
+				else if (error instanceof RuntimeException)
+					throw (RuntimeException) error;
+				else if (error instanceof Error)
+					throw (Error) error;
+				else if (error != null)
+					throw new IOException(error);
+				return false;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill())
+				return -1;
+			return current[currentPos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!fill())
+				return -1;
+			int count = Math.min(len, current.length - currentPos);
+			System.arraycopy(current, currentPos, b, off, count);
+			currentPos += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			finished = true;
+			readerThread.interrupt();
+		}
+	}
+}
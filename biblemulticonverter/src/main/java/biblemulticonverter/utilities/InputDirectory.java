@@ -0,0 +1,604 @@
+package biblemulticonverter.utilities;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A directory of input files, which may either be a real directory or (a
+ * subdirectory of) a ZIP or TAR archive. This way, importers that read many
+ * files can read them directly from a downloaded archive, without extracting
+ * it first.
+ * <p>
+ * Archives are detected by their file extension ({@code .zip}, {@code .tar},
+ * {@code .tar.gz} or {@code .tgz}). A subdirectory inside the archive can be
+ * selected by appending it after {@code !/}, like
+ * {@code sblgnt-master.zip!/subdir}. If all entries of an archive are inside a
+ * single top-level directory (as in archives downloaded from GitHub), that
+ * directory is used automatically.
+ * <p>
+ * All methods are thread-safe, so that files can be parsed in parallel, and
+ * entries can be read in any order. Reading entries of compressed TAR
+ * archives is fastest in the order returned by {@link #list()}.
+ */
+public abstract class InputDirectory implements Closeable {
+
+	/**
+	 * Open the given directory or archive.
+	 */
+	public static InputDirectory open(File file) throws IOException {
+		if (file.isDirectory())
+			return new FileSystemDirectory(file);
+		String path = file.getPath(), innerPath = "";
+		int pos = path.indexOf("!/");
+		if (pos == -1)
+			pos = path.indexOf("!" + File.separator);
+		if (pos != -1 && !file.exists()) {
+			innerPath = path.substring(pos + 2).replace(File.separatorChar, '/');
+			while (innerPath.endsWith("/"))
+				innerPath = innerPath.substring(0, innerPath.length() - 1);
+			file = new File(path.substring(0, pos));
+		}
+		String lowerName = file.getName().toLowerCase();
+		if (!file.isFile())
+			throw new FileNotFoundException(file.getPath());
+		if (lowerName.endsWith(".zip"))
+			return new ZipDirectory(file, innerPath);
+		if (lowerName.endsWith(".tar"))
+			return new TarDirectory(file, innerPath, false);
+		if (lowerName.endsWith(".tar.gz") || lowerName.endsWith(".tgz"))
+			return new TarDirectory(file, innerPath, true);
+		throw new IOException("Not a directory or supported archive: " + file);
+	}
+
+	/**
+	 * Return the names of all files directly inside this directory.
+	 */
+	public abstract List<String> list() throws IOException;
+
+	/**
+	 * Check whether a file of the given name exists in this directory.
+	 */
+	public abstract boolean exists(String name);
+
+	/**
+	 * Open a stream to read the given file.
+	 */
+	public abstract InputStream openStream(String name) throws IOException;
+
+	/**
+	 * Return a path of the given file suitable for messages.
+	 */
+	public abstract String getPath(String name);
+
+	/**
+	 * Return a system ID (URI) of the given file for XML parsers, or
+	 * <code>null</code> if the file cannot be addressed by an URI.
+	 */
+	public abstract String getSystemId(String name);
+
+	/**
+	 * Return the given file if it exists in the file system, or
+	 * <code>null</code> if it is inside an archive.
+	 */
+	public File getFile(String name) {
+		return null;
+	}
+
+	/**
+	 * Read the whole content of the given file.
+	 */
+	public byte[] readAllBytes(String name) throws IOException {
+		try (InputStream in = openStream(name)) {
+			return readFully(in);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	private static byte[] readFully(InputStream in) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buf = new byte[65536];
+		int len;
+		while ((len = in.read(buf)) != -1) {
+			baos.write(buf, 0, len);
+		}
+		return baos.toByteArray();
+	}
+
+	private static class FileSystemDirectory extends InputDirectory {
+
+		private final File directory;
+
+		private FileSystemDirectory(File directory) {
+			this.directory = directory;
+		}
+
+		@Override
+		public List<String> list() throws IOException {
+			File[] files = directory.listFiles();
+			if (files == null)
+				throw new IOException("Cannot list directory: " + directory);
+			List<String> result = new ArrayList<>();
+			for (File file : files) {
+				if (file.isFile())
+					result.add(file.getName());
+			}
+			return result;
+		}
+
+		@Override
+		public boolean exists(String name) {
+			return new File(directory, name).isFile();
+		}
+
+		@Override
+		public InputStream openStream(String name) throws IOException {
+			return new FileInputStream(new File(directory, name));
+		}
+
+		@Override
+		public String getPath(String name) {
+			return new File(directory, name).getPath();
+		}
+
+		@Override
+		public String getSystemId(String name) {
+			return new File(directory, name).toURI().toASCIIString();
+		}
+
+		@Override
+		public File getFile(String name) {
+			return new File(directory, name);
+		}
+
+		@Override
+		public byte[] readAllBytes(String name) throws IOException {
+			return Files.readAllBytes(new File(directory, name).toPath());
+		}
+	}
+
+	/**
+	 * Base class for archives, which know the full names of all their
+	 * entries in advance.
+	 */
+	private static abstract class ArchiveDirectory extends InputDirectory {
+
+		protected final File archive;
+		private String prefix;
+		private Set<String> names;
+
+		protected ArchiveDirectory(File archive) {
+			this.archive = archive;
+		}
+
+		/**
+		 * Find the directory inside the archive, given the full names of all
+		 * file entries.
+		 */
+		protected void init(List<String> entryNames, String innerPath) throws IOException {
+			List<String> candidates = new ArrayList<>();
+			String innerPrefix = innerPath.isEmpty() ? "" : innerPath + "/";
+			candidates.add(innerPrefix);
+			String topDirectory = null;
+			for (String entryName : entryNames) {
+				int pos = entryName.indexOf('/');
+				String top = pos == -1 ? null : entryName.substring(0, pos + 1);
+				if (top == null || (topDirectory != null && !top.equals(topDirectory))) {
+					topDirectory = null;
+					break;
+				}
+				topDirectory = top;
+			}
+			if (topDirectory != null)
+				candidates.add(topDirectory + innerPrefix);
+			for (String candidate : candidates) {
+				Set<String> children = new LinkedHashSet<>();
+				for (String entryName : entryNames) {
+					if (entryName.startsWith(candidate) && entryName.indexOf('/', candidate.length()) == -1)
+						children.add(entryName.substring(candidate.length()));
+				}
+				if (!children.isEmpty()) {
+					prefix = candidate;
+					names = children;
+					return;
+				}
+			}
+			throw new FileNotFoundException("No files found in " + archive + (innerPath.isEmpty() ? "" : "!/" + innerPath));
+		}
+
+		/**
+		 * Check whether the entry of the given full name is a file in this
+		 * directory.
+		 */
+		protected boolean isListed(String entryName) {
+			return entryName.startsWith(prefix) && names.contains(entryName.substring(prefix.length()));
+		}
+
+		@Override
+		public List<String> list() {
+			return new ArrayList<>(names);
+		}
+
+		@Override
+		public boolean exists(String name) {
+			return names.contains(name);
+		}
+
+		@Override
+		public InputStream openStream(String name) throws IOException {
+			if (!exists(name))
+				throw new FileNotFoundException(getPath(name));
+			return openEntry(prefix + name);
+		}
+
+		protected abstract InputStream openEntry(String entryName) throws IOException;
+
+		@Override
+		public String getPath(String name) {
+			return archive.getPath() + "!/" + prefix + name;
+		}
+
+		@Override
+		public String getSystemId(String name) {
+			return "jar:" + archive.toURI().toASCIIString() + "!/" + prefix + name;
+		}
+	}
+
+	private static class ZipDirectory extends ArchiveDirectory {
+
+		private final ZipFile zipFile;
+
+		private ZipDirectory(File archive, String innerPath) throws IOException {
+			super(archive);
+			zipFile = new ZipFile(archive, StandardCharsets.UTF_8);
+			List<String> entryNames = new ArrayList<>();
+			for (Enumeration<? extends ZipEntry> en = zipFile.entries(); en.hasMoreElements();) {
+				ZipEntry entry = en.nextElement();
+				if (!entry.isDirectory())
+					entryNames.add(entry.getName());
+			}
+			try {
+				init(entryNames, innerPath);
+			} catch (IOException ex) {
+				zipFile.close();
+				throw ex;
+			}
+		}
+
+		@Override
+		protected InputStream openEntry(String entryName) throws IOException {
+			return zipFile.getInputStream(zipFile.getEntry(entryName));
+		}
+
+		@Override
+		public void close() throws IOException {
+			zipFile.close();
+		}
+	}
+
+	/**
+	 * TAR archive (uncompressed or compressed by GZIP). The archive is scanned
+	 * once to build an index of entry positions. Afterwards, entries of
+	 * uncompressed archives are read by position, so they can be read in any
+	 * order and in parallel. Compressed archives are decompressed again
+	 * sequentially while entries are read; entries of this directory that are
+	 * passed on the way to the requested one are kept in memory until they are
+	 * read, so that decompression only needs to start over when an entry is
+	 * read a second time.
+	 */
+	private static class TarDirectory extends ArchiveDirectory {
+
+		private final Map<String, long[]> entries = new LinkedHashMap<>();
+		private final boolean compressed;
+		private final FileChannel channel;
+
+		// only used for compressed archives; guarded by this
+		private final List<String> entriesByPosition = new ArrayList<>();
+		private final Map<String, byte[]> skippedEntries = new HashMap<>();
+		private final Set<String> readEntries = new HashSet<>();
+		private InputStream compressedStream;
+		private long compressedPosition;
+		private int nextEntry;
+
+		private TarDirectory(File archive, String innerPath, boolean compressed) throws IOException {
+			super(archive);
+			this.compressed = compressed;
+			channel = compressed ? null : FileChannel.open(archive.toPath(), StandardOpenOption.READ);
+			try {
+				try (InputStream in = openArchive()) {
+					scan(in, compressed ? -1 : channel.size());
+				}
+				init(new ArrayList<>(entries.keySet()), innerPath);
+			} catch (IOException ex) {
+				close();
+				throw ex;
+			}
+			if (compressed) {
+				entriesByPosition.addAll(entries.keySet());
+				entriesByPosition.sort((e1, e2) -> Long.compare(entries.get(e1)[0], entries.get(e2)[0]));
+			}
+		}
+
+		private InputStream openArchive() throws IOException {
+			InputStream in = new FileInputStream(archive);
+			try {
+				return new BufferedInputStream(compressed ? new GZIPInputStream(in, 65536) : in, 65536);
+			} catch (IOException ex) {
+				in.close();
+				throw ex;
+			}
+		}
+
+		private void scan(InputStream in, long length) throws IOException {
+			byte[] header = new byte[512];
+			long position = 0;
+			String longName = null;
+			while (true) {
+				if (!readBlock(in, header, 0, 512))
+					break;
+				position += 512;
+				if (isZeroBlock(header))
+					break;
+				long size = parseNumber(header, 124, 12);
+				long paddedSize = (size + 511) & ~511L;
+				if (length != -1 && position + size > length)
+					throw new EOFException("Truncated archive: " + archive);
+				char type = (char) header[156];
+				if (type == 'L' || type == 'x') {
+					byte[] data = new byte[(int) size];
+					if (!readBlock(in, data, 0, data.length))
+						throw new EOFException("Truncated archive: " + archive);
+					skipFully(in, paddedSize - size);
+					position += paddedSize;
+					if (type == 'L') {
+						longName = parseString(data, 0, data.length);
+					} else {
+						String path = parsePaxPath(data);
+						if (path != null)
+							longName = path;
+					}
+					continue;
+				}
+				String name = longName;
+				longName = null;
+				if (name == null) {
+					name = parseString(header, 0, 100);
+					if (new String(header, 257, 5, StandardCharsets.US_ASCII).equals("ustar")) {
+						String namePrefix = parseString(header, 345, 155);
+						if (!namePrefix.isEmpty())
+							name = namePrefix + "/" + name;
+					}
+				}
+				while (name.startsWith("./"))
+					name = name.substring(2);
+				if (type == '0' || type == '\0' || type == '7')
+					entries.put(name, new long[] { position, size });
+				skipFully(in, paddedSize);
+				position += paddedSize;
+			}
+		}
+
+		@Override
+		protected InputStream openEntry(String entryName) throws IOException {
+			if (compressed)
+				return new ByteArrayInputStream(readCompressedEntry(entryName));
+			long[] entry = entries.get(entryName);
+			return new EntryInputStream(channel, entry[0], entry[1]);
+		}
+
+		private synchronized byte[] readCompressedEntry(String entryName) throws IOException {
+			byte[] data = skippedEntries.remove(entryName);
+			if (data != null) {
+				readEntries.add(entryName);
+				return data;
+			}
+			if (compressedStream == null || compressedPosition > entries.get(entryName)[0]) {
+				if (compressedStream != null)
+					compressedStream.close();
+				compressedStream = null;
+				compressedStream = openArchive();
+				compressedPosition = 0;
+				nextEntry = 0;
+			}
+			while (true) {
+				String name = entriesByPosition.get(nextEntry++);
+				long[] entry = entries.get(name);
+				skipFully(compressedStream, entry[0] - compressedPosition);
+				compressedPosition = entry[0];
+				boolean requested = name.equals(entryName);
+				if (!requested && (!isListed(name) || readEntries.contains(name) || skippedEntries.containsKey(name)))
+					continue;
+				if (entry[1] > Integer.MAX_VALUE - 8)
+					throw new IOException("Entry too large: " + archive + "!/" + name);
+				data = new byte[(int) entry[1]];
+				if (!readBlock(compressedStream, data, 0, data.length) && data.length > 0)
+					throw new EOFException("Truncated archive: " + archive);
+				compressedPosition += data.length;
+				if (requested) {
+					readEntries.add(name);
+					return data;
+				}
+				skippedEntries.put(name, data);
+			}
+		}
+
+		@Override
+		public String getSystemId(String name) {
+			return null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (channel != null)
+					channel.close();
+			} finally {
+				synchronized (this) {
+					if (compressedStream != null)
+						compressedStream.close();
+				}
+			}
+		}
+
+		private static boolean readBlock(InputStream in, byte[] buf, int offset, int length) throws IOException {
+			int pos = 0;
+			while (pos < length) {
+				int len = in.read(buf, offset + pos, length - pos);
+				if (len == -1) {
+					if (pos == 0)
+						return false;
+					throw new EOFException();
+				}
+				pos += len;
+			}
+			return true;
+		}
+
+		private static void skipFully(InputStream in, long count) throws IOException {
+			while (count > 0) {
+				long skipped = in.skip(count);
+				if (skipped <= 0) {
+					if (in.read() == -1)
+						throw new EOFException();
+					skipped = 1;
+				}
+				count -= skipped;
+			}
+		}
+
+		private static boolean isZeroBlock(byte[] block) {
+			for (byte b : block) {
+				if (b != 0)
+					return false;
+			}
+			return true;
+		}
+
+		private static String parseString(byte[] data, int offset, int length) {
+			int end = offset;
+			while (end < offset + length && data[end] != 0)
+				end++;
+			return new String(data, offset, end - offset, StandardCharsets.UTF_8);
+		}
+
+		private static long parseNumber(byte[] data, int offset, int length) throws IOException {
+			if ((data[offset] & 0x80) != 0) {
+				// GNU base-256 encoding for large sizes
+				long result = data[offset] & 0x7F;
+				for (int i = 1; i < length; i++) {
+					result = (result << 8) | (data[offset + i] & 0xFF);
+				}
+				return result;
+			}
+			String value = parseString(data, offset, length).trim();
+			try {
+				return value.isEmpty() ? 0 : Long.parseLong(value, 8);
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid number in TAR header: " + value);
+			}
+		}
+
+		/**
+		 * Parse PAX extended header records ("length key=value\n") and return
+		 * the path, if any.
+		 */
+		private static String parsePaxPath(byte[] data) throws IOException {
+			String path = null;
+			int pos = 0;
+			while (pos < data.length) {
+				int space = pos;
+				while (space < data.length && data[space] != ' ')
+					space++;
+				if (space == data.length)
+					break;
+				int length;
+				try {
+					length = Integer.parseInt(new String(data, pos, space - pos, StandardCharsets.US_ASCII));
+				} catch (NumberFormatException ex) {
+					throw new IOException("Invalid PAX header in TAR archive");
+				}
+				String record = new String(data, space + 1, pos + length - space - 2, StandardCharsets.UTF_8);
+				if (record.startsWith("path="))
+					path = record.substring(5);
+				pos += length;
+			}
+			return path;
+		}
+	}
+
+	/**
+	 * Stream that reads a range of a file channel by position, so that
+	 * several streams can read from the same channel concurrently.
+	 */
+	private static class EntryInputStream extends InputStream {
+
+		private final FileChannel channel;
+		private long position, remaining;
+
+		private EntryInputStream(FileChannel channel, long position, long size) {
+			this.channel = channel;
+			this.position = position;
+			this.remaining = size;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] buf = new byte[1];
+			return read(buf, 0, 1) == -1 ? -1 : buf[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (remaining == 0)
+				return -1;
+			int count = channel.read(ByteBuffer.wrap(b, off, (int) Math.min(len, remaining)), position);
+			if (count == -1)
+				throw new EOFException();
+			position += count;
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public long skip(long n) {
+			long count = Math.max(0, Math.min(n, remaining));
+			position += count;
+			remaining -= count;
+			return count;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(remaining, Integer.MAX_VALUE);
+		}
+	}
+}
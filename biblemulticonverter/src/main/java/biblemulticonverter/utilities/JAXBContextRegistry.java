@@ -0,0 +1,133 @@
+package biblemulticonverter.utilities;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * Process-wide registry of {@link JAXBContext}s, keyed by the package of the
+ * generated schema classes. Creating a context is expensive, but contexts are
+ * thread-safe, so each one is created only once and shared by all formats.
+ * Unmarshallers and marshallers are not thread-safe; they can be borrowed from
+ * a pool and returned after use, so that parallel (or repeated) imports and
+ * exports do neither contend nor re-create them.
+ */
+public class JAXBContextRegistry {
+
+	private static final Map<String, FutureTask<JAXBContext>> CONTEXTS = new ConcurrentHashMap<>();
+	private static final Map<String, Queue<Unmarshaller>> UNMARSHALLERS = new ConcurrentHashMap<>();
+	private static final Map<String, Queue<Marshaller>> MARSHALLERS = new ConcurrentHashMap<>();
+
+	private JAXBContextRegistry() {
+	}
+
+	private static FutureTask<JAXBContext> getTask(Class<?> objectFactoryClass) {
+		final String packageName = objectFactoryClass.getPackage().getName();
+		FutureTask<JAXBContext> task = CONTEXTS.get(packageName);
+		if (task == null) {
+			task = new FutureTask<JAXBContext>(() -> JAXBContext.newInstance(packageName)) {
+				@Override
+				protected void setException(Throwable t) {
+					// do not cache failures; the next caller tries again
+					CONTEXTS.remove(packageName, this);
+					super.setException(t);
+				}
+			};
+			FutureTask<JAXBContext> existing = CONTEXTS.putIfAbsent(packageName, task);
+			if (existing != null)
+				task = existing;
+		}
+		return task;
+	}
+
+	/**
+	 * Start creating the contexts for the given object factories on a
+	 * background thread, so that they are (hopefully) ready when they are
+	 * needed. Useful to overlap context creation with reading the input.
+	 */
+	public static void prewarm(Class<?>... objectFactoryClasses) {
+		for (Class<?> objectFactoryClass : objectFactoryClasses) {
+			FutureTask<JAXBContext> task = getTask(objectFactoryClass);
+			if (task.isDone())
+				continue;
+			Thread t = new Thread(task, "JAXBContext prewarm " + objectFactoryClass.getPackage().getName());
+			t.setDaemon(true);
+			t.start();
+		}
+	}
+
+	/**
+	 * Get the shared context for the package of the given object factory,
+	 * creating it if needed.
+	 */
+	public static JAXBContext getContext(Class<?> objectFactoryClass) throws JAXBException {
+		FutureTask<JAXBContext> task = getTask(objectFactoryClass);
+		// running a task that already ran or is running is a no-op
+		task.run();
+		try {
+			return task.get();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new JAXBException(ex);
+		} catch (ExecutionException ex) {
+			if (ex.getCause() instanceof JAXBException)
+				throw (JAXBException) ex.getCause();
+			throw new JAXBException(ex.getCause());
+		}
+	}
+
+	private static <T> Queue<T> getPool(Map<String, Queue<T>> pools, Class<?> objectFactoryClass) {
+		return pools.computeIfAbsent(objectFactoryClass.getPackage().getName(), k -> new ConcurrentLinkedQueue<>());
+	}
+
+	/**
+	 * Borrow an unmarshaller from the pool, or create a new one if the pool is
+	 * empty. Return it by {@link #release(Class, Unmarshaller)} when done.
+	 */
+	public static Unmarshaller acquireUnmarshaller(Class<?> objectFactoryClass) throws JAXBException {
+		Unmarshaller u = getPool(UNMARSHALLERS, objectFactoryClass).poll();
+		return u != null ? u : getContext(objectFactoryClass).createUnmarshaller();
+	}
+
+	/**
+	 * Return an unmarshaller to the pool. Schema, listener and event handler
+	 * are reset.
+	 */
+	public static void release(Class<?> objectFactoryClass, Unmarshaller u) throws JAXBException {
+		u.setSchema(null);
+		u.setListener(null);
+		u.setEventHandler(null);
+		getPool(UNMARSHALLERS, objectFactoryClass).add(u);
+	}
+
+	/**
+	 * Borrow a marshaller from the pool, or create a new one if the pool is
+	 * empty. Return it by {@link #release(Class, Marshaller)} when done.
+	 */
+	public static Marshaller acquireMarshaller(Class<?> objectFactoryClass) throws JAXBException {
+		Marshaller m = getPool(MARSHALLERS, objectFactoryClass).poll();
+		return m != null ? m : getContext(objectFactoryClass).createMarshaller();
+	}
+
+	/**
+	 * Return a marshaller to the pool. Schema, listener, event handler and the
+	 * fragment and formatted output properties are reset; marshallers with other
+	 * modified properties should not be returned to the pool.
+	 */
+	public static void release(Class<?> objectFactoryClass, Marshaller m) throws JAXBException {
+		m.setSchema(null);
+		m.setListener(null);
+		m.setEventHandler(null);
+		m.setProperty(Marshaller.JAXB_FRAGMENT, false);
+		m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+		getPool(MARSHALLERS, objectFactoryClass).add(m);
+	}
+}
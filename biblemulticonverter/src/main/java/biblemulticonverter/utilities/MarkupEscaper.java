@@ -0,0 +1,144 @@
+package biblemulticonverter.utilities;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Escapes special characters in text for markup output (HTML, XML, JSON) by
+ * looking up a replacement for each character in a table. Text is written
+ * directly into the target {@link Writer} in runs between the escaped
+ * characters, and text that does not need escaping is written as a whole, so
+ * no intermediate strings are created.
+ * <p>
+ * Instances are immutable and thread-safe; variants with additional
+ * replacements can be derived by {@link #with(char, String)}.
+ */
+public class MarkupEscaper {
+
+	/** Escape nothing; use {@link #with(char, String)} to build custom escapers. */
+	public static final MarkupEscaper NONE = new MarkupEscaper(new String[0]);
+
+	/** Escape {@code &}, {@code <} and {@code >}. */
+	public static final MarkupEscaper HTML_TEXT = NONE.with('&', "&amp;").with('<', "&lt;").with('>', "&gt;");
+
+	/** Escape {@code &}, {@code <}, {@code >} and {@code "}. */
+	public static final MarkupEscaper HTML_ATTRIBUTE = HTML_TEXT.with('"', "&quot;");
+
+	/**
+	 * Escape backslashes, double quotes and control characters for JSON
+	 * string literals.
+	 */
+	public static final MarkupEscaper JSON = createJSON();
+
+	private static MarkupEscaper createJSON() {
+		MarkupEscaper escaper = NONE.with('\\', "\\\\").with('"', "\\\"").with('\n', "\\n").with('\r', "\\r").with('\t', "\\t");
+		for (char ch = 0; ch < 0x20; ch++) {
+			if (ch != '\n' && ch != '\r' && ch != '\t')
+				escaper = escaper.with(ch, String.format("\\u%04x", (int) ch));
+		}
+		return escaper;
+	}
+
+	private final String[] replacements;
+	private final char[] escapedChars;
+
+	private MarkupEscaper(String[] replacements) {
+		this.replacements = replacements;
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < replacements.length; i++) {
+			if (replacements[i] != null)
+				sb.append((char) i);
+		}
+		escapedChars = sb.toString().toCharArray();
+	}
+
+	/**
+	 * Return a new escaper that additionally replaces the given character by
+	 * the given replacement.
+	 */
+	public MarkupEscaper with(char ch, String replacement) {
+		String[] newReplacements = Arrays.copyOf(replacements, Math.max(replacements.length, ch + 1));
+		newReplacements[ch] = replacement;
+		return new MarkupEscaper(newReplacements);
+	}
+
+	/**
+	 * Find the first character that needs escaping. As most text does not
+	 * need any escaping, searching for each escaped character by
+	 * {@link String#indexOf(int)} (which is optimized by the JVM) is faster
+	 * than looking up each character of the text in the table, unless many
+	 * different characters are escaped.
+	 */
+	private int findFirst(String text) {
+		if (escapedChars.length > 8)
+			return findNext(text, 0);
+		int first = -1;
+		for (char ch : escapedChars) {
+			int pos = text.indexOf(ch);
+			if (pos != -1 && (first == -1 || pos < first))
+				first = pos;
+		}
+		return first;
+	}
+
+	private int findNext(String text, int start) {
+		final String[] table = replacements;
+		for (int i = start; i < text.length(); i++) {
+			char ch = text.charAt(i);
+			if (ch < table.length && table[ch] != null)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Write the escaped text into the given writer.
+	 */
+	public void escape(Writer writer, String text) throws IOException {
+		int pos = findFirst(text);
+		if (pos == -1) {
+			writer.write(text);
+			return;
+		}
+		int start = 0;
+		while (pos != -1) {
+			if (pos > start)
+				writer.write(text, start, pos - start);
+			writer.write(replacements[text.charAt(pos)]);
+			start = pos + 1;
+			pos = findNext(text, start);
+		}
+		if (start < text.length())
+			writer.write(text, start, text.length() - start);
+	}
+
+	/**
+	 * Append the escaped text to the given string builder.
+	 */
+	public void escape(StringBuilder builder, String text) {
+		escape(builder, text, 0, findFirst(text));
+	}
+
+	private void escape(StringBuilder builder, String text, int start, int pos) {
+		while (pos != -1) {
+			builder.append(text, start, pos).append(replacements[text.charAt(pos)]);
+			start = pos + 1;
+			pos = findNext(text, start);
+		}
+		builder.append(text, start, text.length());
+	}
+
+	/**
+	 * Return the escaped text. If nothing needs to be escaped, the text itself
+	 * is returned.
+	 */
+	public String escape(String text) {
+		int pos = findFirst(text);
+		if (pos == -1)
+			return text;
+		StringBuilder sb = new StringBuilder(text.length() + 16);
+		escape(sb, text, 0, pos);
+		return sb.toString();
+	}
+}
@@ -0,0 +1,293 @@
+package biblemulticonverter.utilities;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes many small UTF-8 text files (like one file per chapter) in parallel.
+ * The content of each file is rendered on a pool of worker threads, and the
+ * rendered files are written by a second pool, so that file system latency
+ * overlaps with rendering. The number of rendered files waiting to be written
+ * is bounded, to keep memory usage low. Messages that renderers print to
+ * {@link System#out} are buffered per file and printed in the order the files
+ * were submitted, like {@link ParallelTasks} does for its tasks.
+ * <p>
+ * The number of threads is taken from the system property
+ * {@code biblemulticonverter.threads} (defaults to the number of available
+ * processors); if it is 1, files are rendered and written on the calling
+ * thread.
+ * <p>
+ * When an output directory is given and the system property
+ * {@code biblemulticonverter.incremental} is set, a manifest of the content
+ * hashes of all written files is kept in that directory. Files whose content
+ * did not change since the last export are not touched, and files that were
+ * written by the last export but not by this one are deleted, together with
+ * directories that are empty afterwards.
+ */
+public class ParallelFileWriter implements AutoCloseable {
+
+	/**
+	 * Renders the content of a single file.
+	 */
+	public static interface Renderer {
+		public void render(BufferedWriter bw) throws IOException;
+	}
+
+	private static final String MANIFEST_NAME = ".bmc-manifest";
+
+	private final ExecutorService renderPool, writePool;
+	private final Semaphore pendingFiles;
+	private final AtomicReference<Exception> firstError = new AtomicReference<>();
+	private final Path baseDirectory;
+	private final Map<String, String> oldManifest, newManifest;
+	private final Deque<RenderOutput> pendingOutput = new ArrayDeque<>();
+	private final OutputStream outputTarget;
+	private boolean closed = false;
+
+	public ParallelFileWriter() throws IOException {
+		this(ParallelTasks.getThreadCount(), null, false);
+	}
+
+	public ParallelFileWriter(File outputDirectory) throws IOException {
+		this(ParallelTasks.getThreadCount(), outputDirectory, Boolean.getBoolean("biblemulticonverter.incremental"));
+	}
+
+	public ParallelFileWriter(int threads, File outputDirectory, boolean incremental) throws IOException {
+		if (incremental) {
+			baseDirectory = outputDirectory.getAbsoluteFile().toPath();
+			oldManifest = new HashMap<>();
+			newManifest = new ConcurrentHashMap<>();
+			File manifestFile = new File(outputDirectory, MANIFEST_NAME);
+			if (manifestFile.exists()) {
+				for (String line : Files.readAllLines(manifestFile.toPath(), StandardCharsets.UTF_8)) {
+					String[] parts = line.split(" ", 2);
+					oldManifest.put(parts[1], parts[0]);
+				}
+			}
+		} else {
+			baseDirectory = null;
+			oldManifest = newManifest = null;
+		}
+		if (threads <= 1) {
+			renderPool = writePool = null;
+			pendingFiles = null;
+			outputTarget = null;
+		} else {
+			ParallelTasks.installOutputBuffering();
+			outputTarget = ParallelTasks.currentOutput();
+			renderPool = Executors.newFixedThreadPool(threads, createThreadFactory("render"));
+			writePool = Executors.newFixedThreadPool(threads, createThreadFactory("write"));
+			pendingFiles = new Semaphore(threads * 4);
+		}
+	}
+
+	private static ThreadFactory createThreadFactory(final String name) {
+		final AtomicInteger counter = new AtomicInteger();
+		return r -> {
+			Thread t = new Thread(r, "ParallelFileWriter-" + name + "-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		};
+	}
+
+	/**
+	 * Render and write the given file. Parent directories are created if
+	 * needed. Exceptions that happen in the background are thrown from a later
+	 * call of this method or from {@link #finish()} or {@link #close()}.
+	 */
+	public void write(File file, Renderer renderer) throws IOException {
+		File parent = file.getAbsoluteFile().getParentFile();
+		if (!parent.exists())
+			parent.mkdirs();
+		if (renderPool == null) {
+			writeFile(file, render(renderer));
+			return;
+		}
+		checkError();
+		try {
+			pendingFiles.acquire();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+		RenderOutput output = new RenderOutput();
+		synchronized (pendingOutput) {
+			pendingOutput.add(output);
+		}
+		renderPool.execute(() -> {
+			String content;
+			try {
+				content = ParallelTasks.callBuffered(() -> render(renderer), output.buffer);
+			} catch (Exception ex) {
+				firstError.compareAndSet(null, ex);
+				pendingFiles.release();
+				return;
+			} finally {
+				flushOutput(output);
+			}
+			writePool.execute(() -> {
+				try {
+					writeFile(file, content);
+				} catch (Exception ex) {
+					firstError.compareAndSet(null, ex);
+				} finally {
+					pendingFiles.release();
+				}
+			});
+		});
+	}
+
+	private static String render(Renderer renderer) throws IOException {
+		StringWriter sw = new StringWriter();
+		try (BufferedWriter bw = new BufferedWriter(sw)) {
+			renderer.render(bw);
+		}
+		return sw.toString();
+	}
+
+	/**
+	 * Mark the output of a rendered file as complete and print the output of
+	 * all complete files that are not waiting for an earlier file.
+	 */
+	private void flushOutput(RenderOutput output) {
+		synchronized (pendingOutput) {
+			output.complete = true;
+			while (!pendingOutput.isEmpty() && pendingOutput.peekFirst().complete) {
+				RenderOutput first = pendingOutput.removeFirst();
+				try {
+					first.buffer.writeTo(outputTarget);
+				} catch (IOException ex) {
+					firstError.compareAndSet(null, ex);
+				}
+			}
+		}
+	}
+
+	private void writeFile(File file, String content) throws IOException {
+		byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+		if (newManifest != null) {
+			String name = baseDirectory.relativize(file.getAbsoluteFile().toPath()).toString().replace('\\', '/');
+			String hash = hash(bytes);
+			newManifest.put(name, hash);
+			if (hash.equals(oldManifest.get(name)) && file.isFile() && file.length() == bytes.length)
+				return;
+		}
+		try (OutputStream out = new FileOutputStream(file)) {
+			out.write(bytes);
+		}
+	}
+
+	private static String hash(byte[] bytes) throws IOException {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+			StringBuilder sb = new StringBuilder(digest.length * 2);
+			for (byte b : digest) {
+				sb.append(String.format("%02x", b & 0xFF));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException(ex);
+		}
+	}
+
+	private void checkError() throws IOException {
+		Exception ex = firstError.getAndSet(null);
+		if (ex instanceof IOException)
+			throw (IOException) ex;
+		else if (ex instanceof RuntimeException)
+			throw (RuntimeException) ex;
+		else if (ex != null)
+			throw new IOException(ex);
+	}
+
+	/**
+	 * Wait until all files have been written. In incremental mode, also delete
+	 * orphaned files and update the manifest; therefore, this should only be
+	 * called after all files have been submitted successfully.
+	 */
+	public void finish() throws IOException {
+		close();
+		if (newManifest != null) {
+			// delete files of the last export that were not written this time,
+			// and the directories that became empty by that
+			for (String name : oldManifest.keySet()) {
+				if (newManifest.containsKey(name))
+					continue;
+				Path path = baseDirectory.resolve(name);
+				path.toFile().delete();
+				for (path = path.getParent(); path != null && path.startsWith(baseDirectory) && !path.equals(baseDirectory); path = path.getParent()) {
+					String[] children = path.toFile().list();
+					if (children == null || children.length > 0 || !path.toFile().delete())
+						break;
+				}
+			}
+			List<String> lines = new ArrayList<>();
+			for (Map.Entry<String, String> entry : new TreeMap<>(newManifest).entrySet()) {
+				lines.add(entry.getValue() + " " + entry.getKey());
+			}
+			Files.write(baseDirectory.resolve(MANIFEST_NAME), lines, StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Wait until all files have been written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (renderPool != null) {
+			try {
+				waitForPools();
+			} finally {
+				if (!closed) {
+					closed = true;
+					ParallelTasks.uninstallOutputBuffering();
+				}
+			}
+		}
+		checkError();
+	}
+
+	private void waitForPools() throws IOException {
+		try {
+			renderPool.shutdown();
+			renderPool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			// all write tasks have been submitted now
+			writePool.shutdown();
+			writePool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	private static class RenderOutput {
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private boolean complete = false;
+	}
+}
@@ -0,0 +1,278 @@
+package biblemulticonverter.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Run independent tasks (like parsing one file each) on a thread pool and
+ * collect their results in the original order.
+ * <p>
+ * The number of threads is taken from the system property
+ * {@code biblemulticonverter.threads} (defaults to the number of available
+ * processors); if it is 1, tasks are run on the calling thread.
+ * <p>
+ * Messages that tasks print to {@link System#out} (like warnings) are
+ * buffered per task and printed when the result of the task is handed over,
+ * so that the console output is the same as if the tasks were run one after
+ * the other.
+ */
+public class ParallelTasks {
+
+	private ParallelTasks() {
+	}
+
+	public static int getThreadCount() {
+		return Math.max(1, Integer.getInteger("biblemulticonverter.threads", Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Handles task results in task order.
+	 */
+	public static interface ResultHandler<T> {
+		public void handle(T result) throws Exception;
+	}
+
+	/**
+	 * Run all tasks and return their results in the same order. If a task
+	 * fails, the remaining tasks are cancelled and the exception of the first
+	 * failed task (in task order) is thrown.
+	 */
+	public static <T> List<T> runAll(List<? extends Callable<T>> tasks) throws Exception {
+		List<T> results = new ArrayList<>(tasks.size());
+		runInOrder(tasks, results::add);
+		return results;
+	}
+
+	/**
+	 * Run all tasks and pass their results to the handler (on the calling
+	 * thread) in task order, as soon as they are available. Only a few tasks
+	 * per thread are started ahead of the result that is handled next, so
+	 * that large results (like rendered books) do not pile up in memory. If a
+	 * task or the handler fails, the remaining tasks are cancelled and the
+	 * exception is thrown.
+	 */
+	public static <T> void runInOrder(List<? extends Callable<T>> tasks, ResultHandler<? super T> handler) throws Exception {
+		int threads = Math.min(getThreadCount(), tasks.size());
+		if (threads <= 1) {
+			for (Callable<T> task : tasks) {
+				handler.handle(task.call());
+			}
+			return;
+		}
+		TaskOutputStream.install();
+		// when called from a task, results are printed into its buffer
+		OutputStream output = currentOutput();
+		AtomicInteger counter = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "ParallelTasks-" + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			Deque<Future<TaskResult<T>>> futures = new ArrayDeque<>();
+			int nextTask = 0;
+			while (nextTask < tasks.size() || !futures.isEmpty()) {
+				while (nextTask < tasks.size() && futures.size() < threads * 4) {
+					Callable<T> task = tasks.get(nextTask);
+					futures.add(pool.submit(() -> TaskResult.run(task)));
+					nextTask++;
+				}
+				TaskResult<T> result;
+				try {
+					result = futures.removeFirst().get();
+				} catch (ExecutionException ex) {
+					if (ex.getCause() instanceof Error)
+						throw (Error) ex.getCause();
+					throw ex;
+				}
+				output.write(result.output, 0, result.output.length);
+				if (result.error != null)
+					throw result.error;
+				handler.handle(result.value);
+			}
+		} finally {
+			pool.shutdownNow();
+			TaskOutputStream.uninstall();
+		}
+	}
+
+	private static class TaskResult<T> {
+		private T value;
+		private Exception error;
+		private byte[] output;
+
+		private static <T> TaskResult<T> run(Callable<T> task) {
+			TaskResult<T> result = new TaskResult<>();
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			try {
+				result.value = callBuffered(task, buffer);
+			} catch (Exception ex) {
+				result.error = ex;
+			} finally {
+				result.output = buffer.toByteArray();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Make {@link System#out} write into the buffer of the current task, for
+	 * code that runs tasks on its own threads. Every call has to be matched by
+	 * a call of {@link #uninstallOutputBuffering()}.
+	 */
+	static void installOutputBuffering() {
+		TaskOutputStream.install();
+	}
+
+	/**
+	 * Restore the original {@link System#out} after the last user of output
+	 * buffering has finished.
+	 */
+	static void uninstallOutputBuffering() {
+		TaskOutputStream.uninstall();
+	}
+
+	/**
+	 * Return the stream that output of the current thread goes to: the buffer
+	 * of the current task, or the original {@link System#out}.
+	 */
+	static OutputStream currentOutput() {
+		OutputStream target = TaskOutputStream.buffer.get();
+		return target != null ? target : TaskOutputStream.ORIGINAL;
+	}
+
+	/**
+	 * Call the task on the current thread, collecting everything it prints to
+	 * {@link System#out} in the given buffer. Requires
+	 * {@link #installOutputBuffering()}.
+	 */
+	static <T> T callBuffered(Callable<T> task, ByteArrayOutputStream buffer) throws Exception {
+		ByteArrayOutputStream previous = TaskOutputStream.buffer.get();
+		TaskOutputStream.buffer.set(buffer);
+		try {
+			return task.call();
+		} finally {
+			if (previous == null)
+				TaskOutputStream.buffer.remove();
+			else
+				TaskOutputStream.buffer.set(previous);
+		}
+	}
+
+	/**
+	 * Replacement for {@link System#out} that writes into the buffer of the
+	 * current task, if any. Output is encoded as UTF-8 and decoded again when
+	 * it is printed to the original stream, so that it keeps the encoding of
+	 * the original stream.
+	 */
+	private static class TaskOutputStream extends OutputStream {
+
+		private static final ThreadLocal<ByteArrayOutputStream> buffer = new ThreadLocal<>();
+		private static PrintStream original = null;
+		private static PrintStream replacement = null;
+		private static int installCount = 0;
+
+		/**
+		 * Prints UTF-8 encoded output to the original stream, or to
+		 * {@link System#out} if the original stream has been restored already.
+		 * Bytes of a character that is split across writes are kept until the
+		 * rest of the character is written.
+		 */
+		private static final OutputStream ORIGINAL = new OutputStream() {
+
+			private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(CodingErrorAction.REPLACE);
+			private final byte[] carry = new byte[4];
+			private int carryLength = 0;
+
+			private PrintStream target() {
+				PrintStream target = original;
+				return target != null ? target : System.out;
+			}
+
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public synchronized void write(byte[] b, int off, int len) throws IOException {
+				ByteBuffer in;
+				if (carryLength == 0) {
+					in = ByteBuffer.wrap(b, off, len);
+				} else {
+					in = ByteBuffer.allocate(carryLength + len);
+					in.put(carry, 0, carryLength).put(b, off, len).flip();
+				}
+				CharBuffer out = CharBuffer.allocate(in.remaining());
+				decoder.decode(in, out, false);
+				carryLength = in.remaining();
+				in.get(carry, 0, carryLength);
+				out.flip();
+				target().print(out.toString());
+			}
+
+			@Override
+			public void flush() throws IOException {
+				target().flush();
+			}
+		};
+
+		private static synchronized void install() {
+			if (installCount++ == 0) {
+				original = System.out;
+				try {
+					replacement = new PrintStream(new TaskOutputStream(), true, "UTF-8");
+				} catch (UnsupportedEncodingException ex) {
+					throw new IllegalStateException(ex);
+				}
+				System.setOut(replacement);
+			}
+		}
+
+		private static synchronized void uninstall() {
+			if (--installCount == 0) {
+				if (System.out == replacement)
+					System.setOut(original);
+				original = replacement = null;
+			}
+		}
+
+		private OutputStream target() {
+			OutputStream target = buffer.get();
+			return target != null ? target : ORIGINAL;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			target().write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			target().write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			target().flush();
+		}
+	}
+}
@@ -0,0 +1,381 @@
+package biblemulticonverter.utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+
+/**
+ * Drop-in replacement for {@link java.util.zip.ZipOutputStream} that
+ * compresses on several threads. The data of each deflated entry is split into
+ * chunks which are compressed independently (using the end of the previous
+ * chunk as dictionary, so the compression ratio hardly changes) and
+ * concatenated into a single deflate stream, like pigz does. Chunks of
+ * consecutive entries are compressed at the same time, too.
+ * <p>
+ * Entries are written in the order they were added. Stored entries (like the
+ * {@code mimetype} entry of ODT or EPUB files) are written with their sizes in
+ * the local header and without extra fields, so they can be placed first as
+ * required. Deflated entries are followed by a data descriptor, like the ones
+ * written by {@link java.util.zip.ZipOutputStream}. ZIP64 is not supported.
+ * <p>
+ * The number of threads is taken from the system property
+ * {@code biblemulticonverter.threads} (defaults to the number of available
+ * processors); if it is 1, chunks are compressed on the calling thread.
+ */
+public class ParallelZipOutputStream extends OutputStream {
+
+	private static final int CHUNK_SIZE = 128 * 1024;
+	private static final int DICTIONARY_SIZE = 32 * 1024;
+
+	private final OutputStream out;
+	private final ExecutorService pool;
+	private final int maxPendingChunks;
+	private final Deque<PendingWrite> pendingWrites = new ArrayDeque<>();
+	private final List<EntryInfo> writtenEntries = new ArrayList<>();
+	private final Set<String> entryNames = new HashSet<>();
+	private int pendingChunks = 0;
+	private long written = 0;
+	private boolean closed = false;
+
+	private EntryInfo current = null;
+	private byte[] chunk;
+	private int chunkLength;
+	private byte[] dictionary;
+	private ByteArrayOutputStream storedData;
+	private final CRC32 crc = new CRC32();
+
+	public ParallelZipOutputStream(OutputStream out) {
+		this(out, ParallelTasks.getThreadCount());
+	}
+
+	public ParallelZipOutputStream(OutputStream out, int threads) {
+		this.out = out;
+		if (threads <= 1) {
+			pool = null;
+			maxPendingChunks = 1;
+		} else {
+			AtomicInteger counter = new AtomicInteger();
+			pool = Executors.newFixedThreadPool(threads, r -> {
+				Thread t = new Thread(r, "ParallelZipOutputStream-" + counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			maxPendingChunks = threads * 4;
+		}
+	}
+
+	/**
+	 * Begin writing a new entry, closing the current one if needed. Stored
+	 * entries are detected by their method; their size and CRC need not be set
+	 * in advance.
+	 */
+	public void putNextEntry(ZipEntry entry) throws IOException {
+		ensureOpen();
+		if (current != null)
+			closeEntry();
+		if (!entryNames.add(entry.getName()))
+			throw new ZipException("duplicate entry: " + entry.getName());
+		current = new EntryInfo(entry.getName().getBytes(StandardCharsets.UTF_8), entry.getMethod() == ZipEntry.STORED, toDosTime(entry.getTime() == -1 ? System.currentTimeMillis() : entry.getTime()));
+		crc.reset();
+		if (current.stored) {
+			storedData = new ByteArrayOutputStream();
+		} else {
+			pendingWrites.add(new PendingWrite(current, PendingWrite.Kind.HEADER, null));
+			chunk = new byte[CHUNK_SIZE];
+			chunkLength = 0;
+			dictionary = null;
+		}
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		write(new byte[] { (byte) b }, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		if (current == null)
+			throw new ZipException("no current ZIP entry");
+		crc.update(b, off, len);
+		current.size += len;
+		if (current.stored) {
+			storedData.write(b, off, len);
+			return;
+		}
+		while (len > 0) {
+			int count = Math.min(len, CHUNK_SIZE - chunkLength);
+			System.arraycopy(b, off, chunk, chunkLength, count);
+			chunkLength += count;
+			off += count;
+			len -= count;
+			if (chunkLength == CHUNK_SIZE)
+				submitChunk(false);
+		}
+	}
+
+	private void submitChunk(boolean last) throws IOException {
+		final byte[] data = chunk, dict = dictionary;
+		final int length = chunkLength;
+		dictionary = Arrays.copyOfRange(data, Math.max(0, length - DICTIONARY_SIZE), length);
+		chunk = last ? null : new byte[CHUNK_SIZE];
+		chunkLength = 0;
+		Future<byte[]> compressed;
+		if (pool == null) {
+			compressed = CompletableFuture.completedFuture(deflate(data, length, dict, last));
+		} else {
+			compressed = pool.submit(() -> deflate(data, length, dict, last));
+		}
+		pendingWrites.add(new PendingWrite(current, PendingWrite.Kind.DATA, compressed));
+		pendingChunks++;
+		drain(false);
+	}
+
+	private static byte[] deflate(byte[] data, int length, byte[] dictionary, boolean last) {
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+		try {
+			if (dictionary != null)
+				deflater.setDictionary(dictionary);
+			deflater.setInput(data, 0, length);
+			ByteArrayOutputStream result = new ByteArrayOutputStream(length / 2 + 64);
+			byte[] buffer = new byte[16384];
+			if (last) {
+				deflater.finish();
+				while (!deflater.finished()) {
+					int count = deflater.deflate(buffer);
+					result.write(buffer, 0, count);
+				}
+			} else {
+				// sync flush ends the output on a byte boundary, so that the
+				// next chunk can be appended
+				int count;
+				do {
+					count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+					result.write(buffer, 0, count);
+				} while (count == buffer.length || !deflater.needsInput());
+			}
+			return result.toByteArray();
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Finish writing the current entry. Compression of the entry may still be
+	 * in progress when this method returns.
+	 */
+	public void closeEntry() throws IOException {
+		ensureOpen();
+		if (current == null)
+			return;
+		current.crc = crc.getValue();
+		if (current.stored) {
+			current.compressedSize = current.size;
+			pendingWrites.add(new PendingWrite(current, PendingWrite.Kind.HEADER, null));
+			pendingWrites.add(new PendingWrite(current, PendingWrite.Kind.DATA, CompletableFuture.completedFuture(storedData.toByteArray())));
+			storedData = null;
+		} else {
+			submitChunk(true);
+			dictionary = null;
+		}
+		pendingWrites.add(new PendingWrite(current, PendingWrite.Kind.END, null));
+		current = null;
+		drain(false);
+	}
+
+	/**
+	 * Write pending data in order, as long as it is available. If
+	 * {@code waitForAll} is set, or too many chunks are pending, wait for
+	 * compression to finish.
+	 */
+	private void drain(boolean waitForAll) throws IOException {
+		while (!pendingWrites.isEmpty()) {
+			PendingWrite pw = pendingWrites.peek();
+			if (pw.data != null && !pw.data.isDone() && !waitForAll && pendingChunks <= maxPendingChunks)
+				break;
+			pendingWrites.remove();
+			EntryInfo entry = pw.entry;
+			switch (pw.kind) {
+			case HEADER:
+				entry.offset = written;
+				writeLocalHeader(entry);
+				break;
+			case DATA:
+				byte[] data;
+				try {
+					data = pw.data.get();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch (ExecutionException ex) {
+					throw new IOException(ex.getCause());
+				}
+				if (!entry.stored) {
+					pendingChunks--;
+					entry.compressedSize += data.length;
+				}
+				writeBytes(data);
+				break;
+			case END:
+				if (!entry.stored) {
+					ByteBuffer bb = newBuffer(16);
+					bb.putInt(0x08074b50).putInt((int) entry.crc);
+					putSize(bb, entry.compressedSize);
+					putSize(bb, entry.size);
+					writeBuffer(bb);
+				}
+				writtenEntries.add(entry);
+				break;
+			}
+		}
+	}
+
+	private void writeLocalHeader(EntryInfo entry) throws IOException {
+		ByteBuffer bb = newBuffer(30 + entry.name.length);
+		bb.putInt(0x04034b50).putShort(entry.getVersion()).putShort(entry.getFlags()).putShort(entry.getMethod()).putInt(entry.dosTime);
+		if (entry.stored) {
+			bb.putInt((int) entry.crc);
+			putSize(bb, entry.compressedSize);
+			putSize(bb, entry.size);
+		} else {
+			// sizes and CRC follow in the data descriptor
+			bb.putInt(0).putInt(0).putInt(0);
+		}
+		bb.putShort((short) entry.name.length).putShort((short) 0).put(entry.name);
+		writeBuffer(bb);
+	}
+
+	private static ByteBuffer putSize(ByteBuffer bb, long size) throws ZipException {
+		if (size >= 0xFFFFFFFFL)
+			throw new ZipException("ZIP64 is not supported");
+		return bb.putInt((int) size);
+	}
+
+	private static ByteBuffer newBuffer(int size) {
+		return ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private void writeBuffer(ByteBuffer bb) throws IOException {
+		writeBytes(Arrays.copyOf(bb.array(), bb.position()));
+	}
+
+	private void writeBytes(byte[] data) throws IOException {
+		out.write(data);
+		written += data.length;
+	}
+
+	private void ensureOpen() throws IOException {
+		if (closed)
+			throw new IOException("Stream closed");
+	}
+
+	/**
+	 * Finish the current entry, wait for all compression to finish, and write
+	 * the central directory.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed)
+			return;
+		try {
+			if (current != null)
+				closeEntry();
+			drain(true);
+			if (writtenEntries.size() >= 0xFFFF)
+				throw new ZipException("ZIP64 is not supported");
+			long centralDirectoryOffset = written;
+			for (EntryInfo entry : writtenEntries) {
+				ByteBuffer bb = newBuffer(46 + entry.name.length);
+				bb.putInt(0x02014b50).putShort(entry.getVersion()).putShort(entry.getVersion()).putShort(entry.getFlags()).putShort(entry.getMethod()).putInt(entry.dosTime).putInt((int) entry.crc);
+				putSize(bb, entry.compressedSize);
+				putSize(bb, entry.size);
+				bb.putShort((short) entry.name.length).putShort((short) 0).putShort((short) 0).putShort((short) 0).putShort((short) 0).putInt(0);
+				putSize(bb, entry.offset).put(entry.name);
+				writeBuffer(bb);
+			}
+			ByteBuffer bb = newBuffer(22);
+			bb.putInt(0x06054b50).putShort((short) 0).putShort((short) 0).putShort((short) writtenEntries.size()).putShort((short) writtenEntries.size());
+			putSize(bb, written - centralDirectoryOffset);
+			putSize(bb, centralDirectoryOffset).putShort((short) 0);
+			writeBuffer(bb);
+		} finally {
+			closed = true;
+			if (pool != null)
+				pool.shutdownNow();
+			out.close();
+		}
+	}
+
+	private static int toDosTime(long time) {
+		LocalDateTime ldt = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		if (ldt.getYear() < 1980)
+			return (1 << 21) | (1 << 16);
+		return (ldt.getYear() - 1980) << 25 | ldt.getMonthValue() << 21 | ldt.getDayOfMonth() << 16 | ldt.getHour() << 11 | ldt.getMinute() << 5 | ldt.getSecond() >> 1;
+	}
+
+	private static class EntryInfo {
+		private final byte[] name;
+		private final boolean stored;
+		private final int dosTime;
+		private long crc, size, compressedSize, offset;
+
+		private EntryInfo(byte[] name, boolean stored, int dosTime) {
+			this.name = name;
+			this.stored = stored;
+			this.dosTime = dosTime;
+		}
+
+		private short getVersion() {
+			return (short) (stored ? 10 : 20);
+		}
+
+		private short getFlags() {
+			// names are UTF-8; deflated entries use a data descriptor
+			return (short) (stored ? 0x800 : 0x808);
+		}
+
+		private short getMethod() {
+			return (short) (stored ? ZipEntry.STORED : ZipEntry.DEFLATED);
+		}
+	}
+
+	private static class PendingWrite {
+		private static enum Kind {
+			HEADER, DATA, END
+		}
+
+		private final EntryInfo entry;
+		private final Kind kind;
+		private final Future<byte[]> data;
+
+		private PendingWrite(EntryInfo entry, Kind kind, Future<byte[]> data) {
+			this.entry = entry;
+			this.kind = kind;
+			this.data = data;
+		}
+	}
+}
@@ -14,8 +14,6 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -25,7 +23,6 @@ import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -41,6 +38,7 @@ import biblemulticonverter.schema.versification.ccel.RefSys.Alias;
 import biblemulticonverter.schema.versification.ccel.RefSys.OsisIDs.OsisID;
 import biblemulticonverter.schema.versification.ccel.RefSys.RefMap;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 public class CCEL implements VersificationFormat {
 
@@ -52,15 +50,23 @@ public class CCEL implements VersificationFormat {
 	List<String> KINGS_IDS = Arrays.asList("1Sam", "2Sam", "1Kgs", "2Kgs");
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/ccelVersification.xsd"));
+		return ValidateXML.getSchema("/ccelVersification.xsd");
 	}
 
 	private Boolean kingdoms;
 
 	@Override
 	public void doImport(VersificationSet vset, String... importArgs) throws Exception {
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class);
-		Unmarshaller u = ctx.createUnmarshaller();
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		try {
+			ValidateXML.validateWhileParsing(getSchema(), u);
+			doImport(vset, u, importArgs);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
+	}
+
+	private void doImport(VersificationSet vset, Unmarshaller u, String... importArgs) throws Exception {
 		for (String filename : importArgs) {
 			File inputFile = new File(filename);
 			ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
@@ -422,12 +428,15 @@ public class CCEL implements VersificationFormat {
 			refsys.getRefMap().add(refmap);
 		}
 
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class);
-		Marshaller m = ctx.createMarshaller();
-		if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
-			m.setSchema(getSchema());
 		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-		m.marshal(refsys, doc);
+		Marshaller m = JAXBContextRegistry.acquireMarshaller(ObjectFactory.class);
+		try {
+			if (!Boolean.getBoolean("biblemulticonverter.skipxmlvalidation"))
+				m.setSchema(getSchema());
+			m.marshal(refsys, doc);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, m);
+		}
 		Transformer transformer = TransformerFactory.newInstance().newTransformer();
 		if (System.getProperty("biblemulticonverter.indentxml") == null || Boolean.getBoolean("biblemulticonverter.indentxml")) {
 			transformer.setOutputProperty(OutputKeys.INDENT, "yes");
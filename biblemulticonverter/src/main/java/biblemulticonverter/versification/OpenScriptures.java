@@ -9,11 +9,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
 
 import org.xml.sax.SAXException;
 
@@ -27,6 +24,7 @@ import biblemulticonverter.schema.versification.openscriptures.BibleVersificatio
 import biblemulticonverter.schema.versification.openscriptures.NumVerses;
 import biblemulticonverter.schema.versification.openscriptures.ObjectFactory;
 import biblemulticonverter.tools.ValidateXML;
+import biblemulticonverter.utilities.JAXBContextRegistry;
 
 public class OpenScriptures implements VersificationFormat {
 
@@ -158,16 +156,22 @@ public class OpenScriptures implements VersificationFormat {
 	}
 
 	protected Schema getSchema() throws SAXException {
-		return SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI).newSchema(ObjectFactory.class.getResource("/OpenScripturesBibleVersificationSystem.xsd"));
+		return ValidateXML.getSchema("/OpenScripturesBibleVersificationSystem.xsd");
 	}
 
 	@Override
 	public void doImport(VersificationSet versifications, String... importArgs) throws Exception {
 		File inputFile = new File(importArgs[0]);
+		JAXBContextRegistry.prewarm(ObjectFactory.class);
 		ValidateXML.validateFileBeforeParsing(getSchema(), inputFile);
-		JAXBContext ctx = JAXBContext.newInstance(ObjectFactory.class.getPackage().getName());
-		Unmarshaller u = ctx.createUnmarshaller();
-		BibleVersificationSystem doc = (BibleVersificationSystem) u.unmarshal(inputFile);
+		Unmarshaller u = JAXBContextRegistry.acquireUnmarshaller(ObjectFactory.class);
+		BibleVersificationSystem doc;
+		try {
+			ValidateXML.validateWhileParsing(getSchema(), u);
+			doc = (BibleVersificationSystem) u.unmarshal(inputFile);
+		} finally {
+			JAXBContextRegistry.release(ObjectFactory.class, u);
+		}
 		List<Reference> allRefs = new ArrayList<>();
 		for (BibleBookVersification bbv : doc.getBibleBookVersification()) {
 			BookID bid = REFERENCE_ABBREVIATIONS.get(bbv.getReferenceAbbreviation());
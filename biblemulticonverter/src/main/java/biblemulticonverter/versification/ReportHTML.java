@@ -23,6 +23,7 @@ import biblemulticonverter.data.Versification;
 import biblemulticonverter.data.Versification.Reference;
 import biblemulticonverter.data.VersificationMapping;
 import biblemulticonverter.data.VersificationSet;
+import biblemulticonverter.utilities.MarkupEscaper;
 
 public class ReportHTML implements VersificationFormat {
 
@@ -346,7 +347,7 @@ public class ReportHTML implements VersificationFormat {
 	}
 
 	private static String h(String text) {
-		return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+		return MarkupEscaper.HTML_ATTRIBUTE.escape(text);
 	}
 
 	private static class BookVersification {
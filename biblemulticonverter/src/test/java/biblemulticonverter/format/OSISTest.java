@@ -0,0 +1,94 @@
+package biblemulticonverter.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import biblemulticonverter.data.Bible;
+import biblemulticonverter.data.BookID;
+
+/**
+ * Export {@code CoverageTest.bmc} to OSIS and validate that streaming import
+ * and DOM import yield the same bible, both for container and for milestoned
+ * elements.
+ */
+public class OSISTest {
+
+	@Test
+	public void testStreamingImportMatchesDOMImport() throws Exception {
+		assertStreamingImportMatchesDOMImport();
+	}
+
+	@Test
+	public void testStreamingImportMatchesDOMImportWithMilestones() throws Exception {
+		assertStreamingImportMatchesDOMImport("verse,chapter,div,q");
+	}
+
+	@Test
+	public void testFailedExportKeepsExistingFile() throws Exception {
+		Bible bible;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(OSISTest.class.getResourceAsStream("/CoverageTest.bmc"), StandardCharsets.UTF_8))) {
+			bible = new Compact().doImport(br);
+		}
+		File tempFile = File.createTempFile("~osis", ".xml");
+		File partialFile = new File(tempFile.getPath() + ".tmp");
+		try {
+			Files.write(tempFile.toPath(), Arrays.asList("old"), StandardCharsets.UTF_8);
+			try {
+				// variations are not supported by the OSIS export
+				new OSIS().doExport(bible, tempFile.getPath());
+				Assert.fail("Export of variations should fail");
+			} catch (RuntimeException ex) {
+				Assert.assertEquals("Variations not supported", ex.getMessage());
+			}
+			Assert.assertEquals(Arrays.asList("old"), Files.readAllLines(tempFile.toPath(), StandardCharsets.UTF_8));
+			Assert.assertFalse(partialFile.exists());
+		} finally {
+			Assert.assertTrue(tempFile.delete());
+		}
+	}
+
+	private static void assertStreamingImportMatchesDOMImport(String... exportArgs) throws Exception {
+		Compact compact = new Compact();
+		Bible bible;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(OSISTest.class.getResourceAsStream("/CoverageTest.bmc"), StandardCharsets.UTF_8))) {
+			bible = compact.doImport(br);
+		}
+		// OSIS export does not support variations or the metadata book
+		new StrippedDiffable().doConversion(bible, System.out, "", "StripVariations");
+		bible.getBooks().removeIf(book -> book.getId() == BookID.METADATA);
+		File tempFile = File.createTempFile("~osis", ".xml");
+		try {
+			OSIS osis = new OSIS();
+			String[] args = new String[exportArgs.length + 1];
+			args[0] = tempFile.getCanonicalPath();
+			System.arraycopy(exportArgs, 0, args, 1, exportArgs.length);
+			osis.doExport(bible, args);
+			Bible streamed = new OSIS().doImport(tempFile);
+			Bible dom;
+			System.setProperty("biblemulticonverter.osis.domimport", "true");
+			try {
+				dom = new OSIS().doImport(tempFile);
+			} finally {
+				System.clearProperty("biblemulticonverter.osis.domimport");
+			}
+			Assert.assertEquals(bible.getBooks().size(), streamed.getBooks().size());
+			Assert.assertEquals(exportCompact(compact, dom), exportCompact(compact, streamed));
+		} finally {
+			Assert.assertTrue(tempFile.delete());
+		}
+	}
+
+	private static String exportCompact(Compact compact, Bible bible) throws Exception {
+		StringWriter sw = new StringWriter();
+		compact.doExport(bible, sw);
+		return sw.toString();
+	}
+}
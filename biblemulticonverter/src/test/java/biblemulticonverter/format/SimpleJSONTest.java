@@ -0,0 +1,51 @@
+package biblemulticonverter.format;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import biblemulticonverter.data.Bible;
+import biblemulticonverter.data.Book;
+import biblemulticonverter.data.BookID;
+import biblemulticonverter.data.Chapter;
+import biblemulticonverter.data.MetadataBook;
+import biblemulticonverter.data.MetadataBook.MetadataBookKey;
+import biblemulticonverter.data.Verse;
+
+/**
+ * Check that SimpleJSON export escapes strings so that the result is valid
+ * JSON, including line breaks in metadata values.
+ */
+public class SimpleJSONTest {
+
+	@Test
+	public void testEscaping() throws Exception {
+		Bible bible = new Bible("Say \"hi\" \\o/");
+		MetadataBook metadata = new MetadataBook();
+		metadata.setValue(MetadataBookKey.description, "First line\nSecond line");
+		metadata.finished();
+		bible.getBooks().add(metadata.getBook());
+		Book book = new Book("Gen", BookID.BOOK_Gen, "Genesis", "Genesis");
+		bible.getBooks().add(book);
+		Chapter chapter = new Chapter();
+		book.getChapters().add(chapter);
+		Verse verse = new Verse("1");
+		chapter.getVerses().add(verse);
+		verse.getAppendVisitor().visitText("In \"the\" \\beginning");
+		verse.finished();
+		File tempFile = File.createTempFile("~json", ".json");
+		try {
+			new SimpleJSON().doExport(bible, tempFile.getPath());
+			String json = new String(Files.readAllBytes(tempFile.toPath()), StandardCharsets.UTF_8);
+			Assert.assertTrue(json, json.contains("{\"osisRefWork\": {\"_value\": \"Say \\\"hi\\\" \\\\o/\"}"));
+			// line breaks in metadata are escaped, too
+			Assert.assertTrue(json, json.contains("\"description\": [{\"_text\": \"First line\\nSecond line\"}]"));
+			Assert.assertTrue(json, json.contains("\"_text\": \"In \\\"the\\\" \\\\beginning\"}"));
+		} finally {
+			Assert.assertTrue(tempFile.delete());
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package biblemulticonverter.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.xml.bind.JAXBContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import biblemulticonverter.data.Bible;
+import biblemulticonverter.data.BookID;
+import biblemulticonverter.data.MetadataBook.MetadataBookKey;
+import biblemulticonverter.schema.zef2005.ObjectFactory;
+import biblemulticonverter.schema.zef2005.XMLBIBLE;
+
+/**
+ * Export {@code CoverageTest.bmc} to Zefania XML and validate that streaming
+ * import and JAXB import yield the same bible.
+ */
+public class ZefaniaXMLTest {
+
+	@Test
+	public void testStreamingImportMatchesJAXBImport() throws Exception {
+		Compact compact = new Compact();
+		Bible bible;
+		try (BufferedReader br = new BufferedReader(new InputStreamReader(ZefaniaXMLTest.class.getResourceAsStream("/CoverageTest.bmc"), StandardCharsets.UTF_8))) {
+			bible = compact.doImport(br);
+		}
+		File tempFile = File.createTempFile("~zef", ".xml");
+		try {
+			ZefaniaXML zefania = new ZefaniaXML();
+			zefania.doExport(bible, tempFile.getCanonicalPath());
+			XMLBIBLE doc = (XMLBIBLE) JAXBContext.newInstance(ObjectFactory.class.getPackage().getName()).createUnmarshaller().unmarshal(tempFile);
+			Bible unmarshalled = zefania.parseBible(doc);
+			Bible streamed = zefania.parseBibleStreaming(tempFile);
+			Assert.assertEquals(exportCompact(compact, unmarshalled), exportCompact(compact, streamed));
+		} finally {
+			Assert.assertTrue(tempFile.delete());
+		}
+	}
+
+	@Test
+	public void testStreamingImportSkipsInvalidRevision() throws Exception {
+		File tempFile = File.createTempFile("~zef", ".xml");
+		try {
+			Files.write(tempFile.toPath(), ("<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+					"<XMLBIBLE biblename=\"Test\" revision=\"1.2\" status=\"v\">" +
+					"<BIBLEBOOK bnumber=\"1\" bname=\"Genesis\" bsname=\"Gen\"><CHAPTER cnumber=\"1\">" +
+					"<VERS vnumber=\"1\">In the beginning</VERS></CHAPTER></BIBLEBOOK></XMLBIBLE>").getBytes(StandardCharsets.UTF_8));
+			Bible bible = new ZefaniaXML().parseBibleStreaming(tempFile);
+			Assert.assertEquals("Test", bible.getName());
+			Assert.assertEquals(BookID.BOOK_Gen, bible.getBooks().get(bible.getBooks().size() - 1).getId());
+			Assert.assertNull(bible.getMetadataBook().getValue(MetadataBookKey.revision));
+			Assert.assertEquals("v", bible.getMetadataBook().getValue(MetadataBookKey.status));
+		} finally {
+			Assert.assertTrue(tempFile.delete());
+		}
+	}
+
+	private static String exportCompact(Compact compact, Bible bible) throws Exception {
+		StringWriter sw = new StringWriter();
+		compact.doExport(bible, sw);
+		return sw.toString();
+	}
+}
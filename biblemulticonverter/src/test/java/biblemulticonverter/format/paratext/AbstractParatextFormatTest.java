@@ -1,6 +1,10 @@
 package biblemulticonverter.format.paratext;
 
 import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +15,7 @@ import org.junit.Test;
 import biblemulticonverter.data.Book;
 import biblemulticonverter.data.BookID;
 import biblemulticonverter.data.Chapter;
+import biblemulticonverter.format.Diffable;
 import biblemulticonverter.format.paratext.model.ChapterIdentifier;
 import biblemulticonverter.format.paratext.model.VerseIdentifier;
 
@@ -100,6 +105,50 @@ public class AbstractParatextFormatTest {
 		assertEqualsReference(ParatextBook.ParatextID.ID_1KI, 5, null, 11, null, resultReferences.get(5));
 	}
 
+	@Test
+	public void test_on_import_sidebars_are_numbered_across_books() throws Exception {
+		File tempDir = Files.createTempDirectory("~bmctest").toFile();
+		try {
+			// GEN has two sidebars, EXO none and LEV one
+			int[] sidebarCounts = { 2, 0, 1 };
+			String[] ids = { "GEN", "EXO", "LEV" };
+			for (int i = 0; i < ids.length; i++) {
+				List<String> lines = new ArrayList<>(Arrays.asList("\\id " + ids[i], "\\c 1", "\\p", "\\v 1 Verse of " + ids[i] + "."));
+				for (int j = 1; j <= sidebarCounts[i]; j++) {
+					lines.addAll(Arrays.asList("\\esb", "\\p Sidebar " + j + " of " + ids[i] + ".", "\\esbe"));
+				}
+				Files.write(new File(tempDir, (i + 1) + "-" + ids[i] + ".usfm").toPath(), lines, StandardCharsets.UTF_8);
+			}
+			List<String> expected = Arrays.asList(
+					"BibleMultiConverter-1.0 Title: Imported Bible",
+					"Gen = Gen\tGenesis\tGenesis",
+					"Gen 1:1 Verse of GEN.",
+					"Exod = Exod\tExodus\tExodus",
+					"Exod 1:1 Verse of EXO.",
+					"Lev = Lev\tLeviticus\tLeviticus",
+					"Lev 1:1 Verse of LEV.",
+					"Sb1 = x-Dict\tSidebar 1\tSidebar 1",
+					"Sb1 1 Sidebar 1 of GEN.",
+					"Sb2 = x-Dict\tSidebar 2\tSidebar 2",
+					"Sb2 1 Sidebar 2 of GEN.",
+					"Sb3 = x-Dict\tSidebar 3\tSidebar 3",
+					"Sb3 1 Sidebar 1 of LEV.");
+			File output = new File(tempDir, "output.bmc");
+			for (String threads : new String[] { "1", "4" }) {
+				System.setProperty("biblemulticonverter.threads", threads);
+				new Diffable().doExport(new USFM().doImport(tempDir), output.getPath());
+				assertEquals(expected, Files.readAllLines(output.toPath(), StandardCharsets.UTF_8));
+				output.delete();
+			}
+		} finally {
+			System.clearProperty("biblemulticonverter.threads");
+			for (File file : tempDir.listFiles()) {
+				file.delete();
+			}
+			tempDir.delete();
+		}
+	}
+
 	private void assertEqualsReference(ParatextBook.ParatextID book, int firstChapter, String firstVerse, int lastChapter, String lastVerse, ParatextCharacterContent.Reference actual) {
 		assertEquals(book, actual.getBook());
 		assertEquals(firstChapter, actual.getFirstChapter());
@@ -0,0 +1,125 @@
+package biblemulticonverter.format.paratext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Import USFM books from a directory and from a compressed TAR archive whose
+ * entries are not in book order, both streamed and not streamed, and check
+ * that the results are the same.
+ */
+public class ParatextArchiveImportTest {
+
+	private static final String[] BOOK_IDS = { "MAT", "NUM", "GEN", "LEV", "EXO", "ROM" };
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws IOException {
+		tempDir = Files.createTempDirectory("~bmctest").toFile();
+		System.setProperty("biblemulticonverter.threads", "3");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("biblemulticonverter.threads");
+		deleteRecursively(tempDir);
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+
+	private static void writeTarEntry(OutputStream out, String name, byte[] data) throws IOException {
+		byte[] header = new byte[512];
+		System.arraycopy(name.getBytes(StandardCharsets.UTF_8), 0, header, 0, name.length());
+		byte[] size = String.format("%011o", data.length).getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(size, 0, header, 124, size.length);
+		header[156] = '0';
+		System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, header, 257, 8);
+		out.write(header);
+		out.write(data);
+		out.write(new byte[(512 - data.length % 512) % 512]);
+	}
+
+	private Map<String, byte[]> createFiles() throws IOException {
+		String template = new String(Files.readAllBytes(USX3Test.getResource("/usfm2/GEN.usfm").toPath()), StandardCharsets.UTF_8);
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		for (int i = 0; i < BOOK_IDS.length; i++) {
+			String content = template.replace("\\id GEN", "\\id " + BOOK_IDS[i]).replace("\\h Genesis", "\\h Book " + i);
+			files.put(String.format("%02d-%s.usfm", i, BOOK_IDS[i]), content.getBytes(StandardCharsets.UTF_8));
+		}
+		return files;
+	}
+
+	private static List<String> exportBooks(List<ParatextBook> books) throws Exception {
+		List<String> result = new ArrayList<>();
+		File tempFile = File.createTempFile("~bmctest", ".usfm");
+		try {
+			for (ParatextBook book : books) {
+				new USFM().doExportBook(book, tempFile);
+				result.add(new String(Files.readAllBytes(tempFile.toPath()), StandardCharsets.UTF_8));
+			}
+		} finally {
+			tempFile.delete();
+		}
+		return result;
+	}
+
+	@Test
+	public void testImportFromArchive() throws Exception {
+		Map<String, byte[]> files = createFiles();
+		File directory = new File(tempDir, "usfm");
+		directory.mkdir();
+		ByteArrayOutputStream tar = new ByteArrayOutputStream();
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			Files.write(new File(directory, file.getKey()).toPath(), file.getValue());
+			writeTarEntry(tar, "project-master/" + file.getKey(), file.getValue());
+		}
+		tar.write(new byte[1024]);
+		File archive = new File(tempDir, "usfm.tar.gz");
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive.toPath()))) {
+			tar.writeTo(out);
+		}
+
+		List<ParatextBook> expected = new USFM().doImportBooks(directory);
+		assertEquals(BOOK_IDS.length, expected.size());
+		List<String> expectedExport = exportBooks(expected);
+
+		assertEquals(expectedExport, exportBooks(new USFM().doImportBooks(archive)));
+
+		List<ParatextBook> streamed = Collections.synchronizedList(new ArrayList<>());
+		new USFM().doImportBooksStreaming(archive, streamed::add);
+		// the handler may be called in parallel, so restore the book order
+		List<String> streamedExport = new ArrayList<>();
+		for (ParatextBook book : expected) {
+			for (ParatextBook candidate : streamed) {
+				if (candidate.getId() == book.getId())
+					streamedExport.addAll(exportBooks(Collections.singletonList(candidate)));
+			}
+		}
+		assertEquals(expectedExport, streamedExport);
+	}
+}
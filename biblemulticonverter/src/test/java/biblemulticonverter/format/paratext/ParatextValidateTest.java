@@ -0,0 +1,118 @@
+package biblemulticonverter.format.paratext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParatextValidateTest {
+
+	private File tempDir;
+
+	@Before
+	public void setUp() throws IOException {
+		tempDir = Files.createTempDirectory("~bmctest").toFile();
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("biblemulticonverter.threads");
+		for (File file : tempDir.listFiles()) {
+			file.delete();
+		}
+		tempDir.delete();
+	}
+
+	private static void writeBook(File file, String id, String chapter2) throws IOException {
+		Files.write(file.toPath(), Arrays.asList(
+				"\\id " + id,
+				"\\c 1",
+				"\\p",
+				"\\v 1 \\qt-e\\* In the beginning",
+				"\\v 2 \\qt-e\\* there was light.",
+				"\\c " + chapter2,
+				"\\p",
+				"\\v 1 The end."), StandardCharsets.UTF_8);
+	}
+
+	private List<String> validateStreaming(String... exportArgs) throws Exception {
+		File report = new File(tempDir, "report.tsv");
+		String[] args = Arrays.copyOf(exportArgs, exportArgs.length + 1);
+		args[exportArgs.length] = report.getPath();
+		new USFM().doImportBooksStreaming(tempDir, new ParatextValidate().getStreamingExporter(args));
+		List<String> result = Files.readAllLines(report.toPath(), StandardCharsets.UTF_8);
+		report.delete();
+		return result;
+	}
+
+	@Test
+	public void testStreamingStopsImport() throws Exception {
+		writeBook(new File(tempDir, "1-GEN.usfm"), "GEN", "2");
+		writeBook(new File(tempDir, "2-EXO.usfm"), "EXO", "2");
+		List<String> expected = Arrays.asList(
+				"book\tchapter\tverse\trule\tmessage",
+				"GEN\t1\t1\tMILESTONE_NOT_OPEN\tMilestone qt closed but not open",
+				"GEN\t1\t2\tMILESTONE_NOT_OPEN\tMilestone qt closed but not open",
+				"EXO\t1\t1\tMILESTONE_NOT_OPEN\tMilestone qt closed but not open",
+				"EXO\t1\t2\tMILESTONE_NOT_OPEN\tMilestone qt closed but not open");
+		for (String threads : new String[] { "1", "4" }) {
+			System.setProperty("biblemulticonverter.threads", threads);
+			assertEquals(expected, validateStreaming("-tsv"));
+		}
+
+		// books after the one that reached the limit are skipped, so it does not matter that they cannot be parsed
+		String[] brokenIDs = { "NUM", "DEU", "JOS", "JDG", "RUT", "1SA", "2SA", "1KI", "2KI" };
+		for (int i = 0; i < brokenIDs.length; i++) {
+			writeBook(new File(tempDir, (i + 3) + "-" + brokenIDs[i] + ".usfm"), brokenIDs[i], "invalid");
+		}
+		for (String threads : new String[] { "1", "4" }) {
+			System.setProperty("biblemulticonverter.threads", threads);
+			assertEquals(expected.subList(0, 4), validateStreaming("-tsv", "-maxerrors=3"));
+			assertEquals(expected.subList(0, 3), validateStreaming("-maxerrors=2", "-tsv"));
+		}
+	}
+
+	@Test
+	public void testStreamingStopsAtSameFindingWithThreads() throws Exception {
+		// books of different size with different numbers of findings, so that they finish in varying order
+		String[] ids = { "GEN", "EXO", "LEV", "NUM", "DEU", "JOS", "JDG", "RUT", "1SA", "2SA", "1KI", "2KI", "1CH", "2CH", "EZR", "NEH" };
+		int totalFindings = 0;
+		for (int i = 0; i < ids.length; i++) {
+			int findings = (i * 7) % 5, verses = 1 + (i * 37) % 200;
+			List<String> lines = new ArrayList<>(Arrays.asList("\\id " + ids[i], "\\c 1", "\\p"));
+			for (int v = 1; v <= verses; v++) {
+				lines.add("\\v " + v + (v <= findings ? " \\qt-e\\*" : "") + " Verse " + v + " of " + ids[i] + ".");
+			}
+			Files.write(new File(tempDir, (i + 1) + "-" + ids[i] + ".usfm").toPath(), lines, StandardCharsets.UTF_8);
+			totalFindings += findings;
+		}
+		for (int maxErrors = 1; maxErrors <= totalFindings + 1; maxErrors++) {
+			System.setProperty("biblemulticonverter.threads", "1");
+			List<String> expected = validateStreaming("-tsv", "-maxerrors=" + maxErrors);
+			assertEquals(Math.min(maxErrors, totalFindings) + 1, expected.size());
+			System.setProperty("biblemulticonverter.threads", "4");
+			for (int i = 0; i < 5; i++) {
+				assertEquals(expected, validateStreaming("-tsv", "-maxerrors=" + maxErrors));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidMaxErrors() throws Exception {
+		new ParatextValidate().getStreamingExporter("-maxerrors=many");
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNonPositiveMaxErrors() throws Exception {
+		new ParatextValidate().doExportBooks(Arrays.<ParatextBook> asList(), "-maxerrors=0");
+	}
+}
@@ -0,0 +1,80 @@
+package biblemulticonverter.format.paratext;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import biblemulticonverter.format.paratext.ParatextBook.ParatextID;
+
+public class USFXTest {
+
+	@Test
+	public void test_roundtrip_USFX_to_USFX() throws Exception {
+		// 1. Import USFM and export to USFX, then import and export the USFX again.
+		// 2. Assert that both USFX files result in the same content when imported.
+
+		USFX usfx = new USFX();
+		File firstFile = USX3Test.createTempFile("usfx-export", ".usfx");
+		usfx.doExportBooks(Arrays.asList(new USFM().doImportBook(USX3Test.getResource("/usfm2/GEN.usfm"))), firstFile.getPath());
+		List<ParatextBook> firstBooks = usfx.doImportBooks(firstFile);
+		assertEquals(1, firstBooks.size());
+
+		File secondFile = USX3Test.createTempFile("usfx-export", ".usfx");
+		usfx.doExportBooks(firstBooks, secondFile.getPath());
+		List<ParatextBook> secondBooks = usfx.doImportBooks(secondFile);
+		assertEquals(1, secondBooks.size());
+
+		assertEquals(dump(firstBooks.get(0)), dump(secondBooks.get(0)));
+	}
+
+	@Test
+	public void test_import_skips_unknown_books_and_elements() throws Exception {
+		File file = USX3Test.createTempFile("usfx-import", ".usfx");
+		Files.write(file.toPath(), Arrays.asList(
+				"<?xml version=\"1.0\" encoding=\"utf-8\"?>",
+				"<usfx>",
+				"<book id=\"XYZ\">Unknown <p>book</p></book>",
+				"<book id=\"EXO\"><id id=\"EXO\">Exodus</id><h>Exodus</h><c id=\"1\" />"
+						+ "<p><v id=\"1\" /> Now these <unknown>skipped</unknown>are the <w s=\"H8034\">names</w>.<ve /></p>"
+						+ "<add>not allowed here</add></book>",
+				"<book id=\"GEN\"><c id=\"1\"/><p><v id=\"1\"/>In the beginning</p></book>",
+				"</usfx>"), StandardCharsets.UTF_8);
+		List<ParatextBook> books = new USFX().doImportBooks(file);
+		assertEquals(2, books.size());
+		assertEquals(ParatextID.ID_GEN, books.get(0).getId());
+		ParatextBook exodus = books.get(1);
+		assertEquals(ParatextID.ID_EXO, exodus.getId());
+		assertEquals("Exodus", exodus.getBibleName());
+		assertEquals("Exodus", exodus.getAttributes().get("h"));
+		assertEquals(Arrays.asList(
+				"BOOK\tEXO\tExodus",
+				"BOOKATTR\th\tExodus",
+				"CHAPTER\t1",
+				"PARAGRAPH\tp",
+				"VERSE\tEXO 1:1\t1",
+				"CHARCONTENTSTART",
+				"TEXT\t\tNow these ",
+				"TEXT\t\tare the ",
+				"CHARFORMAT\tw",
+				"ATTRIBUTE\tstrong\tH8034",
+				"TEXT\t\tnames",
+				"CHARFORMATEND",
+				"TEXT\t\t.",
+				"CHARCONTENTEND",
+				"VERSE-END\t\tEXO 1:1",
+				"CHAPTER-END\tEXO 1"), Arrays.asList(dump(exodus).split("\r?\n")));
+	}
+
+	private static String dump(ParatextBook book) throws IOException {
+		File file = USX3Test.createTempFile("dump", ".txt");
+		new ParatextDump().doExportBook(book, file);
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
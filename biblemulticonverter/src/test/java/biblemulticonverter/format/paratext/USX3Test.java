@@ -158,6 +158,31 @@ public class USX3Test {
 		assertEqualLines(getResource("/whitespace-test/expected-output.txt"), resultFile);
 	}
 
+	/**
+	 * Tests that content without its own paragraph after a sidebar or
+	 * peripheral boundary is still added to the previous paragraph (or table),
+	 * like the USX exporters always did.
+	 */
+	@Test
+	public void content_after_sidebar_and_peripheral_boundaries_keeps_placement() throws Exception {
+		USFM usfm = new USFM();
+		for (String name : new String[] { "GEN", "FRT" }) {
+			ParatextBook paratextBook = usfm.doImportBook(getResource("/sidebar-test/" + name + ".usfm"));
+
+			File usxFile = createTempFile("usx-export", ".usx");
+			new USX().doExportBook(paratextBook, usxFile);
+			assertEquals(readString(getResource("/sidebar-test/" + name + "-expected.usx")), readString(usxFile));
+
+			File usx3File = createTempFile("usx3-export", ".usx");
+			new USX3().doExportBook(paratextBook, usx3File);
+			assertEquals(readString(getResource("/sidebar-test/" + name + "-expected-usx3.usx")), readString(usx3File));
+		}
+	}
+
+	private static String readString(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+
 	private static void dump(ParatextBook book, File file) throws IOException {
 		ParatextDump paratextDump = new ParatextDump();
 		paratextDump.doExportBook(book, file);
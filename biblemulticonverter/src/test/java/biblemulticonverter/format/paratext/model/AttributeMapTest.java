@@ -0,0 +1,183 @@
+package biblemulticonverter.format.paratext.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class AttributeMapTest {
+
+	private static AttributeMap createMap(String... keysAndValues) {
+		AttributeMap map = new AttributeMap();
+		for (int i = 0; i < keysAndValues.length; i += 2) {
+			map.put(keysAndValues[i], keysAndValues[i + 1]);
+		}
+		return map;
+	}
+
+	private static void assertSameContent(Map<String, String> expected, AttributeMap actual) {
+		assertEquals(expected, actual);
+		assertEquals(actual, expected);
+		assertEquals(expected.hashCode(), actual.hashCode());
+		assertEquals(expected.size(), actual.size());
+		List<String> keys = new ArrayList<>();
+		for (Map.Entry<String, String> entry : actual.entrySet()) {
+			keys.add(entry.getKey());
+			assertEquals(expected.get(entry.getKey()), entry.getValue());
+		}
+		List<String> sortedKeys = new ArrayList<>(expected.keySet());
+		sortedKeys.sort(null);
+		assertEquals(sortedKeys, keys);
+	}
+
+	@Test
+	public void testBehavesLikeHashMap() {
+		String[] keys = { "strong", "lemma", "x-morph", "srcloc", "gloss", "x-occurrence", "" };
+		Random rnd = new Random(42);
+		Map<String, String> expected = new HashMap<>();
+		AttributeMap actual = new AttributeMap();
+		for (int i = 0; i < 5000; i++) {
+			String key = keys[rnd.nextInt(keys.length)];
+			String value = rnd.nextInt(10) == 0 ? null : "v" + rnd.nextInt(5);
+			switch (rnd.nextInt(6)) {
+			case 0:
+			case 1:
+			case 2:
+				assertEquals(expected.put(key, value), actual.put(key, value));
+				break;
+			case 3:
+				assertEquals(expected.remove(key), actual.remove(key));
+				break;
+			case 4:
+				assertEquals(expected.containsKey(key), actual.containsKey(key));
+				assertEquals(expected.get(key), actual.get(key));
+				break;
+			case 5:
+				if (rnd.nextInt(20) == 0) {
+					expected.clear();
+					actual.clear();
+				} else if (rnd.nextBoolean()) {
+					actual.canonicalize();
+				}
+				break;
+			}
+			assertSameContent(expected, actual);
+		}
+		assertFalse(actual.containsKey(null));
+		assertEquals(null, actual.get(Integer.valueOf(1)));
+	}
+
+	@Test
+	public void testPutAllCopiesAreIndependent() {
+		AttributeMap source = createMap("strong", "H1", "lemma", "x");
+		AttributeMap copy = new AttributeMap();
+		copy.putAll(source);
+		assertEquals(source, copy);
+		copy.put("strong", "H2");
+		copy.put("gloss", "g");
+		copy.remove("lemma");
+		assertEquals(createMap("strong", "H1", "lemma", "x"), source);
+		assertEquals(createMap("strong", "H2", "gloss", "g"), copy);
+
+		// putAll into a non-empty map merges like a HashMap
+		AttributeMap target = createMap("lemma", "y", "srcloc", "1");
+		target.putAll(source);
+		assertEquals(createMap("strong", "H1", "lemma", "x", "srcloc", "1"), target);
+		source.clear();
+		assertEquals(3, target.size());
+
+		Map<String, String> hashMap = new HashMap<>();
+		hashMap.put("b", "2");
+		hashMap.put("a", "1");
+		AttributeMap fromHashMap = new AttributeMap();
+		fromHashMap.putAll(hashMap);
+		assertSameContent(hashMap, fromHashMap);
+	}
+
+	@Test
+	public void testEntrySetWritesThrough() {
+		AttributeMap map = createMap("a", "1", "b", "2", "c", "3");
+		AttributeMap copy = new AttributeMap();
+		copy.putAll(map);
+		for (Map.Entry<String, String> entry : map.entrySet()) {
+			assertEquals(entry.getValue(), entry.setValue(entry.getValue() + "x"));
+			assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		assertEquals(createMap("a", "1x", "b", "2x", "c", "3x"), map);
+		assertEquals(createMap("a", "1", "b", "2", "c", "3"), copy);
+
+		Iterator<Map.Entry<String, String>> it = map.entrySet().iterator();
+		assertEquals("a", it.next().getKey());
+		assertEquals("b", it.next().getKey());
+		it.remove();
+		// iteration continues over the entries present when it started
+		map.put("d", "4");
+		assertEquals("c", it.next().getKey());
+		assertFalse(it.hasNext());
+		assertEquals(createMap("a", "1x", "c", "3x", "d", "4"), map);
+		assertEquals(3, copy.entrySet().size());
+
+		map.keySet().remove("a");
+		map.values().remove("4");
+		assertEquals(createMap("c", "3x"), map);
+	}
+
+	@Test
+	public void testCanonicalizer() {
+		AttributeMap.Canonicalizer canonicalizer = new AttributeMap.Canonicalizer(100);
+		AttributeMap first = createMap("strong", new String("H1"), "lemma", new String("x"));
+		AttributeMap second = createMap("lemma", new String("x"), "strong", new String("H1"));
+		AttributeMap other = createMap("strong", new String("H1"));
+		canonicalizer.canonicalize(first);
+		canonicalizer.canonicalize(second);
+		canonicalizer.canonicalize(other);
+		assertEquals(first, second);
+		assertSame(first.get("strong"), second.get("strong"));
+		assertSame(first.get("lemma"), second.get("lemma"));
+		assertSame(first.get("strong"), other.get("strong"));
+		assertSame(first.entrySet().iterator().next().getKey(), second.entrySet().iterator().next().getKey());
+
+		// changes after canonicalization do not affect the other maps
+		second.put("strong", "H2");
+		second.entrySet().iterator().next().setValue("y");
+		assertEquals(createMap("strong", "H1", "lemma", "x"), first);
+		assertEquals(createMap("strong", "H2", "lemma", "y"), second);
+		first.remove("lemma");
+		assertEquals(other, first);
+		assertEquals(createMap("strong", "H2", "lemma", "y"), second);
+
+		AttributeMap empty = new AttributeMap();
+		canonicalizer.canonicalize(empty);
+		assertTrue(empty.isEmpty());
+		AttributeMap withNull = createMap("a", null);
+		canonicalizer.canonicalize(withNull);
+		assertTrue(withNull.containsKey("a"));
+	}
+
+	@Test
+	public void testCanonicalizerIsBounded() {
+		AttributeMap.Canonicalizer canonicalizer = new AttributeMap.Canonicalizer(2);
+		AttributeMap first = createMap("strong", new String("H1"));
+		canonicalizer.canonicalize(first);
+		AttributeMap second = createMap("strong", new String("H1"));
+		canonicalizer.canonicalize(second);
+		assertSame(first.get("strong"), second.get("strong"));
+		canonicalizer.canonicalize(createMap("strong", "H2"));
+		canonicalizer.canonicalize(createMap("strong", "H3"));
+		// cache was cleared, so a new equal map is no longer shared with the first one
+		AttributeMap third = createMap("strong", new String("H1"));
+		canonicalizer.canonicalize(third);
+		assertEquals(first, third);
+		assertNotSame(first.get("strong"), third.get("strong"));
+	}
+}
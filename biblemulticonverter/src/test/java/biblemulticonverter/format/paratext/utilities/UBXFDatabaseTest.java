@@ -0,0 +1,215 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class UBXFDatabaseTest {
+
+	private File tempDir;
+
+	@Before
+	public void createTempDir() throws IOException {
+		tempDir = Files.createTempDirectory("~bmctest").toFile();
+	}
+
+	@After
+	public void deleteTempDir() {
+		for (File file : tempDir.listFiles()) {
+			file.delete();
+		}
+		tempDir.delete();
+	}
+
+	private static Map<String, String> createEntries() {
+		Map<String, String> entries = new LinkedHashMap<>();
+		// keys that share (more than) the first 8 bytes, in no particular order
+		for (int verse : new int[] { 10, 2, 1, 11 }) {
+			for (String word : new String[] { "beginning", "God", "In", "in", "the" }) {
+				entries.put(UBXFDatabase.key("GEN.1." + verse, word, "1/1"), "x-strong\"H" + verse + word.length() + "\"");
+			}
+		}
+		entries.put(UBXFDatabase.key("GEN.1.1", "the", "2/2"), "x-gloss\"second\"");
+		// keys shorter than 8 bytes and non-ASCII keys that compare by unsigned UTF-8 bytes
+		entries.put("GEN", "short");
+		entries.put("", "empty key");
+		entries.put("ä", "umlaut");
+		entries.put("z", "");
+		entries.put("GEN.1.1@בְּרֵאשִׁית@1/1", "x-morph\"He,R:Ncfsa\"");
+		return entries;
+	}
+
+	private static Map<String, String> sortByUTF8(Map<String, String> entries) {
+		Map<String, String> sorted = new TreeMap<>((k1, k2) -> {
+			byte[] b1 = k1.getBytes(StandardCharsets.UTF_8), b2 = k2.getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i < b1.length && i < b2.length; i++) {
+				int cmp = Integer.compare(b1[i] & 0xFF, b2[i] & 0xFF);
+				if (cmp != 0)
+					return cmp;
+			}
+			return Integer.compare(b1.length, b2.length);
+		});
+		sorted.putAll(entries);
+		return sorted;
+	}
+
+	private static void write(File file, Map<String, String> entries) throws IOException {
+		try (UBXFDatabase.Writer writer = new UBXFDatabase.Writer(file)) {
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				writer.put(entry.getKey(), entry.getValue());
+			}
+			writer.commit();
+		}
+	}
+
+	private static void assertContents(Map<String, String> expected, File file) throws IOException {
+		assertTrue(UBXFDatabase.isDatabaseFile(file));
+		assertFalse(new File(file.getPath() + ".tmp").exists());
+		Map<String, String> sorted = sortByUTF8(expected);
+		try (UBXFDatabase db = new UBXFDatabase(file)) {
+			assertEquals(expected.size(), db.size());
+			List<String> keys = new ArrayList<>();
+			for (int i = 0; i < db.size(); i++) {
+				keys.add(db.getKey(i));
+				assertEquals(sorted.get(db.getKey(i)), db.getValue(i));
+			}
+			assertEquals(new ArrayList<>(sorted.keySet()), keys);
+			for (Map.Entry<String, String> entry : expected.entrySet()) {
+				assertEquals(entry.getKey(), entry.getValue(), db.get(entry.getKey()));
+			}
+		}
+	}
+
+	@Test
+	public void testFormat() throws Exception {
+		File file = new File(tempDir, "test.ubxfdb");
+		Map<String, String> entries = createEntries();
+		write(file, entries);
+		assertContents(entries, file);
+
+		ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+		byte[] magic = new byte[8];
+		data.get(magic);
+		assertArrayEquals("BMCUBXF1".getBytes(StandardCharsets.US_ASCII), magic);
+		int count = data.getInt(), indexOffset = data.getInt();
+		assertEquals(entries.size(), count);
+		assertEquals(data.capacity(), indexOffset + count * 12);
+		// entries are stored in the order they were written
+		int offset = 16;
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			assertEquals(entry.getKey(), readString(data, offset));
+			offset += 4 + data.getInt(offset);
+			assertEquals(entry.getValue(), readString(data, offset));
+			offset += 4 + data.getInt(offset);
+		}
+		assertEquals(indexOffset, offset);
+		// index entries contain the zero padded key prefix and the entry offset, sorted by key
+		List<String> sortedKeys = new ArrayList<>(sortByUTF8(entries).keySet());
+		for (int i = 0; i < count; i++) {
+			byte[] key = sortedKeys.get(i).getBytes(StandardCharsets.UTF_8);
+			byte[] prefix = new byte[8];
+			data.position(indexOffset + i * 12);
+			data.get(prefix);
+			assertArrayEquals(Arrays.copyOf(key, 8), prefix);
+			assertEquals(sortedKeys.get(i), readString(data, data.getInt()));
+		}
+	}
+
+	private static String readString(ByteBuffer data, int offset) {
+		byte[] bytes = new byte[data.getInt(offset)];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = data.get(offset + 4 + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testMissingKeys() throws Exception {
+		File file = new File(tempDir, "test.ubxfdb");
+		write(file, createEntries());
+		try (UBXFDatabase db = new UBXFDatabase(file)) {
+			// same prefix as existing keys, or a prefix/extension of them
+			assertNull(db.get(UBXFDatabase.key("GEN.1.1", "the", "1/2")));
+			assertNull(db.get(UBXFDatabase.key("GEN.1.3", "the", "1/1")));
+			assertNull(db.get("GEN.1.1@the@1/1x"));
+			assertNull(db.get("GEN.1.1@the@1/"));
+			assertNull(db.get("GEN.1.1"));
+			assertNull(db.get("GE"));
+			assertNull(db.get("a"));
+			assertNull(db.get("ää"));
+			assertNull(db.get("zz"));
+			assertNull(db.get("\u0000"));
+		}
+		File emptyFile = new File(tempDir, "empty.ubxfdb");
+		write(emptyFile, Collections.<String, String> emptyMap());
+		try (UBXFDatabase db = new UBXFDatabase(emptyFile)) {
+			assertEquals(0, db.size());
+			assertNull(db.get(""));
+		}
+	}
+
+	@Test
+	public void testMerge() throws Exception {
+		File file = new File(tempDir, "test.ubxfdb");
+		Map<String, String> entries = createEntries();
+		write(file, entries);
+
+		try (UBXFDatabase.Writer writer = new UBXFDatabase.Writer(file)) {
+			// for duplicate keys, the entry added last wins over earlier ones and the old database
+			writer.put("GEN", "first");
+			writer.put(UBXFDatabase.key("GEN.1.2", "God", "1/1"), "changed");
+			writer.put("new", "added");
+			writer.put("GEN", "second");
+			writer.put("new", "added again");
+			writer.commit();
+		}
+		entries.put("GEN", "second");
+		entries.put(UBXFDatabase.key("GEN.1.2", "God", "1/1"), "changed");
+		entries.put("new", "added again");
+		assertContents(entries, file);
+
+		// merging again only keeps the current entries of the old database
+		try (UBXFDatabase.Writer writer = new UBXFDatabase.Writer(file)) {
+			writer.put("z", "last");
+			writer.commit();
+		}
+		entries.put("z", "last");
+		assertContents(entries, file);
+	}
+
+	@Test
+	public void testCloseWithoutCommit() throws Exception {
+		File file = new File(tempDir, "test.ubxfdb");
+		Map<String, String> entries = createEntries();
+		write(file, entries);
+		try (UBXFDatabase.Writer writer = new UBXFDatabase.Writer(file)) {
+			writer.put("GEN", "discarded");
+			assertTrue(new File(file.getPath() + ".tmp").exists());
+		}
+		assertContents(entries, file);
+
+		File textFile = new File(tempDir, "test.txt");
+		Files.write(textFile.toPath(), "GEN@1@1/1=x".getBytes(StandardCharsets.UTF_8));
+		assertFalse(UBXFDatabase.isDatabaseFile(textFile));
+		assertFalse(UBXFDatabase.isDatabaseFile(new File(tempDir, "missing.ubxfdb")));
+	}
+}
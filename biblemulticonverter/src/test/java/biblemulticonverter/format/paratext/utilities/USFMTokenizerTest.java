@@ -0,0 +1,146 @@
+package biblemulticonverter.format.paratext.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class USFMTokenizerTest {
+
+	private static final String FOOTNOTE_PROPERTY = "biblemulticonverter.paratext.usfm.preserveSpacesAtEndOfFootnotes";
+
+	@After
+	public void clearProperty() {
+		System.clearProperty(FOOTNOTE_PROPERTY);
+	}
+
+	/**
+	 * Reconstruct the normalized content by reading all markers and text.
+	 */
+	private static String readAll(USFMTokenizer tokenizer) {
+		StringBuilder sb = new StringBuilder();
+		while (!tokenizer.atEnd()) {
+			if (tokenizer.atMarker()) {
+				sb.append('\\');
+				tokenizer.skip(1);
+			} else {
+				sb.append(tokenizer.readRawText());
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void assertNormalizedLikeTextUtilities(String text) {
+		for (boolean preserveSpacesAtEndOfLines : new boolean[] { false, true }) {
+			String expected = TextUtilities.usfmWhitespaceNormalization(text, preserveSpacesAtEndOfLines);
+			// writable array, normalized in place
+			char[] chars = ("xx" + text + "yy").toCharArray();
+			assertEquals(text, expected, readAll(new USFMTokenizer(CharBuffer.wrap(chars, 2, text.length()), preserveSpacesAtEndOfLines, Collections.<String> emptySet())));
+			// read-only buffer without accessible array
+			assertEquals(text, expected, readAll(new USFMTokenizer(CharBuffer.wrap(text), preserveSpacesAtEndOfLines, Collections.<String> emptySet())));
+		}
+	}
+
+	private static void assertNormalizedLikeTextUtilitiesForAllSettings(String text) {
+		assertNormalizedLikeTextUtilities(text);
+		System.setProperty(FOOTNOTE_PROPERTY, "true");
+		assertNormalizedLikeTextUtilities(text);
+		System.setProperty(FOOTNOTE_PROPERTY, "false");
+		assertNormalizedLikeTextUtilities(text);
+		System.clearProperty(FOOTNOTE_PROPERTY);
+	}
+
+	@Test
+	public void testByteOrderMark() {
+		assertNormalizedLikeTextUtilitiesForAllSettings("\uFEFF\\id GEN\n\\c 1");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\uFEFF \n\\id GEN");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\uFEFF");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\id GEN \uFEFF text");
+	}
+
+	@Test
+	public void testFootnoteEnd() {
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\v 1 text\\f + \\fr 1:1 \\ft note \n\\f* more");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\x - \\xo 1:1 \\xt Gen 1:1 \\x*\\fw  \\fw* \\fp \t\\fp*");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\f + \\ft note \\f \\fq* \\ff*  \\f");
+	}
+
+	@Test
+	public void testPreserveSpacesAtEndOfLines() {
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\v 1 heavens and the earth. \n\\v 2 The earth");
+		assertNormalizedLikeTextUtilitiesForAllSettings("\\v 1 earth.\n \\v 2 The earth \r\n");
+		assertNormalizedLikeTextUtilitiesForAllSettings("  \n  \\p\u00A0\u2028text\u0085end \n");
+		assertNormalizedLikeTextUtilitiesForAllSettings("");
+		assertNormalizedLikeTextUtilitiesForAllSettings(" \n ");
+	}
+
+	@Test
+	public void testRandomMarkerSequences() {
+		String[] parts = { "\\v 1", "\\f + ", "\\f*", "\\fw*", "\\x*", "\\fp*", "\\f", "\\w", "\\w*", "word", "ä", "\uFEFF", " ", "  ", "\n", "\r\n", " \n", "\t", "\u00A0", "\u2029", "\u0000" };
+		Random rnd = new Random(42);
+		for (int i = 0; i < 2000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int count = rnd.nextInt(12);
+			for (int j = 0; j < count; j++) {
+				sb.append(parts[rnd.nextInt(parts.length)]);
+			}
+			if (rnd.nextInt(4) == 0)
+				sb.insert(0, '\uFEFF');
+			System.setProperty(FOOTNOTE_PROPERTY, String.valueOf(rnd.nextBoolean()));
+			assertNormalizedLikeTextUtilities(sb.toString());
+			System.clearProperty(FOOTNOTE_PROPERTY);
+			assertNormalizedLikeTextUtilities(sb.toString());
+		}
+	}
+
+	@Test
+	public void testTokens() {
+		USFMTokenizer tokenizer = new USFMTokenizer(CharBuffer.wrap("\\p\n\\v 1 In the  \\w beginning|strong=\"H7225\"\\w* God \\+nd x\\+nd* \\v 2 end "), false, new HashSet<>(Arrays.asList("w")));
+		assertEquals("p", tokenizer.readMarker());
+		assertEquals("v", tokenizer.readMarker());
+		// space before character markers is kept
+		assertEquals("1 In the ", tokenizer.readText().toString());
+		assertEquals("w", tokenizer.readMarker());
+		assertTrue(tokenizer.lookingAt("beginning|"));
+		assertEquals("beginning|strong=\"H7225\"", tokenizer.readText().toString());
+		assertTrue(tokenizer.atAttributeEnd());
+		assertEquals("w*", tokenizer.readMarker());
+		// but not before other markers
+		assertEquals(" God", tokenizer.readText().toString());
+		assertFalse(tokenizer.atAttributeEnd());
+		assertEquals("+nd", tokenizer.readMarker());
+		assertEquals("x", tokenizer.readRawText().toString());
+		assertTrue(tokenizer.atAttributeEnd());
+		assertEquals("+nd*", tokenizer.readMarker());
+		assertEquals(" ", tokenizer.readRawText().toString());
+		assertEquals("v", tokenizer.readMarker());
+		assertEquals("2 end", tokenizer.readText().toString());
+		assertTrue(tokenizer.atEnd());
+	}
+
+	@Test
+	public void testCharacterMarkerLookup() {
+		HashSet<String> tags = new HashSet<>(Arrays.asList("w", "wj", "+wj", "nd", "f", "fe", "x", "ä"));
+		String[] markers = { "w", "wj", "+wj", "nd", "f", "fe", "x", "ä", "wg", "j", "+w", "n", "nd2", "", "fea", "zx", "p", "q1" };
+		for (String marker : markers) {
+			USFMTokenizer tokenizer = new USFMTokenizer(CharBuffer.wrap("\\p text \\" + marker + " more"), false, tags);
+			assertEquals("p", tokenizer.readMarker());
+			String expected = tags.contains(marker) || marker.startsWith("z") ? "text " : "text";
+			assertEquals(marker, expected, tokenizer.readTextString());
+		}
+		// empty text
+		USFMTokenizer tokenizer = new USFMTokenizer(CharBuffer.wrap("\\p\n\\v 1"), false, Collections.<String> emptySet());
+		assertEquals("p", tokenizer.readMarker());
+		assertEquals("", tokenizer.readTextString());
+		assertEquals("v", tokenizer.readMarker());
+		assertEquals("1", tokenizer.readTextString());
+	}
+}
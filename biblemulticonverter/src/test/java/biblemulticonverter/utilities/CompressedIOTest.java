@@ -0,0 +1,73 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompressedIOTest {
+
+	private File tempFile;
+
+	@Before
+	public void setUp() throws IOException {
+		tempFile = File.createTempFile("~bmctest", ".gz");
+		System.setProperty("biblemulticonverter.threads", "4");
+	}
+
+	@After
+	public void tearDown() {
+		System.clearProperty("biblemulticonverter.threads");
+		tempFile.delete();
+	}
+
+	private static byte[] createData() {
+		byte[] data = new byte[500000];
+		Random rnd = new Random(42);
+		for (int i = 0; i < data.length; i++) {
+			data[i] = (byte) ('a' + rnd.nextInt(4));
+		}
+		return data;
+	}
+
+	private static byte[] readAll(File file) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (InputStream in = CompressedIO.openInput(file)) {
+			byte[] buf = new byte[1000];
+			int len;
+			while ((len = in.read(buf)) != -1) {
+				baos.write(buf, 0, len);
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	@Test
+	public void testReadAhead() throws Exception {
+		byte[] data = createData();
+		try (OutputStream out = CompressedIO.openOutput(tempFile)) {
+			out.write(data);
+		}
+		assertArrayEquals(data, readAll(tempFile));
+	}
+
+	@Test(expected = IOException.class, timeout = 10000)
+	public void testReadAheadErrorIsPassedOn() throws Exception {
+		try (OutputStream out = CompressedIO.openOutput(tempFile)) {
+			out.write(createData());
+		}
+		byte[] compressed = Files.readAllBytes(tempFile.toPath());
+		Files.write(tempFile.toPath(), Arrays.copyOf(compressed, compressed.length / 2));
+		readAll(tempFile);
+	}
+}
@@ -0,0 +1,285 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class InputDirectoryTest {
+
+	private static final String LONG_DIRECTORY = "a-directory-name-that-is-long-enough-to-exceed-the-hundred-characters-of-the-name-field/";
+
+	private File tempDir;
+
+	@Before
+	public void createTempDir() throws IOException {
+		tempDir = Files.createTempDirectory("~bmctest").toFile();
+	}
+
+	@After
+	public void deleteTempDir() {
+		for (File file : tempDir.listFiles()) {
+			file.delete();
+		}
+		tempDir.delete();
+	}
+
+	private static Map<String, byte[]> createFiles(int count) {
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		Random rnd = new Random(count);
+		for (int i = 0; i < count; i++) {
+			// include sizes that are multiples of the block size
+			byte[] data = new byte[i % 3 == 0 ? 512 * i : rnd.nextInt(3000)];
+			rnd.nextBytes(data);
+			files.put(String.format("%02d-BOOK.usfm", i), data);
+		}
+		return files;
+	}
+
+	private static void writeString(byte[] header, int offset, int length, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length > length)
+			throw new IllegalArgumentException(value);
+		System.arraycopy(bytes, 0, header, offset, bytes.length);
+	}
+
+	private static void writeOctal(byte[] header, int offset, int length, long value) {
+		writeString(header, offset, length, String.format("%0" + (length - 1) + "o", value));
+	}
+
+	private static void writeTarEntry(OutputStream out, String name, String prefix, char type, byte[] data) throws IOException {
+		byte[] header = new byte[512];
+		writeString(header, 0, 100, name);
+		writeOctal(header, 100, 8, 0644);
+		writeOctal(header, 108, 8, 0);
+		writeOctal(header, 116, 8, 0);
+		writeOctal(header, 124, 12, data.length);
+		writeOctal(header, 136, 12, 1600000000L);
+		header[156] = (byte) type;
+		writeString(header, 257, 6, "ustar");
+		writeString(header, 263, 2, "00");
+		writeString(header, 345, 155, prefix);
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		int checksum = 0;
+		for (byte b : header) {
+			checksum += b & 0xFF;
+		}
+		writeOctal(header, 148, 7, checksum);
+		out.write(header);
+		out.write(data);
+		out.write(new byte[(512 - data.length % 512) % 512]);
+	}
+
+	private static void writeUstarEntry(OutputStream out, String path, char type, byte[] data) throws IOException {
+		int pos = path.lastIndexOf('/');
+		if (pos == -1) {
+			writeTarEntry(out, path, "", type, data);
+		} else {
+			// store the directory in the ustar prefix field
+			writeTarEntry(out, path.substring(pos + 1), path.substring(0, pos), type, data);
+		}
+	}
+
+	private static byte[] paxRecord(String key, String value) {
+		String record = " " + key + "=" + value + "\n";
+		int length = record.getBytes(StandardCharsets.UTF_8).length;
+		int digits = String.valueOf(length).length();
+		while (String.valueOf(length + digits).length() != digits)
+			digits++;
+		return ((length + digits) + record).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write a TAR archive, using different ways to store the file names.
+	 */
+	private File writeTar(String fileName, String topDirectory, Map<String, byte[]> files) throws IOException {
+		File tarFile = new File(tempDir, fileName);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		if (!topDirectory.isEmpty())
+			writeTarEntry(baos, "./" + topDirectory.substring(0, topDirectory.indexOf('/') + 1), "", '5', new byte[0]);
+		writeTarEntry(baos, "pax_global_header", "", 'g', paxRecord("comment", "ignored"));
+		int i = 0;
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			String path = topDirectory + file.getKey();
+			switch (i++ % 4) {
+			case 0:
+				if (path.length() <= 100) {
+					writeTarEntry(baos, path, "", '0', file.getValue());
+					break;
+				}
+				// fall through
+			case 1:
+				writeUstarEntry(baos, path, '0', file.getValue());
+				break;
+			case 2:
+				// PAX extended header, name field gets truncated
+				writeTarEntry(baos, "PaxHeaders/" + file.getKey(), "", 'x', paxRecord("path", path));
+				writeTarEntry(baos, path.substring(0, Math.min(path.length(), 90)), "", '0', file.getValue());
+				break;
+			case 3:
+				// GNU long name
+				writeTarEntry(baos, "././@LongLink", "", 'L', (path + "\0").getBytes(StandardCharsets.UTF_8));
+				writeTarEntry(baos, path.substring(0, Math.min(path.length(), 90)), "", '0', file.getValue());
+				break;
+			}
+		}
+		writeUstarEntry(baos, topDirectory + "link.usfm", '2', new byte[0]);
+		baos.write(new byte[1024]);
+		try (OutputStream out = fileName.endsWith(".tar") ? Files.newOutputStream(tarFile.toPath()) : new GZIPOutputStream(Files.newOutputStream(tarFile.toPath()))) {
+			baos.writeTo(out);
+		}
+		return tarFile;
+	}
+
+	private File writeZip(String fileName, String topDirectory, Map<String, byte[]> files) throws IOException {
+		File zipFile = new File(tempDir, fileName);
+		try (ZipOutputStream zos = new ZipOutputStream(Files.newOutputStream(zipFile.toPath()))) {
+			if (!topDirectory.isEmpty())
+				zos.putNextEntry(new ZipEntry(topDirectory));
+			for (Map.Entry<String, byte[]> file : files.entrySet()) {
+				zos.putNextEntry(new ZipEntry(topDirectory + file.getKey()));
+				zos.write(file.getValue());
+			}
+		}
+		return zipFile;
+	}
+
+	private static byte[] readPrefix(InputStream in, int length) throws IOException {
+		byte[] result = new byte[length];
+		int pos = 0;
+		while (pos < length) {
+			int len = in.read(result, pos, length - pos);
+			assertTrue(len > 0);
+			pos += len;
+		}
+		return result;
+	}
+
+	private static void assertContents(Map<String, byte[]> expected, File file) throws IOException {
+		try (InputDirectory dir = InputDirectory.open(file)) {
+			assertEquals(new ArrayList<>(expected.keySet()), dir.list());
+			assertFalse(dir.exists("link.usfm"));
+			List<String> names = new ArrayList<>(expected.keySet());
+			// read in reverse and in random order
+			Collections.reverse(names);
+			for (String name : names) {
+				assertArrayEquals(name, expected.get(name), dir.readAllBytes(name));
+			}
+			Collections.shuffle(names, new Random(1));
+			for (String name : names) {
+				assertArrayEquals(name, expected.get(name), dir.readAllBytes(name));
+			}
+			// interleave reads of two open streams
+			String first = names.get(0), second = names.get(1);
+			byte[] firstData = expected.get(first), secondData = expected.get(second);
+			try (InputStream in1 = dir.openStream(first); InputStream in2 = dir.openStream(second)) {
+				int len = Math.min(firstData.length, secondData.length) / 2;
+				assertArrayEquals(Arrays.copyOf(secondData, len), readPrefix(in2, len));
+				assertArrayEquals(Arrays.copyOf(firstData, len), readPrefix(in1, len));
+				assertArrayEquals(Arrays.copyOfRange(secondData, len, 2 * len), readPrefix(in2, len));
+			}
+		}
+	}
+
+	@Test
+	public void testTar() throws Exception {
+		Map<String, byte[]> files = createFiles(12);
+		assertContents(files, writeTar("test.tar", "", files));
+	}
+
+	@Test
+	public void testTarWithTopDirectory() throws Exception {
+		Map<String, byte[]> files = createFiles(12);
+		assertContents(files, writeTar("test.tar", LONG_DIRECTORY, files));
+		assertContents(files, writeTar("test2.tar", "project-master/", files));
+	}
+
+	@Test
+	public void testTarGz() throws Exception {
+		Map<String, byte[]> files = createFiles(12);
+		assertContents(files, writeTar("test.tar.gz", "project-master/", files));
+		assertContents(files, writeTar("test.tgz", LONG_DIRECTORY, files));
+	}
+
+	@Test
+	public void testTarGzTempFileIsDeleted() throws Exception {
+		Map<String, byte[]> files = createFiles(3);
+		File tgz = writeTar("test.tgz", "", files);
+		File systemTemp = new File(System.getProperty("java.io.tmpdir"));
+		List<String> before = Arrays.asList(systemTemp.list());
+		try (InputDirectory dir = InputDirectory.open(tgz)) {
+			assertEquals(new ArrayList<>(files.keySet()), dir.list());
+		}
+		List<String> after = new ArrayList<>(Arrays.asList(systemTemp.list()));
+		after.removeAll(before);
+		assertEquals(Collections.emptyList(), after);
+	}
+
+	@Test
+	public void testZip() throws Exception {
+		Map<String, byte[]> files = createFiles(12);
+		assertContents(files, writeZip("test.zip", "", files));
+		assertContents(files, writeZip("test2.zip", "project-master/", files));
+	}
+
+	@Test
+	public void testSubdirectory() throws Exception {
+		Map<String, byte[]> files = new LinkedHashMap<>();
+		files.put("root.txt", new byte[] { 1 });
+		for (Map.Entry<String, byte[]> file : createFiles(5).entrySet()) {
+			files.put("usfm/" + file.getKey(), file.getValue());
+		}
+		Map<String, byte[]> expected = new LinkedHashMap<>();
+		for (Map.Entry<String, byte[]> file : files.entrySet()) {
+			if (file.getKey().startsWith("usfm/"))
+				expected.put(file.getKey().substring(5), file.getValue());
+		}
+		File tar = writeTar("test.tar", "top/", files);
+		File zip = writeZip("test.zip", "top/", files);
+		assertContents(expected, new File(tar.getPath() + "!/usfm"));
+		assertContents(expected, new File(zip.getPath() + "!/usfm/"));
+		assertContents(expected, new File(tar.getPath() + "!/top/usfm"));
+		assertContents(expected, new File(writeTar("test.tgz", "top/", files).getPath() + "!/usfm"));
+		try (InputDirectory dir = InputDirectory.open(zip)) {
+			assertEquals(Arrays.asList("root.txt"), dir.list());
+			assertEquals(zip.getPath() + "!/top/root.txt", dir.getPath("root.txt"));
+		}
+		try (InputDirectory dir = InputDirectory.open(tar)) {
+			assertEquals(tar.getPath() + "!/top/root.txt", dir.getPath("root.txt"));
+			// there is no URI scheme for TAR entries
+			assertNull(dir.getSystemId("root.txt"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncatedTar() throws Exception {
+		Map<String, byte[]> files = createFiles(4);
+		File tar = writeTar("test.tar", "", files);
+		byte[] data = Files.readAllBytes(tar.toPath());
+		Files.write(tar.toPath(), Arrays.copyOf(data, data.length - 3000));
+		InputDirectory.open(tar).close();
+	}
+}
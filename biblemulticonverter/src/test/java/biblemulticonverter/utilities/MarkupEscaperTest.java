@@ -0,0 +1,70 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class MarkupEscaperTest {
+
+	private static String escapeHTML(String text, boolean attribute) {
+		String result = text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;");
+		return attribute ? result.replace("\"", "&quot;") : result;
+	}
+
+	private static void assertEscaped(MarkupEscaper escaper, String expected, String text) throws Exception {
+		assertEquals(expected, escaper.escape(text));
+		StringBuilder sb = new StringBuilder("prefix");
+		escaper.escape(sb, text);
+		assertEquals("prefix" + expected, sb.toString());
+		StringWriter sw = new StringWriter();
+		escaper.escape(sw, text);
+		assertEquals(expected, sw.toString());
+	}
+
+	@Test
+	public void testHTML() throws Exception {
+		assertEscaped(MarkupEscaper.HTML_TEXT, "a &lt;b&gt; &amp;amp; \"c\"", "a <b> &amp; \"c\"");
+		assertEscaped(MarkupEscaper.HTML_ATTRIBUTE, "a &lt;b&gt; &amp;amp; &quot;c&quot;", "a <b> &amp; \"c\"");
+		assertEscaped(MarkupEscaper.HTML_TEXT, "&amp;&amp;", "&&");
+		assertEscaped(MarkupEscaper.HTML_TEXT, "", "");
+	}
+
+	@Test
+	public void testUnescapedTextIsReturnedAsIs() {
+		String text = "plain text äא";
+		assertSame(text, MarkupEscaper.HTML_ATTRIBUTE.escape(text));
+		assertSame(text, MarkupEscaper.NONE.escape(text));
+	}
+
+	@Test
+	public void testJSON() throws Exception {
+		assertEscaped(MarkupEscaper.JSON, "a\\\\b\\\"c\\n", "a\\b\"c\n");
+		assertEscaped(MarkupEscaper.JSON, "\\r\\t\\u0000\\u001f ", "\r\t\u0000\u001f ");
+	}
+
+	@Test
+	public void testWithDoesNotModifyOriginal() throws Exception {
+		MarkupEscaper custom = MarkupEscaper.HTML_TEXT.with(' ', "<br>").with('<', "[");
+		assertEscaped(custom, "[a&gt;&amp;<br>", "<a>& ");
+		assertEscaped(MarkupEscaper.HTML_TEXT, "&lt;a&gt;&amp; ", "<a>& ");
+	}
+
+	@Test
+	public void testRandomTextMatchesStringReplace() throws Exception {
+		Random rnd = new Random(42);
+		String alphabet = "ab &<>\"ä\n";
+		for (int i = 0; i < 10000; i++) {
+			char[] chars = new char[rnd.nextInt(20)];
+			for (int j = 0; j < chars.length; j++) {
+				chars[j] = alphabet.charAt(rnd.nextInt(alphabet.length()));
+			}
+			String text = new String(chars);
+			assertEscaped(MarkupEscaper.HTML_TEXT, escapeHTML(text, false), text);
+			assertEscaped(MarkupEscaper.HTML_ATTRIBUTE, escapeHTML(text, true), text);
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelFileWriterTest {
+
+	private File tempDir;
+
+	@Before
+	public void createTempDir() throws IOException {
+		tempDir = Files.createTempDirectory("~bmctest").toFile();
+	}
+
+	@After
+	public void deleteTempDir() throws IOException {
+		try (Stream<Path> paths = Files.walk(tempDir.toPath())) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private void export(String... namesAndContents) throws IOException {
+		try (ParallelFileWriter writer = new ParallelFileWriter(1, tempDir, true)) {
+			for (int i = 0; i < namesAndContents.length; i += 2) {
+				String content = namesAndContents[i + 1];
+				writer.write(new File(tempDir, namesAndContents[i]), bw -> bw.write(content));
+			}
+			writer.finish();
+		}
+	}
+
+	private String read(String name) throws IOException {
+		return new String(Files.readAllBytes(new File(tempDir, name).toPath()), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testIncrementalDeletesOrphans() throws IOException {
+		export("a/b/one.txt", "1", "a/two.txt", "2", "c/three.txt", "3", "four.txt", "4");
+		export("a/two.txt", "2", "four.txt", "4");
+		assertEquals("2", read("a/two.txt"));
+		assertEquals("4", read("four.txt"));
+		assertFalse(new File(tempDir, "a/b").exists());
+		assertFalse(new File(tempDir, "c").exists());
+		assertTrue(new File(tempDir, "a").isDirectory());
+		assertTrue(tempDir.isDirectory());
+	}
+
+	@Test
+	public void testIncrementalRestoresMissingFiles() throws IOException {
+		export("empty.txt", "", "full.txt", "content");
+		assertTrue(new File(tempDir, "empty.txt").delete());
+		assertTrue(new File(tempDir, "full.txt").delete());
+		export("empty.txt", "", "full.txt", "content");
+		assertEquals("", read("empty.txt"));
+		assertEquals("content", read("full.txt"));
+	}
+}
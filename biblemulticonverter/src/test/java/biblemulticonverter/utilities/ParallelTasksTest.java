@@ -0,0 +1,117 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ParallelTasksTest {
+
+	private PrintStream oldOut;
+	private ByteArrayOutputStream output;
+	private PrintStream testOut;
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty("biblemulticonverter.threads", "4");
+		oldOut = System.out;
+		output = new ByteArrayOutputStream();
+		testOut = new PrintStream(output, true, "UTF-16BE");
+		System.setOut(testOut);
+	}
+
+	@After
+	public void tearDown() {
+		System.setOut(oldOut);
+		System.clearProperty("biblemulticonverter.threads");
+	}
+
+	private static List<Callable<Integer>> createTasks(String prefix, int count) {
+		List<Callable<Integer>> tasks = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			final int number = i;
+			tasks.add(() -> {
+				Thread.sleep((number * 7) % 5);
+				System.out.println(prefix + number + " ä");
+				return number;
+			});
+		}
+		return tasks;
+	}
+
+	@Test
+	public void testOutputIsPrintedInTaskOrder() throws Exception {
+		List<Integer> results = ParallelTasks.runAll(createTasks("task", 20));
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 20; i++) {
+			assertEquals(i, results.get(i).intValue());
+			expected.append("task" + i + " ä" + System.lineSeparator());
+		}
+		assertSame(testOut, System.out);
+		// output is encoded with the charset of the original stream
+		assertEquals(expected.toString(), new String(output.toByteArray(), "UTF-16BE"));
+	}
+
+	@Test
+	public void testNestedOutputIsPrintedInTaskOrder() throws Exception {
+		List<Callable<Void>> tasks = new ArrayList<>();
+		StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < 5; i++) {
+			final String prefix = "outer" + i + "/";
+			tasks.add(() -> {
+				System.out.println(prefix + "start");
+				ParallelTasks.runAll(createTasks(prefix, 5));
+				System.out.println(prefix + "end");
+				return null;
+			});
+			expected.append(prefix + "start" + System.lineSeparator());
+			for (int j = 0; j < 5; j++) {
+				expected.append(prefix + j + " ä" + System.lineSeparator());
+			}
+			expected.append(prefix + "end" + System.lineSeparator());
+		}
+		ParallelTasks.runAll(tasks);
+		assertSame(testOut, System.out);
+		assertEquals(expected.toString(), new String(output.toByteArray(), "UTF-16BE"));
+	}
+
+	@Test
+	public void testOutputIsRestoredAfterFailure() throws Exception {
+		List<Callable<Integer>> tasks = createTasks("task", 10);
+		tasks.set(5, () -> {
+			throw new IllegalStateException("failed");
+		});
+		try {
+			ParallelTasks.runAll(tasks);
+		} catch (IllegalStateException ex) {
+			assertEquals("failed", ex.getMessage());
+		}
+		assertSame(testOut, System.out);
+	}
+
+	@Test
+	public void testSplitCharactersOutsideTasks() throws Exception {
+		byte[] bytes = "ä€𝄞".getBytes(StandardCharsets.UTF_8);
+		ParallelTasks.installOutputBuffering();
+		try {
+			// write byte by byte, so that every multibyte character is split
+			for (byte b : bytes) {
+				System.out.write(new byte[] { b }, 0, 1);
+			}
+			System.out.flush();
+		} finally {
+			ParallelTasks.uninstallOutputBuffering();
+		}
+		assertSame(testOut, System.out);
+		assertEquals("ä€𝄞", new String(output.toByteArray(), "UTF-16BE"));
+	}
+}
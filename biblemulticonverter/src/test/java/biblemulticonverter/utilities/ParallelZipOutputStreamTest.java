@@ -0,0 +1,142 @@
+package biblemulticonverter.utilities;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+public class ParallelZipOutputStreamTest {
+
+	private static Map<String, byte[]> createEntries() {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("mimetype", "application/epub+zip".getBytes(StandardCharsets.US_ASCII));
+		entries.put("empty.txt", new byte[0]);
+		StringBuilder text = new StringBuilder();
+		Random rnd = new Random(1);
+		while (text.length() < 1000000) {
+			text.append("Verse ").append(rnd.nextInt(1000)).append(": In the beginning God created the heaven and the earth.\n");
+		}
+		entries.put("OEBPS/large.xhtml", text.toString().getBytes(StandardCharsets.UTF_8));
+		byte[] random = new byte[300000];
+		rnd.nextBytes(random);
+		entries.put("OEBPS/random.bin", random);
+		entries.put("OEBPS/ümlaut.txt", "small".getBytes(StandardCharsets.UTF_8));
+		return entries;
+	}
+
+	private static byte[] writeZip(Map<String, byte[]> entries, int threads) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (ParallelZipOutputStream zos = new ParallelZipOutputStream(baos, threads)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				ZipEntry ze = new ZipEntry(entry.getKey());
+				ze.setTime(1600000000000L);
+				if (entry.getKey().equals("mimetype"))
+					ze.setMethod(ZipEntry.STORED);
+				zos.putNextEntry(ze);
+				byte[] data = entry.getValue();
+				// mix single byte writes and writes of different sizes
+				int pos = 0;
+				if (data.length > 0) {
+					zos.write(data[0]);
+					pos = 1;
+				}
+				while (pos < data.length) {
+					int len = Math.min(data.length - pos, 70000);
+					zos.write(data, pos, len);
+					pos += len;
+				}
+			}
+		}
+		return baos.toByteArray();
+	}
+
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int len;
+		while ((len = in.read(buffer)) != -1) {
+			baos.write(buffer, 0, len);
+		}
+		return baos.toByteArray();
+	}
+
+	private static long crc(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return crc.getValue();
+	}
+
+	private static void assertReadable(Map<String, byte[]> entries, byte[] zip) throws IOException {
+		try (ZipInputStream zis = new ZipInputStream(new ByteArrayInputStream(zip))) {
+			for (Map.Entry<String, byte[]> expected : entries.entrySet()) {
+				ZipEntry ze = zis.getNextEntry();
+				assertEquals(expected.getKey(), ze.getName());
+				assertEquals(expected.getKey().equals("mimetype") ? ZipEntry.STORED : ZipEntry.DEFLATED, ze.getMethod());
+				assertArrayEquals(expected.getValue(), readAll(zis));
+				// CRC of deflated entries is known after reading the data descriptor
+				assertEquals(crc(expected.getValue()), ze.getCrc());
+			}
+			assertNull(zis.getNextEntry());
+		}
+		File tempFile = File.createTempFile("~pzos", ".zip");
+		try {
+			Files.write(tempFile.toPath(), zip);
+			try (ZipFile zf = new ZipFile(tempFile)) {
+				assertEquals(entries.size(), zf.size());
+				Enumeration<? extends ZipEntry> zipEntries = zf.entries();
+				for (Map.Entry<String, byte[]> expected : entries.entrySet()) {
+					ZipEntry ze = zipEntries.nextElement();
+					assertEquals(expected.getKey(), ze.getName());
+					assertEquals(expected.getValue().length, ze.getSize());
+					assertEquals(crc(expected.getValue()), ze.getCrc());
+					try (InputStream in = zf.getInputStream(ze)) {
+						assertArrayEquals(expected.getValue(), readAll(in));
+					}
+				}
+			}
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	@Test
+	public void testSingleThreaded() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		assertReadable(entries, writeZip(entries, 1));
+	}
+
+	@Test
+	public void testMultiThreaded() throws Exception {
+		Map<String, byte[]> entries = createEntries();
+		byte[] zip = writeZip(entries, 4);
+		assertReadable(entries, zip);
+		// compressed data does not depend on the number of threads
+		assertArrayEquals(writeZip(entries, 2), zip);
+	}
+
+	@Test(expected = ZipException.class)
+	public void testDuplicateEntry() throws Exception {
+		try (ParallelZipOutputStream zos = new ParallelZipOutputStream(new ByteArrayOutputStream(), 2)) {
+			zos.putNextEntry(new ZipEntry("a"));
+			zos.putNextEntry(new ZipEntry("a"));
+		}
+	}
+}